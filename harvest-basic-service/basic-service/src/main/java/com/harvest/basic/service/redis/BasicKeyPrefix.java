@@ -20,6 +20,10 @@ public class BasicKeyPrefix extends BaseKeyPrefix {
         super(keyPrefix, expireSeconds);
     }
 
+    public BasicKeyPrefix(String keyPrefix, int expireSeconds, boolean nearCache) {
+        super(keyPrefix, expireSeconds, nearCache);
+    }
+
     @Override
     public String getKeyPrefix() {
         return BASIC_PREFIX + super.getKeyPrefix();
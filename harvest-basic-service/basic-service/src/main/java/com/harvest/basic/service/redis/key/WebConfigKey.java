@@ -18,6 +18,13 @@ public class WebConfigKey extends BasicKeyPrefix {
         super(keyPrefix, expireSeconds);
     }
 
-    public static final WebConfigKey WEB_CONFIG_KEY = new WebConfigKey(KeyModePrefix.Basic.WEBCONFIG, ONE_HOUR);
+    public WebConfigKey(String keyPrefix, int expireSeconds, boolean nearCache) {
+        super(keyPrefix, expireSeconds, nearCache);
+    }
+
+    /**
+     * 前端配置读多写少, 开启近端缓存
+     */
+    public static final WebConfigKey WEB_CONFIG_KEY = new WebConfigKey(KeyModePrefix.Basic.WEBCONFIG, ONE_HOUR, true);
 
 }
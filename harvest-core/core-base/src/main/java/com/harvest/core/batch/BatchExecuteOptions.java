@@ -0,0 +1,56 @@
+package com.harvest.core.batch;
+
+import lombok.Data;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/7 10:05 AM
+ * @Description: 并发批量执行参数
+ **/
+@Data
+public class BatchExecuteOptions {
+
+    /**
+     * 默认单次调用并发度
+     */
+    public static final int DEFAULT_PARALLELISM = 16;
+
+    /**
+     * 默认截止时长 毫秒
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10_000L;
+
+    /**
+     * 公司Id; 同一公司的任务共用一个队列, 不同公司之间轮询调度; 为空时单次调用独占一个队列
+     */
+    private Long companyId;
+
+    /**
+     * 单次调用最多同时执行的任务数
+     */
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    /**
+     * 截止时长 毫秒, 到期后未开始的任务取消并记入未执行
+     */
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    public static BatchExecuteOptions defaults() {
+        return new BatchExecuteOptions();
+    }
+
+    public static BatchExecuteOptions of(Long companyId) {
+        BatchExecuteOptions options = new BatchExecuteOptions();
+        options.setCompanyId(companyId);
+        return options;
+    }
+
+    public static BatchExecuteOptions of(Long companyId, int parallelism, long timeoutMillis) {
+        BatchExecuteOptions options = new BatchExecuteOptions();
+        options.setCompanyId(companyId);
+        options.setParallelism(parallelism);
+        options.setTimeoutMillis(timeoutMillis);
+        return options;
+    }
+
+}
@@ -27,12 +27,22 @@ public class BatchExecuteResult<T> {
     @ApiModelProperty("执行失败条数")
     private AtomicInteger failCount;
 
+    @ApiModelProperty("未执行条数, 截止或队列已满时取消")
+    private AtomicInteger unexecutedCount;
+
     @ApiModelProperty("失败错误记录")
     private List<ReasonMap<T>> errorList;
 
     @ApiModelProperty("执行成功记录")
     private List<ReasonMap<T>> successList;
 
+    @ApiModelProperty("未执行记录")
+    private List<ReasonMap<T>> unexecutedList;
+
+    public static final String TIMEOUT_REASON = "执行超时, 结果未知";
+
+    public static final String UNEXECUTED_REASON = "截止前未执行";
+
     public static final BatchExecuteResult<String> EMPTY = new BatchExecuteResult<>();
 
     public static BatchExecuteResult<String> empty() {
@@ -44,6 +54,8 @@ public class BatchExecuteResult<T> {
         this.failCount = new AtomicInteger();
         this.errorList = Collections.synchronizedList(Lists.newArrayList());
         this.successList = Collections.synchronizedList(Lists.newArrayList());
+        this.unexecutedCount = new AtomicInteger();
+        this.unexecutedList = Collections.synchronizedList(Lists.newArrayList());
     }
 
     public BatchExecuteResult(int count) {
@@ -52,6 +64,8 @@ public class BatchExecuteResult<T> {
         this.failCount = new AtomicInteger();
         this.errorList = Collections.synchronizedList(Lists.newArrayList());
         this.successList = Collections.synchronizedList(Lists.newArrayList());
+        this.unexecutedCount = new AtomicInteger();
+        this.unexecutedList = Collections.synchronizedList(Lists.newArrayList());
     }
 
     public BatchExecuteResult(int count, AtomicInteger successCount, AtomicInteger failCount, List<ReasonMap<T>> errorList, List<ReasonMap<T>> successList) {
@@ -60,6 +74,25 @@ public class BatchExecuteResult<T> {
         this.failCount = failCount;
         this.errorList = errorList;
         this.successList = successList;
+        this.unexecutedCount = new AtomicInteger();
+        this.unexecutedList = Collections.synchronizedList(Lists.newArrayList());
+    }
+
+    /**
+     * 合并另一批次的执行结果
+     *
+     * @param other 另一批次结果
+     * @return 当前结果
+     */
+    public BatchExecuteResult<T> merge(BatchExecuteResult<T> other) {
+        this.count += other.getCount();
+        this.successCount.addAndGet(other.getSuccessCount().get());
+        this.failCount.addAndGet(other.getFailCount().get());
+        this.unexecutedCount.addAndGet(other.getUnexecutedCount().get());
+        this.successList.addAll(other.getSuccessList());
+        this.errorList.addAll(other.getErrorList());
+        this.unexecutedList.addAll(other.getUnexecutedList());
+        return this;
     }
 
     @Data
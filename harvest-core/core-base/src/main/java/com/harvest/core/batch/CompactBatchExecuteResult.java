@@ -0,0 +1,235 @@
+package com.harvest.core.batch;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/8 10:15 AM
+ * @Description: 紧凑批量执行结果
+ * <p>
+ * 适用于数万条的批量操作: 成功/失败/未执行只记录业务Id, 失败原因归并为字典并计数, 只保留少量异常样本
+ **/
+@Data
+@ApiModel("可部分失败执行统计-紧凑")
+public class CompactBatchExecuteResult {
+
+    @ApiModelProperty("任务总数")
+    private int count;
+
+    @ApiModelProperty("执行成功条数")
+    private int successCount;
+
+    @ApiModelProperty("执行失败条数")
+    private int failCount;
+
+    @ApiModelProperty("未执行条数")
+    private int unexecutedCount;
+
+    @ApiModelProperty("执行成功业务Id, 按输入顺序")
+    private long[] successIds;
+
+    @ApiModelProperty("执行失败业务Id, 按输入顺序")
+    private long[] failIds;
+
+    @ApiModelProperty("失败原因下标, 与 failIds 一一对应, 指向 reasons")
+    private int[] failReasons;
+
+    @ApiModelProperty("未执行业务Id")
+    private long[] unexecutedIds;
+
+    @ApiModelProperty("失败原因字典")
+    private List<ReasonCount> reasons;
+
+    @ApiModelProperty("异常样本")
+    private List<BatchExecuteResult.ReasonMap<Long>> samples;
+
+    public static CompactBatchExecuteResult empty() {
+        return new Collector(new long[0]).build(new boolean[0]);
+    }
+
+    @Data
+    public static class ReasonCount {
+
+        @ApiModelProperty("失败原因")
+        private String reason;
+
+        @ApiModelProperty("次数")
+        private int count;
+    }
+
+    /**
+     * 结果收集器: 每个下标只由执行它的线程写入, 无锁, 执行结束后一次性合并
+     */
+    public static class Collector {
+
+        /**
+         * 失败原因字典上限, 超出归入其他
+         */
+        private static final int MAX_REASONS = 64;
+
+        /**
+         * 异常样本数
+         */
+        private static final int MAX_SAMPLES = 10;
+
+        private static final String OTHER_REASON = "其他";
+
+        private static final int TIMEOUT_REASON = -1;
+
+        private static final byte SUCCESS = 1;
+        private static final byte FAILED = 2;
+
+        private final long[] ids;
+
+        private final byte[] status;
+
+        private final int[] reasonIndex;
+
+        private final Map<String, Integer> dictionary = new ConcurrentHashMap<>();
+
+        private final AtomicReferenceArray<String> reasonNames = new AtomicReferenceArray<>(MAX_REASONS + 1);
+
+        private final AtomicInteger reasonCursor = new AtomicInteger();
+
+        private final AtomicInteger sampleCursor = new AtomicInteger();
+
+        private final AtomicReferenceArray<BatchExecuteResult.ReasonMap<Long>> samples = new AtomicReferenceArray<>(MAX_SAMPLES);
+
+        public Collector(long[] ids) {
+            this.ids = ids;
+            this.status = new byte[ids.length];
+            this.reasonIndex = new int[ids.length];
+        }
+
+        public void success(int index) {
+            status[index] = SUCCESS;
+        }
+
+        public void fail(int index, Throwable e) {
+            String reason = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+            reasonIndex[index] = this.intern(reason);
+            status[index] = FAILED;
+            int sample = sampleCursor.getAndIncrement();
+            if (sample < MAX_SAMPLES) {
+                BatchExecuteResult.ReasonMap<Long> map = new BatchExecuteResult.ReasonMap<>();
+                map.setId(ids[index]);
+                map.setKey(ids[index]);
+                map.setReason(reason);
+                map.setE(e);
+                samples.set(sample, map);
+            }
+        }
+
+        private int intern(String reason) {
+            Integer index = dictionary.get(reason);
+            if (index != null) {
+                return index;
+            }
+            if (reasonCursor.get() >= MAX_REASONS) {
+                return this.other();
+            }
+            return dictionary.computeIfAbsent(reason, r -> {
+                int next = reasonCursor.getAndIncrement();
+                if (next >= MAX_REASONS) {
+                    return this.other();
+                }
+                reasonNames.set(next, r);
+                return next;
+            });
+        }
+
+        private int other() {
+            reasonNames.compareAndSet(MAX_REASONS, null, OTHER_REASON);
+            return MAX_REASONS;
+        }
+
+        /**
+         * 合并结果
+         *
+         * @param executed 各下标是否已执行, 已执行但未记录结果的视为超时失败
+         * @return
+         */
+        public CompactBatchExecuteResult build(boolean[] executed) {
+            int n = ids.length;
+            long[] success = new long[n];
+            long[] fail = new long[n];
+            int[] failReason = new int[n];
+            long[] unexecuted = new long[n];
+            int s = 0, f = 0, u = 0;
+            int[] counts = new int[MAX_REASONS + 1];
+            int timeouts = 0;
+            for (int i = 0; i < n; i++) {
+                if (status[i] == SUCCESS) {
+                    success[s++] = ids[i];
+                } else if (status[i] == FAILED) {
+                    failReason[f] = reasonIndex[i];
+                    counts[reasonIndex[i]]++;
+                    fail[f++] = ids[i];
+                } else if (executed[i]) {
+                    failReason[f] = TIMEOUT_REASON;
+                    timeouts++;
+                    fail[f++] = ids[i];
+                } else {
+                    unexecuted[u++] = ids[i];
+                }
+            }
+
+            /*字典按下标输出, 超时原因追加在末尾*/
+            List<ReasonCount> reasons = new ArrayList<>();
+            int[] remap = new int[MAX_REASONS + 1];
+            for (int i = 0; i <= MAX_REASONS; i++) {
+                String name = reasonNames.get(i);
+                if (name != null && counts[i] > 0) {
+                    remap[i] = reasons.size();
+                    reasons.add(reasonCount(name, counts[i]));
+                }
+            }
+            int timeoutIndex = reasons.size();
+            if (timeouts > 0) {
+                reasons.add(reasonCount(BatchExecuteResult.TIMEOUT_REASON, timeouts));
+            }
+            for (int i = 0; i < f; i++) {
+                failReason[i] = failReason[i] == TIMEOUT_REASON ? timeoutIndex : remap[failReason[i]];
+            }
+
+            List<BatchExecuteResult.ReasonMap<Long>> sampleList = new ArrayList<>();
+            for (int i = 0; i < MAX_SAMPLES; i++) {
+                BatchExecuteResult.ReasonMap<Long> sample = samples.get(i);
+                if (sample != null) {
+                    sampleList.add(sample);
+                }
+            }
+
+            CompactBatchExecuteResult result = new CompactBatchExecuteResult();
+            result.setCount(n);
+            result.setSuccessCount(s);
+            result.setFailCount(f);
+            result.setUnexecutedCount(u);
+            result.setSuccessIds(Arrays.copyOf(success, s));
+            result.setFailIds(Arrays.copyOf(fail, f));
+            result.setFailReasons(Arrays.copyOf(failReason, f));
+            result.setUnexecutedIds(Arrays.copyOf(unexecuted, u));
+            result.setReasons(reasons);
+            result.setSamples(sampleList);
+            return result;
+        }
+
+        private static ReasonCount reasonCount(String reason, int count) {
+            ReasonCount reasonCount = new ReasonCount();
+            reasonCount.setReason(reason);
+            reasonCount.setCount(count);
+            return reasonCount;
+        }
+    }
+
+}
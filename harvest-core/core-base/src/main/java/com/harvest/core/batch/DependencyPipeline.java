@@ -0,0 +1,339 @@
+package com.harvest.core.batch;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.harvest.core.exception.ExceptionCodes;
+import com.harvest.core.exception.StandardRuntimeException;
+import com.harvest.core.monitor.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/18 10:20 AM
+ * @Description: 依赖感知的阶段流水线
+ * <p>
+ * 阶段按 {@link PipelineStage} 声明的数据段连成有向无环图, 上游产出全部成功后立即投递执行, 相互独立的阶段并发;
+ * 没有任何阶段产出的数据段视为调用方已就绪. 阶段自投递起计时, 超时后标记超时(执行中的任务不中断, 其写入不保证可见),
+ * 依赖其产出的下游阶段跳过, 其余分支照常执行. 会写共享结果的阶段应以 {@link #readStage} 添加: 读取与写入分离,
+ * 超时后读取返回的写入动作直接丢弃, 写入开始后不再判超时, 避免结果返回后仍被修改. 各阶段耗时与异常以 "流水线.阶段" 计入 {@link MetricsRegistry}.
+ * 单次使用, 每次调用重新构建
+ **/
+public class DependencyPipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DependencyPipeline.class);
+
+    /**
+     * 阶段超时调度
+     */
+    private static final ScheduledThreadPoolExecutor TIMEOUT_SCHEDULER;
+
+    static {
+        TIMEOUT_SCHEDULER = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setNameFormat("harvest-pipeline-timeout-%d").setDaemon(true).build());
+        TIMEOUT_SCHEDULER.setRemoveOnCancelPolicy(true);
+    }
+
+    public enum StageStatus {
+        PENDING, RUNNING, APPLYING, SUCCESS, FAILED, TIMEOUT, SKIPPED;
+
+        public boolean isDone() {
+            return this != PENDING && this != RUNNING && this != APPLYING;
+        }
+    }
+
+    private final String name;
+
+    private final Executor executor;
+
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+
+    /**
+     * @param name     流水线名称, 用于日志及指标
+     * @param executor 阶段执行线程池, 拒绝时由投递线程执行
+     */
+    public DependencyPipeline(String name, Executor executor) {
+        this.name = name;
+        this.executor = executor;
+    }
+
+    /**
+     * 添加阶段
+     *
+     * @param stage         阶段名称
+     * @param declaration   依赖及产出声明
+     * @param timeoutMillis 超时 毫秒, 不大于0不限
+     * @param task          执行内容
+     * @return this
+     */
+    public DependencyPipeline stage(String stage, PipelineStage declaration, long timeoutMillis, Runnable task) {
+        return this.stage(stage, declaration.requires(), declaration.provides(), timeoutMillis, task);
+    }
+
+    /**
+     * 添加阶段
+     *
+     * @param stage         阶段名称
+     * @param requires      依赖的数据段
+     * @param provides      产出的数据段
+     * @param timeoutMillis 超时 毫秒, 不大于0不限
+     * @param task          执行内容
+     * @return this
+     */
+    public DependencyPipeline stage(String stage, Collection<String> requires, Collection<String> provides, long timeoutMillis, Runnable task) {
+        return this.readStage(stage, requires, provides, timeoutMillis, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * 添加读写分离的阶段, 读取在超时内完成时执行其返回的写入动作, 超时后到达的结果丢弃
+     *
+     * @param stage         阶段名称
+     * @param declaration   依赖及产出声明
+     * @param timeoutMillis 超时 毫秒, 不大于0不限
+     * @param read          读取内容, 返回写入动作, 为空时无需写入
+     * @return this
+     */
+    public DependencyPipeline readStage(String stage, PipelineStage declaration, long timeoutMillis, Callable<Runnable> read) {
+        return this.readStage(stage, declaration.requires(), declaration.provides(), timeoutMillis, read);
+    }
+
+    /**
+     * 添加读写分离的阶段, 读取在超时内完成时执行其返回的写入动作, 超时后到达的结果丢弃
+     *
+     * @param stage         阶段名称
+     * @param requires      依赖的数据段
+     * @param provides      产出的数据段
+     * @param timeoutMillis 超时 毫秒, 不大于0不限
+     * @param read          读取内容, 返回写入动作, 为空时无需写入
+     * @return this
+     */
+    public DependencyPipeline readStage(String stage, Collection<String> requires, Collection<String> provides, long timeoutMillis, Callable<Runnable> read) {
+        if (stages.containsKey(stage)) {
+            throw new StandardRuntimeException(ExceptionCodes.CORE_MODULE_ERROR, "流水线阶段重复: " + name + "." + stage);
+        }
+        stages.put(stage, new Stage(stage, requires, provides, timeoutMillis, read));
+        return this;
+    }
+
+    /**
+     * 执行全部阶段, 阻塞至每个阶段成功、失败、超时或跳过
+     *
+     * @return 执行报告
+     */
+    public Report execute() {
+        Map<Stage, List<Stage>> upstreams = this.upstreams();
+        for (Stage stage : stages.values()) {
+            List<Stage> upstream = upstreams.get(stage);
+            if (upstream.isEmpty()) {
+                this.submit(stage);
+                continue;
+            }
+            CompletableFuture.allOf(upstream.stream().map(s -> s.done).toArray(CompletableFuture[]::new))
+                    .whenComplete((v, e) -> {
+                        Optional<Stage> broken = upstream.stream().filter(s -> s.status.get() != StageStatus.SUCCESS).findFirst();
+                        if (broken.isPresent()) {
+                            this.skip(stage, broken.get());
+                        } else {
+                            this.submit(stage);
+                        }
+                    });
+        }
+        CompletableFuture.allOf(stages.values().stream().map(s -> s.done).toArray(CompletableFuture[]::new)).join();
+        return new Report(stages.values());
+    }
+
+    /**
+     * 解析各阶段的上游阶段并校验无环
+     */
+    private Map<Stage, List<Stage>> upstreams() {
+        Map<String, List<Stage>> providers = new HashMap<>();
+        stages.values().forEach(stage -> stage.provides.forEach(key -> providers.computeIfAbsent(key, k -> new ArrayList<>()).add(stage)));
+        Map<Stage, List<Stage>> upstreams = new HashMap<>();
+        for (Stage stage : stages.values()) {
+            Set<Stage> upstream = new LinkedHashSet<>();
+            stage.requires.forEach(key -> upstream.addAll(providers.getOrDefault(key, Collections.emptyList())));
+            upstream.remove(stage);
+            upstreams.put(stage, new ArrayList<>(upstream));
+        }
+        Set<Stage> visited = new HashSet<>();
+        for (Stage stage : stages.values()) {
+            this.checkAcyclic(stage, upstreams, visited, new LinkedHashSet<>());
+        }
+        return upstreams;
+    }
+
+    private void checkAcyclic(Stage stage, Map<Stage, List<Stage>> upstreams, Set<Stage> visited, Set<Stage> path) {
+        if (visited.contains(stage)) {
+            return;
+        }
+        if (!path.add(stage)) {
+            throw new StandardRuntimeException(ExceptionCodes.CORE_MODULE_ERROR, "流水线阶段循环依赖: " + name + "." + stage.name);
+        }
+        for (Stage upstream : upstreams.get(stage)) {
+            this.checkAcyclic(upstream, upstreams, visited, path);
+        }
+        path.remove(stage);
+        visited.add(stage);
+    }
+
+    private void submit(Stage stage) {
+        stage.submitNanos = System.nanoTime();
+        FutureTask<Void> task = new FutureTask<>(() -> this.run(stage), null);
+        if (stage.timeoutMillis > 0) {
+            stage.timeout = TIMEOUT_SCHEDULER.schedule(() -> {
+                if (this.finish(stage, StageStatus.TIMEOUT, new TimeoutException(stage.timeoutMillis + "ms"))) {
+                    /*未开始的任务不再执行*/
+                    task.cancel(false);
+                }
+            }, stage.timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    private void run(Stage stage) {
+        if (!stage.status.compareAndSet(StageStatus.PENDING, StageStatus.RUNNING)) {
+            return;
+        }
+        Throwable error = null;
+        try {
+            Runnable apply = stage.task.call();
+            if (apply != null) {
+                /*超时与写入互斥: 已超时的结果丢弃, 写入开始后超时不再生效*/
+                if (!stage.status.compareAndSet(StageStatus.RUNNING, StageStatus.APPLYING)) {
+                    LOGGER.warn("DependencyPipeline#{}#阶段[{}]{}, 丢弃读取结果", name, stage.name, stage.status.get());
+                    return;
+                }
+                apply.run();
+            }
+        } catch (Throwable e) {
+            error = e;
+        }
+        this.finish(stage, error == null ? StageStatus.SUCCESS : StageStatus.FAILED, error);
+    }
+
+    private void skip(Stage stage, Stage broken) {
+        if (stage.status.compareAndSet(StageStatus.PENDING, StageStatus.SKIPPED)) {
+            LOGGER.warn("DependencyPipeline#{}#阶段[{}]跳过, 上游[{}]{}", name, stage.name, broken.name, broken.status.get());
+            stage.done.complete(null);
+        }
+    }
+
+    /**
+     * @return 是否由本次调用结束阶段
+     */
+    private boolean finish(Stage stage, StageStatus status, Throwable error) {
+        StageStatus current;
+        do {
+            current = stage.status.get();
+            if (current.isDone() || (current == StageStatus.APPLYING && status == StageStatus.TIMEOUT)) {
+                return false;
+            }
+        } while (!stage.status.compareAndSet(current, status));
+        stage.elapsedNanos = System.nanoTime() - stage.submitNanos;
+        if (stage.timeout != null) {
+            stage.timeout.cancel(false);
+        }
+        MetricsRegistry.record(name + "." + stage.name, stage.elapsedNanos, error);
+        if (status == StageStatus.FAILED) {
+            LOGGER.error("DependencyPipeline#{}#阶段[{}]执行失败", name, stage.name, error);
+        } else if (status == StageStatus.TIMEOUT) {
+            LOGGER.warn("DependencyPipeline#{}#阶段[{}]执行超时, timeout:{}ms", name, stage.name, stage.timeoutMillis);
+        }
+        stage.done.complete(null);
+        return true;
+    }
+
+    private static final class Stage {
+
+        private final String name;
+
+        private final Set<String> requires;
+
+        private final Set<String> provides;
+
+        private final long timeoutMillis;
+
+        private final Callable<Runnable> task;
+
+        private final AtomicReference<StageStatus> status = new AtomicReference<>(StageStatus.PENDING);
+
+        /**
+         * 阶段结束(含失败、超时、跳过)时正常完成
+         */
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private volatile long submitNanos;
+
+        private volatile long elapsedNanos;
+
+        private volatile ScheduledFuture<?> timeout;
+
+        private Stage(String name, Collection<String> requires, Collection<String> provides, long timeoutMillis, Callable<Runnable> task) {
+            this.name = name;
+            this.requires = new LinkedHashSet<>(requires);
+            this.provides = new LinkedHashSet<>(provides);
+            this.timeoutMillis = timeoutMillis;
+            this.task = task;
+        }
+    }
+
+    /**
+     * 执行报告
+     */
+    public static final class Report {
+
+        private final Map<String, StageStatus> statuses = new LinkedHashMap<>();
+
+        private final Map<String, Long> elapsedMillis = new LinkedHashMap<>();
+
+        private Report(Collection<Stage> stages) {
+            stages.forEach(stage -> {
+                statuses.put(stage.name, stage.status.get());
+                elapsedMillis.put(stage.name, TimeUnit.NANOSECONDS.toMillis(stage.elapsedNanos));
+            });
+        }
+
+        public StageStatus status(String stage) {
+            return statuses.get(stage);
+        }
+
+        /**
+         * 是否全部成功
+         */
+        public boolean isSuccess() {
+            return statuses.values().stream().allMatch(status -> status == StageStatus.SUCCESS);
+        }
+
+        /**
+         * 未成功的阶段
+         */
+        public List<String> unfinished() {
+            List<String> result = new ArrayList<>();
+            statuses.forEach((stage, status) -> {
+                if (status != StageStatus.SUCCESS) {
+                    result.add(stage);
+                }
+            });
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            statuses.forEach((stage, status) -> builder.append(stage).append(':').append(status)
+                    .append(':').append(elapsedMillis.get(stage)).append("ms\n"));
+            return builder.toString();
+        }
+    }
+
+}
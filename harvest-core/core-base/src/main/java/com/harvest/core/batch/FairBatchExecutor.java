@@ -0,0 +1,327 @@
+package com.harvest.core.batch;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/7 10:20 AM
+ * @Description: 租户公平的有界批量执行器
+ * <p>
+ * 每个公司一条有界队列, 工作线程按公司轮询取任务, 单个公司的大批量任务不会饿死其他公司;
+ * 单次调用只向队列投放 parallelism 个执行单元, 执行单元每完成一个元素便重新排到队尾, 直至元素取完或截止;
+ * 队列满时调用方阻塞直到截止时间(背压), 截止后未开始的元素取消并标记为未执行;
+ * 未指定公司的调用各自使用一条临时队列参与轮询
+ **/
+public class FairBatchExecutor implements Executor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FairBatchExecutor.class);
+
+    /**
+     * 元素状态
+     */
+    private static final int PENDING = 0;
+    private static final int RUNNING = 1;
+    private static final int FINISHED = 2;
+    private static final int CANCELLED = 3;
+
+    /**
+     * 当前线程是否为本执行器工作线程, 工作线程内再次提交批量任务时直接串行执行, 避免线程互相等待
+     */
+    private static final ThreadLocal<FairBatchExecutor> WORKER = new ThreadLocal<>();
+
+    private final String name;
+
+    private final int laneCapacity;
+
+    /**
+     * 公司 -> 任务队列
+     */
+    private final Map<Long, Lane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * 有待执行任务的队列, 每个 lane 至多出现一次
+     */
+    private final LinkedBlockingQueue<Lane> ready = new LinkedBlockingQueue<>();
+
+    /**
+     * 未指定公司的调用各自的任务队列, 仅用于指标
+     */
+    private final Set<Lane> anonymousLanes = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder cancelled = new LongAdder();
+
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * @param name         执行器名称, 用于线程名及指标
+     * @param threads      工作线程数
+     * @param laneCapacity 单个公司队列容量
+     */
+    public FairBatchExecutor(String name, int threads, int laneCapacity) {
+        this.name = name;
+        this.laneCapacity = laneCapacity;
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("harvest-" + name + "-%d").setDaemon(true).build();
+        for (int i = 0; i < threads; i++) {
+            threadFactory.newThread(this::work).start();
+        }
+    }
+
+    /**
+     * 并发执行, 阻塞至全部完成或截止
+     *
+     * @param size    元素个数
+     * @param task    按下标执行单个元素, 异常由调用方自行捕获
+     * @param options 执行参数
+     * @return 每个元素是否已执行(包括执行中); 未执行的元素不会再被执行
+     */
+    public boolean[] execute(int size, IntConsumer task, BatchExecuteOptions options) {
+        boolean[] executed = new boolean[size];
+        if (size == 0) {
+            return executed;
+        }
+        long deadline = System.currentTimeMillis() + Math.max(options.getTimeoutMillis(), 0L);
+        if (WORKER.get() == this) {
+            for (int i = 0; i < size && System.currentTimeMillis() < deadline; i++) {
+                task.accept(i);
+                executed[i] = true;
+            }
+            this.countCancelled(executed);
+            return executed;
+        }
+
+        /*未指定公司时单次调用独占一个队列, 不与其他未指定公司的调用排在同一队列*/
+        Lane lane = options.getCompanyId() == null ? new Lane(laneCapacity) : lanes.computeIfAbsent(options.getCompanyId(), k -> new Lane(laneCapacity));
+        if (options.getCompanyId() == null) {
+            anonymousLanes.add(lane);
+        }
+        try {
+            return this.execute(new Job(size, task), lane, options, deadline);
+        } finally {
+            anonymousLanes.remove(lane);
+        }
+    }
+
+    private boolean[] execute(Job job, Lane lane, BatchExecuteOptions options, long deadline) {
+        int size = job.states.length();
+        boolean[] executed = new boolean[size];
+        int runners = Math.max(Math.min(options.getParallelism(), size), 1);
+        for (int i = 0; i < runners; i++) {
+            Runner runner = new Runner(job, lane);
+            job.runners.incrementAndGet();
+            if (!this.offer(lane, runner, deadline)) {
+                job.runners.decrementAndGet();
+                break;
+            }
+        }
+        try {
+            if (job.runners.get() > 0) {
+                job.done.await(Math.max(deadline - System.currentTimeMillis(), 0L), TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("FairBatchExecutor#{}并发批量处理中断", name, e);
+        }
+        /*截止: 未开始的元素取消, 执行中的元素视为已执行*/
+        job.cancelled = true;
+        for (int i = 0; i < size; i++) {
+            executed[i] = job.states.get(i) != PENDING || !job.states.compareAndSet(i, PENDING, CANCELLED);
+        }
+        this.countCancelled(executed);
+        return executed;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (WORKER.get() == this) {
+            command.run();
+            return;
+        }
+        Lane lane = lanes.computeIfAbsent(0L, k -> new Lane(laneCapacity));
+        if (!this.offer(lane, command, Long.MAX_VALUE)) {
+            throw new RejectedExecutionException(name + " 执行队列已满");
+        }
+    }
+
+    /**
+     * 指标
+     *
+     * @return 指标名 -> 值
+     */
+    public Map<String, Object> stats() {
+        int depth = 0;
+        for (Lane lane : lanes.values()) {
+            depth += lane.queue.size();
+        }
+        for (Lane lane : anonymousLanes) {
+            depth += lane.queue.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("lanes", lanes.size());
+        stats.put("anonymousLanes", anonymousLanes.size());
+        stats.put("queueDepth", depth);
+        stats.put("activeThreads", active.get());
+        stats.put("completed", completed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("cancelled", cancelled.sum());
+        return stats;
+    }
+
+    private void countCancelled(boolean[] executed) {
+        for (boolean e : executed) {
+            if (!e) {
+                cancelled.increment();
+            }
+        }
+    }
+
+    /**
+     * 阻塞投放, 队列满时等待至截止时间
+     */
+    private boolean offer(Lane lane, Runnable runnable, long deadline) {
+        try {
+            long wait = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(deadline - System.currentTimeMillis(), 0L);
+            if (!lane.queue.offer(runnable, wait, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            return false;
+        }
+        this.schedule(lane);
+        return true;
+    }
+
+    private void schedule(Lane lane) {
+        if (lane.scheduled.compareAndSet(false, true)) {
+            ready.offer(lane);
+        }
+    }
+
+    private void work() {
+        WORKER.set(this);
+        while (true) {
+            Lane lane;
+            try {
+                lane = ready.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Runnable runnable = lane.queue.poll();
+            if (!lane.queue.isEmpty()) {
+                ready.offer(lane);
+            } else {
+                lane.scheduled.set(false);
+                if (!lane.queue.isEmpty()) {
+                    this.schedule(lane);
+                }
+            }
+            if (runnable == null) {
+                continue;
+            }
+            active.incrementAndGet();
+            try {
+                runnable.run();
+            } catch (Throwable e) {
+                LOGGER.error("FairBatchExecutor#{}任务执行异常", name, e);
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    private static class Lane {
+
+        private final ArrayBlockingQueue<Runnable> queue;
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Lane(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    private static class Job {
+
+        private final IntConsumer task;
+
+        private final AtomicIntegerArray states;
+
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        private final AtomicInteger remaining;
+
+        private final AtomicInteger runners = new AtomicInteger();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile boolean cancelled;
+
+        private Job(int size, IntConsumer task) {
+            this.task = task;
+            this.states = new AtomicIntegerArray(size);
+            this.remaining = new AtomicInteger(size);
+        }
+    }
+
+    /**
+     * 执行单元: 每次执行一个元素后重新排队, 与其他公司的任务交替执行
+     */
+    private class Runner implements Runnable {
+
+        private final Job job;
+
+        private final Lane lane;
+
+        private Runner(Job job, Lane lane) {
+            this.job = job;
+            this.lane = lane;
+        }
+
+        @Override
+        public void run() {
+            while (!job.cancelled) {
+                int index = job.cursor.getAndIncrement();
+                if (index >= job.states.length()) {
+                    return;
+                }
+                if (!job.states.compareAndSet(index, PENDING, RUNNING)) {
+                    continue;
+                }
+                try {
+                    job.task.accept(index);
+                } finally {
+                    job.states.set(index, FINISHED);
+                    completed.increment();
+                    if (job.remaining.decrementAndGet() == 0) {
+                        job.done.countDown();
+                    }
+                }
+                /*重新排到队尾; 队列已满时继续执行下一个元素*/
+                if (job.cursor.get() < job.states.length() && lane.queue.offer(this)) {
+                    schedule(lane);
+                    return;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.harvest.core.batch;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/18 10:00 AM
+ * @Description: 流水线阶段声明
+ * <p>
+ * 声明阶段读取(requires)与写入(provides)的数据段, 由 {@link DependencyPipeline} 据此编排执行顺序
+ **/
+public interface PipelineStage {
+
+    /**
+     * 依赖的数据段, 全部产出后本阶段才开始执行
+     *
+     * @return 数据段
+     */
+    default Set<String> requires() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * 产出的数据段
+     *
+     * @return 数据段
+     */
+    default Set<String> provides() {
+        return Collections.emptySet();
+    }
+
+}
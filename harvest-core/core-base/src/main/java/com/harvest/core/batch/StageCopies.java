@@ -0,0 +1,143 @@
+package com.harvest.core.batch;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.beans.PropertyDescriptor;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/18 10:20 AM
+ * @Description: 流水线阶段的写入副本
+ * <p>
+ * 配合 {@link DependencyPipeline#readStage} 使用: 阶段在浅拷贝上填充, 写入时只把阶段改过引用的属性写回原对象,
+ * 超时阶段的写入留在副本上, 不影响已返回的结果. 嵌套集合(如订单明细)逐个元素拷贝, 集合被整体替换时写回新集合.
+ * 阶段不应原地修改上游产出的对象, 这类修改无法隔离
+ **/
+public final class StageCopies<T> {
+
+    private final Class<T> type;
+
+    private final List<PropertyDescriptor> properties;
+
+    private String nestedProperty;
+
+    private StageCopies<?> nested;
+
+    private StageCopies(Class<T> type) {
+        this.type = type;
+        this.properties = Arrays.stream(BeanUtils.getPropertyDescriptors(type))
+                .filter(p -> p.getReadMethod() != null && p.getWriteMethod() != null)
+                .collect(Collectors.toList());
+    }
+
+    public static <T> StageCopies<T> of(Class<T> type) {
+        return new StageCopies<>(type);
+    }
+
+    /**
+     * 逐个元素拷贝的集合属性
+     *
+     * @param property 属性名, 值为 {@link Collection}
+     * @param element  元素拷贝方式
+     * @return this
+     */
+    public StageCopies<T> nested(String property, StageCopies<?> element) {
+        this.nestedProperty = property;
+        this.nested = element;
+        return this;
+    }
+
+    /**
+     * 拷贝一批对象, 每个阶段各自拷贝
+     *
+     * @param originals 原对象
+     * @return 副本
+     */
+    public Snapshot<T> snapshot(Collection<T> originals) {
+        return new Snapshot<>(this, originals.stream().map(this::entry).collect(Collectors.toList()));
+    }
+
+    private Entry entry(Object original) {
+        Object copy = BeanUtils.instantiateClass(type);
+        Object[] base = new Object[properties.size()];
+        List<Entry> children = null;
+        for (int i = 0; i < properties.size(); i++) {
+            PropertyDescriptor property = properties.get(i);
+            Object value = ReflectionUtils.invokeMethod(property.getReadMethod(), original);
+            if (nested != null && value instanceof Collection && property.getName().equals(nestedProperty)) {
+                children = ((Collection<?>) value).stream().map(nested::entry).collect(Collectors.toList());
+                value = children.stream().map(child -> child.copy).collect(Collectors.toCollection(ArrayList::new));
+            }
+            ReflectionUtils.invokeMethod(property.getWriteMethod(), copy, value);
+            base[i] = value;
+        }
+        return new Entry(original, copy, base, children);
+    }
+
+    private void merge(Entry entry) {
+        for (int i = 0; i < properties.size(); i++) {
+            PropertyDescriptor property = properties.get(i);
+            Object value = ReflectionUtils.invokeMethod(property.getReadMethod(), entry.copy);
+            if (value != entry.base[i]) {
+                ReflectionUtils.invokeMethod(property.getWriteMethod(), entry.original, value);
+            } else if (entry.children != null && property.getName().equals(nestedProperty)) {
+                entry.children.forEach(nested::merge);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final Object original;
+
+        private final Object copy;
+
+        /**
+         * 拷贝时各属性的值
+         */
+        private final Object[] base;
+
+        private final List<Entry> children;
+
+        private Entry(Object original, Object copy, Object[] base, List<Entry> children) {
+            this.original = original;
+            this.copy = copy;
+            this.base = base;
+            this.children = children;
+        }
+    }
+
+    /**
+     * 一个阶段的副本
+     */
+    public static final class Snapshot<T> {
+
+        private final StageCopies<T> copies;
+
+        private final List<Entry> entries;
+
+        private Snapshot(StageCopies<T> copies, List<Entry> entries) {
+            this.copies = copies;
+            this.entries = entries;
+        }
+
+        /**
+         * 供阶段填充的副本, 与原对象顺序一致
+         */
+        @SuppressWarnings("unchecked")
+        public List<T> copies() {
+            return entries.stream().map(entry -> (T) entry.copy).collect(Collectors.toList());
+        }
+
+        /**
+         * 把阶段改动写回原对象, 作为 {@link DependencyPipeline#readStage} 的写入动作
+         */
+        public void merge() {
+            entries.forEach(copies::merge);
+        }
+    }
+
+}
@@ -40,6 +40,8 @@ public interface GlobalMacroDefinition {
         String ORDER_ITEM_IDS = "orderItemIds";
         String ORDER_SOURCE = "orderSource";
         String ORDER_STATUS = "orderStatus";
+        String VERSION = "version";
+        String SECTIONS = "sections";
 
         String SPU_ID = GOODS.SPU_ID;
         String SKU_ID = GOODS.SKU_ID;
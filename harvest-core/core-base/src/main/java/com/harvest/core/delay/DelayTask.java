@@ -1,8 +1,10 @@
 package com.harvest.core.delay;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.harvest.core.domain.CompanyId;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
 
 import java.util.concurrent.Delayed;
 import java.util.concurrent.TimeUnit;
@@ -12,14 +14,32 @@ import java.util.function.Consumer;
 /**
  * @Author: Alodi
  * @Date: 2023/2/10 2:48 PM
- * @Description: TODO
+ * @Description: 延迟任务
+ * <p>
+ * 内存任务以 {@link #consumer} 执行, 失败按 {@link #step} 指数退避重试; 指定 {@link #handler} 的任务持久化, 由处理器恢复执行逻辑
  **/
 @Data
+@NoArgsConstructor
 @EqualsAndHashCode(callSuper = true)
 public class DelayTask extends CompanyId implements Delayed {
 
     private static final long serialVersionUID = 2695586265847769402L;
 
+    /**
+     * 失败重试最大退避间隔 1小时
+     */
+    private static final long MAX_BACKOFF_MILLIS = 60 * 60 * 1000L;
+
+    /**
+     * 任务Id, 持久化任务的唯一标识
+     */
+    private String taskId;
+
+    /**
+     * 处理器名称 {@link DelayTaskHandler#name()}, 不为空时任务持久化, 重启后可恢复
+     */
+    private String handler;
+
     /**
      * 任务描述 用户日志记录
      */
@@ -36,7 +56,7 @@ public class DelayTask extends CompanyId implements Delayed {
     private int delay = 5;
 
     /**
-     * 步长，单位毫秒。如果间隔5s，步长5s，则任务开始后第一次执行5s后，第二次执行为15s后
+     * 步长，单位秒。失败后按步长指数退避：第n次重试在上次失败后 delay + step * 2^(n-1) 秒执行
      */
     private int step;
 
@@ -58,17 +78,20 @@ public class DelayTask extends CompanyId implements Delayed {
     /**
      * 执行的任务
      */
-    private Consumer<DelayTask> consumer;
+    @JsonIgnore
+    private transient Consumer<DelayTask> consumer;
 
     /**
      * 延迟任务执行失败并且不会再继续重试后执行
      */
-    private Consumer<DelayTask> onFailed;
+    @JsonIgnore
+    private transient Consumer<DelayTask> onFailed;
 
     /**
      * 延迟任务执行成功后执行
      */
-    private Consumer<DelayTask> onSuccess;
+    @JsonIgnore
+    private transient Consumer<DelayTask> onSuccess;
 
     public DelayTask(Long companyId, String description, int step, int retryIfFailed, Consumer<DelayTask> consumer) {
         super(companyId);
@@ -106,13 +129,60 @@ public class DelayTask extends CompanyId implements Delayed {
         this.consumer = consumer;
     }
 
+    /**
+     * 持久化任务
+     *
+     * @param companyId     公司Id
+     * @param description   任务描述
+     * @param handler       处理器名称 {@link DelayTaskHandler#name()}
+     * @param delay         延迟时长 秒
+     * @param step          重试步长 秒
+     * @param retryIfFailed 失败重试次数
+     * @param extension     额外信息, 持久化后以 json 恢复
+     */
+    public DelayTask(Long companyId, String description, String handler, int delay, int step, int retryIfFailed, Object extension) {
+        super(companyId);
+        this.description = description;
+        this.handler = handler;
+        this.delay = delay;
+        this.step = step;
+        this.retryIfFailed = retryIfFailed;
+        this.extension = extension;
+    }
+
+    /**
+     * 是否持久化任务
+     */
+    @JsonIgnore
+    public boolean isDurable() {
+        return handler != null;
+    }
+
+    /**
+     * 计划执行时间 毫秒
+     */
+    public long executeAt() {
+        return start + delay * 1000L;
+    }
+
+    /**
+     * 失败后按指数退避重新计算开始时间
+     *
+     * @param now 当前时间
+     */
+    public void backoff(long now) {
+        int retries = Math.max(retryTimes.get(), 1);
+        long backoff = step * 1000L << Math.min(retries - 1, 20);
+        this.start = now + Math.min(backoff, MAX_BACKOFF_MILLIS);
+    }
+
     @Override
     public long getDelay(TimeUnit unit) {
-        return unit.convert((start + (delay * 1000)) - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        return unit.convert(executeAt() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
     }
 
     @Override
     public int compareTo(Delayed o) {
-        return (int) (this.getDelay(TimeUnit.MILLISECONDS) - o.getDelay(TimeUnit.MILLISECONDS));
+        return Long.compare(this.getDelay(TimeUnit.MILLISECONDS), o.getDelay(TimeUnit.MILLISECONDS));
     }
 }
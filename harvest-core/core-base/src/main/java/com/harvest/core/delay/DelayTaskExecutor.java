@@ -1,17 +1,91 @@
 package com.harvest.core.delay;
 
 
+import com.harvest.core.delay.wheel.TimerTaskEntry;
+import com.harvest.core.delay.wheel.TimerTaskList;
+import com.harvest.core.delay.wheel.TimingWheel;
 import jodd.util.ThreadFactoryBuilder;
+import org.apache.commons.collections4.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * @Author: Alodi
  * @Date: 2023/2/10 3:03 PM
  * @Description: 延迟任务执行器
+ * <p>
+ * 内存任务挂载到分层时间轮; 持久化任务({@link DelayTask#getHandler()} 不为空)写入 {@link DelayTaskStore},
+ * 由各节点按批次领取即将到期的任务再挂载到本地时间轮, 重启或宕机不丢失.
+ * 领取的任务在挂载、排队及执行期间定时续约, 直到删除或写回存储; 节点停顿超过租约或续约失败时任务可能被其他节点重复领取,
+ * 持久化任务为至少一次执行, 处理器需幂等
  **/
 public class DelayTaskExecutor {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(DelayTaskExecutor.class);
+
+    /**
+     * 时间轮槽位跨度 毫秒
+     */
+    private static final long TICK_MS = 100L;
+
+    /**
+     * 时间轮槽位数
+     */
+    private static final int WHEEL_SIZE = 64;
+
+    /**
+     * 执行线程数
+     */
+    private static final int WORKER_SIZE = 50;
+
+    /**
+     * 执行队列容量, 超出后任务延后重新挂载
+     */
+    private static final int WORKER_QUEUE_CAPACITY = 10_000;
+
+    /**
+     * 执行队列已满时的延后时长 毫秒
+     */
+    private static final long REJECT_DELAY_MILLIS = 1000L;
+
+    /**
+     * 持久化任务领取间隔 毫秒
+     */
+    private static final long CLAIM_INTERVAL_MILLIS = 1000L;
+
+    /**
+     * 持久化任务提前领取窗口 毫秒
+     */
+    private static final long CLAIM_LOOKAHEAD_MILLIS = 5000L;
+
+    /**
+     * 持久化任务租约 毫秒, 覆盖提前领取窗口及执行时间
+     */
+    private static final long CLAIM_LEASE_MILLIS = 60_000L;
+
+    /**
+     * 已领取任务续约间隔 毫秒
+     */
+    private static final long RENEW_INTERVAL_MILLIS = CLAIM_LEASE_MILLIS / 3;
+
+    /**
+     * 持久化任务单批领取数量
+     */
+    private static final int CLAIM_BATCH_SIZE = 500;
+
     /**
      * 延迟任务执行器
      */
@@ -34,63 +108,237 @@ public class DelayTaskExecutor {
     }
 
     /**
-     * 延迟队列
+     * 到期槽位队列
+     */
+    private final DelayQueue<TimerTaskList> bucketQueue = new DelayQueue<>();
+
+    /**
+     * 时间轮中任务数
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final TimingWheel timingWheel = new TimingWheel(TICK_MS, WHEEL_SIZE, System.currentTimeMillis(), pending, bucketQueue);
+
+    /**
+     * 挂载任务读锁, 推进时钟写锁
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 持久化任务处理器
      */
-    private static final DelayQueue<DelayTask> DELAY_TASK_QUEUE = new DelayQueue<>();
+    private final Map<String, DelayTaskHandler> handlers = new ConcurrentHashMap<>();
 
     /**
      * 延迟任务执行线程池
      */
-    private static ThreadPoolExecutor delayTaskExecutor;
+    private final ThreadPoolExecutor delayTaskExecutor;
+
+    private volatile DelayTaskStore store;
+
+    /**
+     * 本节点已领取、尚未删除或写回的持久化任务Id
+     */
+    private final Set<String> claimed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 续约与释放互斥, 释放返回后不会再有该任务的续约覆盖写回的执行时间
+     */
+    private final Object renewLock = new Object();
+
+    private volatile boolean claimable;
+
+    private final LongAdder executed = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder lagMillis = new LongAdder();
+
+    private final AtomicLong maxLagMillis = new AtomicLong();
 
     /**
      * 延迟任务执行器初始化
      */
     private DelayTaskExecutor() {
-        /*任务循环线程池*/
+        /*时钟推进线程*/
         ExecutorService loopExecutor = new ThreadPoolExecutor(1, 1, 0,
                 TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
                 new ThreadFactoryBuilder().withNameFormat("harvest-delay-task-loop-executor").get()
         );
-
         loopExecutor.submit(() -> {
             while (true) {
-                DelayTask t;
                 try {
-                    t = DELAY_TASK_QUEUE.take();
+                    this.advanceClock(200L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
                 } catch (Exception e) {
-                    continue;
+                    LOGGER.error("DelayTaskExecutor#时钟推进异常", e);
                 }
-                this.executeTask(t);
             }
         });
-        /*最多50个线程执行延迟任务*/
-        delayTaskExecutor = new ThreadPoolExecutor(50, 50, 2000L, TimeUnit.MILLISECONDS,
-                new LinkedBlockingQueue<>(),
+        /*最多50个线程执行延迟任务, 队列有界*/
+        delayTaskExecutor = new ThreadPoolExecutor(WORKER_SIZE, WORKER_SIZE, 2000L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(WORKER_QUEUE_CAPACITY),
                 new ThreadFactoryBuilder().withNameFormat("harvest-delay-task-%d").get()
         );
         delayTaskExecutor.allowCoreThreadTimeOut(true);
+    }
 
+    /**
+     * 是否已初始化, 未使用延迟任务的服务查询指标时不创建执行器
+     *
+     * @return
+     */
+    public static boolean isInitialized() {
+        return EXECUTOR != null;
+    }
+
+    /**
+     * 绑定持久化存储, 只允许绑定一次
+     *
+     * @param store
+     * @param claimable 是否领取任务, 本节点无处理器时只写入不领取, 避免领取后因无处理器占用租约
+     */
+    public synchronized void bindStore(DelayTaskStore store, boolean claimable) {
+        if (this.store != null) {
+            return;
+        }
+        this.store = store;
+        this.claimable = claimable;
+        if (!claimable) {
+            return;
+        }
+        ScheduledExecutorService claimExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().withNameFormat("harvest-delay-task-claim-executor").get()
+        );
+        claimExecutor.scheduleWithFixedDelay(this::claim, CLAIM_INTERVAL_MILLIS, CLAIM_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        claimExecutor.scheduleWithFixedDelay(this::renew, RENEW_INTERVAL_MILLIS, RENEW_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
     }
 
-    private void executeTask(DelayTask task) {
+    /**
+     * 注册持久化任务处理器
+     *
+     * @param handler
+     */
+    public void registerHandler(DelayTaskHandler handler) {
+        DelayTaskHandler exist = handlers.putIfAbsent(handler.name(), handler);
+        if (exist != null && exist != handler) {
+            throw new IllegalStateException("延迟任务处理器名称重复: " + handler.name());
+        }
+    }
+
+    public void pushTask(DelayTask task) {
         if (task == null || task.getCompanyId() == 0L) {
             return;
         }
+        if (task.isDurable() && store != null) {
+            if (task.getTaskId() == null) {
+                task.setTaskId(UUID.randomUUID().toString());
+            }
+            store.save(task);
+            return;
+        }
+        this.schedule(task, task.executeAt());
+    }
+
+    /**
+     * 指标
+     *
+     * @return 指标名 -> 值
+     */
+    public Map<String, Object> stats() {
+        long count = executed.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", pending.get());
+        stats.put("durableBound", store != null);
+        stats.put("durableClaimable", claimable);
+        stats.put("durablePending", store == null ? 0L : store.size());
+        stats.put("workerQueue", delayTaskExecutor.getQueue().size());
+        stats.put("workerActive", delayTaskExecutor.getActiveCount());
+        stats.put("executed", count);
+        stats.put("failed", failed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("avgLagMillis", count == 0 ? 0L : lagMillis.sum() / count);
+        stats.put("maxLagMillis", maxLagMillis.get());
+        return stats;
+    }
+
+    private void schedule(DelayTask task, long expirationMs) {
+        this.addEntry(new TimerTaskEntry(task, expirationMs));
+    }
+
+    private void addEntry(TimerTaskEntry entry) {
+        boolean added;
+        lock.readLock().lock();
         try {
-            delayTaskExecutor.execute(() -> {
-                try {
-                    task.getRetryTimes().incrementAndGet();
-                    task.getConsumer().accept(task);
-                    if (task.getOnSuccess() != null) {
-                        task.getOnSuccess().accept(task);
-                    }
-                } catch (Exception e) {
-                    this.postTaskExecuteFailedProcess(task);
-                }
-            });
+            added = timingWheel.add(entry);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!added) {
+            this.executeTask(entry);
+        }
+    }
+
+    private void advanceClock(long timeoutMs) throws InterruptedException {
+        TimerTaskList bucket = bucketQueue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (bucket == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            while (bucket != null) {
+                timingWheel.advanceClock(bucket.getExpiration());
+                /*到期任务执行, 高层槽位任务下沉到低层*/
+                bucket.flush(this::reinsert);
+                bucket = bucketQueue.poll();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 推进时钟时调用, 已持有写锁, 直接挂载无需再加读锁;
+     * 写锁持有者可重入获取读锁, 执行队列已满时经 {@link #schedule} 重新挂载不会死锁
+     */
+    private void reinsert(TimerTaskEntry entry) {
+        if (!timingWheel.add(entry)) {
+            this.executeTask(entry);
+        }
+    }
+
+    private void executeTask(TimerTaskEntry entry) {
+        DelayTask task = entry.getTask();
+        try {
+            delayTaskExecutor.execute(() -> this.runTask(task, entry.getExpirationMs()));
+        } catch (RejectedExecutionException e) {
+            /*执行队列已满, 不计入重试次数, 延后重新挂载*/
+            rejected.increment();
+            this.schedule(task, System.currentTimeMillis() + REJECT_DELAY_MILLIS);
+        }
+    }
+
+    private void runTask(DelayTask task, long expirationMs) {
+        long lag = Math.max(System.currentTimeMillis() - expirationMs, 0L);
+        executed.increment();
+        lagMillis.add(lag);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+        try {
+            task.getRetryTimes().incrementAndGet();
+            task.getConsumer().accept(task);
+            if (task.isDurable()) {
+                this.release(task);
+                store.remove(task.getTaskId());
+            }
+            if (task.getOnSuccess() != null) {
+                task.getOnSuccess().accept(task);
+            }
         } catch (Exception e) {
-            /*如果未达到重试次数则继续创建任务，放回队列中*/
+            failed.increment();
             this.postTaskExecuteFailedProcess(task);
         }
     }
@@ -98,20 +346,77 @@ public class DelayTaskExecutor {
     private void postTaskExecuteFailedProcess(DelayTask task) {
         int retryTimes = task.getRetryTimes().get();
         if (retryTimes < task.getRetryIfFailed()) {
-            long time = (long) task.getStep() * 1000;
-            task.setStart(System.currentTimeMillis() + time * task.getRetryTimes().get());
-            this.pushTask(task);
+            task.backoff(System.currentTimeMillis());
+            if (task.isDurable()) {
+                /*持久化任务写回存储, 到期后可能由其他节点领取*/
+                this.release(task);
+                store.save(task);
+            } else {
+                this.schedule(task, task.executeAt());
+            }
             return;
         }
+        if (task.isDurable()) {
+            this.release(task);
+            store.remove(task.getTaskId());
+        }
         if (task.getOnFailed() != null) {
             task.getOnFailed().accept(task);
         }
     }
 
-    public void pushTask(DelayTask task) {
-        if (task == null || task.getCompanyId() == 0L) {
-            return;
+    /**
+     * 续约本节点已领取的任务
+     */
+    private void renew() {
+        try {
+            synchronized (renewLock) {
+                if (!claimed.isEmpty()) {
+                    store.renew(new ArrayList<>(claimed), CLAIM_LEASE_MILLIS);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("DelayTaskExecutor#持久化任务续约异常, count:{}", claimed.size(), e);
         }
-        DELAY_TASK_QUEUE.add(task);
     }
+
+    /**
+     * 任务删除或写回存储前释放, 不再续约
+     */
+    private void release(DelayTask task) {
+        synchronized (renewLock) {
+            claimed.remove(task.getTaskId());
+        }
+    }
+
+    /**
+     * 领取即将到期的持久化任务, 挂载到本地时间轮
+     */
+    private void claim() {
+        try {
+            List<DelayTask> tasks;
+            do {
+                tasks = store.claim(System.currentTimeMillis() + CLAIM_LOOKAHEAD_MILLIS, CLAIM_BATCH_SIZE, CLAIM_LEASE_MILLIS);
+                if (CollectionUtils.isEmpty(tasks)) {
+                    return;
+                }
+                for (DelayTask task : tasks) {
+                    DelayTaskHandler handler = handlers.get(task.getHandler());
+                    if (Objects.isNull(handler)) {
+                        /*本节点无此处理器, 租约到期后由其他节点领取*/
+                        LOGGER.warn("DelayTaskExecutor#未注册的延迟任务处理器, handler:{}, taskId:{}", task.getHandler(), task.getTaskId());
+                        continue;
+                    }
+                    task.setConsumer(handler::execute);
+                    task.setOnSuccess(handler::onSuccess);
+                    task.setOnFailed(handler::onFailed);
+                    claimed.add(task.getTaskId());
+                    this.schedule(task, task.executeAt());
+                }
+            } while (tasks.size() >= CLAIM_BATCH_SIZE);
+        } catch (Exception e) {
+            LOGGER.error("DelayTaskExecutor#领取持久化任务异常", e);
+        }
+    }
+
 }
@@ -0,0 +1,40 @@
+package com.harvest.core.delay;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/6 11:10 AM
+ * @Description: 持久化延迟任务处理器
+ * <p>
+ * 持久化任务无法保存 lambda, 由处理器名称在恢复时重新绑定执行逻辑; 任务可能被重复执行(至少一次), 实现需幂等
+ **/
+public interface DelayTaskHandler {
+
+    /**
+     * 处理器名称, 全局唯一
+     */
+    String name();
+
+    /**
+     * 执行任务, 抛出异常视为失败
+     *
+     * @param task
+     */
+    void execute(DelayTask task);
+
+    /**
+     * 执行成功
+     *
+     * @param task
+     */
+    default void onSuccess(DelayTask task) {
+    }
+
+    /**
+     * 失败并且不会再继续重试
+     *
+     * @param task
+     */
+    default void onFailed(DelayTask task) {
+    }
+
+}
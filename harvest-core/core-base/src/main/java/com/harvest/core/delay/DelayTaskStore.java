@@ -0,0 +1,52 @@
+package com.harvest.core.delay;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/6 11:15 AM
+ * @Description: 延迟任务持久化存储
+ * <p>
+ * 各节点按批次领取到期任务, 领取即获得租约, 执行期间定时续约; 节点宕机时租约到期任务重新可见, 由其他节点接管
+ **/
+public interface DelayTaskStore {
+
+    /**
+     * 保存或更新任务, 按 {@link DelayTask#executeAt()} 排序
+     *
+     * @param task
+     */
+    void save(DelayTask task);
+
+    /**
+     * 领取到期任务
+     *
+     * @param dueBefore   计划执行时间不晚于该时间的任务
+     * @param limit       单批最大数量
+     * @param leaseMillis 租约时长
+     * @return
+     */
+    List<DelayTask> claim(long dueBefore, int limit, long leaseMillis);
+
+    /**
+     * 续约已领取的任务, 已删除的任务不恢复
+     *
+     * @param taskIds     任务Id
+     * @param leaseMillis 租约时长
+     */
+    void renew(Collection<String> taskIds, long leaseMillis);
+
+    /**
+     * 删除任务
+     *
+     * @param taskId
+     */
+    void remove(String taskId);
+
+    /**
+     * 待执行任务数
+     */
+    long size();
+
+}
@@ -0,0 +1,55 @@
+package com.harvest.core.delay.wheel;
+
+import com.harvest.core.delay.DelayTask;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/6 10:12 AM
+ * @Description: 时间轮槽位中的任务节点, 双向链表, 可 O(1) 摘除
+ **/
+public class TimerTaskEntry {
+
+    /**
+     * 延迟任务
+     */
+    final DelayTask task;
+
+    /**
+     * 到期时间 毫秒
+     */
+    final long expirationMs;
+
+    /**
+     * 所在槽位, 重新挂载时会变化
+     */
+    volatile TimerTaskList list;
+
+    TimerTaskEntry next;
+
+    TimerTaskEntry prev;
+
+    public TimerTaskEntry(DelayTask task, long expirationMs) {
+        this.task = task;
+        this.expirationMs = expirationMs;
+    }
+
+    public DelayTask getTask() {
+        return task;
+    }
+
+    public long getExpirationMs() {
+        return expirationMs;
+    }
+
+    /**
+     * 从当前槽位摘除, 槽位可能被并发 flush, 需重试直到脱离
+     */
+    public void remove() {
+        TimerTaskList current = list;
+        while (current != null) {
+            current.remove(this);
+            current = list;
+        }
+    }
+
+}
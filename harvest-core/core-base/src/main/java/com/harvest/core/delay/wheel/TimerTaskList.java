@@ -0,0 +1,111 @@
+package com.harvest.core.delay.wheel;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/6 10:20 AM
+ * @Description: 时间轮槽位, 同一槽位任务共享一个到期时间, 只有槽位进入 DelayQueue
+ **/
+public class TimerTaskList implements Delayed {
+
+    /**
+     * 整个时间轮的任务计数
+     */
+    private final AtomicInteger taskCounter;
+
+    /**
+     * 哨兵节点
+     */
+    private final TimerTaskEntry root = new TimerTaskEntry(null, -1L);
+
+    /**
+     * 槽位到期时间, -1 表示未入队
+     */
+    private final AtomicLong expiration = new AtomicLong(-1L);
+
+    public TimerTaskList(AtomicInteger taskCounter) {
+        this.taskCounter = taskCounter;
+        root.next = root;
+        root.prev = root;
+    }
+
+    /**
+     * 设置槽位到期时间
+     *
+     * @param expirationMs
+     * @return 到期时间是否变化, 变化说明槽位已被复用, 需要重新入队
+     */
+    public boolean setExpiration(long expirationMs) {
+        return expiration.getAndSet(expirationMs) != expirationMs;
+    }
+
+    public long getExpiration() {
+        return expiration.get();
+    }
+
+    public void add(TimerTaskEntry entry) {
+        boolean done = false;
+        while (!done) {
+            // 先从旧槽位摘除, 保证同一节点只在一个槽位中
+            entry.remove();
+            synchronized (this) {
+                synchronized (entry) {
+                    if (entry.list == null) {
+                        TimerTaskEntry tail = root.prev;
+                        entry.next = root;
+                        entry.prev = tail;
+                        entry.list = this;
+                        tail.next = entry;
+                        root.prev = entry;
+                        taskCounter.incrementAndGet();
+                        done = true;
+                    }
+                }
+            }
+        }
+    }
+
+    public synchronized void remove(TimerTaskEntry entry) {
+        synchronized (entry) {
+            if (entry.list == this) {
+                entry.next.prev = entry.prev;
+                entry.prev.next = entry.next;
+                entry.next = null;
+                entry.prev = null;
+                entry.list = null;
+                taskCounter.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 取出槽位内所有任务, 并重置槽位
+     *
+     * @param consumer 任务重新挂载或执行
+     */
+    public synchronized void flush(Consumer<TimerTaskEntry> consumer) {
+        TimerTaskEntry head = root.next;
+        while (head != root) {
+            remove(head);
+            consumer.accept(head);
+            head = root.next;
+        }
+        expiration.set(-1L);
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(Math.max(getExpiration() - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+        return Long.compare(getExpiration(), ((TimerTaskList) o).getExpiration());
+    }
+
+}
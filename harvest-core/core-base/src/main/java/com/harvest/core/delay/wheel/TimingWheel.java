@@ -0,0 +1,108 @@
+package com.harvest.core.delay.wheel;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/6 10:40 AM
+ * @Description: 分层时间轮
+ * <p>
+ * 每层 wheelSize 个槽位, 上一层一个槽位跨度等于下一层一整圈; 超出当前层范围的任务交给溢出层,
+ * 随时钟推进逐层下沉。插入 O(1), DelayQueue 中只存放非空槽位, 百万级定时任务也只产生少量队列操作
+ **/
+public class TimingWheel {
+
+    /**
+     * 槽位跨度 毫秒
+     */
+    private final long tickMs;
+
+    /**
+     * 槽位数
+     */
+    private final int wheelSize;
+
+    /**
+     * 一整圈跨度
+     */
+    private final long interval;
+
+    private final AtomicInteger taskCounter;
+
+    private final DelayQueue<TimerTaskList> queue;
+
+    private final TimerTaskList[] buckets;
+
+    /**
+     * 当前时间, tickMs 的整数倍
+     */
+    private long currentTime;
+
+    /**
+     * 溢出层, 按需创建
+     */
+    private volatile TimingWheel overflowWheel;
+
+    public TimingWheel(long tickMs, int wheelSize, long startMs, AtomicInteger taskCounter, DelayQueue<TimerTaskList> queue) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.interval = tickMs * wheelSize;
+        this.taskCounter = taskCounter;
+        this.queue = queue;
+        this.buckets = new TimerTaskList[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new TimerTaskList(taskCounter);
+        }
+        this.currentTime = startMs - (startMs % tickMs);
+    }
+
+    private TimingWheel overflowWheel() {
+        if (overflowWheel == null) {
+            synchronized (this) {
+                if (overflowWheel == null) {
+                    overflowWheel = new TimingWheel(interval, wheelSize, currentTime, taskCounter, queue);
+                }
+            }
+        }
+        return overflowWheel;
+    }
+
+    /**
+     * 挂载任务
+     *
+     * @param entry
+     * @return false 表示已到期, 应立即执行
+     */
+    public boolean add(TimerTaskEntry entry) {
+        long expiration = entry.getExpirationMs();
+        if (expiration < currentTime + tickMs) {
+            return false;
+        }
+        if (expiration < currentTime + interval) {
+            long virtualId = expiration / tickMs;
+            TimerTaskList bucket = buckets[(int) (virtualId % wheelSize)];
+            bucket.add(entry);
+            if (bucket.setExpiration(virtualId * tickMs)) {
+                queue.offer(bucket);
+            }
+            return true;
+        }
+        return overflowWheel().add(entry);
+    }
+
+    /**
+     * 推进时钟
+     *
+     * @param timeMs
+     */
+    public void advanceClock(long timeMs) {
+        if (timeMs >= currentTime + tickMs) {
+            currentTime = timeMs - (timeMs % tickMs);
+            if (overflowWheel != null) {
+                overflowWheel.advanceClock(currentTime);
+            }
+        }
+    }
+
+}
@@ -37,10 +37,23 @@ public class Page<T> implements Serializable {
     @ApiModelProperty("是否还有下一页")
     private boolean hasMore;
 
+    @ApiModelProperty(value = "下一页游标", notes = "游标分页时返回, 空字符串表示没有下一页; 偏移分页时为空")
+    private String cursor;
+
     public static <T> Page<T> build(int pageNo, int pageSize, Collection<T> data, long count) {
         return new Page<>(pageNo, pageSize, data, count);
     }
 
+    /**
+     * 沿用来源分页的页码、总数及下一页信息, 替换数据
+     */
+    public static <T> Page<T> build(Page<?> source, Collection<T> data) {
+        Page<T> page = new Page<>(source.getPageNo(), source.getPageSize(), data, source.getCount());
+        page.setCursor(source.getCursor());
+        page.setHasMore(source.hasMore);
+        return page;
+    }
+
     private void computeFromLimit() {
         from = (pageNo - 1) * pageSize;
         limit = pageSize;
@@ -125,11 +138,25 @@ public class Page<T> implements Serializable {
         return count;
     }
 
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
     public void setHasMore(boolean hasMore) {
         this.hasMore = hasMore;
     }
 
+    /**
+     * 游标分页以游标判断; 不查总数时以多查的一条判断, 由查询方设置
+     */
     public boolean isHasMore() {
-        return this.count > (long) this.pageNo * this.pageSize;
+        if (Objects.nonNull(this.cursor)) {
+            return !this.cursor.isEmpty();
+        }
+        return this.hasMore || this.count > (long) this.pageNo * this.pageSize;
     }
 }
@@ -239,7 +239,10 @@ public enum OrderStatusEnum implements IEnum<Integer> {
 
     public abstract List<OrderStatusEnum> next();
 
+    /**
+     * 是否可迁移到目标状态, 查 {@link OrderStatusTransition} 预计算矩阵
+     */
     public boolean skip(OrderStatusEnum status) {
-        return this.back().contains(status) || this.next().contains(status);
+        return OrderStatusTransition.canTransit(this, status);
     }
 }
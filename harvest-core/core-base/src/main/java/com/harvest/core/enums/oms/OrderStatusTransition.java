@@ -0,0 +1,134 @@
+package com.harvest.core.enums.oms;
+
+import com.harvest.core.exception.StandardRuntimeException;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/17 10:10 AM
+ * @Description: 订单状态迁移矩阵
+ * <p>
+ * 由 {@link OrderStatusEnum#next()} / {@link OrderStatusEnum#back()} 预计算, 按枚举序号以位图存储, 查询不分配对象、不抛异常;
+ * 各目标状态的可迁入来源集合同样预先计算
+ **/
+public final class OrderStatusTransition {
+
+    private static final OrderStatusEnum[] STATUSES = OrderStatusEnum.values();
+
+    /**
+     * NEXT[from] 第 to 位为 1 表示 from 可前进到 to
+     */
+    private static final long[] NEXT = new long[STATUSES.length];
+
+    /**
+     * BACK[from] 第 to 位为 1 表示 from 可回退到 to
+     */
+    private static final long[] BACK = new long[STATUSES.length];
+
+    private static final List<Set<OrderStatusEnum>> NEXT_SOURCES = new ArrayList<>(STATUSES.length);
+
+    private static final List<Set<OrderStatusEnum>> BACK_SOURCES = new ArrayList<>(STATUSES.length);
+
+    private static final List<Set<OrderStatusEnum>> SOURCES = new ArrayList<>(STATUSES.length);
+
+    static {
+        if (STATUSES.length > Long.SIZE) {
+            throw new IllegalStateException("订单状态数超过迁移矩阵位宽");
+        }
+        for (OrderStatusEnum from : STATUSES) {
+            NEXT[from.ordinal()] = bits(from::next);
+            BACK[from.ordinal()] = bits(from::back);
+        }
+        for (OrderStatusEnum to : STATUSES) {
+            EnumSet<OrderStatusEnum> next = EnumSet.noneOf(OrderStatusEnum.class);
+            EnumSet<OrderStatusEnum> back = EnumSet.noneOf(OrderStatusEnum.class);
+            for (OrderStatusEnum from : STATUSES) {
+                if (canNext(from, to)) {
+                    next.add(from);
+                }
+                if (canBack(from, to)) {
+                    back.add(from);
+                }
+            }
+            EnumSet<OrderStatusEnum> all = EnumSet.copyOf(next);
+            all.addAll(back);
+            NEXT_SOURCES.add(Collections.unmodifiableSet(next));
+            BACK_SOURCES.add(Collections.unmodifiableSet(back));
+            SOURCES.add(Collections.unmodifiableSet(all));
+        }
+    }
+
+    private OrderStatusTransition() {
+    }
+
+    public static boolean canNext(OrderStatusEnum from, OrderStatusEnum to) {
+        return (NEXT[from.ordinal()] & (1L << to.ordinal())) != 0;
+    }
+
+    public static boolean canBack(OrderStatusEnum from, OrderStatusEnum to) {
+        return (BACK[from.ordinal()] & (1L << to.ordinal())) != 0;
+    }
+
+    /**
+     * 是否可迁移(前进或回退)
+     */
+    public static boolean canTransit(OrderStatusEnum from, OrderStatusEnum to) {
+        return ((NEXT[from.ordinal()] | BACK[from.ordinal()]) & (1L << to.ordinal())) != 0;
+    }
+
+    /**
+     * 可前进到 to 的来源状态
+     */
+    public static Set<OrderStatusEnum> nextSources(OrderStatusEnum to) {
+        return NEXT_SOURCES.get(to.ordinal());
+    }
+
+    /**
+     * 可回退到 to 的来源状态
+     */
+    public static Set<OrderStatusEnum> backSources(OrderStatusEnum to) {
+        return BACK_SOURCES.get(to.ordinal());
+    }
+
+    /**
+     * 可迁移到 to 的来源状态
+     */
+    public static Set<OrderStatusEnum> sources(OrderStatusEnum to) {
+        return SOURCES.get(to.ordinal());
+    }
+
+    /**
+     * 期望来源中可迁移到 to 的部分
+     *
+     * @param from 期望来源状态
+     * @param to   目标状态
+     * @return 允许的来源状态
+     */
+    public static Set<OrderStatusEnum> sources(Collection<OrderStatusEnum> from, OrderStatusEnum to) {
+        EnumSet<OrderStatusEnum> allowed = EnumSet.noneOf(OrderStatusEnum.class);
+        for (OrderStatusEnum status : from) {
+            if (canTransit(status, to)) {
+                allowed.add(status);
+            }
+        }
+        return allowed;
+    }
+
+    private static long bits(Supplier<List<OrderStatusEnum>> transitions) {
+        List<OrderStatusEnum> targets;
+        try {
+            targets = transitions.get();
+        } catch (StandardRuntimeException e) {
+            /*首尾状态不可迁移*/
+            return 0L;
+        }
+        long bits = 0L;
+        for (OrderStatusEnum target : targets) {
+            bits |= 1L << target.ordinal();
+        }
+        return bits;
+    }
+
+}
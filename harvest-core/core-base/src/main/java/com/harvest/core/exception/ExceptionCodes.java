@@ -32,6 +32,11 @@ public interface ExceptionCodes {
      */
     int OMS_MODULE_ERROR = 1000;
 
+    /**
+     * OMS订单版本冲突, 条件更新未命中
+     */
+    int OMS_VERSION_CONFLICT = 1001;
+
     /**
      * 规则模块异常
      */
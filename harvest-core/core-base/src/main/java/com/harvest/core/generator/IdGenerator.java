@@ -9,9 +9,18 @@ import java.security.NoSuchAlgorithmException;
 import java.security.spec.MGF1ParameterSpec;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Id 生成器
+ * <p>
+ * 布局与历史 Id 一致, 不超过 53 位(前端 Number 安全): 秒数(自 2000-01-01) << 21 | 序号(16位) << 5 | 节点号(5位)
+ * <p>
+ * 发放位置 = 秒数 * 每秒序号数 + 序号下标, 以单个 AtomicLong 保存, CAS 推进, 无锁;
+ * 单秒序号用尽时直接借用下一秒, 时钟回拨时沿用已发放位置继续递增, 均不阻塞
+ */
 public class IdGenerator {
 
     private static final Logger logger = LoggerFactory.getLogger(IdGenerator.class);
@@ -24,44 +33,133 @@ public class IdGenerator {
 
     private static final long MAX_NEXT = 0b11111_11111111_111L;
 
-    private static final long SHARDING_ID = 1;
+    /**
+     * 节点号上限, 5 位
+     */
+    public static final int MAX_WORKER_ID = 0b11111;
+
+    /**
+     * 单次预留上限
+     */
+    public static final int MAX_RESERVE = 1_000_000;
 
-    private static long offset = 0;
+    /**
+     * 借用未来秒数告警阈值
+     */
+    private static final long BORROW_WARN_SECONDS = 60;
 
-    private static long lastEpoch = 0;
+    /**
+     * 下一个可发放位置
+     */
+    private static final AtomicLong POSITION = new AtomicLong();
+
+    /**
+     * 服务启动时绑定租约分配器(服务层 Redis, 仓储层数据库); 本地文件分配只用于单测、离线等未启动容器的场景
+     */
+    private static volatile WorkerIdAssigner assigner = new LocalFileWorkerIdAssigner();
+
+    private static volatile int workerId = -1;
 
     public static long generate() {
         return nextId();
     }
 
-    private static long nextId() {
-        if (SHARDING_ID < 0) {
-            throw new IllegalStateException("Sharding id not applied.");
+    /**
+     * 预留一段连续 Id, 用于批量导入
+     *
+     * @param size 数量
+     * @return Id 数组, 递增
+     */
+    public static long[] reserve(int size) {
+        if (size <= 0) {
+            return new long[0];
+        }
+        if (size > MAX_RESERVE) {
+            throw new IllegalArgumentException("reserve size exceeds " + MAX_RESERVE + ": " + size);
+        }
+        int shardId = workerId();
+        long start = advance(size);
+        long[] ids = new long[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = toId(start + i, shardId);
         }
-        return nextId(System.currentTimeMillis() / 1000);
+        return ids;
     }
 
-    private static synchronized long nextId(long epochSecond) {
-        if (epochSecond < lastEpoch) {
-            // warning: clock is turn back:
-            logger.warn("clock is back: " + epochSecond + " from previous:" + lastEpoch);
-            epochSecond = lastEpoch;
+    /**
+     * 替换节点号分配方式, 立即重新分配节点号; 同一分配器租约丢失时也以此重新分配
+     *
+     * @param workerIdAssigner 分配器
+     */
+    public static synchronized void bindWorkerIdAssigner(WorkerIdAssigner workerIdAssigner) {
+        assigner = workerIdAssigner;
+        workerId = -1;
+        workerId();
+    }
+
+    /**
+     * 当前节点号, 首次调用时分配; 租约到期后立即停止使用并重新分配, 分配失败时抛出异常, 不发放 Id
+     */
+    public static int workerId() {
+        int current = workerId;
+        if (current >= 0 && System.currentTimeMillis() < assigner.leaseExpireAt()) {
+            return current;
         }
-        if (lastEpoch != epochSecond) {
-            lastEpoch = epochSecond;
-            reset();
+        synchronized (IdGenerator.class) {
+            if (workerId >= 0 && System.currentTimeMillis() >= assigner.leaseExpireAt()) {
+                logger.warn("IdGenerator#节点号租约已到期, 停止使用并重新分配, workerId:{}", workerId);
+                workerId = -1;
+            }
+            if (workerId < 0) {
+                int assigned = assigner.acquire();
+                if (assigned < 0 || assigned > MAX_WORKER_ID) {
+                    throw new IllegalStateException("Sharding id not applied: " + assigned);
+                }
+                /*从前任持有者已发放的秒数之后继续*/
+                long lastSecond = assigner.lastSecond(assigned);
+                POSITION.accumulateAndGet((lastSecond + 1) * MAX_NEXT, Math::max);
+                workerId = assigned;
+                logger.info("IdGenerator#节点号: {}", assigned);
+            }
+            return workerId;
         }
-        offset++;
-        long next = offset & MAX_NEXT;
-        if (next == 0) {
-            logger.warn("maximum id reached in 1 second in epoch: " + epochSecond);
-            return nextId(epochSecond + 1);
+    }
+
+    /**
+     * 已发放到的秒数(自 2000-01-01), 用于节点号续约时记录
+     */
+    public static long currentSecond() {
+        return POSITION.get() / MAX_NEXT;
+    }
+
+    private static long nextId() {
+        int shardId = workerId();
+        return toId(advance(1), shardId);
+    }
+
+    /**
+     * CAS 推进发放位置
+     *
+     * @param size 数量
+     * @return 起始位置
+     */
+    private static long advance(int size) {
+        long floor = (System.currentTimeMillis() / 1000 - OFFSET) * MAX_NEXT;
+        while (true) {
+            long current = POSITION.get();
+            long start = Math.max(current, floor);
+            if (POSITION.compareAndSet(current, start + size)) {
+                long borrowed = (start + size) / MAX_NEXT - floor / MAX_NEXT;
+                if (borrowed > BORROW_WARN_SECONDS) {
+                    logger.warn("IdGenerator#发放超前系统时间 {} 秒, 请检查时钟或发放速率", borrowed);
+                }
+                return start;
+            }
         }
-        return generateId(epochSecond, next, SHARDING_ID);
     }
 
-    private static void reset() {
-        offset = 0;
+    private static long toId(long position, long shardId) {
+        return ((position / MAX_NEXT) << 21) | ((position % MAX_NEXT + 1) << 5) | shardId;
     }
 
     private static long generateId(long epochSecond, long next, long shardId) {
@@ -0,0 +1,55 @@
+package com.harvest.core.generator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/10 10:10 AM
+ * @Description: 本地文件锁分配节点号, 无 Redis 时(单测、离线)使用
+ * <p>
+ * 同一台机器的多个进程各自锁定一个节点号文件, 进程退出时锁自动释放
+ **/
+public class LocalFileWorkerIdAssigner implements WorkerIdAssigner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalFileWorkerIdAssigner.class);
+
+    private static final String DIRECTORY = System.getProperty("java.io.tmpdir") + File.separator + "harvest-id-worker";
+
+    /**
+     * 持有的文件锁, 进程存活期间不释放
+     */
+    private FileLock lock;
+
+    @Override
+    public synchronized int acquire() {
+        File directory = new File(DIRECTORY);
+        if (!directory.exists() && !directory.mkdirs()) {
+            LOGGER.warn("LocalFileWorkerIdAssigner#无法创建目录: {}, 使用节点号 0", DIRECTORY);
+            return 0;
+        }
+        for (int workerId = 0; workerId <= IdGenerator.MAX_WORKER_ID; workerId++) {
+            try {
+                FileChannel channel = new RandomAccessFile(new File(directory, "worker-" + workerId + ".lock"), "rw").getChannel();
+                FileLock fileLock = channel.tryLock();
+                if (fileLock != null) {
+                    this.lock = fileLock;
+                    return workerId;
+                }
+                channel.close();
+            } catch (IOException | OverlappingFileLockException e) {
+                LOGGER.warn("LocalFileWorkerIdAssigner#节点号文件锁定失败, workerId:{}", workerId, e);
+            }
+        }
+        LOGGER.warn("LocalFileWorkerIdAssigner#本机节点号已用尽, 使用节点号 0");
+        return 0;
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.harvest.core.generator;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/10 10:05 AM
+ * @Description: Id 生成器工作节点号分配
+ **/
+public interface WorkerIdAssigner {
+
+    /**
+     * 获取工作节点号, 取值 [0, {@link IdGenerator#MAX_WORKER_ID}]
+     *
+     * @return 节点号
+     */
+    int acquire();
+
+    /**
+     * 当前节点已发放到的秒数, 换号或重启后生成器从该秒继续, 避免与前任持有者重复
+     *
+     * @param workerId 节点号
+     * @return 秒数, 无记录返回 0
+     */
+    default long lastSecond(int workerId) {
+        return 0L;
+    }
+
+    /**
+     * 当前节点号租约到期时间(毫秒时间戳), 到期后生成器不再使用该节点号, 下次发放前重新分配
+     *
+     * @return 到期时间, 不过期返回 {@link Long#MAX_VALUE}
+     */
+    default long leaseExpireAt() {
+        return Long.MAX_VALUE;
+    }
+
+}
@@ -1,14 +1,13 @@
 package com.harvest.core.monitor;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.harvest.core.annotation.Monitor;
 import com.harvest.core.constants.GlobalMacroDefinition;
 import com.harvest.core.context.ContextHolder;
-import com.harvest.core.context.SpringHelper;
 import com.harvest.core.monitor.domain.MonitorEventMessage;
 import com.harvest.core.monitor.enums.MonitorLevelEnum;
 import com.harvest.core.monitor.enums.MonitorTypeEnum;
-import com.harvest.core.monitor.notify.MonitorNotifyProcessor;
+import com.harvest.core.monitor.metrics.MetricsRegistry;
+import com.harvest.core.monitor.notify.MonitorNotifyAggregator;
 import com.harvest.core.utils.JsonUtils;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -17,18 +16,17 @@ import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StopWatch;
 
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.Objects;
-import java.util.concurrent.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
  * @Author: Alodi
  * @Date: 2023/1/29 4:56 PM
- * @Description: TODO
+ * @Description: 监控切面: 耗时及异常计入 {@link MetricsRegistry}, 超时与异常聚合后异步通知
  **/
 @Aspect
 @Component
@@ -36,60 +34,42 @@ public class HarvestMonitor implements GlobalMacroDefinition {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HarvestMonitor.class);
 
-    /**
-     * 监控通知线程池
-     */
-    private static final ExecutorService MONITOR_EVENT_NOTIFY_EXECUTOR = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
-            new LinkedBlockingQueue<>(),
-            new ThreadFactoryBuilder()
-                    .setNameFormat("harvest-monitor-%d")
-                    .setUncaughtExceptionHandler((thread, e) -> LOGGER.error("MONITOR_EVENT_NOTIFY_EXECUTOR:{} 发生异常", thread, e))
-                    .build(),
-            new ThreadPoolExecutor.CallerRunsPolicy());
-
     @Around(value = "@annotation(com.harvest.core.annotation.Monitor)")
     public Object execute(ProceedingJoinPoint joinPoint) throws Throwable {
         Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
         Monitor monitor = method.getAnnotation(Monitor.class);
+        long start = System.nanoTime();
         Object o = null;
         Throwable throwable = null;
         try {
-            StopWatch stopWatch = new StopWatch();
-            stopWatch.start();
             o = joinPoint.proceed(joinPoint.getArgs());
-            stopWatch.stop();
-            long cost = stopWatch.getTotalTimeMillis();
-            if (monitor.efficiencyWatch() > DEFAULT_0 && cost >= monitor.efficiencyWatch()) {
-                this.notifyMonitorEvent(monitor, this.buildEfficiencyMessage(monitor, cost));
-            }
         } catch (Throwable e) {
             throwable = e;
         }
+        long nanos = System.nanoTime() - start;
+        this.record(method, monitor, nanos, throwable, joinPoint.getArgs());
         /*原样抛出异常信息*/
         if (throwable != null) {
-            if (this.needNotify(monitor, throwable)) {
-                this.notifyMonitorEvent(monitor, this.buildErrorMessage(monitor, throwable, joinPoint.getArgs()));
-            }
             throw throwable;
         }
         return o;
     }
 
-    private void notifyMonitorEvent(Monitor monitor, MonitorEventMessage message) {
-        if (Objects.isNull(message)) {
-            return;
-        }
+    /**
+     * 记录指标并登记待通知事件, 不阻塞业务线程
+     */
+    private void record(Method method, Monitor monitor, long nanos, Throwable throwable, Object[] args) {
         try {
-            Future<?> submit = MONITOR_EVENT_NOTIFY_EXECUTOR.submit(() -> Arrays.stream(monitor.processors()).forEach(processor -> {
-                MonitorNotifyProcessor bean = SpringHelper.getBean(processor);
-                if (Objects.isNull(bean)) {
-                    return;
-                }
-                bean.notifyEvent(message);
-            }));
-            submit.get(3, TimeUnit.SECONDS);
+            MetricsRegistry.record(monitor.event().name(), nanos, throwable);
+            long cost = TimeUnit.NANOSECONDS.toMillis(nanos);
+            if (throwable == null && monitor.efficiencyWatch() > DEFAULT_0 && cost >= monitor.efficiencyWatch()) {
+                MonitorNotifyAggregator.add(method, monitor, MonitorTypeEnum.EFFICIENCY, cost, () -> this.buildEfficiencyMessage(monitor, cost));
+            }
+            if (this.needNotify(monitor, throwable)) {
+                MonitorNotifyAggregator.add(method, monitor, MonitorTypeEnum.EXCEPTION, cost, () -> this.buildErrorMessage(monitor, throwable, args));
+            }
         } catch (Exception e) {
-            LOGGER.error("HarvestExceptionMonitor#notifyMonitorEvent#通知失败！", e);
+            LOGGER.error("HarvestMonitor#record#指标记录失败！", e);
         }
     }
 
@@ -134,7 +114,7 @@ public class HarvestMonitor implements GlobalMacroDefinition {
         if (Objects.isNull(args) || args.length <= 0) {
             return;
         }
-        message.setParams(Arrays.stream(args).map(arg -> JsonUtils.object2Json(args)).reduce((o1, o2) -> o1 + "\r\n" + o2).get());
+        message.setParams(Arrays.stream(args).map(JsonUtils::object2Json).collect(Collectors.joining("\r\n")));
     }
 
     private boolean needNotify(Monitor monitor, Throwable throwable) {
@@ -44,6 +44,10 @@ public class MonitorEventMessage extends CompanyId {
     private String node;
     @ApiModelProperty("参数信息")
     private String params;
+    @ApiModelProperty("聚合周期内发生次数")
+    private long count;
+    @ApiModelProperty("聚合摘要")
+    private String summary;
 
     @ApiModelProperty("重点关注人员")
     private Set<MemberContactEnum> atMembers;
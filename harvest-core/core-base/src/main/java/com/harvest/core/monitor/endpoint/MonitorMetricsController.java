@@ -0,0 +1,54 @@
+package com.harvest.core.monitor.endpoint;
+
+import com.harvest.core.delay.DelayTaskExecutor;
+import com.harvest.core.domain.ResponseResult;
+import com.harvest.core.monitor.metrics.MetricsRegistry;
+import com.harvest.core.utils.ActuatorUtils;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/11 2:10 PM
+ * @Description: 监控指标端点
+ **/
+@Api(value = "监控指标", tags = "监控指标")
+@RestController
+@RequestMapping(value = MonitorMetricsController.MONITOR_METRICS_PATH)
+public class MonitorMetricsController {
+
+    public static final String MONITOR_METRICS_PATH = "/harvest/monitor/metrics";
+
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    @ApiOperation("监控指标")
+    @GetMapping
+    public ResponseResult<Map<String, Map<String, Object>>> metrics() {
+        return ResponseResult.success(MetricsRegistry.snapshot());
+    }
+
+    @ApiOperation("监控指标-并发批量执行器")
+    @GetMapping("/executor")
+    public ResponseResult<Map<String, Object>> executor() {
+        return ResponseResult.success(ActuatorUtils.executorStats());
+    }
+
+    @ApiOperation("监控指标-延迟任务")
+    @GetMapping("/delay-task")
+    public ResponseResult<Map<String, Object>> delayTask() {
+        return ResponseResult.success(DelayTaskExecutor.isInitialized() ? DelayTaskExecutor.getInstance().stats() : Collections.emptyMap());
+    }
+
+    @ApiOperation("监控指标-Prometheus")
+    @GetMapping(value = "/prometheus", produces = PROMETHEUS_CONTENT_TYPE)
+    public String prometheus() {
+        return MetricsRegistry.prometheus();
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.harvest.core.monitor.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/11 10:30 AM
+ * @Description: 单个监控事件的指标: 累计直方图、最近一分钟滚动直方图、按异常类型计数
+ **/
+public class EventMetrics {
+
+    /**
+     * 滚动窗口槽位跨度 毫秒
+     */
+    private static final long SLOT_MILLIS = 10_000L;
+
+    /**
+     * 滚动窗口槽位数, 共一分钟
+     */
+    private static final int SLOTS = 6;
+
+    private final String event;
+
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    private final Slot[] window = new Slot[SLOTS];
+
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    public EventMetrics(String event) {
+        this.event = event;
+        for (int i = 0; i < SLOTS; i++) {
+            window[i] = new Slot();
+        }
+    }
+
+    public void record(long micros) {
+        total.record(micros);
+        this.slot(System.currentTimeMillis() / SLOT_MILLIS).histogram.record(micros);
+    }
+
+    public void error(Throwable throwable) {
+        errors.computeIfAbsent(throwable.getClass().getSimpleName(), k -> new LongAdder()).increment();
+    }
+
+    public String getEvent() {
+        return event;
+    }
+
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+
+    public Map<String, Long> errors() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        errors.forEach((k, v) -> result.put(k, v.sum()));
+        return result;
+    }
+
+    /**
+     * 最近一分钟分位值
+     *
+     * @param percentile 0 ~ 100
+     * @return 微秒
+     */
+    public long windowPercentile(double percentile) {
+        return LatencyHistogram.percentile(this.windowBuckets(), percentile);
+    }
+
+    public long windowCount() {
+        long current = System.currentTimeMillis() / SLOT_MILLIS;
+        long count = 0;
+        for (Slot slot : window) {
+            if (current - slot.epoch < SLOTS) {
+                count += slot.histogram.count();
+            }
+        }
+        return count;
+    }
+
+    private long[] windowBuckets() {
+        long current = System.currentTimeMillis() / SLOT_MILLIS;
+        long[] buckets = LatencyHistogram.newBuckets();
+        for (Slot slot : window) {
+            if (current - slot.epoch < SLOTS) {
+                slot.histogram.mergeInto(buckets);
+            }
+        }
+        return buckets;
+    }
+
+    private Slot slot(long epoch) {
+        Slot slot = window[(int) (epoch % SLOTS)];
+        if (slot.epoch != epoch) {
+            synchronized (slot) {
+                if (slot.epoch != epoch) {
+                    slot.histogram.reset();
+                    slot.epoch = epoch;
+                }
+            }
+        }
+        return slot;
+    }
+
+    private static class Slot {
+
+        private volatile long epoch = -1L;
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.harvest.core.monitor.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/11 10:05 AM
+ * @Description: 对数线性分桶的延迟直方图, 单位微秒
+ * <p>
+ * 每个 2 的幂区间再等分 32 个子桶, 相对误差约 3%, 记录为一次数组自增, 无锁无分配
+ **/
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    /**
+     * 最大可记录值约 36 分钟, 超出记入最后一个桶
+     */
+    private static final int MAX_BITS = 41;
+
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     *
+     * @param micros 微秒
+     */
+    public void record(long micros) {
+        long value = Math.min(Math.max(micros, 0L), MAX_VALUE);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * 合并到目标计数数组
+     */
+    void mergeInto(long[] target) {
+        for (int i = 0; i < BUCKETS; i++) {
+            target[i] += counts.get(i);
+        }
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0L);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0L);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public long percentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        this.mergeInto(snapshot);
+        return percentile(snapshot, percentile);
+    }
+
+    static long[] newBuckets() {
+        return new long[BUCKETS];
+    }
+
+    /**
+     * 按计数数组求分位值, 返回所在桶上界
+     *
+     * @param buckets    计数
+     * @param percentile 0 ~ 100
+     * @return 微秒
+     */
+    static long percentile(long[] buckets, double percentile) {
+        long total = 0;
+        for (long c : buckets) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0L;
+        }
+        long rank = Math.max((long) Math.ceil(total * percentile / 100D), 1L);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return upper(i);
+            }
+        }
+        return upper(buckets.length - 1);
+    }
+
+    static int index(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) ((value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1));
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    static long upper(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_COUNT + SUB_BITS - 1;
+        long sub = index % SUB_COUNT;
+        long lower = (1L << exponent) | (sub << (exponent - SUB_BITS));
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.harvest.core.monitor.metrics;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/11 10:50 AM
+ * @Description: 进程内监控指标注册表
+ **/
+public class MetricsRegistry {
+
+    private static final double[] PERCENTILES = {50D, 99D, 99.9D};
+
+    private static final String[] QUANTILES = {"0.5", "0.99", "0.999"};
+
+    private static final Map<String, EventMetrics> EVENTS = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    public static EventMetrics event(String event) {
+        EventMetrics metrics = EVENTS.get(event);
+        return metrics != null ? metrics : EVENTS.computeIfAbsent(event, EventMetrics::new);
+    }
+
+    /**
+     * 记录一次调用
+     *
+     * @param event  事件
+     * @param nanos  耗时 纳秒
+     * @param error  异常, 成功为空
+     */
+    public static void record(String event, long nanos, Throwable error) {
+        EventMetrics metrics = event(event);
+        metrics.record(nanos / 1000);
+        if (error != null) {
+            metrics.error(error);
+        }
+    }
+
+    /**
+     * 指标快照, 耗时单位毫秒
+     *
+     * @return 事件 -> 指标
+     */
+    public static Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        EVENTS.forEach((event, metrics) -> {
+            LatencyHistogram total = metrics.getTotal();
+            long count = total.count();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("count", count);
+            item.put("avgMillis", count == 0 ? 0D : total.sum() / 1000D / count);
+            item.put("maxMillis", total.max() / 1000D);
+            for (double p : PERCENTILES) {
+                item.put("p" + label(p) + "Millis", total.percentile(p) / 1000D);
+            }
+            item.put("windowCount", metrics.windowCount());
+            for (double p : PERCENTILES) {
+                item.put("windowP" + label(p) + "Millis", metrics.windowPercentile(p) / 1000D);
+            }
+            item.put("errors", metrics.errors());
+            result.put(event, item);
+        });
+        return result;
+    }
+
+    /**
+     * Prometheus 文本格式, 耗时单位秒
+     *
+     * @return text/plain; version=0.0.4
+     */
+    public static String prometheus() {
+        StringBuilder builder = new StringBuilder(1024);
+        builder.append("# TYPE harvest_monitor_latency_seconds summary\n");
+        EVENTS.forEach((event, metrics) -> {
+            LatencyHistogram total = metrics.getTotal();
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                builder.append("harvest_monitor_latency_seconds{event=\"").append(event)
+                        .append("\",quantile=\"").append(QUANTILES[i]).append("\"} ")
+                        .append(total.percentile(PERCENTILES[i]) / 1_000_000D).append('\n');
+            }
+            builder.append("harvest_monitor_latency_seconds_sum{event=\"").append(event).append("\"} ")
+                    .append(total.sum() / 1_000_000D).append('\n');
+            builder.append("harvest_monitor_latency_seconds_count{event=\"").append(event).append("\"} ")
+                    .append(total.count()).append('\n');
+        });
+        builder.append("# TYPE harvest_monitor_errors_total counter\n");
+        EVENTS.forEach((event, metrics) -> metrics.errors().forEach((type, count) ->
+                builder.append("harvest_monitor_errors_total{event=\"").append(event)
+                        .append("\",type=\"").append(type).append("\"} ").append(count).append('\n')));
+        return builder.toString();
+    }
+
+    private static String label(double percentile) {
+        return percentile == Math.floor(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile).replace(".", "");
+    }
+
+}
@@ -0,0 +1,234 @@
+package com.harvest.core.monitor.notify;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.harvest.core.annotation.Monitor;
+import com.harvest.core.context.ContextHolder;
+import com.harvest.core.context.SpringHelper;
+import com.harvest.core.monitor.domain.MonitorEventMessage;
+import com.harvest.core.monitor.enums.MonitorLevelEnum;
+import com.harvest.core.monitor.enums.MonitorTypeEnum;
+import com.harvest.core.monitor.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/11 11:20 AM
+ * @Description: 监控通知聚合
+ * <p>
+ * 业务线程只做计数并保留周期内第一条样本, 每分钟按监控方法及类型合并为一条通知异步发出;
+ * 单周期通知条数有上限, 超出的按通知渠道合并为一条"另有 N 条未发送"的提示
+ **/
+public class MonitorNotifyAggregator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MonitorNotifyAggregator.class);
+
+    /**
+     * 聚合周期 秒
+     */
+    private static final long PERIOD_SECONDS = 60L;
+
+    /**
+     * 单周期最多发送通知条数
+     */
+    private static final int MAX_NOTIFY_PER_PERIOD = 20;
+
+    /**
+     * 超限提示中列出的监控数
+     */
+    private static final int MAX_SUPPRESSED_DETAIL = 5;
+
+    private static final Map<AggregateKey, Aggregate> AGGREGATES = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService FLUSH_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("harvest-monitor-%d")
+                    .setDaemon(true)
+                    .setUncaughtExceptionHandler((thread, e) -> LOGGER.error("MONITOR_EVENT_NOTIFY_EXECUTOR:{} 发生异常", thread, e))
+                    .build()
+    );
+
+    static {
+        FLUSH_EXECUTOR.scheduleAtFixedRate(MonitorNotifyAggregator::flush, PERIOD_SECONDS, PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private MonitorNotifyAggregator() {
+    }
+
+    /**
+     * 记录一次待通知事件
+     *
+     * @param method  监控方法, 同一事件的不同方法分别聚合
+     * @param monitor 监控注解
+     * @param type    监控类型
+     * @param cost    耗时 毫秒
+     * @param sample  样本构建, 仅周期内首次调用
+     */
+    public static void add(Method method, Monitor monitor, MonitorTypeEnum type, long cost, Supplier<MonitorEventMessage> sample) {
+        Aggregate aggregate = AGGREGATES.computeIfAbsent(new AggregateKey(method, type), key -> new Aggregate(method, monitor, type));
+        aggregate.count.increment();
+        aggregate.maxCost.accumulateAndGet(cost, Math::max);
+        if (aggregate.sample.get() == null) {
+            aggregate.sample.compareAndSet(null, sample.get());
+        }
+    }
+
+    private static void flush() {
+        int sent = 0;
+        Map<Class<? extends MonitorNotifyProcessor>, Suppressed> suppressed = new LinkedHashMap<>();
+        for (Aggregate aggregate : AGGREGATES.values()) {
+            long count = aggregate.count.sumThenReset();
+            long maxCost = aggregate.maxCost.getAndSet(0L);
+            MonitorEventMessage message = aggregate.sample.getAndSet(null);
+            if (count == 0 || message == null) {
+                continue;
+            }
+            if (sent >= MAX_NOTIFY_PER_PERIOD) {
+                for (Class<? extends MonitorNotifyProcessor> processor : aggregate.monitor.processors()) {
+                    suppressed.computeIfAbsent(processor, k -> new Suppressed(message)).add(aggregate, count);
+                }
+                continue;
+            }
+            message.setCount(count);
+            message.setExecuteCost(maxCost);
+            message.setSummary(summary(aggregate, count, maxCost));
+            notify(aggregate.monitor, message);
+            sent++;
+        }
+        if (!suppressed.isEmpty()) {
+            LOGGER.warn("MonitorNotifyAggregator#通知超过单周期上限, 合并提示, processors:{}", suppressed.size());
+            suppressed.forEach((processor, notice) -> notify(processor, notice.message()));
+        }
+    }
+
+    private static String summary(Aggregate aggregate, long count, long maxCost) {
+        String event = aggregate.monitor.event().name();
+        if (aggregate.type == MonitorTypeEnum.EFFICIENCY) {
+            long p99 = MetricsRegistry.event(event).windowPercentile(99D) / 1000;
+            return String.format("%s[%s] 最近%d秒耗时超过 %dms 共 %d 次, p99 %dms, 最大 %dms",
+                    event, aggregate.source, PERIOD_SECONDS, aggregate.monitor.efficiencyWatch(), count, p99, maxCost);
+        }
+        return String.format("%s[%s] 最近%d秒异常 %d 次", event, aggregate.source, PERIOD_SECONDS, count);
+    }
+
+    private static void notify(Monitor monitor, MonitorEventMessage message) {
+        Arrays.stream(monitor.processors()).forEach(processor -> notify(processor, message));
+    }
+
+    private static void notify(Class<? extends MonitorNotifyProcessor> processor, MonitorEventMessage message) {
+        try {
+            MonitorNotifyProcessor bean = SpringHelper.getBean(processor);
+            if (Objects.isNull(bean)) {
+                return;
+            }
+            bean.notifyEvent(message);
+        } catch (Exception e) {
+            LOGGER.error("MonitorNotifyAggregator#notify#通知失败！processor:{}", processor.getSimpleName(), e);
+        }
+    }
+
+    private static class AggregateKey {
+
+        private final Method method;
+
+        private final MonitorTypeEnum type;
+
+        private AggregateKey(Method method, MonitorTypeEnum type) {
+            this.method = method;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof AggregateKey)) {
+                return false;
+            }
+            AggregateKey that = (AggregateKey) o;
+            return method.equals(that.method) && type == that.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * method.hashCode() + type.hashCode();
+        }
+    }
+
+    /**
+     * 超过单周期上限未发送的通知, 按通知渠道合并
+     */
+    private static class Suppressed {
+
+        private final MonitorEventMessage first;
+
+        private final List<String> details = new ArrayList<>(MAX_SUPPRESSED_DETAIL);
+
+        private int kinds;
+
+        private long count;
+
+        private Suppressed(MonitorEventMessage first) {
+            this.first = first;
+        }
+
+        private void add(Aggregate aggregate, long count) {
+            this.kinds++;
+            this.count += count;
+            if (details.size() < MAX_SUPPRESSED_DETAIL) {
+                details.add(String.format("%s[%s] %s %d 次", aggregate.monitor.event().name(), aggregate.source, aggregate.type.name(), count));
+            }
+        }
+
+        private MonitorEventMessage message() {
+            MonitorEventMessage message = new MonitorEventMessage(ContextHolder.getContext());
+            message.setMonitor(first.getMonitor());
+            message.setEvent(first.getEvent());
+            message.setType(first.getType());
+            message.setLevel(MonitorLevelEnum.ERROR);
+            message.setCount(count);
+            message.setSummary(String.format("最近%d秒通知超过上限 %d 条, 另有 %d 条未发送(共 %d 次): %s%s", PERIOD_SECONDS, MAX_NOTIFY_PER_PERIOD,
+                    kinds, count, String.join("; ", details), kinds > details.size() ? " ..." : ""));
+            return message;
+        }
+    }
+
+    private static class Aggregate {
+
+        private final String source;
+
+        private final Monitor monitor;
+
+        private final MonitorTypeEnum type;
+
+        private final LongAdder count = new LongAdder();
+
+        private final AtomicLong maxCost = new AtomicLong();
+
+        private final AtomicReference<MonitorEventMessage> sample = new AtomicReference<>();
+
+        private Aggregate(Method method, Monitor monitor, MonitorTypeEnum type) {
+            this.source = method.getDeclaringClass().getSimpleName() + "#" + method.getName();
+            this.monitor = monitor;
+            this.type = type;
+        }
+    }
+
+}
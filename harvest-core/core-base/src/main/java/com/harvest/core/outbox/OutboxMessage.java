@@ -0,0 +1,71 @@
+package com.harvest.core.outbox;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/26 10:00 AM
+ * @Description: 发件箱消息
+ * <p>
+ * 与业务状态变更在同一事务写入, 由中继按 {@link #id} 顺序投递; 同一 {@link #messageKey} 的消息按写入顺序投递.
+ * 载荷为空时由中继投递前按主题解析, 适用于写入时尚未组装消息体的场景
+ **/
+@Data
+public class OutboxMessage implements Serializable {
+
+    private static final long serialVersionUID = -3187245109237840513L;
+
+    public static final int STATUS_PENDING = 0;
+
+    public static final int STATUS_SENT = 1;
+
+    public static final int STATUS_DEAD = 2;
+
+    private Long id;
+
+    private Long companyId;
+
+    /**
+     * 投递目标, 格式同 RocketMQ destination: topic 或 topic:tags
+     */
+    private String destination;
+
+    /**
+     * 顺序键, 同一键的消息进入同一队列并按写入顺序投递
+     */
+    private String messageKey;
+
+    /**
+     * JSON 消息体
+     */
+    private String payload;
+
+    private Integer status;
+
+    /**
+     * 已失败次数
+     */
+    private Integer retries;
+
+    /**
+     * 最近一次失败原因
+     */
+    private String lastError;
+
+    private LocalDateTime createTime;
+
+    public static OutboxMessage of(Long companyId, String destination, String messageKey, String payload) {
+        OutboxMessage message = new OutboxMessage();
+        message.setCompanyId(companyId);
+        message.setDestination(destination);
+        message.setMessageKey(messageKey);
+        message.setPayload(payload);
+        message.setStatus(STATUS_PENDING);
+        message.setRetries(0);
+        return message;
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.harvest.core.outbox;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/26 10:05 AM
+ * @Description: 发件箱存储
+ * <p>
+ * {@link #save} 须在业务事务内调用, 与状态变更一起提交或回滚; 其余方法供中继使用
+ **/
+public interface OutboxStore {
+
+    /**
+     * 写入待投递消息
+     *
+     * @param messages
+     */
+    void save(Collection<OutboxMessage> messages);
+
+    /**
+     * 到期待投递消息, 按 id 升序
+     * <p>
+     * 同一顺序键存在更早的未到期消息(等待重试)时, 其后的消息不返回, 保证同键顺序
+     *
+     * @param limit 单批最大数量
+     * @return
+     */
+    List<OutboxMessage> pending(int limit);
+
+    /**
+     * 标记已投递
+     *
+     * @param ids
+     */
+    void sent(Collection<Long> ids);
+
+    /**
+     * 投递失败, 失败次数加一, 到指定时间后重新可见
+     *
+     * @param ids
+     * @param nextMillis 下次投递时间
+     * @param error      失败原因
+     */
+    void retry(Collection<Long> ids, long nextMillis, String error);
+
+    /**
+     * 转入死信, 不再投递
+     *
+     * @param ids
+     * @param error 失败原因
+     */
+    void dead(Collection<Long> ids, String error);
+
+    /**
+     * 待投递消息数
+     */
+    long size();
+
+}
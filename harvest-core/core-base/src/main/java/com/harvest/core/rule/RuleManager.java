@@ -8,9 +8,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.lang.reflect.Field;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @Author: Alodi
@@ -25,6 +26,26 @@ public class RuleManager {
     @Autowired(required = false)
     private Set<RuleMatcher<? extends RuleSection, ?>> matchers;
 
+    /**
+     * 细分规则类 -> 匹配器, 启动时建立索引
+     */
+    private final Map<Class<?>, RuleMatcher<? extends RuleSection, ?>> matcherIndex = new HashMap<>();
+
+    /**
+     * 完整规则类 -> 细分规则字段, 每个类只解析一次
+     */
+    private final Map<Class<?>, Field[]> sectionFields = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (CollectionUtils.isEmpty(matchers)) {
+            return;
+        }
+        for (RuleMatcher<? extends RuleSection, ?> matcher : matchers) {
+            matcherIndex.put(matcher.handle(), matcher);
+        }
+    }
+
     /**
      * 该完整规则的细分规则 全部符合条件才能匹配
      *
@@ -62,27 +83,45 @@ public class RuleManager {
         if (rule == null) {
             return null;
         }
-        Collection<RuleSection> ruleDetails = new ArrayList<>();
-        Field[] fields = rule.getClass().getDeclaredFields();
-        for (Field field : fields) {
-            Class<?> type = field.getType();
-            if (!RuleSection.class.isAssignableFrom(type)) {
-                continue;
-            }
+        List<RuleSection> ruleDetails = new ArrayList<>();
+        for (Field field : sectionFields.computeIfAbsent(rule.getClass(), this::resolveSectionFields)) {
             try {
-                field.setAccessible(true);
                 Object content = field.get(rule);
                 if (Objects.isNull(content)) {
                     continue;
                 }
-                ruleDetails.add((RuleSection) content);
+                if (content instanceof RuleSectionHolder) {
+                    ruleDetails.addAll(((RuleSectionHolder) content).sections());
+                } else {
+                    ruleDetails.add((RuleSection) content);
+                }
             } catch (IllegalAccessException e) {
                 LOGGER.error("获取规则内容发生异常", e);
             }
         }
+        ruleDetails.sort(Comparator.comparingInt(RuleSection::priority));
         return ruleDetails;
     }
 
+    /**
+     * 解析规则类中的细分规则字段(含细分规则容器)
+     *
+     * @param clazz
+     * @return
+     */
+    private Field[] resolveSectionFields(Class<?> clazz) {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : clazz.getDeclaredFields()) {
+            Class<?> type = field.getType();
+            if (!RuleSection.class.isAssignableFrom(type) && !RuleSectionHolder.class.isAssignableFrom(type)) {
+                continue;
+            }
+            field.setAccessible(true);
+            fields.add(field);
+        }
+        return fields.toArray(new Field[0]);
+    }
+
     /**
      * 获取匹配的规则
      *
@@ -95,8 +134,7 @@ public class RuleManager {
         if (rule == null) {
             throw new IllegalArgumentException("Rule cannot be empty!");
         }
-        Class<?> clazz = rule.getClass();
-        RuleMatcher<? extends RuleSection, ?> handler = matchers.stream().filter(h -> h.handle() == clazz).findFirst().orElse(null);
+        RuleMatcher<? extends RuleSection, ?> handler = matcherIndex.get(rule.getClass());
         if (handler == null) {
             throw new IllegalArgumentException("No rule processor configured!");
         }
@@ -104,7 +142,7 @@ public class RuleManager {
     }
 
     /**
-     * 针对所有条件全部满足才返回true
+     * 针对所有条件全部满足才返回true, ruleGroup 已按优先级排序
      *
      * @param ruleGroup
      * @param condition
@@ -116,7 +154,7 @@ public class RuleManager {
         if (CollectionUtils.isEmpty(ruleGroup)) {
             return false;
         }
-        for (R rule : ruleGroup.stream().sorted(Comparator.comparingInt(R::priority)).collect(Collectors.toList())) {
+        for (R rule : ruleGroup) {
             RuleMatcher<R, C> matcher = this.getMatcher(rule);
             if (!matcher.match(rule, condition)) {
                 return false;
@@ -126,7 +164,7 @@ public class RuleManager {
     }
 
     /**
-     * 针对所有条件任意一个满足就返回true
+     * 针对所有条件任意一个满足就返回true, ruleGroup 已按优先级排序
      *
      * @param ruleGroup
      * @param condition
@@ -138,7 +176,7 @@ public class RuleManager {
         if (CollectionUtils.isEmpty(ruleGroup)) {
             return false;
         }
-        for (R rule : ruleGroup.stream().sorted(Comparator.comparingInt(R::priority)).collect(Collectors.toList())) {
+        for (R rule : ruleGroup) {
             RuleMatcher<R, C> matcher = this.getMatcher(rule);
             if (matcher.match(rule, condition)) {
                 return true;
@@ -0,0 +1,19 @@
+package com.harvest.core.rule;
+
+import java.util.Collection;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/2 10:15 AM
+ * @Description: 细分规则容器, 完整规则中以聚合对象持有细分规则时实现, 由 {@link RuleManager} 展开
+ **/
+public interface RuleSectionHolder {
+
+    /**
+     * 当前持有的全部非空细分规则
+     *
+     * @return 细分规则
+     */
+    Collection<RuleSection> sections();
+
+}
@@ -1,6 +1,7 @@
 package com.harvest.core.rule.confine;
 
 import com.harvest.core.domain.CompanyId;
+import io.swagger.annotations.ApiModelProperty;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
@@ -15,4 +16,7 @@ public class RuleCondition extends CompanyId {
 
     private static final long serialVersionUID = -8071643891926009136L;
 
+    @ApiModelProperty(value = "业务ID", notes = "如订单ID, 用于日志追踪; 批量匹配结果按入参顺序对应, 不依赖业务ID")
+    private Long bizId;
+
 }
@@ -0,0 +1,83 @@
+package com.harvest.core.rule.plan;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/2 10:26 AM
+ * @Description: 离散值细分规则索引(国家、仓库等), 值 -> 命中的规则位图
+ * 未配置该细分规则的规则视为通配, 合并进每个值的位图中
+ **/
+public final class DiscreteRuleIndex<K> {
+
+    private final Map<K, long[]> index;
+
+    /**
+     * 未配置该细分规则的规则
+     */
+    private final long[] wildcard;
+
+    private DiscreteRuleIndex(Map<K, long[]> index, long[] wildcard) {
+        this.index = index;
+        this.wildcard = wildcard;
+    }
+
+    /**
+     * 满足该值的规则位图, 返回的数组只读
+     *
+     * @param key 条件值
+     * @return 规则位图
+     */
+    public long[] pass(K key) {
+        if (key == null) {
+            return wildcard;
+        }
+        long[] words = index.get(key);
+        return words == null ? wildcard : words;
+    }
+
+    public static <K> Builder<K> builder(int size) {
+        return new Builder<>(size);
+    }
+
+    public static final class Builder<K> {
+
+        private final int size;
+
+        private final Map<K, long[]> index = new HashMap<>();
+
+        private final long[] wildcard;
+
+        private Builder(int size) {
+            this.size = size;
+            this.wildcard = RuleBits.words(size);
+        }
+
+        /**
+         * 该规则未配置此细分规则
+         */
+        public Builder<K> wildcard(int ordinal) {
+            RuleBits.set(wildcard, ordinal);
+            return this;
+        }
+
+        /**
+         * 该规则接受此值
+         */
+        public Builder<K> accept(int ordinal, K key) {
+            if (key != null) {
+                RuleBits.set(index.computeIfAbsent(key, k -> RuleBits.words(size)), ordinal);
+            }
+            return this;
+        }
+
+        public DiscreteRuleIndex<K> build() {
+            for (long[] words : index.values()) {
+                RuleBits.or(words, wildcard);
+            }
+            return new DiscreteRuleIndex<>(index, wildcard);
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.harvest.core.rule.plan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/2 10:41 AM
+ * @Description: 区间细分规则索引(金额、重量、尺寸等), 闭区间 [min, max], 边界为空表示无限
+ * 将全部区间端点排序切分为若干基本段(端点本身 + 端点之间的开区间), 每段预先计算命中的规则位图,
+ * 匹配时二分定位所在段即可, 复杂度 O(log n)
+ **/
+public final class RangeRuleIndex<T extends Comparable<? super T>> {
+
+    /**
+     * 排序去重后的区间端点
+     */
+    private final Object[] points;
+
+    /**
+     * 第 2i 段: (points[i-1], points[i]); 第 2i+1 段: points[i]; 第 2n 段: (points[n-1], +∞)
+     */
+    private final long[][] segments;
+
+    /**
+     * 未配置区间(不限)的规则, 条件值为空时只有这部分规则满足
+     */
+    private final long[] unbounded;
+
+    private RangeRuleIndex(Object[] points, long[][] segments, long[] unbounded) {
+        this.points = points;
+        this.segments = segments;
+        this.unbounded = unbounded;
+    }
+
+    /**
+     * 满足该值的规则位图, 返回的数组只读
+     *
+     * @param value 条件值
+     * @return 规则位图
+     */
+    public long[] pass(T value) {
+        if (value == null) {
+            return unbounded;
+        }
+        int index = Arrays.binarySearch(points, value);
+        return index >= 0 ? segments[2 * index + 1] : segments[2 * (-index - 1)];
+    }
+
+    public static <T extends Comparable<? super T>> Builder<T> builder(int size) {
+        return new Builder<>(size);
+    }
+
+    public static final class Builder<T extends Comparable<? super T>> {
+
+        private final int size;
+
+        private final long[] unbounded;
+
+        private final List<Bound<T>> bounds = new ArrayList<>();
+
+        private Builder(int size) {
+            this.size = size;
+            this.unbounded = RuleBits.words(size);
+        }
+
+        /**
+         * 该规则不限此区间
+         */
+        public Builder<T> unbounded(int ordinal) {
+            RuleBits.set(unbounded, ordinal);
+            return this;
+        }
+
+        /**
+         * 该规则要求值落在 [min, max] 内, 边界为空表示无限, 两端均为空等同于不限
+         */
+        public Builder<T> range(int ordinal, T min, T max) {
+            if (min == null && max == null) {
+                return this.unbounded(ordinal);
+            }
+            bounds.add(new Bound<>(ordinal, min, max));
+            return this;
+        }
+
+        public RangeRuleIndex<T> build() {
+            TreeSet<T> sorted = new TreeSet<>();
+            for (Bound<T> bound : bounds) {
+                if (bound.min != null) {
+                    sorted.add(bound.min);
+                }
+                if (bound.max != null) {
+                    sorted.add(bound.max);
+                }
+            }
+            List<T> points = new ArrayList<>(sorted);
+            int n = points.size();
+            long[][] segments = new long[2 * n + 1][];
+            for (int i = 0; i <= n; i++) {
+                T lower = i == 0 ? null : points.get(i - 1);
+                T upper = i == n ? null : points.get(i);
+                segments[2 * i] = this.segment(lower, upper);
+                if (i < n) {
+                    segments[2 * i + 1] = this.segment(upper);
+                }
+            }
+            return new RangeRuleIndex<>(points.toArray(), segments, unbounded);
+        }
+
+        /**
+         * 开区间 (lower, upper) 段, 边界为空表示无限
+         */
+        private long[] segment(T lower, T upper) {
+            long[] words = unbounded.clone();
+            for (Bound<T> bound : bounds) {
+                boolean minOk = bound.min == null || (lower != null && bound.min.compareTo(lower) <= 0);
+                boolean maxOk = bound.max == null || (upper != null && bound.max.compareTo(upper) >= 0);
+                if (minOk && maxOk) {
+                    RuleBits.set(words, bound.ordinal);
+                }
+            }
+            return words;
+        }
+
+        /**
+         * 端点段
+         */
+        private long[] segment(T point) {
+            long[] words = unbounded.clone();
+            for (Bound<T> bound : bounds) {
+                if ((bound.min == null || bound.min.compareTo(point) <= 0) && (bound.max == null || bound.max.compareTo(point) >= 0)) {
+                    RuleBits.set(words, bound.ordinal);
+                }
+            }
+            return words;
+        }
+    }
+
+    private static final class Bound<T> {
+
+        private final int ordinal;
+
+        private final T min;
+
+        private final T max;
+
+        private Bound(int ordinal, T min, T max) {
+            this.ordinal = ordinal;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.harvest.core.rule.plan;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/2 10:20 AM
+ * @Description: 规则位图工具, 第 n 条规则对应第 n 位, 以 long[] 存储避免匹配时分配对象
+ **/
+public final class RuleBits {
+
+    private RuleBits() {
+    }
+
+    /**
+     * 创建可容纳 size 条规则的位图
+     *
+     * @param size 规则数量
+     * @return 位图
+     */
+    public static long[] words(int size) {
+        return new long[Math.max(1, (size + 63) >>> 6)];
+    }
+
+    public static void set(long[] words, int index) {
+        words[index >>> 6] |= 1L << index;
+    }
+
+    public static boolean get(long[] words, int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public static void or(long[] target, long[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] |= source[i];
+        }
+    }
+
+    /**
+     * 从 fromIndex 开始(包含)屏蔽掉低位后的掩码
+     *
+     * @param wordIndex 当前字下标
+     * @param fromIndex 起始规则下标
+     * @return 掩码
+     */
+    public static long fromMask(int wordIndex, int fromIndex) {
+        return wordIndex == (fromIndex >>> 6) ? -1L << fromIndex : -1L;
+    }
+
+}
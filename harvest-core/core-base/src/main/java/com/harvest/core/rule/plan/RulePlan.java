@@ -0,0 +1,49 @@
+package com.harvest.core.rule.plan;
+
+import com.harvest.core.rule.confine.Rule;
+import com.harvest.core.rule.confine.RuleCondition;
+
+import java.util.Collection;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/2 10:18 AM
+ * @Description: 编译后的规则执行计划(不可变), 规则按优先级排列, 下标越小优先级越高
+ * 匹配结果需与 {@link com.harvest.core.rule.RuleManager#andMatch} / {@link com.harvest.core.rule.RuleManager#orMatch} 保持一致
+ **/
+public interface RulePlan<RULE extends Rule, C extends RuleCondition> {
+
+    /**
+     * 从 fromIndex(包含) 开始, 查找全部细分规则满足条件的第一条规则
+     *
+     * @param condition 匹配条件
+     * @param fromIndex 起始下标
+     * @return 规则下标, 无匹配返回 -1
+     */
+    int nextAndMatch(C condition, int fromIndex);
+
+    /**
+     * 从 fromIndex(包含) 开始, 查找任意细分规则满足条件的第一条规则
+     *
+     * @param condition 匹配条件
+     * @param fromIndex 起始下标
+     * @return 规则下标, 无匹配返回 -1
+     */
+    int nextOrMatch(C condition, int fromIndex);
+
+    /**
+     * 根据下标获取规则
+     *
+     * @param index 规则下标
+     * @return 规则
+     */
+    RULE rule(int index);
+
+    /**
+     * 编译该计划的原始规则集, 用于判断规则是否发生变更
+     *
+     * @return 原始规则集
+     */
+    Collection<RULE> source();
+
+}
@@ -1,21 +1,23 @@
 package com.harvest.core.utils;
 
 import com.google.common.collect.Lists;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.harvest.core.batch.BatchExecuteOptions;
 import com.harvest.core.batch.BatchExecuteResult;
 import com.harvest.core.batch.BatchId;
+import com.harvest.core.batch.CompactBatchExecuteResult;
+import com.harvest.core.batch.FairBatchExecutor;
 import com.harvest.core.constants.GlobalMacroDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.CollectionUtils;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -31,10 +33,15 @@ public class ActuatorUtils {
 
     private static final int DEFAULT_PARTITION_SIZE = 200;
 
-    private static volatile ThreadPoolExecutor PARALLEL_EXECUTOR_POOL = null;
-
     private static final int MAX_POOL_THREAD = 50;
 
+    /**
+     * 单个公司队列容量
+     */
+    private static final int LANE_CAPACITY = 1024;
+
+    private static volatile FairBatchExecutor PARALLEL_EXECUTOR_POOL = null;
+
 
     /**
      * 创建线程池
@@ -46,19 +53,21 @@ public class ActuatorUtils {
 
         synchronized (ActuatorUtils.class) {
             if (PARALLEL_EXECUTOR_POOL == null) {
-                PARALLEL_EXECUTOR_POOL = new ThreadPoolExecutor(
-                        MAX_POOL_THREAD,
-                        MAX_POOL_THREAD,
-                        2000,
-                        TimeUnit.MILLISECONDS,
-                        new LinkedBlockingQueue<>(),
-                        new ThreadFactoryBuilder().build(),
-                        new ThreadPoolExecutor.AbortPolicy());
-                PARALLEL_EXECUTOR_POOL.allowCoreThreadTimeOut(true);
+                PARALLEL_EXECUTOR_POOL = new FairBatchExecutor("parallel-batch", MAX_POOL_THREAD, LANE_CAPACITY);
             }
         }
     }
 
+    /**
+     * 并发执行线程池指标: 队列深度、活跃线程、拒绝数等
+     *
+     * @return 指标名 -> 值
+     */
+    public static Map<String, Object> executorStats() {
+        initThreadPool();
+        return PARALLEL_EXECUTOR_POOL.stats();
+    }
+
 
     /**
      * 串行可失败处理器-范型限定
@@ -109,29 +118,110 @@ public class ActuatorUtils {
      * 多个任务执行，允许其中有任务失败。并返回失败记录的错误原因
      * 比如 修改10个订单的状态，其中有一个订单的状态不能被修改，
      * 则其他9个修改成功，并返回失败的这个的错误原因
+     * <p>
+     * 未指定公司, 单次调用独占一个队列; 默认并发度 {@link BatchExecuteOptions#DEFAULT_PARALLELISM} 及截止时长 10s.
+     * 已知公司时使用 {@link #parallelFailAllowBatchExecute(Collection, Consumer, Function, BatchExecuteOptions)} 参与公司间轮询
      */
     public static <E extends BatchId, T> BatchExecuteResult<T> parallelFailAllowBatchExecute(Collection<E> collection, Consumer<E> consumer, Function<E, T> keyGetter) {
+        return parallelFailAllowBatchExecute(collection, consumer, keyGetter, BatchExecuteOptions.defaults());
+    }
+
+    /**
+     * 并发批量处理器-范型限定
+     * <p>
+     * 同一公司的任务排队执行, 不同公司之间轮询调度; 截止时未开始的任务取消并记入未执行记录,
+     * 截止时仍在执行的任务记为失败, 返回后结果不再变化
+     *
+     * @param collection 集合
+     * @param consumer   消费方式
+     * @param keyGetter  主键获取
+     * @param options    公司、并发度、截止时长
+     * @return 执行结果
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends BatchId, T> BatchExecuteResult<T> parallelFailAllowBatchExecute(Collection<E> collection, Consumer<E> consumer, Function<E, T> keyGetter, BatchExecuteOptions options) {
         if (CollectionUtils.isEmpty(collection)) {
             return new BatchExecuteResult<>();
         }
-        BatchExecuteResult<T> result = new BatchExecuteResult<>(collection.size());
         //初始化线程池
         initThreadPool();
-        CountDownLatch latch = new CountDownLatch(collection.size());
-        collection.forEach(c -> PARALLEL_EXECUTOR_POOL.submit(() -> {
+        List<E> elements = collection instanceof List ? (List<E>) collection : new ArrayList<>(collection);
+        AtomicReferenceArray<BatchExecuteResult<T>> outcomes = new AtomicReferenceArray<>(elements.size());
+        boolean[] executed = PARALLEL_EXECUTOR_POOL.execute(elements.size(), i -> {
+            BatchExecuteResult<T> outcome = new BatchExecuteResult<>(1);
+            getConsumer(outcome, consumer, keyGetter).accept(elements.get(i));
+            outcomes.set(i, outcome);
+        }, options);
+
+        BatchExecuteResult<T> result = new BatchExecuteResult<>(elements.size());
+        for (int i = 0; i < elements.size(); i++) {
+            BatchExecuteResult<T> outcome = outcomes.get(i);
+            if (outcome != null) {
+                result.getSuccessList().addAll(outcome.getSuccessList());
+                result.getErrorList().addAll(outcome.getErrorList());
+                result.getSuccessCount().addAndGet(outcome.getSuccessCount().get());
+                result.getFailCount().addAndGet(outcome.getFailCount().get());
+                continue;
+            }
+            if (executed[i]) {
+                result.getErrorList().add(reason(elements.get(i), keyGetter, BatchExecuteResult.TIMEOUT_REASON));
+                result.getFailCount().incrementAndGet();
+            } else {
+                result.getUnexecutedList().add(reason(elements.get(i), keyGetter, BatchExecuteResult.UNEXECUTED_REASON));
+                result.getUnexecutedCount().incrementAndGet();
+            }
+        }
+        if (result.getUnexecutedCount().get() > 0) {
+            LOGGER.warn("并发批量处理截止, 总数:{}, 未执行:{}", elements.size(), result.getUnexecutedCount().get());
+        }
+        return result;
+    }
+
+    /**
+     * 并发批量处理器-紧凑结果
+     * <p>
+     * 与 {@link #parallelFailAllowBatchExecute(Collection, Consumer, Function, BatchExecuteOptions)} 调度方式相同,
+     * 结果只记录业务Id及归并后的失败原因, 适用于数万条的批量操作
+     *
+     * @param collection 集合
+     * @param consumer   消费方式
+     * @param options    公司、并发度、截止时长
+     * @return 执行结果
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends BatchId> CompactBatchExecuteResult parallelCompactBatchExecute(Collection<E> collection, Consumer<E> consumer, BatchExecuteOptions options) {
+        if (CollectionUtils.isEmpty(collection)) {
+            return CompactBatchExecuteResult.empty();
+        }
+        initThreadPool();
+        List<E> elements = collection instanceof List ? (List<E>) collection : new ArrayList<>(collection);
+        long[] ids = new long[elements.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Long id = elements.get(i).getId();
+            ids[i] = id == null ? 0L : id;
+        }
+        CompactBatchExecuteResult.Collector collector = new CompactBatchExecuteResult.Collector(ids);
+        boolean[] executed = PARALLEL_EXECUTOR_POOL.execute(elements.size(), i -> {
             try {
-                getConsumer(result, consumer, keyGetter).accept(c);
-            } finally {
-                latch.countDown();
+                consumer.accept(elements.get(i));
+                collector.success(i);
+            } catch (Exception e) {
+                collector.fail(i, e);
             }
-        }));
+        }, options);
+        return collector.build(executed);
+    }
+
+    private static <E extends BatchId, T> BatchExecuteResult.ReasonMap<T> reason(E c, Function<E, T> keyGetter, String reason) {
+        BatchExecuteResult.ReasonMap<T> map = new BatchExecuteResult.ReasonMap<>();
         try {
-            latch.await(10, TimeUnit.SECONDS);
-        } catch (Exception e) {
-            LOGGER.error("并发批量处理中断异常", e);
-            return result;
+            map.setId(c.getId());
+            map.setKey(keyGetter.apply(c));
+        } catch (Exception key) {
+            LOGGER.error("可失败任务键值key取值异常!", key);
         }
-        return result;
+        map.setReason(reason);
+        return map;
     }
 
     private static <E extends BatchId, T> Consumer<E> getConsumer(BatchExecuteResult<T> result, Consumer<E> consumer, Function<E, T> keyGetter) {
@@ -188,4 +278,33 @@ public class ActuatorUtils {
         }
         return Lists.partition(list, partitionSize).stream().flatMap(l -> function.apply(l).stream()).collect(Collectors.toList());
     }
+
+    /**
+     * 并发分批执行器
+     * 与 {@link #partitionExecute} 相同按 partitionSize 切分, 但各分区并发执行, 全部完成后按分区顺序合并结果
+     * 适用于纯计算或可合并的批量调用, 单个分区异常时整体抛出
+     *
+     * @param list          原集合
+     * @param partitionSize 分区大小
+     * @param function      执行的操作
+     * @param <E>           输入泛型
+     * @param <T>           输出泛型
+     * @return 结果集
+     */
+    public static <E, T> List<T> parallelPartitionExecute(List<E> list, int partitionSize, Function<List<E>, Collection<T>> function) {
+        if (CollectionUtils.isEmpty(list)) {
+            return Collections.emptyList();
+        }
+        if (partitionSize <= 0) {
+            partitionSize = DEFAULT_PARTITION_SIZE;
+        }
+        if (list.size() <= partitionSize) {
+            return Lists.newArrayList(function.apply(list));
+        }
+        initThreadPool();
+        List<CompletableFuture<Collection<T>>> futures = Lists.partition(list, partitionSize).stream()
+                .map(partition -> CompletableFuture.supplyAsync(() -> function.apply(partition), PARALLEL_EXECUTOR_POOL))
+                .collect(Collectors.toList());
+        return futures.stream().flatMap(future -> future.join().stream()).collect(Collectors.toList());
+    }
 }
@@ -1,8 +1,17 @@
 package com.harvest.core.utils;
 
+import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @Author: Alodi
@@ -19,8 +28,54 @@ public class DateUtils {
     public static final String MOUTH_FORMAT = "MM";
     public static final String YEAR_MOUTH_FORMAT = "yyyy-MM";
 
+    /**
+     * 非线程安全, 多线程格式化请使用 {@link #format(Date)} 或 {@link #DATE_TIME_FORMATTER}
+     */
+    @Deprecated
     public static final SimpleDateFormat FORMAT = new SimpleDateFormat(DATE_TIME_FORMAT);
 
+    /**
+     * 线程安全的时间格式
+     */
+    public static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern(DATE_TIME_FORMAT);
+
+    private static final Map<String, DateTimeFormatter> FORMATTERS = new ConcurrentHashMap<>();
+
+    /**
+     * 获取线程安全的格式化器, 按格式缓存
+     *
+     * @param format 格式
+     * @return DateTimeFormatter
+     */
+    public static DateTimeFormatter formatter(String format) {
+        DateTimeFormatter formatter = FORMATTERS.get(format);
+        return formatter != null ? formatter : FORMATTERS.computeIfAbsent(format, DateTimeFormatter::ofPattern);
+    }
+
+    /**
+     * 新建 yyyy-MM-dd HH:mm:ss 格式, 供需要 {@link DateFormat} 的组件持有
+     */
+    public static DateFormat newDateTimeFormat() {
+        return new SimpleDateFormat(DATE_TIME_FORMAT);
+    }
+
+    /**
+     * 按 yyyy-MM-dd HH:mm:ss 格式化
+     *
+     * @param date
+     * @return
+     */
+    public static String format(Date date) {
+        return format(date, DATE_TIME_FORMAT);
+    }
+
+    public static String format(Date date, String format) {
+        if (null == date) {
+            return null;
+        }
+        return formatter(format).format(date.toInstant().atZone(ZoneId.systemDefault()));
+    }
+
     /**
      * 日期天数 操作
      *
@@ -48,7 +103,14 @@ public class DateUtils {
      * @return
      */
     public static Date parse(String text, String format) {
-        return null;
+        if (null == text || text.isEmpty()) {
+            return null;
+        }
+        TemporalAccessor temporal = formatter(format).parse(text);
+        LocalDateTime dateTime = temporal.isSupported(ChronoField.HOUR_OF_DAY)
+                ? LocalDateTime.from(temporal)
+                : LocalDate.from(temporal).atStartOfDay();
+        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
     }
 
     public static Date removeTime(Date min) {
@@ -3,20 +3,25 @@ package com.harvest.core.utils;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.json.JsonReadFeature;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.fasterxml.jackson.databind.type.MapLikeType;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringEscapeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 使用Jackson处理json
@@ -27,31 +32,37 @@ public class JsonUtils {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JsonUtils.class);
 
-    private static final String OBJECT_JSON_START = "{";
-    private static final String OBJECT_JSON_END = "}";
+    private static final char OBJECT_JSON_START = '{';
+    private static final char OBJECT_JSON_END = '}';
 
-    private static final String ARRAY_JSON_START = "[";
-    private static final String ARRAY_JSON_END = "]";
+    private static final char ARRAY_JSON_START = '[';
+    private static final char ARRAY_JSON_END = ']';
 
-    public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    public static final ObjectMapper OBJECT_MAPPER = configure(new ObjectMapper());
 
-    static {
-        //序列化时候统一日期格式
-        OBJECT_MAPPER.setDateFormat(DateUtils.FORMAT);
+    /**
+     * 统一的映射配置, 供其他数据格式(如 Smile)的 ObjectMapper 复用, 保证与 json 读写行为一致
+     *
+     * @param mapper 待配置的 ObjectMapper
+     * @return mapper
+     */
+    public static ObjectMapper configure(ObjectMapper mapper) {
+        //序列化时候统一日期格式, ObjectMapper 内部按调用复制, 不与 DateUtils 共享实例
+        mapper.setDateFormat(DateUtils.newDateTimeFormat());
         //设置null时候不序列化(只针对对象属性)
-        OBJECT_MAPPER.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
         //反序列化时，属性不存在的兼容处理
-        OBJECT_MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         //单引号处理
-        OBJECT_MAPPER.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
+        mapper.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
         //允许出现特殊字符和转义符
-        OBJECT_MAPPER.configure(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS.mappedFeature(), true);
+        mapper.configure(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS.mappedFeature(), true);
         //设置任何字段可见
-        OBJECT_MAPPER.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
-        OBJECT_MAPPER.setVisibility(PropertyAccessor.GETTER, JsonAutoDetect.Visibility.ANY);
-        OBJECT_MAPPER.setVisibility(PropertyAccessor.IS_GETTER, JsonAutoDetect.Visibility.ANY);
-        OBJECT_MAPPER.registerModule(new JavaTimeModule());
-        OBJECT_MAPPER.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        mapper.setVisibility(PropertyAccessor.GETTER, JsonAutoDetect.Visibility.ANY);
+        mapper.setVisibility(PropertyAccessor.IS_GETTER, JsonAutoDetect.Visibility.ANY);
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
         SimpleModule module = new SimpleModule();
         module.addDeserializer(Date.class, new JsonDeserializer<Date>() {
             @Override
@@ -70,26 +81,67 @@ public class JsonUtils {
                 return null;
             }
         });
-        OBJECT_MAPPER.registerModule(module);
+        mapper.registerModule(module);
+        //字节码生成属性访问器, 替代反射
+        mapper.registerModule(new AfterburnerModule());
+        return mapper;
+    }
+
+    /**
+     * 按类型缓存的 reader/writer, 类型解析及根序列化器只构建一次
+     */
+    private static final Map<Type, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+    private static final Map<Class<?>, ObjectReader> LIST_READERS = new ConcurrentHashMap<>();
+
+    private static final Map<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
+    private static final ObjectReader MAP_READER = OBJECT_MAPPER.readerFor(
+            OBJECT_MAPPER.getTypeFactory().constructMapLikeType(HashMap.class, String.class, Object.class));
+
+    private static ObjectReader reader(Type type) {
+        ObjectReader reader = READERS.get(type);
+        return reader != null ? reader : READERS.computeIfAbsent(type, t -> OBJECT_MAPPER.readerFor(OBJECT_MAPPER.getTypeFactory().constructType(t)));
+    }
+
+    private static ObjectReader listReader(Class<?> clazz) {
+        ObjectReader reader = LIST_READERS.get(clazz);
+        return reader != null ? reader : LIST_READERS.computeIfAbsent(clazz, c -> OBJECT_MAPPER.readerFor(OBJECT_MAPPER.getTypeFactory().constructCollectionType(ArrayList.class, c)));
+    }
+
+    private static ObjectWriter writer(Object entity) {
+        if (entity == null) {
+            return OBJECT_MAPPER.writer();
+        }
+        Class<?> clazz = entity.getClass();
+        ObjectWriter writer = WRITERS.get(clazz);
+        return writer != null ? writer : WRITERS.computeIfAbsent(clazz, OBJECT_MAPPER::writerFor);
     }
 
     /**
-     * 简单判断字符串是否为json
+     * 简单判断字符串是否为json: 首尾非空白字符为成对的 {} 或 [], 不复制字符串
      *
      * @param str 输入字符串
      * @return 是否为json字符串
      */
     public static boolean isJson(String str) {
-        boolean result = false;
-        if (!StringUtils.isEmpty(str)) {
-            str = str.trim();
-            if (str.startsWith(OBJECT_JSON_START) && str.endsWith(OBJECT_JSON_END)) {
-                result = true;
-            } else if (str.startsWith(ARRAY_JSON_START) && str.endsWith(ARRAY_JSON_END)) {
-                result = true;
-            }
+        if (StringUtils.isEmpty(str)) {
+            return false;
         }
-        return result;
+        int start = 0;
+        int end = str.length() - 1;
+        while (start <= end && Character.isWhitespace(str.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(str.charAt(end))) {
+            end--;
+        }
+        if (start >= end) {
+            return false;
+        }
+        char first = str.charAt(start);
+        char last = str.charAt(end);
+        return (first == OBJECT_JSON_START && last == OBJECT_JSON_END) || (first == ARRAY_JSON_START && last == ARRAY_JSON_END);
     }
 
     /**
@@ -99,9 +151,8 @@ public class JsonUtils {
      * @return map
      */
     public static Map<String, Object> json2Map(String jsonStr) {
-        MapLikeType mapLikeType = OBJECT_MAPPER.getTypeFactory().constructMapLikeType(HashMap.class, String.class, Object.class);
         try {
-            return OBJECT_MAPPER.readValue(jsonStr, mapLikeType);
+            return MAP_READER.readValue(jsonStr);
         } catch (IOException e) {
             throw new RuntimeException("Json转换失败", e);
         }
@@ -116,20 +167,18 @@ public class JsonUtils {
      * @return 目标对象
      */
     public static <T> T json2Object(String json, Class<T> clazz) {
-        if (StringUtils.isEmpty(json)) {
-            return null;
-        }
         if (!isJson(json)) {
             return null;
         }
+        ObjectReader reader = reader(clazz);
         try {
             /*先尝试原文解析*/
-            return OBJECT_MAPPER.readValue(json, clazz);
+            return reader.readValue(json);
         } catch (IOException e) {
             try {
                 /*处理特殊字符后再解析*/
                 json = StringEscapeUtils.unescapeJava(json);
-                return OBJECT_MAPPER.readValue(json, clazz);
+                return reader.readValue(json);
             } catch (IOException exception) {
                 LOGGER.error("转换json出错，json内容: " + json);
                 throw new RuntimeException("Json转换失败！", exception);
@@ -137,6 +186,44 @@ public class JsonUtils {
         }
     }
 
+    /**
+     * 字节转对象, 用于 Redis、MQ 等字节通道, 不经过中间字符串
+     *
+     * @param json  utf-8 字节
+     * @param clazz 目标对象类型
+     * @param <T>   目标对象类型
+     * @return 目标对象
+     */
+    public static <T> T json2Object(byte[] json, Class<T> clazz) {
+        if (json == null || json.length == 0) {
+            return null;
+        }
+        try {
+            return reader(clazz).readValue(json);
+        } catch (IOException e) {
+            throw new RuntimeException("Json转换失败！", e);
+        }
+    }
+
+    /**
+     * 流转对象, 流由调用方关闭
+     *
+     * @param json  输入流
+     * @param clazz 目标对象类型
+     * @param <T>   目标对象类型
+     * @return 目标对象
+     */
+    public static <T> T json2Object(InputStream json, Class<T> clazz) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return reader(clazz).readValue(json);
+        } catch (IOException e) {
+            throw new RuntimeException("Json转换失败！", e);
+        }
+    }
+
     /**
      * json字符串转换对象集合
      *
@@ -150,8 +237,26 @@ public class JsonUtils {
             return null;
         }
         try {
-            JavaType javaType = OBJECT_MAPPER.getTypeFactory().constructCollectionType(ArrayList.class, clazz);
-            return OBJECT_MAPPER.readValue(json, javaType);
+            return listReader(clazz).readValue(json);
+        } catch (IOException e) {
+            throw new RuntimeException("Json转换失败！", e);
+        }
+    }
+
+    /**
+     * json字节转换对象集合
+     *
+     * @param json  utf-8 字节
+     * @param clazz 类型
+     * @param <T>   泛型
+     * @return 集合
+     */
+    public static <T> List<T> json2ObjectList(byte[] json, Class<T> clazz) {
+        if (json == null || json.length == 0) {
+            return null;
+        }
+        try {
+            return listReader(clazz).readValue(json);
         } catch (IOException e) {
             throw new RuntimeException("Json转换失败！", e);
         }
@@ -162,7 +267,7 @@ public class JsonUtils {
      */
     public static <T> T jsonToObj(String json, TypeReference<T> type) {
         try {
-            return OBJECT_MAPPER.readValue(json, type);
+            return reader(type.getType()).readValue(json);
         } catch (IOException e) {
             throw new RuntimeException("Json转换失败！", e);
         }
@@ -176,7 +281,35 @@ public class JsonUtils {
      */
     public static String object2Json(Object entity) {
         try {
-            return OBJECT_MAPPER.writeValueAsString(entity);
+            return writer(entity).writeValueAsString(entity);
+        } catch (IOException e) {
+            throw new RuntimeException("Json转换失败！", e);
+        }
+    }
+
+    /**
+     * 对象转json字节 utf-8
+     *
+     * @param entity 实例
+     * @return json字节
+     */
+    public static byte[] object2JsonBytes(Object entity) {
+        try {
+            return writer(entity).writeValueAsBytes(entity);
+        } catch (IOException e) {
+            throw new RuntimeException("Json转换失败！", e);
+        }
+    }
+
+    /**
+     * 对象写入输出流, 流由调用方关闭
+     *
+     * @param out    输出流
+     * @param entity 实例
+     */
+    public static void writeJson(OutputStream out, Object entity) {
+        try {
+            writer(entity).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, entity);
         } catch (IOException e) {
             throw new RuntimeException("Json转换失败！", e);
         }
@@ -0,0 +1,127 @@
+package com.harvest.core.repository.generator;
+
+import com.harvest.core.generator.IdGenerator;
+import com.harvest.core.generator.WorkerIdAssigner;
+import jodd.util.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/10 11:30 AM
+ * @Description: 基于数据库租约分配 Id 生成器节点号, 仓储服务无 Redis 时使用
+ * <p>
+ * 与 RedisWorkerIdAssigner 相同: 启动时抢占空闲或已过期的节点号并定时续约, 续约时记录已发放到的秒数;
+ * 租约以数据库时间判断过期, 本地到期时间按发起抢占/续约的时刻计算, 续约失败时生成器在到期后即停止使用该节点号;
+ * 租约表随 db/migration 脚本创建, 启动时不存在则直接失败
+ **/
+@Component
+public class JdbcWorkerIdAssigner implements WorkerIdAssigner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JdbcWorkerIdAssigner.class);
+
+    private static final long LEASE_SECONDS = 60L;
+
+    private static final long RENEW_SECONDS = 20L;
+
+    private static final String TABLE_EXISTS_SQL = "SELECT COUNT(*) FROM information_schema.TABLES " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'harvest_id_worker'";
+
+    private static final String INSERT_SQL = "INSERT IGNORE INTO harvest_id_worker (worker_id, token, lease_until, last_second) " +
+            "VALUES (?, ?, NOW(3) + INTERVAL ? SECOND, 0)";
+
+    private static final String TAKE_OVER_SQL = "UPDATE harvest_id_worker SET token = ?, lease_until = NOW(3) + INTERVAL ? SECOND " +
+            "WHERE worker_id = ? AND lease_until < NOW(3)";
+
+    private static final String RENEW_SQL = "UPDATE harvest_id_worker SET lease_until = NOW(3) + INTERVAL ? SECOND, last_second = ? " +
+            "WHERE worker_id = ? AND token = ? AND lease_until >= NOW(3)";
+
+    private static final String RELEASE_SQL = "UPDATE harvest_id_worker SET lease_until = NOW(3), last_second = ? " +
+            "WHERE worker_id = ? AND token = ?";
+
+    private static final String LAST_SECOND_SQL = "SELECT last_second FROM harvest_id_worker WHERE worker_id = ?";
+
+    private final String token = UUID.randomUUID().toString();
+
+    private final ScheduledExecutorService renewExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().withNameFormat("harvest-id-worker-renew").withDaemon(true).get()
+    );
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile int workerId = -1;
+
+    private volatile long leaseExpireAt;
+
+    @PostConstruct
+    public void init() {
+        Integer tables = jdbcTemplate.queryForObject(TABLE_EXISTS_SQL, Integer.class);
+        if (tables == null || tables <= 0) {
+            throw new IllegalStateException("Id 生成器节点号租约表 harvest_id_worker 不存在, 请先执行 db/migration/V202304101130__create_harvest_id_worker.sql");
+        }
+        IdGenerator.bindWorkerIdAssigner(this);
+        renewExecutor.scheduleWithFixedDelay(this::renew, RENEW_SECONDS, RENEW_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        renewExecutor.shutdownNow();
+        if (workerId >= 0) {
+            jdbcTemplate.update(RELEASE_SQL, IdGenerator.currentSecond(), workerId, token);
+        }
+    }
+
+    @Override
+    public int acquire() {
+        for (int id = 0; id <= IdGenerator.MAX_WORKER_ID; id++) {
+            long start = System.currentTimeMillis();
+            if (jdbcTemplate.update(INSERT_SQL, id, token, LEASE_SECONDS) > 0
+                    || jdbcTemplate.update(TAKE_OVER_SQL, token, LEASE_SECONDS, id) > 0) {
+                this.workerId = id;
+                this.leaseExpireAt = start + TimeUnit.SECONDS.toMillis(LEASE_SECONDS);
+                return id;
+            }
+        }
+        throw new IllegalStateException("Id 生成器节点号已用尽, 节点数超过 " + (IdGenerator.MAX_WORKER_ID + 1));
+    }
+
+    @Override
+    public long lastSecond(int workerId) {
+        List<Long> seconds = jdbcTemplate.queryForList(LAST_SECOND_SQL, Long.class, workerId);
+        return seconds.isEmpty() || seconds.get(0) == null ? 0L : seconds.get(0);
+    }
+
+    @Override
+    public long leaseExpireAt() {
+        return leaseExpireAt;
+    }
+
+    private void renew() {
+        try {
+            int current = workerId;
+            long start = System.currentTimeMillis();
+            if (jdbcTemplate.update(RENEW_SQL, LEASE_SECONDS, IdGenerator.currentSecond(), current, token) > 0) {
+                this.leaseExpireAt = start + TimeUnit.SECONDS.toMillis(LEASE_SECONDS);
+                return;
+            }
+            LOGGER.warn("JdbcWorkerIdAssigner#节点号租约丢失, workerId:{}, 重新分配", current);
+            this.leaseExpireAt = 0L;
+            IdGenerator.bindWorkerIdAssigner(this);
+        } catch (Exception e) {
+            LOGGER.error("JdbcWorkerIdAssigner#节点号续约异常", e);
+        }
+    }
+
+}
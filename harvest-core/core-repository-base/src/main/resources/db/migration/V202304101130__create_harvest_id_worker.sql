@@ -0,0 +1,8 @@
+-- Id 生成器节点号租约: 各仓储库均需创建, JdbcWorkerIdAssigner 启动时校验
+CREATE TABLE IF NOT EXISTS `harvest_id_worker` (
+  `worker_id`   int         NOT NULL COMMENT '节点号',
+  `token`       varchar(64) NOT NULL COMMENT '持有者',
+  `lease_until` datetime(3) NOT NULL COMMENT '租约到期时间',
+  `last_second` bigint      NOT NULL DEFAULT 0 COMMENT '已发放到的秒数',
+  PRIMARY KEY (`worker_id`)
+) ENGINE = InnoDB COMMENT = 'Id生成器节点号租约';
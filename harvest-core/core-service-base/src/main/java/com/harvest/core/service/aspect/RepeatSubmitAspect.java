@@ -40,11 +40,11 @@ public class RepeatSubmitAspect {
         int seconds = repeatSubmit.seconds();
         String methodName = method.getName();
         String realKey = methodName + "-" + ContextHolder.getContext().getCompanyId() + "-" + ContextHolder.getContext().getUserId();
-        boolean exists = cacheService.exists(RepeatKeyPrefix.INTERVAL_REPEAT, realKey);
-        if (exists) {
+        /*不存在时写入, 一次往返且原子, 并发提交只有一个能通过*/
+        boolean absent = cacheService.setNx(RepeatKeyPrefix.INTERVAL_REPEAT, realKey, String.valueOf(System.currentTimeMillis()), seconds);
+        if (!absent) {
             throw new StandardRuntimeException(ExceptionCodes.BASE_MODULE_ERROR, StringUtils.isNotEmpty(repeatSubmit.remind()) ? repeatSubmit.remind() : "请稍后重试～");
         }
-        cacheService.set(RepeatKeyPrefix.INTERVAL_REPEAT, realKey, System.currentTimeMillis(), seconds);
         return joinPoint.proceed();
     }
 
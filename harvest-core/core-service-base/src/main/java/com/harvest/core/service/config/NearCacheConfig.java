@@ -0,0 +1,31 @@
+package com.harvest.core.service.config;
+
+import com.harvest.core.service.redis.near.NearCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/13 10:40 AM
+ * @Description: 近端缓存失效广播订阅
+ **/
+@Configuration
+public class NearCacheConfig {
+
+    @Bean
+    public RedisMessageListenerContainer nearCacheListenerContainer(RedisConnectionFactory redisConnectionFactory, NearCache nearCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> nearCache.onInvalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(NearCache.INVALIDATE_CHANNEL)
+        );
+        return container;
+    }
+
+}
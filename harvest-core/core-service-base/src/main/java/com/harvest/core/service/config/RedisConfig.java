@@ -1,10 +1,13 @@
 package com.harvest.core.service.config;
 
+import com.harvest.core.service.redis.codec.CodecFormat;
+import com.harvest.core.service.redis.codec.CodecRedisSerializer;
+import com.harvest.core.service.redis.codec.RedisValueCodec;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 
 /**
@@ -15,21 +18,44 @@ import org.springframework.data.redis.serializer.RedisSerializer;
 @Configuration
 public class RedisConfig {
 
+    /**
+     * 缓存值编码
+     * <p>
+     * 灰度: 先以 legacy-write=true 全量发布(只读新格式, 仍写旧版 json), 再关闭 legacy-write
+     */
+    @Bean
+    public RedisValueCodec redisValueCodec(@Value("${harvest.redis.codec.format:SMILE}") CodecFormat format,
+                                           @Value("${harvest.redis.codec.legacy-write:false}") boolean legacyWrite,
+                                           @Value("${harvest.redis.codec.compress-threshold:" + RedisValueCodec.DEFAULT_COMPRESS_THRESHOLD + "}") int compressThreshold) {
+        return new RedisValueCodec(format, legacyWrite, compressThreshold);
+    }
 
     @Bean(name = "redisTemplate")
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory, RedisValueCodec redisValueCodec) {
         // 对象操作模版配置序列化方式
-        RedisTemplate<String, Object> redisTemplate = new RedisTemplate();
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
         redisTemplate.setConnectionFactory(redisConnectionFactory);
-        GenericJackson2JsonRedisSerializer jackson2JsonRedisSerializer = new GenericJackson2JsonRedisSerializer();
+        CodecRedisSerializer codecRedisSerializer = new CodecRedisSerializer(redisValueCodec);
         redisTemplate.setKeySerializer(RedisSerializer.string());
         redisTemplate.setHashKeySerializer(RedisSerializer.string());
-        redisTemplate.setValueSerializer(RedisSerializer.json());
-        redisTemplate.setHashValueSerializer(RedisSerializer.json());
+        redisTemplate.setValueSerializer(codecRedisSerializer);
+        redisTemplate.setHashValueSerializer(codecRedisSerializer);
 
-        redisTemplate.setValueSerializer(jackson2JsonRedisSerializer);
-        redisTemplate.setHashValueSerializer(jackson2JsonRedisSerializer);
+        redisTemplate.afterPropertiesSet();
+        return redisTemplate;
+    }
 
+    /**
+     * 字节值模版, 供 CacheService 按 {@link RedisValueCodec} 自行编解码
+     */
+    @Bean(name = "binaryRedisTemplate")
+    public RedisTemplate<String, byte[]> binaryRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
+        RedisTemplate<String, byte[]> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(redisConnectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setHashKeySerializer(RedisSerializer.string());
+        redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        redisTemplate.setHashValueSerializer(RedisSerializer.byteArray());
         redisTemplate.afterPropertiesSet();
         return redisTemplate;
     }
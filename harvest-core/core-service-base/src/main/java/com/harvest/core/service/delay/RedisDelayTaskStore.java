@@ -0,0 +1,143 @@
+package com.harvest.core.service.delay;
+
+import com.harvest.core.delay.DelayTask;
+import com.harvest.core.delay.DelayTaskExecutor;
+import com.harvest.core.delay.DelayTaskHandler;
+import com.harvest.core.delay.DelayTaskStore;
+import com.harvest.core.utils.JsonUtils;
+import org.apache.commons.collections4.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/6 2:20 PM
+ * @Description: 基于 Redis 的延迟任务存储
+ * <p>
+ * zset 按计划执行时间排序任务Id, hash 保存任务内容; 领取时将分值改为租约到期时间, 执行期间续约只更新仍在队列中的任务,
+ * 任务执行完成删除, 节点宕机则租约到期后重新可被领取
+ * <p>
+ * 注册了 {@link DelayTaskHandler} 时绑定并领取任务; 无处理器时需配置 harvest.delay-task.store.enabled=true 才绑定,
+ * 且只写入不领取. 均不满足时不绑定, 不轮询 Redis
+ **/
+@Component
+public class RedisDelayTaskStore implements DelayTaskStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisDelayTaskStore.class);
+
+    private static final String QUEUE_KEY = "DelayTask:queue";
+
+    private static final String TASK_KEY = "DelayTask:task";
+
+    private static final DefaultRedisScript<Long> SAVE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('hset', KEYS[2], ARGV[1], ARGV[3]);" +
+                    "redis.call('zadd', KEYS[1], ARGV[2], ARGV[1]);" +
+                    "return 1;", Long.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local ids = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]));" +
+                    "local tasks = {};" +
+                    "for _, id in ipairs(ids) do " +
+                    "    local task = redis.call('hget', KEYS[2], id);" +
+                    "    if task then " +
+                    "        redis.call('zadd', KEYS[1], ARGV[3], id);" +
+                    "        table.insert(tasks, task);" +
+                    "    else " +
+                    "        redis.call('zrem', KEYS[1], id);" +
+                    "    end " +
+                    "end " +
+                    "return tasks;", List.class);
+
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "for i = 2, #ARGV do " +
+                    "    redis.call('zadd', KEYS[1], 'XX', ARGV[1], ARGV[i]);" +
+                    "end " +
+                    "return 1;", Long.class);
+
+    private static final DefaultRedisScript<Long> REMOVE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('zrem', KEYS[1], ARGV[1]);" +
+                    "return redis.call('hdel', KEYS[2], ARGV[1]);", Long.class);
+
+    private static final List<String> KEYS = Arrays.asList(QUEUE_KEY, TASK_KEY);
+
+    @Autowired
+    @Qualifier(value = "stringRedisTemplate")
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired(required = false)
+    private List<DelayTaskHandler> handlers;
+
+    @Value("${harvest.delay-task.store.enabled:false}")
+    private boolean enabled;
+
+    @PostConstruct
+    public void init() {
+        boolean claimable = CollectionUtils.isNotEmpty(handlers);
+        if (!claimable && !enabled) {
+            LOGGER.info("RedisDelayTaskStore#未注册延迟任务处理器且未开启持久化存储, 不绑定");
+            return;
+        }
+        DelayTaskExecutor executor = DelayTaskExecutor.getInstance();
+        if (claimable) {
+            handlers.forEach(executor::registerHandler);
+        }
+        executor.bindStore(this, claimable);
+    }
+
+    @Override
+    public void save(DelayTask task) {
+        stringRedisTemplate.execute(SAVE_SCRIPT, KEYS,
+                task.getTaskId(), String.valueOf(task.executeAt()), JsonUtils.object2Json(task));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<DelayTask> claim(long dueBefore, int limit, long leaseMillis) {
+        List<String> tasks = stringRedisTemplate.execute(CLAIM_SCRIPT, KEYS,
+                String.valueOf(dueBefore), String.valueOf(limit), String.valueOf(System.currentTimeMillis() + leaseMillis));
+        if (CollectionUtils.isEmpty(tasks)) {
+            return Collections.emptyList();
+        }
+        List<DelayTask> result = new ArrayList<>(tasks.size());
+        for (String task : tasks) {
+            DelayTask delayTask = JsonUtils.json2Object(task, DelayTask.class);
+            if (Objects.nonNull(delayTask)) {
+                result.add(delayTask);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void renew(Collection<String> taskIds, long leaseMillis) {
+        if (CollectionUtils.isEmpty(taskIds)) {
+            return;
+        }
+        List<String> args = new ArrayList<>(taskIds.size() + 1);
+        args.add(String.valueOf(System.currentTimeMillis() + leaseMillis));
+        args.addAll(taskIds);
+        stringRedisTemplate.execute(RENEW_SCRIPT, KEYS, args.toArray());
+    }
+
+    @Override
+    public void remove(String taskId) {
+        stringRedisTemplate.execute(REMOVE_SCRIPT, KEYS, taskId);
+    }
+
+    @Override
+    public long size() {
+        Long size = stringRedisTemplate.opsForZSet().zCard(QUEUE_KEY);
+        return size == null ? 0L : size;
+    }
+
+}
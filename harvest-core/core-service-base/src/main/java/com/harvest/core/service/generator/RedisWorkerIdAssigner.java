@@ -0,0 +1,131 @@
+package com.harvest.core.service.generator;
+
+import com.harvest.core.generator.IdGenerator;
+import com.harvest.core.generator.WorkerIdAssigner;
+import jodd.util.ThreadFactoryBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/10 11:00 AM
+ * @Description: 基于 Redis 租约分配 Id 生成器节点号
+ * <p>
+ * 启动时抢占空闲节点号并定时续约, 续约时记录已发放到的秒数; 租约丢失后重新抢占.
+ * 本地租约到期时间按发起抢占/续约的时刻计算, 不晚于 Redis 中租约过期, 续约失败时生成器在到期后即停止使用该节点号
+ **/
+@Component
+public class RedisWorkerIdAssigner implements WorkerIdAssigner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisWorkerIdAssigner.class);
+
+    private static final String LEASE_KEY = "IdWorker:lease:";
+
+    private static final String CLOCK_KEY = "IdWorker:clock:";
+
+    private static final long LEASE_SECONDS = 60L;
+
+    private static final long RENEW_SECONDS = 20L;
+
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "    redis.call('expire', KEYS[1], tonumber(ARGV[2]));" +
+                    "    redis.call('set', KEYS[2], ARGV[3]);" +
+                    "    return 1;" +
+                    "end " +
+                    "return 0;", Long.class);
+
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "    redis.call('set', KEYS[2], ARGV[2]);" +
+                    "    return redis.call('del', KEYS[1]);" +
+                    "end " +
+                    "return 0;", Long.class);
+
+    private final String token = UUID.randomUUID().toString();
+
+    private final ScheduledExecutorService renewExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().withNameFormat("harvest-id-worker-renew").withDaemon(true).get()
+    );
+
+    @Autowired
+    @Qualifier(value = "stringRedisTemplate")
+    private StringRedisTemplate stringRedisTemplate;
+
+    private volatile int workerId = -1;
+
+    private volatile long leaseExpireAt;
+
+    @PostConstruct
+    public void init() {
+        IdGenerator.bindWorkerIdAssigner(this);
+        renewExecutor.scheduleWithFixedDelay(this::renew, RENEW_SECONDS, RENEW_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        renewExecutor.shutdownNow();
+        if (workerId >= 0) {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Arrays.asList(LEASE_KEY + workerId, CLOCK_KEY + workerId),
+                    token, String.valueOf(IdGenerator.currentSecond()));
+        }
+    }
+
+    @Override
+    public int acquire() {
+        for (int id = 0; id <= IdGenerator.MAX_WORKER_ID; id++) {
+            long start = System.currentTimeMillis();
+            Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(LEASE_KEY + id, token, LEASE_SECONDS, TimeUnit.SECONDS);
+            if (Boolean.TRUE.equals(acquired)) {
+                this.workerId = id;
+                this.leaseExpireAt = start + TimeUnit.SECONDS.toMillis(LEASE_SECONDS);
+                return id;
+            }
+        }
+        throw new IllegalStateException("Id 生成器节点号已用尽, 节点数超过 " + (IdGenerator.MAX_WORKER_ID + 1));
+    }
+
+    @Override
+    public long lastSecond(int workerId) {
+        String second = stringRedisTemplate.opsForValue().get(CLOCK_KEY + workerId);
+        return StringUtils.isNumeric(second) ? Long.parseLong(second) : 0L;
+    }
+
+    @Override
+    public long leaseExpireAt() {
+        return leaseExpireAt;
+    }
+
+    private void renew() {
+        try {
+            int current = workerId;
+            long start = System.currentTimeMillis();
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, Arrays.asList(LEASE_KEY + current, CLOCK_KEY + current),
+                    token, String.valueOf(LEASE_SECONDS), String.valueOf(IdGenerator.currentSecond()));
+            if (Long.valueOf(1L).equals(renewed)) {
+                this.leaseExpireAt = start + TimeUnit.SECONDS.toMillis(LEASE_SECONDS);
+                return;
+            }
+            LOGGER.warn("RedisWorkerIdAssigner#节点号租约丢失, workerId:{}, 重新分配", current);
+            this.leaseExpireAt = 0L;
+            IdGenerator.bindWorkerIdAssigner(this);
+        } catch (Exception e) {
+            LOGGER.error("RedisWorkerIdAssigner#节点号续约异常", e);
+        }
+    }
+
+}
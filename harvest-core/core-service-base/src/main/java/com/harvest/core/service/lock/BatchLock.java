@@ -0,0 +1,40 @@
+package com.harvest.core.service.lock;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/15 10:10 AM
+ * @Description: 批量锁持有凭证, 部分成功: 已加锁的 key 与被占用的 key 分别返回
+ **/
+@Data
+public class BatchLock {
+
+    /**
+     * 锁前缀
+     */
+    private String keyLock;
+
+    /**
+     * 持有者标识, 与 Redisson 锁的 hash field 同构
+     */
+    private String owner;
+
+    /**
+     * 已加锁 key
+     */
+    private List<String> locked = new ArrayList<>();
+
+    /**
+     * 被占用 key
+     */
+    private List<String> busy = new ArrayList<>();
+
+    public boolean isAllLocked() {
+        return busy.isEmpty();
+    }
+
+}
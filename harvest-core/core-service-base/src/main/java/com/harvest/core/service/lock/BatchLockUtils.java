@@ -0,0 +1,213 @@
+package com.harvest.core.service.lock;
+
+import com.harvest.core.context.SpringHelper;
+import com.harvest.core.exception.ExceptionCodes;
+import com.harvest.core.exception.StandardRuntimeException;
+import com.harvest.core.service.redis.prefix.BaseKeyPrefix;
+import org.apache.commons.collections4.CollectionUtils;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/15 10:20 AM
+ * @Description: 批量分布式锁
+ * <p>
+ * 一次 Lua 调用为一组 key 加锁, 返回已加锁及被占用的 key; 锁结构与 Redisson RLock 相同(hash: owner -> 1),
+ * 与 {@link DistributedLockUtils} 的单 key 锁互斥, 释放时发布 Redisson 解锁消息唤醒等待方.
+ * 本进程已持有的 key 直接判为占用, 不访问 Redis. 单机 Redis 部署, 集群模式下 key 需在同一 slot
+ **/
+public class BatchLockUtils {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchLockUtils.class);
+
+    /**
+     * 最大持有锁时间 毫秒, 与 RedissonLockUtils 一致
+     */
+    public static final long MAX_HOLD_LOCK_MILLIS = 10 * 60 * 1000L;
+
+    /**
+     * 单次脚本最多 key 数
+     */
+    private static final int MAX_KEYS_PER_SCRIPT = 1000;
+
+    /**
+     * 占用重试间隔 毫秒
+     */
+    private static final long RETRY_INTERVAL_MILLIS = 100L;
+
+    private static final String UNLOCK_CHANNEL_PREFIX = "redisson_lock__channel:{";
+
+    /**
+     * 返回加锁成功的 key 下标(从 1 开始)
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> LOCK_SCRIPT = new DefaultRedisScript<>(
+            "local locked = {};" +
+                    "for i, key in ipairs(KEYS) do " +
+                    "    if redis.call('exists', key) == 0 then " +
+                    "        redis.call('hset', key, ARGV[1], 1);" +
+                    "        redis.call('pexpire', key, ARGV[2]);" +
+                    "        table.insert(locked, i);" +
+                    "    end " +
+                    "end " +
+                    "return locked;", List.class);
+
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "local released = 0;" +
+                    "for _, key in ipairs(KEYS) do " +
+                    "    if redis.call('hexists', key, ARGV[1]) == 1 then " +
+                    "        redis.call('del', key);" +
+                    "        redis.call('publish', ARGV[2] .. key .. '}', 0);" +
+                    "        released = released + 1;" +
+                    "    end " +
+                    "end " +
+                    "return released;", Long.class);
+
+    /**
+     * 本进程批量锁持有表 真实 key -> owner
+     */
+    private static final Map<String, String> LOCAL_HOLDERS = new ConcurrentHashMap<>();
+
+    /**
+     * 批量加锁, 不等待
+     *
+     * @param keyPrefix 锁前缀
+     * @param lockKeys  业务 key
+     * @return 加锁结果
+     */
+    public static <T extends BaseKeyPrefix> BatchLock tryLock(T keyPrefix, Collection<String> lockKeys) {
+        return tryLock(keyPrefix, lockKeys, 0L, MAX_HOLD_LOCK_MILLIS);
+    }
+
+    /**
+     * 批量加锁, 被占用的 key 在等待时长内重试
+     *
+     * @param keyPrefix   锁前缀
+     * @param lockKeys    业务 key
+     * @param waitMillis  最长等待 毫秒
+     * @param leaseMillis 持有时长 毫秒, 到期自动释放
+     * @return 加锁结果, 调用方须在 finally 中 {@link #unlock(BatchLock)}
+     */
+    public static <T extends BaseKeyPrefix> BatchLock tryLock(T keyPrefix, Collection<String> lockKeys, long waitMillis, long leaseMillis) {
+        if (Objects.isNull(keyPrefix) || CollectionUtils.isEmpty(lockKeys)) {
+            throw new StandardRuntimeException(ExceptionCodes.CORE_MODULE_ERROR, "分布式锁键值不能为空!");
+        }
+        BatchLock lock = new BatchLock();
+        lock.setKeyLock(keyPrefix.getKeyLock());
+        lock.setOwner(SpringHelper.getBean(RedissonClient.class).getId() + ":batch:" + UUID.randomUUID());
+        long deadline = System.currentTimeMillis() + Math.max(waitMillis, 0L);
+        List<String> pending = new ArrayList<>(new LinkedHashSet<>(lockKeys));
+        while (true) {
+            pending = acquire(lock, pending, leaseMillis);
+            if (pending.isEmpty() || System.currentTimeMillis() + RETRY_INTERVAL_MILLIS > deadline) {
+                break;
+            }
+            try {
+                Thread.sleep(RETRY_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        lock.setBusy(pending);
+        return lock;
+    }
+
+    /**
+     * 释放全部已加锁 key
+     */
+    public static void unlock(BatchLock lock) {
+        if (lock != null) {
+            unlock(lock, lock.getLocked());
+        }
+    }
+
+    /**
+     * 释放部分 key, 一次 Lua 调用
+     *
+     * @param lock     加锁结果
+     * @param lockKeys 业务 key
+     */
+    public static void unlock(BatchLock lock, Collection<String> lockKeys) {
+        if (lock == null || CollectionUtils.isEmpty(lockKeys)) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(lockKeys);
+        StringRedisTemplate redisTemplate = SpringHelper.getBean(StringRedisTemplate.class);
+        for (int from = 0; from < keys.size(); from += MAX_KEYS_PER_SCRIPT) {
+            List<String> realKeys = realKeys(lock, keys.subList(from, Math.min(from + MAX_KEYS_PER_SCRIPT, keys.size())));
+            try {
+                redisTemplate.execute(UNLOCK_SCRIPT, realKeys, lock.getOwner(), UNLOCK_CHANNEL_PREFIX);
+            } catch (Exception e) {
+                /*释放失败由租约到期兜底*/
+                LOGGER.error("批量释放分布式锁失败, 前缀:{}, 数量:{}", lock.getKeyLock(), realKeys.size(), e);
+            }
+            realKeys.forEach(realKey -> LOCAL_HOLDERS.remove(realKey, lock.getOwner()));
+        }
+        if (lockKeys == lock.getLocked()) {
+            lock.setLocked(new ArrayList<>());
+        } else {
+            lock.getLocked().removeAll(new HashSet<>(keys));
+        }
+    }
+
+    /**
+     * 单轮加锁
+     *
+     * @return 仍被占用的 key
+     */
+    @SuppressWarnings("unchecked")
+    private static List<String> acquire(BatchLock lock, List<String> lockKeys, long leaseMillis) {
+        List<String> busy = new ArrayList<>();
+        List<String> candidates = new ArrayList<>(lockKeys.size());
+        for (String lockKey : lockKeys) {
+            /*本进程已持有, 不访问 Redis*/
+            if (LOCAL_HOLDERS.putIfAbsent(lock.getKeyLock() + lockKey, lock.getOwner()) != null) {
+                busy.add(lockKey);
+            } else {
+                candidates.add(lockKey);
+            }
+        }
+        StringRedisTemplate redisTemplate = SpringHelper.getBean(StringRedisTemplate.class);
+        for (int from = 0; from < candidates.size(); from += MAX_KEYS_PER_SCRIPT) {
+            List<String> part = candidates.subList(from, Math.min(from + MAX_KEYS_PER_SCRIPT, candidates.size()));
+            List<String> realKeys = realKeys(lock, part);
+            List<Long> indexes;
+            try {
+                indexes = redisTemplate.execute(LOCK_SCRIPT, realKeys, lock.getOwner(), String.valueOf(leaseMillis));
+            } catch (Exception e) {
+                LOGGER.error("批量获取分布式锁失败, 前缀:{}, 数量:{}", lock.getKeyLock(), realKeys.size(), e);
+                indexes = Collections.emptyList();
+            }
+            boolean[] acquired = new boolean[part.size()];
+            if (indexes != null) {
+                indexes.forEach(index -> acquired[index.intValue() - 1] = true);
+            }
+            for (int i = 0; i < part.size(); i++) {
+                if (acquired[i]) {
+                    lock.getLocked().add(part.get(i));
+                } else {
+                    LOCAL_HOLDERS.remove(realKeys.get(i), lock.getOwner());
+                    busy.add(part.get(i));
+                }
+            }
+        }
+        return busy;
+    }
+
+    private static List<String> realKeys(BatchLock lock, List<String> lockKeys) {
+        List<String> realKeys = new ArrayList<>(lockKeys.size());
+        for (String lockKey : lockKeys) {
+            realKeys.add(lock.getKeyLock() + lockKey);
+        }
+        return realKeys;
+    }
+
+}
@@ -1,10 +1,17 @@
 package com.harvest.core.service.mq;
 
+import org.apache.rocketmq.client.producer.SendCallback;
 import org.apache.rocketmq.client.producer.SendResult;
 import org.apache.rocketmq.spring.core.RocketMQTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * @Author: Alodi
  * @Date: 2023/2/8 10:37 PM
@@ -13,11 +20,27 @@ import org.springframework.stereotype.Component;
 @Component
 public class ProducerMessageService {
 
+    private static final long SEND_TIMEOUT_MILLIS = 10000L;
+
     @Autowired(required = false)
     public RocketMQTemplate rocketMQTemplate;
 
     public SendResult syncSend(String destination, Object payload) {
-        return rocketMQTemplate.syncSend(destination, payload, 10000);
+        return rocketMQTemplate.syncSend(destination, payload, SEND_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * 批量异步发送, 一批一次网络请求, 消费端仍按单条消息消费
+     * <p>
+     * 同一批次只能是同一主题, 总大小不超过 4M, 大消息由调用方控制批次条数
+     *
+     * @param destination 主题
+     * @param payloads    消息体
+     * @param callback    发送结果回调, 在生产者回调线程执行, 不应阻塞
+     */
+    public <T> void asyncSendBatch(String destination, Collection<T> payloads, SendCallback callback) {
+        List<Message<T>> messages = payloads.stream().map(payload -> MessageBuilder.withPayload(payload).build()).collect(Collectors.toList());
+        rocketMQTemplate.asyncSend(destination, messages, callback, SEND_TIMEOUT_MILLIS);
     }
 
 }
@@ -0,0 +1,207 @@
+package com.harvest.core.service.mq.consume;
+
+import com.harvest.core.monitor.metrics.MetricsRegistry;
+import com.harvest.core.utils.JsonUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerOrderly;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.spring.core.RocketMQListener;
+import org.apache.rocketmq.spring.core.RocketMQPushConsumerLifecycleListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.ClassUtils;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/27 10:30 AM
+ * @Description: 批量幂等消息消费
+ * <p>
+ * 启动时替换 rocketmq-spring 的逐条监听, 一次取出至多 {@link #batchMaxSize()} 条消息交给 {@link #consume(List)}.
+ * 幂等键为 消息键(无则消息Id) + {@link #bizId}, 批内重复及已消费的消息直接确认, 其他消费者消费中的消息稍后重试.
+ * 并发消费时确认到第一条失败的消息之前, 之后的消息由 broker 重投, 其中已成功的经幂等键跳过; 顺序消费时整批挂起重试.
+ * 无法解析的消息记录日志后确认, 不进入重试.
+ * 投递延迟(产生到消费)记入 MessageConsumer.lag.{消费组}, 批次耗时及异常记入 MessageConsumer.{消费组},
+ * 逐条结果记入 MessageConsumer.message.{消费组}, 跳过的重复消息记入 MessageConsumer.duplicate.{消费组}
+ **/
+public abstract class AbstractBatchMessageListener<T> implements RocketMQListener<MessageExt>, RocketMQPushConsumerLifecycleListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractBatchMessageListener.class);
+
+    private static final String METRICS_PREFIX = "MessageConsumer.";
+
+    @Value("${harvest.mq.consume.batch-max-size:32}")
+    private int batchMaxSize;
+
+    @Autowired
+    private MessageIdempotentStore messageIdempotentStore;
+
+    private String group = ClassUtils.getUserClass(this).getSimpleName();
+
+    /**
+     * 消息体类型
+     *
+     * @return
+     */
+    protected abstract Class<T> payloadType();
+
+    /**
+     * 业务Id, 与消息键组成幂等键
+     *
+     * @param payload 消息体
+     * @return
+     */
+    protected abstract String bizId(T payload);
+
+    /**
+     * 批量处理, 失败的消息调用 {@link ConsumeRecord#fail(Throwable)}, 抛出异常时整批失败
+     *
+     * @param records 去重后的消息
+     */
+    protected abstract void consume(List<ConsumeRecord<T>> records);
+
+    /**
+     * 单批最大消息数
+     *
+     * @return
+     */
+    protected int batchMaxSize() {
+        return batchMaxSize;
+    }
+
+    @Override
+    public void prepareStart(DefaultMQPushConsumer consumer) {
+        group = consumer.getConsumerGroup();
+        int size = Math.max(1, this.batchMaxSize());
+        consumer.setConsumeMessageBatchMaxSize(size);
+        consumer.setPullBatchSize(Math.max(consumer.getPullBatchSize(), size));
+        if (consumer.getMessageListener() instanceof MessageListenerOrderly) {
+            consumer.setMessageListener((MessageListenerOrderly) (messages, context) ->
+                    this.process(messages) == messages.size() ? ConsumeOrderlyStatus.SUCCESS : ConsumeOrderlyStatus.SUSPEND_CURRENT_QUEUE_A_MOMENT);
+            return;
+        }
+        consumer.setMessageListener((MessageListenerConcurrently) (messages, context) -> {
+            int failed = this.process(messages);
+            if (failed == 0) {
+                return ConsumeConcurrentlyStatus.RECONSUME_LATER;
+            }
+            if (failed < messages.size()) {
+                context.setAckIndex(failed - 1);
+            }
+            return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+        });
+    }
+
+    /**
+     * 未替换监听时逐条消费, 失败抛出异常由容器重试
+     */
+    @Override
+    public void onMessage(MessageExt message) {
+        if (this.process(Collections.singletonList(message)) == 0) {
+            throw new IllegalStateException("消息消费失败, msgId: " + message.getMsgId());
+        }
+    }
+
+    /**
+     * 消费一批消息
+     *
+     * @return 第一条失败消息的下标, 全部成功时为消息数
+     */
+    int process(List<MessageExt> messages) {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        List<ConsumeRecord<T>> records = new ArrayList<>(messages.size());
+        for (MessageExt message : messages) {
+            MetricsRegistry.record(METRICS_PREFIX + "lag." + group, TimeUnit.MILLISECONDS.toNanos(Math.max(0L, now - message.getBornTimestamp())), null);
+            records.add(this.decode(message));
+        }
+        Map<String, ConsumeRecord<T>> distinct = new LinkedHashMap<>();
+        records.stream().filter(Objects::nonNull).forEach(record -> distinct.putIfAbsent(record.getIdempotentKey(), record));
+        if (distinct.isEmpty()) {
+            return messages.size();
+        }
+
+        Map<String, MessageIdempotentStore.Claim> claims;
+        try {
+            claims = messageIdempotentStore.claim(group, distinct.keySet());
+        } catch (Exception e) {
+            LOGGER.error("AbstractBatchMessageListener#幂等键占用失败, 整批重试, group:{}, size:{}", group, messages.size(), e);
+            MetricsRegistry.record(METRICS_PREFIX + group, System.nanoTime() - start, e);
+            return 0;
+        }
+        List<ConsumeRecord<T>> acquired = new ArrayList<>(distinct.size());
+        distinct.forEach((key, record) -> {
+            MessageIdempotentStore.Claim claim = claims.get(key);
+            if (claim == MessageIdempotentStore.Claim.ACQUIRED) {
+                acquired.add(record);
+            } else if (claim == MessageIdempotentStore.Claim.CONSUMING) {
+                record.fail(new IllegalStateException("消息消费中"));
+            }
+        });
+        long duplicated = records.stream().filter(Objects::nonNull).count() - acquired.size()
+                - distinct.values().stream().filter(ConsumeRecord::failed).count();
+        for (long i = 0; i < duplicated; i++) {
+            MetricsRegistry.record(METRICS_PREFIX + "duplicate." + group, 0L, null);
+        }
+
+        Exception error = null;
+        if (!acquired.isEmpty()) {
+            try {
+                this.consume(acquired);
+            } catch (Exception e) {
+                error = e;
+                LOGGER.error("AbstractBatchMessageListener#批量消费异常, group:{}, size:{}", group, acquired.size(), e);
+                acquired.forEach(record -> record.fail(e));
+            }
+            this.settle(acquired);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        MetricsRegistry.record(METRICS_PREFIX + group, elapsed, error);
+        acquired.forEach(record -> MetricsRegistry.record(METRICS_PREFIX + "message." + group, elapsed, record.getError()));
+        for (int i = 0; i < records.size(); i++) {
+            if (records.get(i) != null && records.get(i).failed()) {
+                return i;
+            }
+        }
+        return messages.size();
+    }
+
+    private ConsumeRecord<T> decode(MessageExt message) {
+        try {
+            T payload = JsonUtils.json2Object(message.getBody(), this.payloadType());
+            if (payload != null) {
+                String key = StringUtils.defaultIfEmpty(message.getKeys(), message.getMsgId()) + ":" + this.bizId(payload);
+                return new ConsumeRecord<>(message, payload, key);
+            }
+            LOGGER.error("AbstractBatchMessageListener#消息体为空, 丢弃, group:{}, msgId:{}", group, message.getMsgId());
+        } catch (Exception e) {
+            LOGGER.error("AbstractBatchMessageListener#消息解析失败, 丢弃, group:{}, msgId:{}", group, message.getMsgId(), e);
+        }
+        return null;
+    }
+
+    /**
+     * 成功的幂等键确认已消费, 失败的释放; 确认失败时占用在租约到期后释放, 重投的消息可能再次消费
+     */
+    private void settle(List<ConsumeRecord<T>> records) {
+        Map<Boolean, List<String>> keys = records.stream()
+                .collect(Collectors.partitioningBy(ConsumeRecord::failed, Collectors.mapping(ConsumeRecord::getIdempotentKey, Collectors.toList())));
+        try {
+            messageIdempotentStore.consumed(group, keys.get(false));
+            messageIdempotentStore.release(group, keys.get(true));
+        } catch (Exception e) {
+            LOGGER.warn("AbstractBatchMessageListener#幂等键回写失败, group:{}, consumed:{}, failed:{}", group, keys.get(false).size(), keys.get(true).size(), e);
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.harvest.core.service.mq.consume;
+
+import lombok.Data;
+import org.apache.rocketmq.common.message.MessageExt;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/27 10:20 AM
+ * @Description: 批量消费中的一条消息
+ * <p>
+ * 处理失败的消息调用 {@link #fail(Throwable)}, 未标记失败的视为消费成功
+ **/
+@Data
+public class ConsumeRecord<T> {
+
+    /**
+     * 原始消息
+     */
+    private final MessageExt message;
+
+    /**
+     * 消息体
+     */
+    private final T payload;
+
+    /**
+     * 幂等键, 消息键 + 业务Id
+     */
+    private final String idempotentKey;
+
+    /**
+     * 失败原因, 成功为空
+     */
+    private Throwable error;
+
+    public void fail(Throwable error) {
+        this.error = error;
+    }
+
+    public boolean failed() {
+        return error != null;
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.harvest.core.service.mq.consume;
+
+import com.harvest.core.service.redis.CacheService;
+import com.harvest.core.service.redis.consume.ConsumeKeyPrefix;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/27 10:10 AM
+ * @Description: 消息消费幂等存储
+ * <p>
+ * 消费前以 SET NX 占用幂等键(消费中, 短租约), 成功后改为已消费并保留较长时间, 失败时释放以便重试;
+ * 节点宕机时占用在租约到期后释放. 一批消息的占用、确认及释放各一次管道往返
+ **/
+@Component
+public class MessageIdempotentStore {
+
+    private static final String CONSUMING = "0";
+
+    private static final String CONSUMED = "1";
+
+    @Value("${harvest.mq.consume.idempotent-seconds:86400}")
+    private int idempotentSeconds;
+
+    @Value("${harvest.mq.consume.consuming-seconds:300}")
+    private int consumingSeconds;
+
+    @Autowired
+    private CacheService cacheService;
+
+    /**
+     * 占用幂等键
+     *
+     * @param group 消费组
+     * @param keys  幂等键
+     * @return 幂等键 -> 占用结果
+     */
+    public Map<String, Claim> claim(String group, Collection<String> keys) {
+        Map<String, String> values = keys.stream().distinct().collect(Collectors.toMap(key -> this.realKey(group, key), key -> CONSUMING));
+        Set<String> acquired = cacheService.multiSetNx(ConsumeKeyPrefix.CONSUMED, values, consumingSeconds);
+        List<String> occupied = values.keySet().stream().filter(key -> !acquired.contains(key)).collect(Collectors.toList());
+        Map<String, String> current = occupied.isEmpty() ? Collections.emptyMap() : cacheService.multiGet(ConsumeKeyPrefix.CONSUMED, occupied, String.class);
+
+        Map<String, Claim> result = new HashMap<>(values.size() * 2);
+        keys.forEach(key -> {
+            String realKey = this.realKey(group, key);
+            if (acquired.contains(realKey)) {
+                result.put(key, Claim.ACQUIRED);
+            } else {
+                /*检查前租约恰好到期时按消费中处理, 稍后重试*/
+                result.put(key, CONSUMED.equals(current.get(realKey)) ? Claim.CONSUMED : Claim.CONSUMING);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 确认已消费
+     */
+    public void consumed(String group, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        cacheService.multiSet(ConsumeKeyPrefix.CONSUMED, keys.stream().distinct()
+                .collect(Collectors.toMap(key -> this.realKey(group, key), key -> CONSUMED)), idempotentSeconds);
+    }
+
+    /**
+     * 释放占用, 消息重试时可再次消费
+     */
+    public void release(String group, Collection<String> keys) {
+        cacheService.multiDelete(ConsumeKeyPrefix.CONSUMED, keys.stream().map(key -> this.realKey(group, key)).collect(Collectors.toSet()));
+    }
+
+    private String realKey(String group, String key) {
+        return group + ":" + key;
+    }
+
+    /**
+     * 占用结果
+     */
+    public enum Claim {
+
+        /**
+         * 占用成功, 由本次消费
+         */
+        ACQUIRED,
+
+        /**
+         * 已消费, 重复消息直接确认
+         */
+        CONSUMED,
+
+        /**
+         * 其他消费者消费中, 稍后重试
+         */
+        CONSUMING
+
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.harvest.core.service.outbox;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/26 10:25 AM
+ * @Description: 发件箱载荷解析
+ * <p>
+ * 事务内只写入顺序键的消息, 由中继投递前按目标批量组装消息体
+ **/
+public interface OutboxPayloadResolver {
+
+    /**
+     * 负责的投递目标
+     *
+     * @return
+     */
+    String destination();
+
+    /**
+     * 批量组装消息体
+     *
+     * @param companyId   公司Id
+     * @param messageKeys 顺序键
+     * @return 顺序键 -> 消息体, 缺失的消息转入死信
+     */
+    Map<String, Object> resolve(Long companyId, Collection<String> messageKeys);
+
+}
@@ -0,0 +1,328 @@
+package com.harvest.core.service.outbox;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.harvest.core.monitor.metrics.MetricsRegistry;
+import com.harvest.core.outbox.OutboxMessage;
+import com.harvest.core.outbox.OutboxStore;
+import com.harvest.core.utils.JsonUtils;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/26 11:00 AM
+ * @Description: 发件箱中继
+ * <p>
+ * 定时领取到期消息, 按目标、分片分组后批量发送; 同一时刻只有一个节点投递(分布式锁), 节点宕机时可能重复投递, 消费端需幂等.
+ * 一批失败时整批退避重试, 本轮跳过这些顺序键的后续消息; 超过最大重试次数转入死信.
+ * 投递延迟(写入到发送)记入 OutboxRelay.lag.{目标}, 发送耗时及异常记入 OutboxRelay.send.{目标}
+ **/
+@Component
+public class OutboxRelay {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final String METRICS_PREFIX = "OutboxRelay.";
+
+    private static final String LOCK_KEY = "Outbox:relay";
+
+    /**
+     * 单次投递最多领取的轮数, 避免长时间占用锁
+     */
+    private static final int MAX_ROUNDS = 10;
+
+    private static final long BASE_BACKOFF_MILLIS = 1000L;
+
+    private static final long MAX_BACKOFF_MILLIS = 10 * 60 * 1000L;
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    @Value("${harvest.outbox.relay.enabled:true}")
+    private boolean enabled;
+
+    @Value("${harvest.outbox.relay.interval-millis:500}")
+    private long intervalMillis;
+
+    @Value("${harvest.outbox.relay.claim-size:1000}")
+    private int claimSize;
+
+    @Value("${harvest.outbox.relay.batch-size:100}")
+    private int batchSize;
+
+    @Value("${harvest.outbox.relay.max-retries:16}")
+    private int maxRetries;
+
+    @Value("${harvest.outbox.relay.lock-lease-seconds:60}")
+    private long lockLeaseSeconds;
+
+    @Autowired(required = false)
+    private OutboxStore outboxStore;
+
+    @Autowired(required = false)
+    private OutboxSender outboxSender;
+
+    @Autowired(required = false)
+    private List<OutboxPayloadResolver> outboxPayloadResolvers;
+
+    @Autowired(required = false)
+    private RedissonClient redissonClient;
+
+    private final Map<String, OutboxPayloadResolver> resolvers = new HashMap<>();
+
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled || outboxStore == null || outboxSender == null) {
+            LOGGER.info("OutboxRelay#未启用, enabled:{}, store:{}, sender:{}", enabled, outboxStore != null, outboxSender != null);
+            return;
+        }
+        if (CollectionUtils.isNotEmpty(outboxPayloadResolvers)) {
+            outboxPayloadResolvers.forEach(resolver -> resolvers.put(resolver.destination(), resolver));
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("harvest-outbox-relay").setDaemon(true).build()
+        );
+        scheduler.scheduleWithFixedDelay(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * 业务事务提交后调用, 立即触发一次投递, 不等待下一个周期
+     */
+    public void wakeup() {
+        if (scheduler == null || !wakeupPending.compareAndSet(false, true)) {
+            return;
+        }
+        scheduler.execute(() -> {
+            wakeupPending.set(false);
+            this.tick();
+        });
+    }
+
+    /**
+     * 待投递消息数
+     */
+    public long backlog() {
+        return outboxStore == null ? 0L : outboxStore.size();
+    }
+
+    private void tick() {
+        RLock lock = redissonClient == null ? null : redissonClient.getLock(LOCK_KEY);
+        try {
+            if (lock != null && !lock.tryLock(0, lockLeaseSeconds, TimeUnit.SECONDS)) {
+                return;
+            }
+            this.drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.error("OutboxRelay#投递异常", e);
+        } finally {
+            if (lock != null && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void drain() {
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            List<OutboxMessage> messages = outboxStore.pending(claimSize);
+            if (messages.isEmpty()) {
+                return;
+            }
+            int settled = this.relay(messages);
+            /*本轮全部因同键阻塞跳过时不再空转*/
+            if (messages.size() < claimSize || settled == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 投递一批消息
+     *
+     * @return 已投递、重试及死信的消息数
+     */
+    int relay(List<OutboxMessage> messages) {
+        Outcome outcome = new Outcome();
+        Set<String> blocked = new HashSet<>();
+        List<OutboxMessage> ready = this.resolve(messages, outcome, blocked);
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Map<Integer, List<OutboxMessage>>> grouped = new LinkedHashMap<>();
+        for (OutboxMessage message : ready) {
+            if (message.getCreateTime() != null) {
+                MetricsRegistry.record(METRICS_PREFIX + "lag." + message.getDestination(), Duration.between(message.getCreateTime(), now).toNanos(), null);
+            }
+            int shard = outboxSender.shard(message.getDestination(), message.getMessageKey());
+            grouped.computeIfAbsent(message.getDestination(), k -> new LinkedHashMap<>())
+                    .computeIfAbsent(shard, k -> new ArrayList<>()).add(message);
+        }
+
+        grouped.forEach((destination, shards) -> shards.forEach((shard, shardMessages) -> {
+            List<OutboxMessage> batch = new ArrayList<>(batchSize);
+            for (OutboxMessage message : shardMessages) {
+                if (blocked.contains(this.blockKey(message))) {
+                    continue;
+                }
+                batch.add(message);
+                if (batch.size() >= batchSize) {
+                    this.send(destination, shard, batch, outcome, blocked);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                this.send(destination, shard, batch, outcome, blocked);
+            }
+        }));
+        return outcome.flush();
+    }
+
+    /**
+     * 解析空载荷, 解析异常整组重试, 缺失转入死信
+     */
+    private List<OutboxMessage> resolve(List<OutboxMessage> messages, Outcome outcome, Set<String> blocked) {
+        Map<String, Map<Long, List<OutboxMessage>>> unresolved = new LinkedHashMap<>();
+        messages.stream().filter(message -> message.getPayload() == null).forEach(message ->
+                unresolved.computeIfAbsent(message.getDestination(), k -> new LinkedHashMap<>())
+                        .computeIfAbsent(message.getCompanyId(), k -> new ArrayList<>()).add(message));
+        unresolved.forEach((destination, companies) -> {
+            OutboxPayloadResolver resolver = resolvers.get(destination);
+            companies.forEach((companyId, group) -> {
+                if (resolver == null) {
+                    group.forEach(message -> outcome.dead(message, "无载荷解析器: " + destination));
+                    return;
+                }
+                Map<String, Object> payloads;
+                try {
+                    payloads = resolver.resolve(companyId, group.stream().map(OutboxMessage::getMessageKey).collect(Collectors.toList()));
+                } catch (Exception e) {
+                    LOGGER.warn("OutboxRelay#载荷解析失败, destination:{}, companyId:{}", destination, companyId, e);
+                    group.forEach(message -> {
+                        blocked.add(this.blockKey(message));
+                        outcome.fail(message, e.getMessage());
+                    });
+                    return;
+                }
+                group.forEach(message -> {
+                    Object payload = payloads.get(message.getMessageKey());
+                    if (payload == null) {
+                        outcome.dead(message, "载荷不存在");
+                    } else {
+                        message.setPayload(payload instanceof String ? (String) payload : JsonUtils.object2Json(payload));
+                    }
+                });
+            });
+        });
+        return messages.stream().filter(message -> message.getPayload() != null && !outcome.settled(message)).collect(Collectors.toList());
+    }
+
+    private void send(String destination, int shard, List<OutboxMessage> batch, Outcome outcome, Set<String> blocked) {
+        long start = System.nanoTime();
+        Exception error = null;
+        try {
+            outboxSender.send(destination, shard, batch);
+            batch.forEach(outcome::sent);
+        } catch (Exception e) {
+            error = e;
+            LOGGER.warn("OutboxRelay#发送失败, destination:{}, shard:{}, size:{}", destination, shard, batch.size(), e);
+            batch.forEach(message -> {
+                blocked.add(this.blockKey(message));
+                outcome.fail(message, e.getMessage());
+            });
+        } finally {
+            MetricsRegistry.record(METRICS_PREFIX + "send." + destination, System.nanoTime() - start, error);
+        }
+    }
+
+    private String blockKey(OutboxMessage message) {
+        return message.getDestination() + '\n' + message.getMessageKey();
+    }
+
+    /**
+     * 本轮投递结果, 结束时批量回写
+     */
+    private class Outcome {
+
+        /**
+         * 同一退避级别的消息合并为一次回写
+         */
+        private final long now = System.currentTimeMillis();
+
+        private final List<Long> sent = new ArrayList<>();
+
+        private final Map<Long, List<Long>> retries = new TreeMap<>();
+
+        private final Map<String, List<Long>> dead = new LinkedHashMap<>();
+
+        private final Map<Long, String> retryErrors = new HashMap<>();
+
+        private final Set<Long> settled = new HashSet<>();
+
+        private void sent(OutboxMessage message) {
+            sent.add(message.getId());
+            settled.add(message.getId());
+        }
+
+        private void fail(OutboxMessage message, String error) {
+            int failed = (message.getRetries() == null ? 0 : message.getRetries()) + 1;
+            if (failed >= maxRetries) {
+                this.dead(message, error);
+                return;
+            }
+            long backoff = Math.min(BASE_BACKOFF_MILLIS << Math.min(failed - 1, 20), MAX_BACKOFF_MILLIS);
+            long next = now + backoff;
+            retries.computeIfAbsent(next, k -> new ArrayList<>()).add(message.getId());
+            retryErrors.putIfAbsent(next, StringUtils.abbreviate(StringUtils.defaultString(error), MAX_ERROR_LENGTH));
+            settled.add(message.getId());
+        }
+
+        private void dead(OutboxMessage message, String error) {
+            LOGGER.error("OutboxRelay#转入死信, id:{}, destination:{}, messageKey:{}, error:{}",
+                    message.getId(), message.getDestination(), message.getMessageKey(), error);
+            dead.computeIfAbsent(StringUtils.abbreviate(StringUtils.defaultString(error), MAX_ERROR_LENGTH), k -> new ArrayList<>()).add(message.getId());
+            settled.add(message.getId());
+        }
+
+        private boolean settled(OutboxMessage message) {
+            return settled.contains(message.getId());
+        }
+
+        private int flush() {
+            if (!sent.isEmpty()) {
+                outboxStore.sent(sent);
+            }
+            retries.forEach((next, ids) -> outboxStore.retry(ids, next, retryErrors.get(next)));
+            dead.forEach((error, ids) -> outboxStore.dead(ids, error));
+            return settled.size();
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.harvest.core.service.outbox;
+
+import com.harvest.core.outbox.OutboxMessage;
+
+import java.util.List;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/26 10:20 AM
+ * @Description: 发件箱消息发送
+ * <p>
+ * 同一顺序键须恒定映射到同一分片, 同一批次的消息属于同一目标同一分片, 发送到同一队列以保证顺序
+ **/
+public interface OutboxSender {
+
+    /**
+     * 顺序键所属分片
+     *
+     * @param destination 投递目标
+     * @param messageKey  顺序键
+     * @return 分片
+     */
+    int shard(String destination, String messageKey);
+
+    /**
+     * 同步批量发送, 失败抛出异常, 整批视为失败
+     *
+     * @param destination 投递目标
+     * @param shard       分片
+     * @param messages    已解析载荷的消息
+     */
+    void send(String destination, int shard, List<OutboxMessage> messages);
+
+}
@@ -0,0 +1,74 @@
+package com.harvest.core.service.outbox;
+
+import com.harvest.core.outbox.OutboxMessage;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/26 10:30 AM
+ * @Description: 基于 RocketMQ 批量消息的发件箱发送
+ * <p>
+ * 分片即主题下的队列, 顺序键按散列选择队列, 一批消息一次请求写入同一队列; 主题队列数变化期间同键顺序不保证
+ **/
+@Component
+public class RocketMQOutboxSender implements OutboxSender {
+
+    private static final long SEND_TIMEOUT_MILLIS = 10000L;
+
+    @Autowired(required = false)
+    private RocketMQTemplate rocketMQTemplate;
+
+    @Override
+    public int shard(String destination, String messageKey) {
+        List<MessageQueue> queues = this.queues(destination);
+        return (StringUtils.defaultString(messageKey).hashCode() & Integer.MAX_VALUE) % queues.size();
+    }
+
+    @Override
+    public void send(String destination, int shard, List<OutboxMessage> messages) {
+        String[] target = StringUtils.split(destination, ":", 2);
+        String tags = target.length > 1 ? target[1] : "";
+        List<Message> batch = messages.stream()
+                .map(message -> new Message(target[0], tags, message.getMessageKey(), message.getPayload().getBytes(StandardCharsets.UTF_8)))
+                .collect(Collectors.toList());
+        SendResult result;
+        try {
+            List<MessageQueue> queues = this.queues(destination);
+            result = this.producer().send(batch, queues.get(shard % queues.size()), SEND_TIMEOUT_MILLIS);
+        } catch (Exception e) {
+            throw new IllegalStateException("发件箱消息发送失败: " + e.getMessage(), e);
+        }
+        if (result.getSendStatus() != SendStatus.SEND_OK) {
+            throw new IllegalStateException("发件箱消息发送状态异常: " + result.getSendStatus());
+        }
+    }
+
+    private List<MessageQueue> queues(String destination) {
+        String topic = StringUtils.substringBefore(destination, ":");
+        try {
+            return this.producer().fetchPublishMessageQueues(topic);
+        } catch (Exception e) {
+            throw new IllegalStateException("获取主题队列失败: " + topic, e);
+        }
+    }
+
+    private DefaultMQProducer producer() {
+        if (rocketMQTemplate == null) {
+            throw new IllegalStateException("RocketMQTemplate 未配置");
+        }
+        return rocketMQTemplate.getProducer();
+    }
+
+}
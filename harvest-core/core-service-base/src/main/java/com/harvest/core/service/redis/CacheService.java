@@ -1,78 +1,191 @@
 package com.harvest.core.service.redis;
 
+import com.harvest.core.service.redis.codec.RedisValueCodec;
+import com.harvest.core.service.redis.near.NearCache;
 import com.harvest.core.service.redis.prefix.KeyPrefix;
-import com.harvest.core.utils.JsonUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Component;
 
-import java.util.Collection;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 /**
  * @Author: Alodi
  * @Date: 2023/2/6 3:54 PM
  * @Description: 非对象操作，缓存服务
+ * <p>
+ * 开启 {@link KeyPrefix#nearCache()} 的前缀读取先经本地近端缓存, 写入后各节点同步失效;
+ * 对象值经 {@link RedisValueCodec} 编码, 字符串值按 utf-8 原文读写;
+ * 按类型读取字符串时兼容旧版 json 字符串(带引号)
  **/
 @Component
 public class CacheService {
 
+    /**
+     * 比较并设置: ARGV[1] 为 0 时要求 key 不存在, 否则要求当前值等于 ARGV[2]; ARGV[4] 大于 0 时设置过期秒数
+     */
+    private static final DefaultRedisScript<Long> COMPARE_AND_SET_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('get', KEYS[1]);" +
+                    "if ARGV[1] == '0' then " +
+                    "    if current then return 0 end " +
+                    "elseif current ~= ARGV[2] then " +
+                    "    return 0 " +
+                    "end " +
+                    "if tonumber(ARGV[4]) > 0 then " +
+                    "    redis.call('set', KEYS[1], ARGV[3], 'EX', ARGV[4]);" +
+                    "else " +
+                    "    redis.call('set', KEYS[1], ARGV[3]);" +
+                    "end " +
+                    "return 1;", Long.class);
+
+    /**
+     * 哈希字段批量增减: key 不存在时不写入并返回 0, 避免在未初始化的哈希上累计出部分值; ARGV 为 字段, 增量 交替
+     */
+    private static final DefaultRedisScript<Long> HASH_INCREMENT_IF_EXISTS_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 0 then return 0 end " +
+                    "for i = 1, #ARGV, 2 do " +
+                    "    redis.call('hincrby', KEYS[1], ARGV[i], ARGV[i + 1]);" +
+                    "end " +
+                    "return 1;", Long.class);
+
+    /**
+     * 哈希整体替换: ARGV[1] 为过期秒数, 之后为 字段, 值 交替
+     */
+    private static final DefaultRedisScript<Long> HASH_REPLACE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('del', KEYS[1]);" +
+                    "for i = 2, #ARGV, 2 do " +
+                    "    redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1]);" +
+                    "end " +
+                    "if tonumber(ARGV[1]) > 0 then " +
+                    "    redis.call('expire', KEYS[1], ARGV[1]);" +
+                    "end " +
+                    "return 1;", Long.class);
+
     @Autowired
     @Qualifier(value = "stringRedisTemplate")
     private StringRedisTemplate stringRedisTemplate;
 
+    @Autowired
+    @Qualifier(value = "binaryRedisTemplate")
+    private RedisTemplate<String, byte[]> binaryRedisTemplate;
+
+    @Autowired
+    private NearCache nearCache;
+
+    @Autowired
+    private RedisValueCodec codec;
+
     public <T> T get(KeyPrefix prefix, String key, Class<T> clazz) {
-        String realKey = prefix.getKeyPrefix() + key;
-        String str = stringRedisTemplate.opsForValue().get(realKey);
-        return JsonUtils.json2Object(str, clazz);
+        return codec.decode(this.getBytes(prefix, key), clazz);
     }
 
     public <T> Collection<T> getList(KeyPrefix prefix, String key, Class<T> clazz) {
-        String realKey = prefix.getKeyPrefix() + key;
-        String str = stringRedisTemplate.opsForValue().get(realKey);
-        return JsonUtils.json2ObjectList(str, clazz);
+        return codec.decodeList(this.getBytes(prefix, key), clazz);
     }
 
     public String get(KeyPrefix prefix, String key) {
+        byte[] bytes = this.getBytes(prefix, key);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private byte[] getBytes(KeyPrefix prefix, String key) {
         String realKey = prefix.getKeyPrefix() + key;
-        return stringRedisTemplate.opsForValue().get(realKey);
+        if (prefix.nearCache()) {
+            return nearCache.get(prefix, key, () -> binaryRedisTemplate.opsForValue().get(realKey));
+        }
+        return binaryRedisTemplate.opsForValue().get(realKey);
+    }
+
+    /**
+     * 批量获取, 一次 MGET
+     *
+     * @return key -> 值, 不存在的 key 不返回
+     */
+    public Map<String, String> multiGet(KeyPrefix prefix, Collection<String> keys) {
+        Map<String, byte[]> values = this.multiGetBytes(prefix, keys);
+        Map<String, String> result = new HashMap<>(values.size() * 2);
+        values.forEach((key, value) -> result.put(key, new String(value, StandardCharsets.UTF_8)));
+        return result;
+    }
+
+    /**
+     * 批量获取对象
+     *
+     * @return key -> 对象, 不存在的 key 不返回
+     */
+    public <T> Map<String, T> multiGet(KeyPrefix prefix, Collection<String> keys, Class<T> clazz) {
+        Map<String, byte[]> values = this.multiGetBytes(prefix, keys);
+        Map<String, T> result = new HashMap<>(values.size() * 2);
+        values.forEach((key, value) -> {
+            T object = codec.decode(value, clazz);
+            if (object != null) {
+                result.put(key, object);
+            }
+        });
+        return result;
+    }
+
+    private Map<String, byte[]> multiGetBytes(KeyPrefix prefix, Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return new HashMap<>();
+        }
+        if (prefix.nearCache()) {
+            return nearCache.getAll(prefix, keys, missing -> this.mget(prefix, missing));
+        }
+        return this.mget(prefix, keys);
+    }
+
+    private Map<String, byte[]> mget(KeyPrefix prefix, Collection<String> keys) {
+        List<String> keyList = new ArrayList<>(keys);
+        List<String> realKeys = new ArrayList<>(keyList.size());
+        for (String key : keyList) {
+            realKeys.add(prefix.getKeyPrefix() + key);
+        }
+        List<byte[]> values = binaryRedisTemplate.opsForValue().multiGet(realKeys);
+        Map<String, byte[]> result = new HashMap<>(keyList.size() * 2);
+        if (values == null) {
+            return result;
+        }
+        for (int i = 0; i < keyList.size(); i++) {
+            byte[] value = values.get(i);
+            if (value != null) {
+                result.put(keyList.get(i), value);
+            }
+        }
+        return result;
     }
 
     /**
      * 设置对象
      */
     public <T> void set(KeyPrefix prefix, String key, T value, Integer seconds) {
-        String str = JsonUtils.object2Json(value);
-        if (str == null || str.length() <= 0) {
+        byte[] bytes = codec.encode(value);
+        if (bytes.length <= 0) {
             return;
         }
         //生成真正的key
         String realKey = prefix.getKeyPrefix() + key;
         if (seconds <= 0) {
-            stringRedisTemplate.opsForValue().set(realKey, str);
+            binaryRedisTemplate.opsForValue().set(realKey, bytes);
         } else {
-            stringRedisTemplate.opsForValue().set(realKey, str, seconds, TimeUnit.SECONDS);
+            binaryRedisTemplate.opsForValue().set(realKey, bytes, seconds, TimeUnit.SECONDS);
         }
+        this.invalidate(prefix, key);
     }
 
     /**
      * 设置对象
      */
     public <T> void set(KeyPrefix prefix, String key, T value) {
-        String str = JsonUtils.object2Json(value);
-        if (str == null || str.length() <= 0) {
-            return;
-        }
-        //生成真正的key
-        String realKey = prefix.getKeyPrefix() + key;
-        int seconds = prefix.expireSeconds();
-        if (seconds <= 0) {
-            stringRedisTemplate.opsForValue().set(realKey, str);
-        } else {
-            stringRedisTemplate.opsForValue().set(realKey, str, seconds, TimeUnit.SECONDS);
-        }
+        this.set(prefix, key, value, prefix.expireSeconds());
     }
 
     /**
@@ -90,6 +203,40 @@ public class CacheService {
         } else {
             stringRedisTemplate.opsForValue().set(realKey, value, seconds, TimeUnit.SECONDS);
         }
+        this.invalidate(prefix, key);
+    }
+
+    /**
+     * 批量设置对象, 管道一次提交, 过期时间取前缀配置
+     */
+    public <T> void multiSet(KeyPrefix prefix, Map<String, T> values) {
+        this.multiSet(prefix, values, prefix.expireSeconds());
+    }
+
+    /**
+     * 批量设置对象, 管道一次提交
+     *
+     * @param seconds 过期秒数, 小于等于 0 不过期
+     */
+    public <T> void multiSet(KeyPrefix prefix, Map<String, T> values, int seconds) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        Map<byte[], byte[]> entries = new LinkedHashMap<>(values.size() * 2);
+        values.forEach((key, value) -> {
+            byte[] bytes = codec.encode(value);
+            if (bytes.length > 0) {
+                entries.put((prefix.getKeyPrefix() + key).getBytes(StandardCharsets.UTF_8), bytes);
+            }
+        });
+        Expiration expiration = seconds > 0 ? Expiration.seconds(seconds) : Expiration.persistent();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            entries.forEach((key, value) -> connection.stringCommands().set(key, value, expiration, RedisStringCommands.SetOption.upsert()));
+            return null;
+        });
+        if (prefix.nearCache()) {
+            nearCache.invalidate(prefix, values.keySet());
+        }
     }
 
     /**
@@ -97,10 +244,55 @@ public class CacheService {
      * setNx 有key值 set 返回 null, 无key值 相当于 set
      */
     public boolean setNx(KeyPrefix prefix, String key, String value) {
+        return this.setNx(prefix, key, value, prefix.expireSeconds());
+    }
+
+    /**
+     * key 不存在时设置, 用于替代 exists + set 的两次往返
+     *
+     * @param seconds 过期秒数, 小于等于 0 不过期
+     */
+    public boolean setNx(KeyPrefix prefix, String key, String value, int seconds) {
         //生成真正的key
         String realKey = prefix.getKeyPrefix() + key;
-        int timeout = prefix.expireSeconds();
-        return Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(realKey, value, timeout, TimeUnit.SECONDS));
+        Boolean success = seconds > 0
+                ? stringRedisTemplate.opsForValue().setIfAbsent(realKey, value, seconds, TimeUnit.SECONDS)
+                : stringRedisTemplate.opsForValue().setIfAbsent(realKey, value);
+        if (Boolean.TRUE.equals(success)) {
+            this.invalidate(prefix, key);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 批量 key 不存在时设置, 管道一次提交, 各 key 独立判断
+     *
+     * @param values  key -> 值
+     * @param seconds 过期秒数, 小于等于 0 不过期
+     * @return 设置成功的 key
+     */
+    public Set<String> multiSetNx(KeyPrefix prefix, Map<String, String> values, int seconds) {
+        if (values == null || values.isEmpty()) {
+            return new HashSet<>();
+        }
+        List<String> keys = new ArrayList<>(values.keySet());
+        Expiration expiration = seconds > 0 ? Expiration.seconds(seconds) : Expiration.persistent();
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            keys.forEach(key -> connection.stringCommands().set((prefix.getKeyPrefix() + key).getBytes(StandardCharsets.UTF_8),
+                    values.get(key).getBytes(StandardCharsets.UTF_8), expiration, RedisStringCommands.SetOption.ifAbsent()));
+            return null;
+        });
+        Set<String> success = new HashSet<>(keys.size() * 2);
+        for (int i = 0; i < keys.size(); i++) {
+            if (Boolean.TRUE.equals(results.get(i))) {
+                success.add(keys.get(i));
+            }
+        }
+        if (prefix.nearCache()) {
+            nearCache.invalidate(prefix, success);
+        }
+        return success;
     }
 
     /**
@@ -111,13 +303,36 @@ public class CacheService {
         //生成真正的key
         String realKey = prefix.getKeyPrefix() + key;
         int timeout = prefix.expireSeconds();
-        return stringRedisTemplate.opsForValue().setIfPresent(realKey, value, timeout, TimeUnit.SECONDS);
+        Boolean success = stringRedisTemplate.opsForValue().setIfPresent(realKey, value, timeout, TimeUnit.SECONDS);
+        this.invalidate(prefix, key);
+        return success;
+    }
+
+    /**
+     * 比较并设置, Lua 原子执行
+     *
+     * @param expect 期望的当前值, 为 null 时要求 key 不存在
+     * @param update 新值
+     * @return 是否设置成功
+     */
+    public boolean compareAndSet(KeyPrefix prefix, String key, String expect, String update) {
+        String realKey = prefix.getKeyPrefix() + key;
+        Long result = stringRedisTemplate.execute(COMPARE_AND_SET_SCRIPT, Collections.singletonList(realKey),
+                expect == null ? "0" : "1", expect == null ? "" : expect, update, String.valueOf(prefix.expireSeconds()));
+        if (Long.valueOf(1L).equals(result)) {
+            this.invalidate(prefix, key);
+            return true;
+        }
+        return false;
     }
 
     /**
      * 判断key是否存在
      */
     public boolean exists(KeyPrefix prefix, String key) {
+        if (prefix.nearCache()) {
+            return this.get(prefix, key) != null;
+        }
         //生成真正的key
         String realKey = prefix.getKeyPrefix() + key;
         return Boolean.TRUE.equals(stringRedisTemplate.hasKey(realKey));
@@ -139,6 +354,103 @@ public class CacheService {
         //生成真正的key
         String realKey = prefix.getKeyPrefix() + key;
         stringRedisTemplate.delete(realKey);
+        this.invalidate(prefix, key);
+    }
+
+    /**
+     * 批量删除, 一次 DEL
+     */
+    public void multiDelete(KeyPrefix prefix, Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        List<String> realKeys = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            realKeys.add(prefix.getKeyPrefix() + key);
+        }
+        stringRedisTemplate.delete(realKeys);
+        if (prefix.nearCache()) {
+            nearCache.invalidate(prefix, keys);
+        }
+    }
+
+    /**
+     * 自增, key 不存在时从 0 开始
+     */
+    public long incr(KeyPrefix prefix, String key) {
+        String realKey = prefix.getKeyPrefix() + key;
+        Long value = stringRedisTemplate.opsForValue().increment(realKey);
+        this.invalidate(prefix, key);
+        return value == null ? 0L : value;
+    }
+
+    /**
+     * 读取整个哈希
+     *
+     * @return 字段 -> 值, key 不存在时为空
+     */
+    public Map<String, String> hashGetAll(KeyPrefix prefix, String key) {
+        String realKey = prefix.getKeyPrefix() + key;
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(realKey);
+        Map<String, String> result = new HashMap<>(entries.size() * 2);
+        entries.forEach((field, value) -> result.put(String.valueOf(field), String.valueOf(value)));
+        return result;
+    }
+
+    /**
+     * 哈希字段批量增减, 一次 Lua 原子执行; key 不存在时不写入
+     *
+     * @param deltas 字段 -> 增量
+     * @return key 是否存在并已写入
+     */
+    public boolean hashIncrementIfExists(KeyPrefix prefix, String key, Map<String, Long> deltas) {
+        if (deltas == null || deltas.isEmpty()) {
+            return true;
+        }
+        String realKey = prefix.getKeyPrefix() + key;
+        List<String> args = new ArrayList<>(deltas.size() * 2);
+        deltas.forEach((field, delta) -> {
+            args.add(field);
+            args.add(String.valueOf(delta));
+        });
+        Long result = stringRedisTemplate.execute(HASH_INCREMENT_IF_EXISTS_SCRIPT, Collections.singletonList(realKey), args.toArray());
+        return Long.valueOf(1L).equals(result);
+    }
+
+    /**
+     * 整体替换哈希, 一次 Lua 原子执行, 按前缀设置过期时间
+     *
+     * @param values 字段 -> 值
+     */
+    public void hashReplace(KeyPrefix prefix, String key, Map<String, String> values) {
+        String realKey = prefix.getKeyPrefix() + key;
+        List<String> args = new ArrayList<>(values.size() * 2 + 1);
+        args.add(String.valueOf(prefix.expireSeconds()));
+        values.forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+        stringRedisTemplate.execute(HASH_REPLACE_SCRIPT, Collections.singletonList(realKey), args.toArray());
+    }
+
+    /**
+     * 发布消息
+     */
+    public void publish(String channel, String message) {
+        stringRedisTemplate.convertAndSend(channel, message);
+    }
+
+    /**
+     * 近端缓存指标
+     */
+    public Map<String, Object> nearCacheStats() {
+        return nearCache.stats();
+    }
+
+    private void invalidate(KeyPrefix prefix, String key) {
+        if (prefix.nearCache()) {
+            nearCache.invalidate(prefix, key);
+        }
     }
 
 }
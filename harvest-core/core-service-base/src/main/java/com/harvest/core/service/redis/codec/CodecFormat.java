@@ -0,0 +1,36 @@
+package com.harvest.core.service.redis.codec;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/14 10:05 AM
+ * @Description: 缓存值编码格式, code 写入值头部, 只能追加不能修改
+ **/
+@Getter
+@AllArgsConstructor
+public enum CodecFormat {
+
+    /**
+     * utf-8 json
+     */
+    JSON((byte) 0),
+
+    /**
+     * Jackson Smile 二进制 json
+     */
+    SMILE((byte) 1);
+
+    private final byte code;
+
+    public static CodecFormat of(byte code) {
+        for (CodecFormat format : values()) {
+            if (format.code == code) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("未知的缓存值编码格式: " + code);
+    }
+
+}
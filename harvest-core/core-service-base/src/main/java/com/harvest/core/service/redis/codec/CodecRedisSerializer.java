@@ -0,0 +1,62 @@
+package com.harvest.core.service.redis.codec;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/14 11:00 AM
+ * @Description: RedisTemplate 值序列化
+ * <p>
+ * 带类型信息的 Smile 负载加版本头部, 超过阈值 LZ4 压缩; 无头部的值按旧版 {@link GenericJackson2JsonRedisSerializer} json 读取;
+ * 开启 legacy-write 时与 {@link RedisValueCodec} 一致写旧版 json
+ **/
+public class CodecRedisSerializer implements RedisSerializer<Object> {
+
+    private final RedisValueCodec codec;
+
+    private final GenericJackson2JsonRedisSerializer smileSerializer;
+
+    private final GenericJackson2JsonRedisSerializer legacySerializer = new GenericJackson2JsonRedisSerializer();
+
+    public CodecRedisSerializer(RedisValueCodec codec) {
+        this.codec = codec;
+        /*与旧版序列化相同的映射配置, 仅底层格式换为 Smile*/
+        ObjectMapper mapper = new ObjectMapper(new SmileFactory());
+        GenericJackson2JsonRedisSerializer.registerNullValueSerializer(mapper, null);
+        mapper.activateDefaultTyping(mapper.getPolymorphicTypeValidator(), ObjectMapper.DefaultTyping.EVERYTHING, JsonTypeInfo.As.PROPERTY);
+        this.smileSerializer = new GenericJackson2JsonRedisSerializer(mapper);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        /*灰度第一阶段写旧版无头部 json, 未升级节点可读*/
+        if (codec.isLegacyWrite()) {
+            return legacySerializer.serialize(value);
+        }
+        return codec.frame(CodecFormat.SMILE, smileSerializer.serialize(value));
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (!RedisValueCodec.isFramed(bytes)) {
+            return legacySerializer.deserialize(bytes);
+        }
+        RedisValueCodec.Frame frame = codec.unframe(bytes);
+        if (frame.getFormat() == CodecFormat.SMILE) {
+            return smileSerializer.deserialize(frame.getPayload());
+        }
+        return legacySerializer.deserialize(frame.getPayload());
+    }
+
+}
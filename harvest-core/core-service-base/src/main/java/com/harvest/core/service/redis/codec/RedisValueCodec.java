@@ -0,0 +1,262 @@
+package com.harvest.core.service.redis.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.harvest.core.utils.JsonUtils;
+import lombok.Getter;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/14 10:10 AM
+ * @Description: 缓存值编解码
+ * <p>
+ * 格式: [MAGIC][VERSION][FLAGS|FORMAT] [原始长度 4 字节, 仅压缩时] [负载];
+ * MAGIC 0xC1 不会出现在 utf-8 文本首字节, 无头部的值按旧版 json 读取, 灰度期间新旧数据可共存;
+ * 负载超过阈值时 LZ4 压缩, 压缩无收益则保留原文
+ **/
+public class RedisValueCodec {
+
+    public static final byte MAGIC = (byte) 0xC1;
+
+    public static final byte VERSION = 1;
+
+    /**
+     * 第三字节高位为压缩标记, 低位为编码格式
+     */
+    private static final int FLAG_LZ4 = 0x80;
+
+    private static final int FORMAT_MASK = 0x7F;
+
+    private static final int HEADER_LENGTH = 3;
+
+    private static final int LENGTH_BYTES = 4;
+
+    /**
+     * 默认压缩阈值 字节
+     */
+    public static final int DEFAULT_COMPRESS_THRESHOLD = 1024;
+
+    private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+
+    private static final LZ4FastDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+
+    /**
+     * 与 JsonUtils 相同映射配置的 Smile
+     */
+    private static final ObjectMapper SMILE_MAPPER = JsonUtils.configure(new ObjectMapper(new SmileFactory()));
+
+    private static final Map<Class<?>, ObjectReader> SMILE_READERS = new ConcurrentHashMap<>();
+
+    private static final Map<Class<?>, ObjectReader> SMILE_LIST_READERS = new ConcurrentHashMap<>();
+
+    private static final Map<Class<?>, ObjectWriter> SMILE_WRITERS = new ConcurrentHashMap<>();
+
+    /**
+     * 写入格式
+     */
+    private final CodecFormat format;
+
+    /**
+     * 写入旧版无头部 json, 用于灰度第一阶段, 保证未升级节点可读
+     */
+    private final boolean legacyWrite;
+
+    private final int compressThreshold;
+
+    public RedisValueCodec(CodecFormat format, boolean legacyWrite, int compressThreshold) {
+        this.format = format;
+        this.legacyWrite = legacyWrite;
+        this.compressThreshold = compressThreshold;
+    }
+
+    public static RedisValueCodec defaults() {
+        return new RedisValueCodec(CodecFormat.SMILE, false, DEFAULT_COMPRESS_THRESHOLD);
+    }
+
+    /**
+     * 编码对象, 字符串按 utf-8 原文写入, 与 StringRedisTemplate 读写兼容;
+     * 灰度期间字符串仍按旧版写为 json 字符串(带引号), 保证未升级节点可读
+     */
+    public byte[] encode(Object value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (legacyWrite) {
+            return JsonUtils.object2JsonBytes(value);
+        }
+        if (value instanceof String) {
+            return ((String) value).getBytes(StandardCharsets.UTF_8);
+        }
+        return this.frame(format, this.serialize(format, value));
+    }
+
+    public <T> T decode(byte[] bytes, Class<T> clazz) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (!isFramed(bytes)) {
+            if (clazz == String.class) {
+                return clazz.cast(decodeString(bytes));
+            }
+            return JsonUtils.json2Object(bytes, clazz);
+        }
+        Frame frame = this.unframe(bytes);
+        try {
+            if (frame.format == CodecFormat.SMILE) {
+                return smileReader(clazz).readValue(frame.payload);
+            }
+            return JsonUtils.json2Object(frame.payload, clazz);
+        } catch (IOException e) {
+            throw new RuntimeException("缓存值解码失败！", e);
+        }
+    }
+
+    public <T> List<T> decodeList(byte[] bytes, Class<T> clazz) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (!isFramed(bytes)) {
+            return JsonUtils.json2ObjectList(bytes, clazz);
+        }
+        Frame frame = this.unframe(bytes);
+        try {
+            if (frame.format == CodecFormat.SMILE) {
+                return smileListReader(clazz).readValue(frame.payload);
+            }
+            return JsonUtils.json2ObjectList(frame.payload, clazz);
+        } catch (IOException e) {
+            throw new RuntimeException("缓存值解码失败！", e);
+        }
+    }
+
+    /**
+     * 写入头部, 超过阈值时压缩
+     *
+     * @param format  负载格式
+     * @param payload 负载
+     * @return 带头部的值
+     */
+    public byte[] frame(CodecFormat format, byte[] payload) {
+        if (payload.length > compressThreshold) {
+            byte[] compressed = COMPRESSOR.compress(payload);
+            if (compressed.length + LENGTH_BYTES < payload.length) {
+                byte[] bytes = new byte[HEADER_LENGTH + LENGTH_BYTES + compressed.length];
+                writeHeader(bytes, format, true);
+                bytes[3] = (byte) (payload.length >>> 24);
+                bytes[4] = (byte) (payload.length >>> 16);
+                bytes[5] = (byte) (payload.length >>> 8);
+                bytes[6] = (byte) payload.length;
+                System.arraycopy(compressed, 0, bytes, HEADER_LENGTH + LENGTH_BYTES, compressed.length);
+                return bytes;
+            }
+        }
+        byte[] bytes = new byte[HEADER_LENGTH + payload.length];
+        writeHeader(bytes, format, false);
+        System.arraycopy(payload, 0, bytes, HEADER_LENGTH, payload.length);
+        return bytes;
+    }
+
+    /**
+     * 解析头部并解压
+     *
+     * @param bytes 带头部的值
+     * @return 负载
+     */
+    public Frame unframe(byte[] bytes) {
+        if (bytes[1] > VERSION) {
+            throw new IllegalStateException("缓存值版本过高: " + bytes[1] + ", 当前支持: " + VERSION);
+        }
+        CodecFormat format = CodecFormat.of((byte) (bytes[2] & FORMAT_MASK));
+        if ((bytes[2] & FLAG_LZ4) == 0) {
+            byte[] payload = new byte[bytes.length - HEADER_LENGTH];
+            System.arraycopy(bytes, HEADER_LENGTH, payload, 0, payload.length);
+            return new Frame(format, payload);
+        }
+        int length = ((bytes[3] & 0xFF) << 24) | ((bytes[4] & 0xFF) << 16) | ((bytes[5] & 0xFF) << 8) | (bytes[6] & 0xFF);
+        byte[] payload = new byte[length];
+        DECOMPRESSOR.decompress(bytes, HEADER_LENGTH + LENGTH_BYTES, payload, 0, length);
+        return new Frame(format, payload);
+    }
+
+    /**
+     * 无头部字符串: 旧版及灰度期间写入的 json 字符串(带引号)去除引号, 否则按 utf-8 原文
+     */
+    static String decodeString(byte[] bytes) {
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            try {
+                return JsonUtils.json2Object(bytes, String.class);
+            } catch (RuntimeException e) {
+                return value;
+            }
+        }
+        return value;
+    }
+
+    public boolean isLegacyWrite() {
+        return legacyWrite;
+    }
+
+    public static boolean isFramed(byte[] bytes) {
+        return bytes != null && bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC;
+    }
+
+    private byte[] serialize(CodecFormat format, Object value) {
+        if (format == CodecFormat.JSON) {
+            return JsonUtils.object2JsonBytes(value);
+        }
+        try {
+            return smileWriter(value.getClass()).writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new RuntimeException("缓存值编码失败！", e);
+        }
+    }
+
+    private static void writeHeader(byte[] bytes, CodecFormat format, boolean compressed) {
+        bytes[0] = MAGIC;
+        bytes[1] = VERSION;
+        bytes[2] = (byte) (format.getCode() | (compressed ? FLAG_LZ4 : 0));
+    }
+
+    private static ObjectReader smileReader(Class<?> clazz) {
+        ObjectReader reader = SMILE_READERS.get(clazz);
+        return reader != null ? reader : SMILE_READERS.computeIfAbsent(clazz, SMILE_MAPPER::readerFor);
+    }
+
+    private static ObjectReader smileListReader(Class<?> clazz) {
+        ObjectReader reader = SMILE_LIST_READERS.get(clazz);
+        return reader != null ? reader : SMILE_LIST_READERS.computeIfAbsent(clazz,
+                c -> SMILE_MAPPER.readerFor(SMILE_MAPPER.getTypeFactory().constructCollectionType(ArrayList.class, c)));
+    }
+
+    private static ObjectWriter smileWriter(Class<?> clazz) {
+        ObjectWriter writer = SMILE_WRITERS.get(clazz);
+        return writer != null ? writer : SMILE_WRITERS.computeIfAbsent(clazz, SMILE_MAPPER::writerFor);
+    }
+
+    @Getter
+    public static class Frame {
+
+        private final CodecFormat format;
+
+        private final byte[] payload;
+
+        private Frame(CodecFormat format, byte[] payload) {
+            this.format = format;
+            this.payload = payload;
+        }
+    }
+
+}
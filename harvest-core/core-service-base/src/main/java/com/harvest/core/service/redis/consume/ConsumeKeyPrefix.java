@@ -0,0 +1,25 @@
+package com.harvest.core.service.redis.consume;
+
+import com.harvest.core.service.redis.prefix.BaseKeyPrefix;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/27 10:00 AM
+ * @Description: 消息消费幂等
+ **/
+public class ConsumeKeyPrefix extends BaseKeyPrefix {
+
+    public ConsumeKeyPrefix(String keyPrefix) {
+        super(keyPrefix);
+    }
+
+    public ConsumeKeyPrefix(String keyPrefix, int expireSeconds) {
+        super(keyPrefix, expireSeconds);
+    }
+
+    /**
+     * 已消费及消费中的消息, 消费组 + 消息键 + 业务Id
+     */
+    public static final ConsumeKeyPrefix CONSUMED = new ConsumeKeyPrefix("mq-consumed:", ONE_DAY);
+
+}
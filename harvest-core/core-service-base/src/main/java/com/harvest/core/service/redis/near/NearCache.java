@@ -0,0 +1,225 @@
+package com.harvest.core.service.redis.near;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.harvest.core.service.redis.prefix.KeyPrefix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/13 10:20 AM
+ * @Description: Redis 本地近端缓存
+ * <p>
+ * 每个开启 {@link KeyPrefix#nearCache()} 的前缀一个有界 Caffeine 缓存, 缓存编码后的原始值(含不存在);
+ * 经 CacheService 写入时广播失效消息, 各节点收到后删除本地副本. 本地过期时间不超过前缀过期时间,
+ * 由 Redis 自然过期或绕过 CacheService 的写入最多延迟一个本地过期周期可见
+ **/
+@Component
+public class NearCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NearCache.class);
+
+    /**
+     * 失效广播频道
+     */
+    public static final String INVALIDATE_CHANNEL = "harvest:near-cache:invalidate";
+
+    /**
+     * 单个前缀本地缓存上限
+     */
+    private static final int MAXIMUM_SIZE = 10_000;
+
+    /**
+     * 本地过期时间上限 秒
+     */
+    private static final int MAX_EXPIRE_SECONDS = 60;
+
+    /**
+     * 消息分隔符, 首段为前缀, 其后为 key
+     */
+    private static final String SPLIT = "\n";
+
+    @Autowired
+    @Qualifier(value = "stringRedisTemplate")
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 前缀 -> 本地缓存
+     */
+    private final Map<String, Region> regions = new ConcurrentHashMap<>();
+
+    /**
+     * 读取, 本地未命中时回源并回填
+     *
+     * @param prefix 前缀
+     * @param key    key
+     * @param loader 回源
+     * @return 值, 不存在为 null
+     */
+    public byte[] get(KeyPrefix prefix, String key, Supplier<byte[]> loader) {
+        Region region = this.region(prefix);
+        Optional<byte[]> cached = region.cache.getIfPresent(key);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+        long epoch = region.epoch.get();
+        byte[] value = loader.get();
+        region.fill(epoch, key, value);
+        return value;
+    }
+
+    /**
+     * 批量读取, 只对本地未命中的 key 回源
+     *
+     * @param prefix 前缀
+     * @param keys   key
+     * @param loader 回源, 入参为未命中的 key, 返回 key -> 值, 不存在的 key 不返回
+     * @return key -> 值, 不存在的 key 不返回
+     */
+    public Map<String, byte[]> getAll(KeyPrefix prefix, Collection<String> keys, Function<List<String>, Map<String, byte[]>> loader) {
+        Region region = this.region(prefix);
+        Map<String, byte[]> values = new HashMap<>(keys.size() * 2);
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            Optional<byte[]> cached = region.cache.getIfPresent(key);
+            if (cached == null) {
+                missing.add(key);
+            } else {
+                cached.ifPresent(value -> values.put(key, value));
+            }
+        }
+        if (missing.isEmpty()) {
+            return values;
+        }
+        long epoch = region.epoch.get();
+        Map<String, byte[]> loaded = loader.apply(missing);
+        for (String key : missing) {
+            byte[] value = loaded.get(key);
+            region.fill(epoch, key, value);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 本地删除并广播失效
+     *
+     * @param prefix 前缀
+     * @param keys   key
+     */
+    public void invalidate(KeyPrefix prefix, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        this.evict(prefix.getKeyPrefix(), keys);
+        StringBuilder message = new StringBuilder(prefix.getKeyPrefix());
+        for (String key : keys) {
+            message.append(SPLIT).append(key);
+        }
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, message.toString());
+        } catch (Exception e) {
+            LOGGER.error("NearCache#失效广播异常, prefix:{}", prefix.getKeyPrefix(), e);
+        }
+    }
+
+    public void invalidate(KeyPrefix prefix, String key) {
+        this.invalidate(prefix, Collections.singletonList(key));
+    }
+
+    /**
+     * 处理失效广播
+     *
+     * @param message 前缀\nkey1\nkey2...
+     */
+    public void onInvalidate(String message) {
+        String[] parts = message.split(SPLIT);
+        if (parts.length < 2) {
+            return;
+        }
+        this.evict(parts[0], Arrays.asList(parts).subList(1, parts.length));
+    }
+
+    /**
+     * 指标
+     *
+     * @return 前缀 -> 指标
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        regions.forEach((prefix, region) -> {
+            CacheStats cacheStats = region.cache.stats();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("size", region.cache.estimatedSize());
+            item.put("hitCount", cacheStats.hitCount());
+            item.put("missCount", cacheStats.missCount());
+            item.put("hitRate", cacheStats.hitRate());
+            item.put("evictionCount", cacheStats.evictionCount());
+            item.put("invalidations", region.epoch.get());
+            stats.put(prefix, item);
+        });
+        return stats;
+    }
+
+    private void evict(String keyPrefix, Collection<String> keys) {
+        Region region = regions.get(keyPrefix);
+        if (region == null) {
+            return;
+        }
+        /*先推进版本, 正在回源的旧值不再回填*/
+        region.epoch.incrementAndGet();
+        region.cache.invalidateAll(keys);
+    }
+
+    private Region region(KeyPrefix prefix) {
+        String keyPrefix = prefix.getKeyPrefix();
+        Region region = regions.get(keyPrefix);
+        return region != null ? region : regions.computeIfAbsent(keyPrefix, k -> new Region(prefix.expireSeconds()));
+    }
+
+    private static class Region {
+
+        private final Cache<String, Optional<byte[]>> cache;
+
+        /**
+         * 失效版本, 回源前后不一致时放弃回填
+         */
+        private final AtomicLong epoch = new AtomicLong();
+
+        private Region(int expireSeconds) {
+            int seconds = expireSeconds > 0 ? Math.min(expireSeconds, MAX_EXPIRE_SECONDS) : MAX_EXPIRE_SECONDS;
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(MAXIMUM_SIZE)
+                    .expireAfterWrite(seconds, TimeUnit.SECONDS)
+                    .recordStats()
+                    .build();
+        }
+
+        private void fill(long epoch, String key, byte[] value) {
+            if (this.epoch.get() != epoch) {
+                return;
+            }
+            cache.put(key, Optional.ofNullable(value));
+            /*回填期间发生失效*/
+            if (this.epoch.get() != epoch) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+}
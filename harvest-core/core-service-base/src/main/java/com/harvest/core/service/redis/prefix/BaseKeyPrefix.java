@@ -40,14 +40,23 @@ public abstract class BaseKeyPrefix implements KeyPrefix {
      * 过期时间
      */
     private final int expireSeconds;
+    /**
+     * 本地近端缓存
+     */
+    private final boolean nearCache;
 
     public BaseKeyPrefix(String keyPrefix) {
         this(keyPrefix, 0);
     }
 
     public BaseKeyPrefix(String keyPrefix, int expireSeconds) {
+        this(keyPrefix, expireSeconds, false);
+    }
+
+    public BaseKeyPrefix(String keyPrefix, int expireSeconds, boolean nearCache) {
         this.keyPrefix = keyPrefix;
         this.expireSeconds = expireSeconds;
+        this.nearCache = nearCache;
     }
 
     @Override
@@ -55,6 +64,11 @@ public abstract class BaseKeyPrefix implements KeyPrefix {
         return this.expireSeconds;
     }
 
+    @Override
+    public boolean nearCache() {
+        return this.nearCache;
+    }
+
     @Override
     public String getKeyPrefix() {
         return this.getClass().getSimpleName() + SPLIT + this.keyPrefix;
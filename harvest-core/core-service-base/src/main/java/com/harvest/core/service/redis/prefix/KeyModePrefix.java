@@ -19,6 +19,7 @@ public interface KeyModePrefix {
         String ORDER_AUDIT_FLOW     = "audit-flow:";
         String ORDER_DELIVERY_FLOW  = "delivery-flow:";
         String ORDER_BACK_STAT_TASK = "back-stat:";
+        String ORDER_COUNTER        = "counter:";
 
     }
 
@@ -26,6 +27,8 @@ public interface KeyModePrefix {
 
         String LOGISTICS_RULE       = "logistics-rule:";
         String LOGISTICS_RULE_MATCH = "logistics-match-rule:";
+        String LOGISTICS_RULE_VERSION = "logistics-rule-version:";
+        String LOGISTICS_RULE_INVALIDATE = "logistics-rule-invalidate";
     }
 
     interface Basic {
@@ -22,4 +22,11 @@ public interface KeyPrefix {
      * 获取 key-lock 前缀
      */
     String getKeyLock();
+
+    /**
+     * 是否开启本地近端缓存, 适用于读多写少的 key; 写入经 CacheService 时各节点同步失效
+     */
+    default boolean nearCache() {
+        return false;
+    }
 }
@@ -3,6 +3,8 @@ package com.harvest.core.service.redis.rate;
 import lombok.Data;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
 import java.util.Collections;
 
@@ -41,7 +43,8 @@ public class DistributedRateLimiter {
 
     public boolean acquire(int limit, int expireTimeSeconds) {
         long currentTimeMillis = System.currentTimeMillis();
-        Long result = redisTemplate.execute(rateLimiterLuaScript,
+        // 脚本参数按字符串传递, 不经过模版的值序列化
+        Long result = redisTemplate.execute(rateLimiterLuaScript, RedisSerializer.string(), new GenericToStringSerializer<>(Long.class),
                 Collections.singletonList(rateLimiterKey),
                 String.valueOf(limit), String.valueOf(expireTimeSeconds),
                 String.valueOf(currentTimeMillis));
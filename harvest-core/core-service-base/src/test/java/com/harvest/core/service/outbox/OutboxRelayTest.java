@@ -0,0 +1,237 @@
+package com.harvest.core.service.outbox;
+
+import com.harvest.core.outbox.OutboxMessage;
+import com.harvest.core.outbox.OutboxStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/27 10:00 AM
+ * @Description: 发件箱中继的同键顺序、退避、死信及同键阻塞
+ **/
+public class OutboxRelayTest {
+
+    private static final String DESTINATION = "TOPIC";
+
+    private final FakeStore store = new FakeStore();
+
+    private final FakeSender sender = new FakeSender();
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    public void setUp() {
+        relay = new OutboxRelay();
+        ReflectionTestUtils.setField(relay, "outboxStore", store);
+        ReflectionTestUtils.setField(relay, "outboxSender", sender);
+        ReflectionTestUtils.setField(relay, "batchSize", 100);
+        ReflectionTestUtils.setField(relay, "maxRetries", 3);
+    }
+
+    @Test
+    public void sendsMessagesOfSameKeyInOrder() {
+        int settled = relay.relay(Arrays.asList(
+                this.message(1L, "a", 0), this.message(2L, "b", 0), this.message(3L, "a", 0), this.message(4L, "b", 0)));
+
+        assertEquals(4, settled);
+        assertEquals(Arrays.asList(1L, 3L), sender.sent.get("a"));
+        assertEquals(Arrays.asList(2L, 4L), sender.sent.get("b"));
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 3L, 4L)), new HashSet<>(store.sent));
+        assertTrue(store.retries.isEmpty());
+        assertTrue(store.dead.isEmpty());
+    }
+
+    @Test
+    public void failedMessagesBackOffByRetries() {
+        ReflectionTestUtils.setField(relay, "batchSize", 1);
+        sender.failing.addAll(Arrays.asList(1L, 2L));
+
+        long before = System.currentTimeMillis();
+        int settled = relay.relay(Arrays.asList(this.message(1L, "a", 0), this.message(2L, "b", 1)));
+        long after = System.currentTimeMillis();
+
+        assertEquals(2, settled);
+        assertTrue(store.sent.isEmpty());
+        this.assertBetween(before + 1000L, after + 1000L, store.retries.get(1L));
+        this.assertBetween(before + 2000L, after + 2000L, store.retries.get(2L));
+        assertEquals("send failed", store.errors.get(1L));
+    }
+
+    @Test
+    public void deadLettersAfterMaxRetries() {
+        sender.failing.add(1L);
+
+        relay.relay(Collections.singletonList(this.message(1L, "a", 2)));
+
+        assertEquals(Collections.singletonList(1L), store.dead);
+        assertTrue(store.retries.isEmpty());
+    }
+
+    @Test
+    public void laterMessagesOfFailedKeyWait() {
+        ReflectionTestUtils.setField(relay, "batchSize", 1);
+        sender.failing.add(1L);
+
+        int settled = relay.relay(Arrays.asList(this.message(1L, "a", 0), this.message(2L, "b", 0), this.message(3L, "a", 0)));
+
+        /*3 既不发送也不回写, 留待 1 重试成功后按序投递*/
+        assertEquals(2, settled);
+        assertEquals(Collections.singletonList(2L), store.sent);
+        assertEquals(Collections.singleton(1L), store.retries.keySet());
+        assertFalse(sender.sent.containsKey("a"));
+    }
+
+    @Test
+    public void failedBatchBlocksItsKeysOnly() {
+        sender.failing.add(1L);
+
+        /*1、2 同批失败, 3 与 2 同键在下一批跳过*/
+        ReflectionTestUtils.setField(relay, "batchSize", 2);
+        OutboxMessage first = this.message(1L, "a", 0);
+        OutboxMessage second = this.message(2L, "c", 0);
+        OutboxMessage third = this.message(3L, "c", 0);
+        int settled = relay.relay(Arrays.asList(first, second, third));
+
+        assertEquals(2, settled);
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), store.retries.keySet());
+        assertTrue(store.sent.isEmpty());
+    }
+
+    @Test
+    public void unresolvedPayloadRetriesAndBlocksKey() {
+        this.resolvers().put(DESTINATION, new OutboxPayloadResolver() {
+            @Override
+            public String destination() {
+                return DESTINATION;
+            }
+
+            @Override
+            public Map<String, Object> resolve(Long companyId, Collection<String> messageKeys) {
+                throw new IllegalStateException("resolve failed");
+            }
+        });
+        OutboxMessage unresolved = this.message(1L, "a", 0);
+        unresolved.setPayload(null);
+
+        int settled = relay.relay(Arrays.asList(unresolved, this.message(2L, "a", 0), this.message(3L, "b", 0)));
+
+        assertEquals(2, settled);
+        assertEquals(Collections.singleton(1L), store.retries.keySet());
+        assertEquals(Collections.singletonList(3L), store.sent);
+    }
+
+    @Test
+    public void missingPayloadGoesToDeadLetter() {
+        this.resolvers().put(DESTINATION, new OutboxPayloadResolver() {
+            @Override
+            public String destination() {
+                return DESTINATION;
+            }
+
+            @Override
+            public Map<String, Object> resolve(Long companyId, Collection<String> messageKeys) {
+                return Collections.singletonMap("b", "{}");
+            }
+        });
+        OutboxMessage missing = this.message(1L, "a", 0);
+        missing.setPayload(null);
+        OutboxMessage resolved = this.message(2L, "b", 0);
+        resolved.setPayload(null);
+
+        relay.relay(Arrays.asList(missing, resolved));
+
+        assertEquals(Collections.singletonList(1L), store.dead);
+        assertEquals(Collections.singletonList(2L), store.sent);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, OutboxPayloadResolver> resolvers() {
+        return (Map<String, OutboxPayloadResolver>) ReflectionTestUtils.getField(relay, "resolvers");
+    }
+
+    private void assertBetween(long min, long max, Long actual) {
+        assertNotNull(actual);
+        assertTrue(actual >= min && actual <= max, "下次投递时间 " + actual + " 不在 [" + min + ", " + max + "]");
+    }
+
+    private OutboxMessage message(Long id, String key, int retries) {
+        OutboxMessage message = OutboxMessage.of(1L, DESTINATION, key, "{\"id\":" + id + "}");
+        message.setId(id);
+        message.setRetries(retries);
+        return message;
+    }
+
+    /**
+     * 按顺序键分片, 失败的消息所在批次整批抛出异常
+     */
+    private static final class FakeSender implements OutboxSender {
+
+        private final Set<Long> failing = new HashSet<>();
+
+        private final Map<String, List<Long>> sent = new HashMap<>();
+
+        @Override
+        public int shard(String destination, String messageKey) {
+            return messageKey.hashCode() & 1;
+        }
+
+        @Override
+        public void send(String destination, int shard, List<OutboxMessage> messages) {
+            if (messages.stream().anyMatch(message -> failing.contains(message.getId()))) {
+                throw new IllegalStateException("send failed");
+            }
+            messages.forEach(message -> sent.computeIfAbsent(message.getMessageKey(), k -> new ArrayList<>()).add(message.getId()));
+        }
+    }
+
+    private static final class FakeStore implements OutboxStore {
+
+        private final List<Long> sent = new ArrayList<>();
+
+        private final Map<Long, Long> retries = new HashMap<>();
+
+        private final Map<Long, String> errors = new HashMap<>();
+
+        private final List<Long> dead = new ArrayList<>();
+
+        @Override
+        public void save(Collection<OutboxMessage> messages) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<OutboxMessage> pending(int limit) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void sent(Collection<Long> ids) {
+            sent.addAll(ids);
+        }
+
+        @Override
+        public void retry(Collection<Long> ids, long nextMillis, String error) {
+            ids.forEach(id -> {
+                retries.put(id, nextMillis);
+                errors.put(id, error);
+            });
+        }
+
+        @Override
+        public void dead(Collection<Long> ids, String error) {
+            dead.addAll(ids);
+        }
+
+        @Override
+        public long size() {
+            return 0L;
+        }
+    }
+
+}
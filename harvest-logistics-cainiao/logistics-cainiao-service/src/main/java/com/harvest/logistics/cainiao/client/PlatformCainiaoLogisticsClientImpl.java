@@ -49,7 +49,7 @@ public class PlatformCainiaoLogisticsClientImpl implements PlatformCainiaoLogist
         declarationResponse.setSuccess(true);
         declarationResponse.setDeliveryNo("CAINIAO123");
         declarationResponse.setMessage("");
-        declarationResponse.setDeclareTime(DateUtils.FORMAT.format(new Date()));
+        declarationResponse.setDeclareTime(DateUtils.format(new Date()));
         declarationResponse.setFeature("");
         return declarationResponse;
     }
@@ -0,0 +1,36 @@
+package com.harvest.oms.repository.domain.order.count;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/20 10:15 AM
+ * @Description: 订单计数分桶 ｜ 按 (状态, 店铺, 仓库, 异常, 挂起) 分组的订单数
+ **/
+@Data
+public class OrderCountBucket implements Serializable {
+
+    private static final long serialVersionUID = -3150458911372651307L;
+
+    @ApiModelProperty("订单状态")
+    private Integer orderStatus;
+
+    @ApiModelProperty("店铺Id")
+    private Long shopId;
+
+    @ApiModelProperty("仓库Id")
+    private Long warehouseId;
+
+    @ApiModelProperty("是否异常")
+    private Boolean abnormal;
+
+    @ApiModelProperty("是否挂起")
+    private Boolean hangUp;
+
+    @ApiModelProperty("订单数")
+    private Long count;
+
+}
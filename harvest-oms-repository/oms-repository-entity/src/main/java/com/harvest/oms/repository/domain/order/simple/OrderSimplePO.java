@@ -9,6 +9,7 @@ import io.swagger.annotations.ApiModelProperty;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -61,4 +62,16 @@ public class OrderSimplePO extends OrderCore {
     @ApiModelProperty("订单仓库")
     private OrderWarehouse orderWarehouse;
 
+    @ApiModelProperty("是否异常")
+    private Boolean abnormal;
+
+    @ApiModelProperty("是否挂起")
+    private Boolean hangUp;
+
+    @ApiModelProperty(value = "数据版本", notes = "条件更新时作为期望版本")
+    private Integer version;
+
+    @ApiModelProperty(value = "记录创建时间", notes = "游标分页的排序键")
+    private LocalDateTime rcTime;
+
 }
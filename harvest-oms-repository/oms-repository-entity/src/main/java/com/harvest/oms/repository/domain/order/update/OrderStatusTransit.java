@@ -0,0 +1,35 @@
+package com.harvest.oms.repository.domain.order.update;
+
+import com.harvest.core.enums.oms.OrderStatusEnum;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/17 11:00 AM
+ * @Description: 订单状态批量迁移
+ **/
+@Data
+public class OrderStatusTransit implements Serializable {
+
+    private static final long serialVersionUID = 4362207405617364418L;
+
+    @ApiModelProperty("订单Id")
+    private Collection<Long> orderIds;
+
+    @ApiModelProperty("允许的来源状态")
+    private Collection<OrderStatusEnum> from;
+
+    @ApiModelProperty("目标状态")
+    private OrderStatusEnum to;
+
+    @ApiModelProperty(value = "发件箱投递目标", notes = "非空时迁移成功的订单在同一事务内写入发件箱, 消息体在投递前解析")
+    private String outboxDestination;
+
+    @ApiModelProperty(value = "撤销的发件箱投递目标", notes = "非空时迁移成功的订单在该目标下待投递的消息在同一事务内转入死信, 用于迁移撤销")
+    private String cancelOutboxDestination;
+
+}
@@ -0,0 +1,33 @@
+package com.harvest.oms.repository.domain.order.update;
+
+import com.harvest.core.enums.oms.OrderStatusEnum;
+import com.harvest.oms.repository.domain.order.count.OrderCountBucket;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/17 11:05 AM
+ * @Description: 订单状态批量迁移结果
+ **/
+@Data
+public class OrderStatusTransitResult implements Serializable {
+
+    private static final long serialVersionUID = 6918213025766180452L;
+
+    @ApiModelProperty("实际迁移的订单Id")
+    private List<Long> orderIds = Collections.emptyList();
+
+    @ApiModelProperty(value = "迁移前的订单状态", notes = "订单Id -> 迁移前状态, 后续处理失败时据此恢复")
+    private Map<Long, OrderStatusEnum> sources = Collections.emptyMap();
+
+    @ApiModelProperty(value = "迁移订单的来源分桶", notes = "按迁移前的状态分组, 用于增量维护订单计数")
+    private Collection<OrderCountBucket> from = Collections.emptyList();
+
+}
@@ -1,5 +1,6 @@
 package com.harvest.oms.repository.domain.order.update;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.harvest.core.domain.CompanyId;
 import com.harvest.oms.repository.domain.order.update.remark.OrderUpdateRemark;
 import io.swagger.annotations.ApiModelProperty;
@@ -7,6 +8,8 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @Author: Alodi
@@ -37,6 +40,27 @@ public class OrderSubmitUpdateField extends CompanyId {
     @ApiModelProperty("标记")
     private List<Integer> tagValues;
 
+    /**
+     * 批量预处理结果(如批量匹配的规则), 订单ID -> 结果, 仅在本次批量更新内有效, 不参与序列化
+     */
+    @JsonIgnore
+    @ApiModelProperty(hidden = true)
+    private transient Map<Long, Object> prepared;
+
+    public void putPrepared(Long orderId, Object value) {
+        if (prepared == null) {
+            prepared = new ConcurrentHashMap<>();
+        }
+        if (orderId != null && value != null) {
+            prepared.put(orderId, value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getPrepared(Long orderId) {
+        return prepared == null || orderId == null ? null : (T) prepared.get(orderId);
+    }
+
     /**
      * 更新
      */
@@ -179,6 +179,10 @@ public class FarmlandOmsOrderEntity {
     @TableField("is_abnormal")
     private Boolean isAbnormal;
 
+    @ApiModelProperty("数据版本, 每次更新加一")
+    @TableField("version")
+    private Integer version;
+
     @ApiModelProperty("逻辑删除标记")
     @TableField("is_deleted")
     @TableLogic
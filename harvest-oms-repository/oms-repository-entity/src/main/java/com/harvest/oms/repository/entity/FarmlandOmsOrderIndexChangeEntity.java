@@ -0,0 +1,42 @@
+package com.harvest.oms.repository.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.time.LocalDateTime;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * <p>
+ * 订单索引变更记录
+ * </p>
+ *
+ * @author Alodi
+ * @since 2023-04-22 11:00:00
+ */
+@Getter
+@Setter
+@TableName("farmland_oms_order_index_change")
+@ApiModel(value = "FarmlandOmsOrderIndexChangeEntity对象", description = "订单索引变更记录")
+public class FarmlandOmsOrderIndexChangeEntity {
+
+    @ApiModelProperty("自增主键, 各节点按此顺序追赶")
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    @ApiModelProperty("公司ID")
+    @TableField("COMPANY_ID")
+    private Long companyId;
+
+    @ApiModelProperty("订单ID")
+    @TableField("order_id")
+    private Long orderId;
+
+    @ApiModelProperty("记录创建时间")
+    @TableField("rc_time")
+    private LocalDateTime rcTime;
+}
@@ -0,0 +1,70 @@
+package com.harvest.oms.repository.entity;
+
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.time.LocalDateTime;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * <p>
+ * 发件箱
+ * </p>
+ *
+ * @author Alodi
+ * @since 2023-04-26 11:30:00
+ */
+@Getter
+@Setter
+@TableName("farmland_oms_outbox")
+@ApiModel(value = "FarmlandOmsOutboxEntity对象", description = "发件箱")
+public class FarmlandOmsOutboxEntity {
+
+    @ApiModelProperty("primary key")
+    @TableId("id")
+    private Long id;
+
+    @ApiModelProperty("公司ID")
+    @TableField("COMPANY_ID")
+    private Long companyId;
+
+    @ApiModelProperty("投递目标 topic:tags")
+    @TableField("destination")
+    private String destination;
+
+    @ApiModelProperty("顺序键")
+    @TableField("message_key")
+    private String messageKey;
+
+    @ApiModelProperty("JSON 消息体, 为空时投递前解析")
+    @TableField("payload")
+    private String payload;
+
+    @ApiModelProperty("0:待投递｜1:已投递｜2:死信")
+    @TableField("status")
+    private Integer status;
+
+    @ApiModelProperty("失败次数")
+    @TableField("retries")
+    private Integer retries;
+
+    @ApiModelProperty("下次投递时间")
+    @TableField("next_time")
+    private LocalDateTime nextTime;
+
+    @ApiModelProperty("最近一次失败原因")
+    @TableField("last_error")
+    private String lastError;
+
+    @ApiModelProperty("记录创建时间")
+    @TableField(value = "rc_time", fill = FieldFill.INSERT)
+    private LocalDateTime rcTime;
+
+    @ApiModelProperty("记录修改时间")
+    @TableField(value = "rm_time", fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime rmTime;
+}
@@ -0,0 +1,31 @@
+package com.harvest.oms.repository.query.order;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/19 10:10 AM
+ * @Description: 按订单Id查询指定数据段
+ **/
+@Data
+public class OrderSectionQuery implements Serializable {
+
+    private static final long serialVersionUID = -3190518164027635207L;
+
+    @ApiModelProperty("订单Ids")
+    private Collection<Long> orderIds;
+
+    @ApiModelProperty(value = "查询数据段", notes = "为空时查询全部, 空集合只查询订单基础信息, 可选值见 OrderSections")
+    private Collection<String> sections;
+
+    public static OrderSectionQuery build(Collection<Long> orderIds, Collection<String> sections) {
+        OrderSectionQuery query = new OrderSectionQuery();
+        query.setOrderIds(orderIds);
+        query.setSections(sections);
+        return query;
+    }
+}
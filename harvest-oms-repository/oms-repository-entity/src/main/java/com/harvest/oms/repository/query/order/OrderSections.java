@@ -0,0 +1,75 @@
+package com.harvest.oms.repository.query.order;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/19 10:00 AM
+ * @Description: 订单丰富查询数据段
+ * <p>
+ * 订单基础信息(状态、地址、备注、仓库Id、物流Id、版本等)始终返回, 以下数据段按需填充
+ **/
+public interface OrderSections {
+
+    /**
+     * 订单明细
+     */
+    String ITEMS = "items";
+    /**
+     * 明细商品信息
+     */
+    String ITEM_GOODS = "itemGoods";
+    /**
+     * 订单标记
+     */
+    String TAGS = "tags";
+    /**
+     * 仓库信息
+     */
+    String WAREHOUSE = "warehouse";
+    /**
+     * 物流渠道信息
+     */
+    String LOGISTICS_CHANNEL = "logisticsChannel";
+    /**
+     * 申报信息
+     */
+    String DECLARATION = "declaration";
+    /**
+     * 店铺信息
+     */
+    String SHOP = "shop";
+    /**
+     * 自定义标签
+     */
+    String CUSTOM_TAG = "customTag";
+    /**
+     * 平台特性
+     */
+    String PLATFORM_FEATURE = "platformFeature";
+    /**
+     * 公司特性
+     */
+    String COMPANY_FEATURE = "companyFeature";
+    /**
+     * 物流特性
+     */
+    String LOGISTICS_FEATURE = "logisticsFeature";
+
+    /**
+     * 全部数据段
+     */
+    Set<String> ALL = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+            ITEMS, ITEM_GOODS, TAGS, WAREHOUSE, LOGISTICS_CHANNEL, DECLARATION, SHOP, CUSTOM_TAG,
+            PLATFORM_FEATURE, COMPANY_FEATURE, LOGISTICS_FEATURE
+    )));
+
+    /**
+     * 只查询订单基础信息
+     */
+    Set<String> BASE = Collections.emptySet();
+
+}
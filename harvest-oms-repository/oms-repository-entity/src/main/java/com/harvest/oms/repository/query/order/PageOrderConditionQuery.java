@@ -33,6 +33,12 @@ public class PageOrderConditionQuery extends PageQuery implements Serializable {
     @ApiModelProperty("订单状态")
     private Collection<Integer> statuses;
 
+    @ApiModelProperty("仓库ID集")
+    private Collection<Long> warehouseIds;
+
+    @ApiModelProperty("物流类型")
+    private Collection<Integer> logisticsTypes;
+
     @ApiModelProperty("包含标签")
     private Collection<Integer> includeTags;
 
@@ -60,12 +66,27 @@ public class PageOrderConditionQuery extends PageQuery implements Serializable {
     @ApiModelProperty("是否是异常订单 0否 1是")
     private Boolean abnormal;
 
+    @ApiModelProperty("是否是挂起订单 0否 1是")
+    private Boolean hangUp;
+
     @ApiModelProperty("分页不查总数-需要前端处理分页")
     private Boolean noCount;
 
+    /**
+     * 为空时按页码偏移分页; 不为空时按 (记录创建时间, 订单Id) 游标分页, 忽略页码及排序列
+     */
+    @ApiModelProperty(value = "分页游标", notes = "首页传空字符串, 之后传上一页返回的游标; 深分页及批量遍历使用")
+    private String cursor;
+
     @ApiModelProperty("排序列")
     private ColumnSort columnSort;
 
+    /**
+     * {@link OrderSections}
+     */
+    @ApiModelProperty(value = "查询数据段", notes = "为空时查询全部, 空集合只查询订单基础信息, 可选值见 OrderSections")
+    private Collection<String> sections;
+
     @Getter
     public enum ColumnSort {
 
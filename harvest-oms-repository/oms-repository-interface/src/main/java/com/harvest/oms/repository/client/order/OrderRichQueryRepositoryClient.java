@@ -4,6 +4,7 @@ import com.harvest.core.annotation.feign.HarvestClient;
 import com.harvest.core.constants.GlobalMacroDefinition;
 import com.harvest.core.domain.Page;
 import com.harvest.oms.repository.constants.HarvestOmsRepositoryApplications;
+import com.harvest.oms.repository.domain.order.count.OrderCountBucket;
 import com.harvest.oms.repository.domain.order.simple.OrderSimplePO;
 import com.harvest.oms.repository.query.order.PageOrderConditionQuery;
 import io.swagger.annotations.ApiOperation;
@@ -25,6 +26,10 @@ public interface OrderRichQueryRepositoryClient extends GlobalMacroDefinition {
     @PostMapping(value = "/frontCountQueryOrder")
     Long frontCountQueryOrder(@RequestParam(COMPANY_ID) Long companyId, @RequestBody PageOrderConditionQuery condition);
 
+    @ApiOperation(value = "订单计数分桶", notes = "按 (状态, 店铺, 仓库, 异常, 挂起) 分组, 用于校准订单计数器")
+    @PostMapping(value = "/groupCountOrder")
+    Collection<OrderCountBucket> groupCountOrder(@RequestParam(COMPANY_ID) Long companyId);
+
     @ApiOperation("分页订单信息查询")
     @PostMapping(value = "/pageQueryOrderRich")
     Page<OrderSimplePO> pageQueryOrderRich(@RequestParam(COMPANY_ID) Long companyId, @RequestBody PageOrderConditionQuery condition);
@@ -4,9 +4,12 @@ import com.harvest.core.annotation.feign.HarvestClient;
 import com.harvest.core.constants.GlobalMacroDefinition;
 import com.harvest.core.enums.oms.OrderStatusEnum;
 import com.harvest.oms.repository.constants.HarvestOmsRepositoryApplications;
+import com.harvest.oms.repository.domain.logistics.OrderLogisticsKey;
 import com.harvest.oms.repository.domain.order.base.OrderWarehouse;
 import com.harvest.oms.repository.domain.order.simple.OrderItemSimplePO;
 import com.harvest.oms.repository.domain.order.simple.OrderSimplePO;
+import com.harvest.oms.repository.domain.order.update.OrderStatusTransit;
+import com.harvest.oms.repository.domain.order.update.OrderStatusTransitResult;
 import com.harvest.oms.repository.domain.order.update.remark.OrderUpdateRemark;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -20,6 +23,8 @@ import java.util.List;
  * @Author: Alodi
  * @Date: 2022/12/11 7:13 PM
  * @Description: TODO
+ * <p>
+ * 订单主表的更新均推进 version; 传入期望版本时按 version 条件更新, 返回 false 表示版本冲突, 未传入时无条件更新
  **/
 @HarvestClient(value = HarvestOmsRepositoryApplications.SERVICE_NAME, path = HarvestOmsRepositoryApplications.Path.ORDER_WRITE)
 public interface OrderWriteRepositoryClient extends GlobalMacroDefinition {
@@ -32,29 +37,44 @@ public interface OrderWriteRepositoryClient extends GlobalMacroDefinition {
     @PostMapping("/insertItems")
     void insertItems(@RequestParam(COMPANY_ID) Long companyId, @RequestBody Collection<OrderItemSimplePO> orderItemSimples);
 
-    @ApiOperation("更新申报")
+    @ApiOperation(value = "更新申报", notes = "期望版本为空时不校验版本")
     @PostMapping("/updateDeclare")
-    void updateDeclare(@RequestParam(COMPANY_ID) Long companyId, @RequestBody OrderSimplePO orderSimple);
+    boolean updateDeclare(@RequestParam(COMPANY_ID) Long companyId, @RequestParam(value = OMS.VERSION, required = false) Integer version,
+                          @RequestBody OrderSimplePO orderSimple);
 
     @ApiOperation("更新订单状态")
     @PostMapping("/updateOrderStatus")
-    void updateOrderStatus(@RequestParam(COMPANY_ID) Long companyId, @RequestParam(OMS.ORDER_ID) Long orderId,
-                           @RequestParam(OMS.ORDER_STATUS) OrderStatusEnum orderStatus);
+    boolean updateOrderStatus(@RequestParam(COMPANY_ID) Long companyId, @RequestParam(OMS.ORDER_ID) Long orderId,
+                              @RequestParam(value = OMS.VERSION, required = false) Integer version,
+                              @RequestParam(OMS.ORDER_STATUS) OrderStatusEnum orderStatus);
+
+    @ApiOperation(value = "批量迁移订单状态", notes = "仅来源状态匹配的订单迁移, 返回实际迁移的订单Id、迁移前状态及来源分桶")
+    @PostMapping("/transitOrderStatus")
+    OrderStatusTransitResult transitOrderStatus(@RequestParam(COMPANY_ID) Long companyId, @RequestBody OrderStatusTransit transit);
 
     @ApiOperation("更新订单备注")
     @PostMapping("/updateRemark")
-    void updateRemark(@RequestParam(COMPANY_ID) Long companyId, @RequestParam(OMS.ORDER_ID) Long orderId,
-                      @RequestBody OrderUpdateRemark remark);
+    boolean updateRemark(@RequestParam(COMPANY_ID) Long companyId, @RequestParam(OMS.ORDER_ID) Long orderId,
+                         @RequestParam(value = OMS.VERSION, required = false) Integer version,
+                         @RequestBody OrderUpdateRemark remark);
 
     @ApiOperation("更新订单仓库")
     @PostMapping("/updateWarehouse")
-    void updateWarehouse(@RequestParam(COMPANY_ID) Long companyId, @RequestParam(OMS.ORDER_ID) Long orderId,
-                         @RequestBody OrderWarehouse orderWarehouse);
+    boolean updateWarehouse(@RequestParam(COMPANY_ID) Long companyId, @RequestParam(OMS.ORDER_ID) Long orderId,
+                            @RequestParam(value = OMS.VERSION, required = false) Integer version,
+                            @RequestBody OrderWarehouse orderWarehouse);
+
+    @ApiOperation("更新订单物流")
+    @PostMapping("/updateLogistics")
+    boolean updateLogistics(@RequestParam(COMPANY_ID) Long companyId, @RequestParam(OMS.ORDER_ID) Long orderId,
+                            @RequestParam(value = OMS.VERSION, required = false) Integer version,
+                            @RequestBody OrderLogisticsKey logisticsKey);
 
     @ApiOperation("提交异常")
     @PostMapping("/abnormal")
-    void abnormal(@RequestParam(COMPANY_ID) Long companyId, @RequestParam("abnormal") boolean abnormal,
-                  @RequestParam(OMS.ORDER_ID) Long orderId);
+    boolean abnormal(@RequestParam(COMPANY_ID) Long companyId, @RequestParam("abnormal") boolean abnormal,
+                     @RequestParam(OMS.ORDER_ID) Long orderId,
+                     @RequestParam(value = OMS.VERSION, required = false) Integer version);
 
     @ApiOperation("移除全部订单标记")
     @PostMapping("/tagRemoveAll")
@@ -0,0 +1,45 @@
+package com.harvest.oms.repository.client.outbox;
+
+import com.harvest.core.annotation.feign.HarvestClient;
+import com.harvest.core.outbox.OutboxMessage;
+import com.harvest.oms.repository.constants.HarvestOmsRepositoryApplications;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/26 11:50 AM
+ * @Description: 订单库发件箱, 供中继领取及回写投递结果
+ * <p>
+ * 消息写入随业务写入在仓储事务内完成, 不经此接口
+ **/
+@HarvestClient(value = HarvestOmsRepositoryApplications.SERVICE_NAME, path = HarvestOmsRepositoryApplications.Path.OUTBOX)
+public interface OutboxRepositoryClient {
+
+    @ApiOperation("到期待投递消息")
+    @PostMapping("/pending")
+    List<OutboxMessage> pending(@RequestParam("limit") int limit);
+
+    @ApiOperation("标记已投递")
+    @PostMapping("/sent")
+    void sent(@RequestBody Collection<Long> ids);
+
+    @ApiOperation("投递失败, 延后重试")
+    @PostMapping("/retry")
+    void retry(@RequestParam("nextMillis") long nextMillis, @RequestParam(value = "error", required = false) String error,
+               @RequestBody Collection<Long> ids);
+
+    @ApiOperation("转入死信")
+    @PostMapping("/dead")
+    void dead(@RequestParam(value = "error", required = false) String error, @RequestBody Collection<Long> ids);
+
+    @ApiOperation("待投递消息数")
+    @PostMapping("/size")
+    long size();
+
+}
@@ -18,6 +18,7 @@ public interface HarvestOmsRepositoryApplications {
         String ORDER_DECLARE        = OMS_PATH + "/OrderDeclareRepositoryClient";
         String ORDER_WRITE          = OMS_PATH + "/OrderWriteRepositoryClient";
         String ORDER_OPERATION_LOG  = OMS_PATH + "/OrderOperationLogRepositoryClient";
+        String OUTBOX               = OMS_PATH + "/OutboxRepositoryClient";
 
     }
 
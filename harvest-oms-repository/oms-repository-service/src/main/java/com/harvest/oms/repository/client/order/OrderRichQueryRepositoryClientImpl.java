@@ -3,12 +3,14 @@ package com.harvest.oms.repository.client.order;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.harvest.core.annotation.feign.HarvestService;
+import com.harvest.core.batch.DependencyPipeline;
+import com.harvest.core.batch.StageCopies;
 import com.harvest.core.domain.Page;
 import com.harvest.core.domain.range.date.DataTimeRange;
-import com.harvest.core.utils.FieldUtils;
 import com.harvest.core.utils.JsonUtils;
 import com.harvest.oms.repository.constants.HarvestOmsRepositoryApplications;
-import com.harvest.oms.repository.convert.OrderOptimizeQueryConvertor;
+import com.harvest.oms.repository.convert.OrderOptimizeQueryPlanner;
+import com.harvest.oms.repository.domain.order.count.OrderCountBucket;
 import com.harvest.oms.repository.domain.order.simple.OrderSimplePO;
 import com.harvest.oms.repository.handler.order.OrderSectionRepositoryHandler;
 import com.harvest.oms.repository.mapper.order.rich.OrderRichConditionQueryMapper;
@@ -16,16 +18,23 @@ import com.harvest.oms.repository.query.order.PageOrderConditionQuery;
 import com.harvest.oms.repository.query.order.pack.OrderNoQuery;
 import com.harvest.oms.repository.query.order.pack.OrderRemarkQuery;
 import com.harvest.oms.repository.query.order.pack.OrderTimeQuery;
+import com.harvest.oms.repository.utils.OrderPageCursorUtils;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.StopWatch;
 
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @Author: Alodi
@@ -43,21 +52,45 @@ public class OrderRichQueryRepositoryClientImpl implements OrderRichQueryReposit
     private static final long TIME_OUT = 1000L;
 
     /**
-     * 如果订单数超过200则采用并发查询，提高查询效率
+     * 信息填充流水线, 各阶段耗时以 "oms.repository.order.section.阶段" 计入监控指标
      */
-    private static final int ORDER_NUMS = 200;
+    private static final String SECTION_PIPELINE = "oms.repository.order.section";
 
     /**
-     * 订单扩展信息查询线程池
+     * 各处理器在订单副本上填充, 未超时才写回
      */
-    private static final Executor OMS_SECTION_READ_EXECUTOR = new ThreadPoolExecutor(100, 100, 2000, TimeUnit.MILLISECONDS,
-            new SynchronousQueue<>(),
+    private static final StageCopies<OrderSimplePO> ORDER_COPIES = StageCopies.of(OrderSimplePO.class);
+
+    private static final int SECTION_READ_THREADS = 16;
+
+    private static final int SECTION_READ_QUEUE = 512;
+
+    /**
+     * 游标分页未指定每页记录数时的默认值
+     */
+    private static final int SEEK_DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * 订单扩展信息及总数查询线程池 有界队列, 队列满时由投递线程执行
+     */
+    private static final ThreadPoolExecutor OMS_SECTION_READ_EXECUTOR = new ThreadPoolExecutor(SECTION_READ_THREADS, SECTION_READ_THREADS, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(SECTION_READ_QUEUE),
             new ThreadFactoryBuilder()
                     .setNameFormat("harvest-oms-section-repository-reading-%d")
                     .setUncaughtExceptionHandler((thread, e) -> LOGGER.error("ThreadPool:{} 发生异常", thread, e))
                     .build(),
             new ThreadPoolExecutor.CallerRunsPolicy());
 
+    static {
+        OMS_SECTION_READ_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 单个填充阶段超时 毫秒
+     */
+    @Value("${harvest.oms.repository.order.section-timeout-millis:1000}")
+    private long sectionTimeoutMillis;
+
     @Autowired
     private OrderRichConditionQueryMapper orderRichConditionQueryMapper;
 
@@ -65,22 +98,31 @@ public class OrderRichQueryRepositoryClientImpl implements OrderRichQueryReposit
     private List<OrderSectionRepositoryHandler<?>> orderSectionRepositoryHandlers;
 
     @Autowired
-    private List<OrderOptimizeQueryConvertor> orderOptimizeQueryConvertors;
+    private OrderOptimizeQueryPlanner orderOptimizeQueryPlanner;
 
     @Override
     public Long frontCountQueryOrder(Long companyId, PageOrderConditionQuery condition) {
         Map<String, Object> paramsMap = this.conventParams(companyId, condition);
-        this.getOptimizeQueryConvertor(companyId, condition, paramsMap);
-        List<Long> orderIds = (List<Long>) paramsMap.get(FieldUtils.getFieldName(PageOrderConditionQuery::getOrderIds));
-        if (CollectionUtils.isNotEmpty(orderIds) && orderIds.contains(0L)) {
+        if (orderOptimizeQueryPlanner.execute(companyId, condition, paramsMap).isEmpty()) {
             return BigDecimal.ZERO.longValue();
         }
         return orderRichConditionQueryMapper.countQueryOrderWithRichCondition(paramsMap);
     }
 
+    @Override
+    public Collection<OrderCountBucket> groupCountOrder(Long companyId) {
+        Map<String, Object> paramsMap = Maps.newHashMap();
+        paramsMap.put("companyId", companyId);
+        return orderRichConditionQueryMapper.groupCountOrder(paramsMap);
+    }
+
     @Override
     public Page<OrderSimplePO> pageQueryOrderRich(Long companyId, PageOrderConditionQuery condition) {
         Page<OrderSimplePO> page = new Page<>(condition.getPageNo(), condition.getPageSize());
+        boolean seek = Objects.nonNull(condition.getCursor());
+        if (seek) {
+            page.setCursor(OrderPageCursorUtils.END);
+        }
 
         StopWatch stopWatch = new StopWatch();
 
@@ -89,88 +131,92 @@ public class OrderRichQueryRepositoryClientImpl implements OrderRichQueryReposit
         stopWatch.stop();
 
         stopWatch.start("拆分查询");
-        Optional<OrderOptimizeQueryConvertor> optimizeConvertor = this.getOptimizeQueryConvertor(companyId, condition, paramsMap);
+        OrderOptimizeQueryPlanner.Plan plan = orderOptimizeQueryPlanner.execute(companyId, condition, paramsMap);
         stopWatch.stop();
 
-        List<Long> orderIds = (List<Long>) paramsMap.get(FieldUtils.getFieldName(PageOrderConditionQuery::getOrderIds));
-        if (CollectionUtils.isNotEmpty(orderIds) && orderIds.contains(0L)) {
-            LOGGER.warn("Repository#Rich#订单拆分查询为空, companyId:{}, optimizeConvertor:{}, \nstopWatch:{}",
-                    companyId, JsonUtils.object2Json(optimizeConvertor.getClass().getSimpleName()), stopWatch.prettyPrint());
+        if (plan.isEmpty()) {
+            LOGGER.warn("Repository#Rich#订单拆分查询为空, companyId:{}, plan:{}, \nstopWatch:{}", companyId, plan, stopWatch.prettyPrint());
             return page;
         }
 
-        Long count = BigDecimal.ZERO.longValue();
+        boolean needCount = Objects.isNull(condition.getNoCount()) || !condition.getNoCount();
 
-        if (Objects.isNull(condition.getNoCount()) || !condition.getNoCount()) {
-            stopWatch.start("订单总数查询");
-            count = orderRichConditionQueryMapper.countQueryOrderWithRichCondition(paramsMap);
-            stopWatch.stop();
+        // 总数与分页并发查询
+        stopWatch.start("订单信息及总数查询");
+        CompletableFuture<Long> countFuture = needCount
+                ? CompletableFuture.supplyAsync(() -> orderRichConditionQueryMapper.countQueryOrderWithRichCondition(paramsMap), OMS_SECTION_READ_EXECUTOR)
+                : CompletableFuture.completedFuture(BigDecimal.ZERO.longValue());
+        List<OrderSimplePO> orders = new ArrayList<>(orderRichConditionQueryMapper.pageQueryOrderWithRichCondition(paramsMap));
+        Long count = this.join(countFuture);
+        stopWatch.stop();
 
-            if (count == 0) {
-                LOGGER.warn("Rich#订单查询为空, companyId:{}, condition:{}, \nstopWatch:{}", companyId, JsonUtils.object2Json(condition), stopWatch.prettyPrint());
-                return page;
-            }
+        if (needCount && count == 0) {
+            LOGGER.warn("Rich#订单查询为空, companyId:{}, condition:{}, \nstopWatch:{}", companyId, JsonUtils.object2Json(condition), stopWatch.prettyPrint());
+            return page;
         }
 
         // 总数
         page.setCount(count);
 
-        stopWatch.start("订单信息查询");
-        Collection<OrderSimplePO> orders = orderRichConditionQueryMapper.pageQueryOrderWithRichCondition(paramsMap);
+        // 多查的一条只用于判断是否还有下一页
+        if (seek && orders.size() > this.seekPageSize(condition)) {
+            orders = new ArrayList<>(orders.subList(0, this.seekPageSize(condition)));
+            OrderSimplePO last = orders.get(orders.size() - 1);
+            page.setCursor(OrderPageCursorUtils.encode(last.getRcTime(), last.getOrderId()));
+        } else if (!seek && !needCount && paramsMap.containsKey("limit") && orders.size() > condition.getLimit()) {
+            orders = new ArrayList<>(orders.subList(0, condition.getLimit()));
+            page.setHasMore(true);
+        }
         page.setData(orders);
-        stopWatch.stop();
 
         stopWatch.start("补充信息填充");
-        this.sectionBatchFill(companyId, orders);
+        DependencyPipeline.Report report = this.sectionBatchFill(companyId, orders, condition.getSections());
         stopWatch.stop();
 
-        if (stopWatch.getTotalTimeMillis() > TIME_OUT) {
-            LOGGER.warn("Rich#订单查询超时, companyId:{}, condition:{}, \nstopWatch:{}", companyId, JsonUtils.object2Json(condition), stopWatch.prettyPrint());
+        if (stopWatch.getTotalTimeMillis() > TIME_OUT || !report.isSuccess()) {
+            LOGGER.warn("Rich#订单查询超时, companyId:{}, condition:{}, \nplan:{}\nstopWatch:{}\nsections:{}", companyId, JsonUtils.object2Json(condition), plan, stopWatch.prettyPrint(), report);
         }
 
         return page;
     }
 
-    /**
-     * 优化查询
-     *
-     * @param companyId
-     * @param condition
-     * @param paramsMap
-     * @return
-     */
-    private Optional<OrderOptimizeQueryConvertor> getOptimizeQueryConvertor(Long companyId, PageOrderConditionQuery condition, Map<String, Object> paramsMap) {
-        return orderOptimizeQueryConvertors.stream().filter(convertor -> convertor.process(companyId, condition, paramsMap)).findAny();
+    private Long join(CompletableFuture<Long> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private int seekPageSize(PageOrderConditionQuery condition) {
+        return condition.getPageSize() > DEFAULT_0 ? condition.getPageSize() : SEEK_DEFAULT_PAGE_SIZE;
     }
 
     /**
      * 信息填充
+     * <p>
+     * 各处理器按声明的依赖编排为流水线并发执行, 单个处理器失败或超时不影响其他信息, 超时处理器的迟到结果丢弃; 只填充请求的数据段
      *
      * @param companyId
      * @param orders
+     * @param sections  请求的数据段, 为空时填充全部
+     * @return 各阶段执行结果
      */
-    private void sectionBatchFill(Long companyId, Collection<OrderSimplePO> orders) {
-        if (CollectionUtils.isEmpty(orders)) {
-            return;
-        }
-
-        if (orders.size() >= ORDER_NUMS) {
-            try {
-                CompletableFuture<?>[] futures = new CompletableFuture<?>[orderSectionRepositoryHandlers.size()];
-                for (int i = 0; i < orderSectionRepositoryHandlers.size(); i++) {
-                    int finalI = i;
-                    futures[i] = CompletableFuture.runAsync(
-                            () -> orderSectionRepositoryHandlers.get(finalI).batchFill(companyId, orders),
-                            OMS_SECTION_READ_EXECUTOR
-                    );
-                }
-                CompletableFuture.allOf(futures).get();
-            } catch (Exception e) {
-                LOGGER.error("并发补充订单信息失败", e);
-            }
-        } else {
-            orderSectionRepositoryHandlers.forEach(section -> section.batchFill(companyId, orders));
+    private DependencyPipeline.Report sectionBatchFill(Long companyId, Collection<OrderSimplePO> orders, Collection<String> sections) {
+        DependencyPipeline pipeline = new DependencyPipeline(SECTION_PIPELINE, OMS_SECTION_READ_EXECUTOR);
+        if (CollectionUtils.isNotEmpty(orders)) {
+            orderSectionRepositoryHandlers.stream()
+                    .filter(section -> Objects.isNull(sections) || CollectionUtils.containsAny(sections, section.provides()))
+                    .forEach(section -> pipeline.readStage(ClassUtils.getUserClass(section).getSimpleName(), section, sectionTimeoutMillis, () -> {
+                        StageCopies.Snapshot<OrderSimplePO> snapshot = ORDER_COPIES.snapshot(orders);
+                        section.batchFill(companyId, snapshot.copies());
+                        return snapshot::merge;
+                    }));
         }
+        return pipeline.execute();
     }
 
     @Override
@@ -199,6 +245,22 @@ public class OrderRichQueryRepositoryClientImpl implements OrderRichQueryReposit
             paramsMap.put("limit", condition.getLimit());
         }
 
+        // 不查总数时多查一条判断是否还有下一页
+        if (paramsMap.containsKey("limit") && Boolean.TRUE.equals(condition.getNoCount())) {
+            paramsMap.put("limit", condition.getLimit() + 1);
+        }
+
+        // 游标分页 多查一条判断是否还有下一页
+        if (Objects.nonNull(condition.getCursor())) {
+            paramsMap.put("seek", true);
+            paramsMap.put("limit", this.seekPageSize(condition) + 1);
+            OrderPageCursorUtils.Position position = OrderPageCursorUtils.decode(condition.getCursor());
+            if (Objects.nonNull(position)) {
+                paramsMap.put("cursorTime", position.getRcTime());
+                paramsMap.put("cursorId", position.getOrderId());
+            }
+        }
+
         if (CollectionUtils.isNotEmpty(condition.getOrderIds())) {
             paramsMap.put("orderIds", condition.getOrderIds());
         }
@@ -215,6 +277,14 @@ public class OrderRichQueryRepositoryClientImpl implements OrderRichQueryReposit
             paramsMap.put("statuses", condition.getStatuses());
         }
 
+        if (CollectionUtils.isNotEmpty(condition.getWarehouseIds())) {
+            paramsMap.put("warehouseIds", condition.getWarehouseIds());
+        }
+
+        if (CollectionUtils.isNotEmpty(condition.getLogisticsTypes())) {
+            paramsMap.put("logisticsTypes", condition.getLogisticsTypes());
+        }
+
         if (CollectionUtils.isNotEmpty(condition.getIncludeTags())) {
             paramsMap.put("includeTags", condition.getIncludeTags());
         }
@@ -285,6 +355,11 @@ public class OrderRichQueryRepositoryClientImpl implements OrderRichQueryReposit
             paramsMap.put("abnormal", condition.getAbnormal());
         }
 
+        // 挂起订单
+        if (Objects.nonNull(condition.getHangUp())) {
+            paramsMap.put("hangUp", condition.getHangUp());
+        }
+
         return paramsMap;
     }
 }
@@ -1,33 +1,43 @@
 
 package com.harvest.oms.repository.client.order;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.harvest.core.annotation.feign.HarvestService;
 import com.harvest.core.enums.oms.OrderStatusEnum;
 import com.harvest.core.generator.IdGenerator;
+import com.harvest.core.outbox.OutboxMessage;
 import com.harvest.core.utils.JsonUtils;
 import com.harvest.oms.repository.constants.HarvestOmsRepositoryApplications;
+import com.harvest.oms.repository.domain.logistics.OrderLogisticsKey;
 import com.harvest.oms.repository.domain.order.base.OrderRemark;
+import com.harvest.oms.repository.domain.order.count.OrderCountBucket;
 import com.harvest.oms.repository.domain.order.base.OrderWarehouse;
 import com.harvest.oms.repository.domain.order.simple.OrderItemSimplePO;
 import com.harvest.oms.repository.domain.order.simple.OrderSimplePO;
+import com.harvest.oms.repository.domain.order.update.OrderStatusTransit;
+import com.harvest.oms.repository.domain.order.update.OrderStatusTransitResult;
 import com.harvest.oms.repository.domain.order.update.remark.OrderUpdateRemark;
 import com.harvest.oms.repository.entity.FarmlandOmsOrderEntity;
+import com.harvest.oms.repository.entity.FarmlandOmsOrderItemEntity;
 import com.harvest.oms.repository.entity.FarmlandOmsOrderRemarkEntity;
 import com.harvest.oms.repository.entity.FarmlandOmsOrderTagEntity;
 import com.harvest.oms.repository.enums.tag.OrderTagTypeEnum;
+import com.harvest.oms.repository.index.OrderBitmapIndexService;
 import com.harvest.oms.repository.mapper.FarmlandOmsOrderItemMapper;
 import com.harvest.oms.repository.mapper.FarmlandOmsOrderMapper;
 import com.harvest.oms.repository.mapper.FarmlandOmsOrderRemarkMapper;
 import com.harvest.oms.repository.mapper.FarmlandOmsOrderTagMapper;
+import com.harvest.oms.repository.outbox.OmsOutboxStore;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.Collection;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * @Author: Alodi
@@ -45,11 +55,15 @@ public class OrderWriteRepositoryClientImpl implements OrderWriteRepositoryClien
     private FarmlandOmsOrderRemarkMapper farmlandOmsOrderRemarkMapper;
     @Autowired
     private FarmlandOmsOrderTagMapper farmlandOmsOrderTagMapper;
+    @Autowired
+    private OrderBitmapIndexService orderBitmapIndexService;
+    @Autowired
+    private OmsOutboxStore omsOutboxStore;
 
     @Override
     public void insert(Long companyId, OrderSimplePO orderSimplePO) {
         FarmlandOmsOrderEntity farmlandOmsOrderEntity = new FarmlandOmsOrderEntity();
-        farmlandOmsOrderEntity.setId(IdGenerator.generate());
+        farmlandOmsOrderEntity.setId(IdGenerator.reserve(1)[0]);
         farmlandOmsOrderEntity.setCompanyId(companyId);
         farmlandOmsOrderEntity.setOrderNo(orderSimplePO.getOrderNo());
         farmlandOmsOrderEntity.setSourceType(orderSimplePO.getOrderSource().getType());
@@ -89,68 +103,200 @@ public class OrderWriteRepositoryClientImpl implements OrderWriteRepositoryClien
 //        farmlandOmsOrderEntity.setEmptyOrder();
 //        farmlandOmsOrderEntity.setIsAbnormal();
 //        farmlandOmsOrderEntity.setIsDeleted();
+        farmlandOmsOrderEntity.setVersion(0);
         farmlandOmsOrderEntity.setRcTime(LocalDateTime.now());
         farmlandOmsOrderEntity.setRmTime(LocalDateTime.now());
         farmlandOmsOrderMapper.insert(farmlandOmsOrderEntity);
+        orderBitmapIndexService.changed(companyId, farmlandOmsOrderEntity.getId());
     }
 
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public void insertItems(Long companyId, Collection<OrderItemSimplePO> orderItemSimples) {
-
+        if (CollectionUtils.isEmpty(orderItemSimples)) {
+            return;
+        }
+        // 批量写入一次预留连续 Id
+        long[] ids = IdGenerator.reserve(orderItemSimples.size());
+        int index = 0;
+        LocalDateTime now = LocalDateTime.now();
+        for (OrderItemSimplePO orderItemSimplePO : orderItemSimples) {
+            FarmlandOmsOrderItemEntity farmlandOmsOrderItemEntity = new FarmlandOmsOrderItemEntity();
+            farmlandOmsOrderItemEntity.setId(ids[index++]);
+            farmlandOmsOrderItemEntity.setCompanyId(companyId);
+            farmlandOmsOrderItemEntity.setShopId(orderItemSimplePO.getShopId());
+            farmlandOmsOrderItemEntity.setOrderId(orderItemSimplePO.getOrderId());
+            if (Objects.nonNull(orderItemSimplePO.getOrderSource())) {
+                farmlandOmsOrderItemEntity.setSourceType(orderItemSimplePO.getOrderSource().getType());
+            }
+            if (Objects.nonNull(orderItemSimplePO.getOrderItemStatus())) {
+                farmlandOmsOrderItemEntity.setOrderItemStatus(orderItemSimplePO.getOrderItemStatus().getStatus());
+            }
+            farmlandOmsOrderItemEntity.setDeliveryNo(orderItemSimplePO.getDeliveryNo());
+            farmlandOmsOrderItemEntity.setSpuId(orderItemSimplePO.getSpuId());
+            farmlandOmsOrderItemEntity.setSpuCode(orderItemSimplePO.getSpuCode());
+            farmlandOmsOrderItemEntity.setSpuName(orderItemSimplePO.getSpuName());
+            farmlandOmsOrderItemEntity.setSkuId(orderItemSimplePO.getSkuId());
+            farmlandOmsOrderItemEntity.setSkuCode(orderItemSimplePO.getSkuCode());
+            farmlandOmsOrderItemEntity.setSkuName(orderItemSimplePO.getSkuName());
+            farmlandOmsOrderItemEntity.setUnitPrice(orderItemSimplePO.getUnitPrice());
+            farmlandOmsOrderItemEntity.setDiscountedPrice(orderItemSimplePO.getDiscountedPrice());
+            farmlandOmsOrderItemEntity.setIsPackage(orderItemSimplePO.getIsPackage());
+            farmlandOmsOrderItemEntity.setQuantity(orderItemSimplePO.getQuantity());
+            farmlandOmsOrderItemEntity.setAmount(JsonUtils.object2Json(orderItemSimplePO.getAmount()));
+            if (Objects.nonNull(orderItemSimplePO.getOrderItemTime())) {
+                farmlandOmsOrderItemEntity.setCreatedTime(orderItemSimplePO.getOrderItemTime().getCreatedTime());
+                farmlandOmsOrderItemEntity.setPaidTime(orderItemSimplePO.getOrderItemTime().getPaidTime());
+                farmlandOmsOrderItemEntity.setSendTime(orderItemSimplePO.getOrderItemTime().getSendTime());
+                farmlandOmsOrderItemEntity.setEndTime(orderItemSimplePO.getOrderItemTime().getEndTime());
+                farmlandOmsOrderItemEntity.setModifyTime(orderItemSimplePO.getOrderItemTime().getModifyTime());
+                farmlandOmsOrderItemEntity.setStockLackTime(orderItemSimplePO.getOrderItemTime().getStockLackTime());
+            }
+            farmlandOmsOrderItemEntity.setStockLack(orderItemSimplePO.getStockLack());
+            farmlandOmsOrderItemEntity.setPictureOssUrl(orderItemSimplePO.getPictureOssUrl());
+            farmlandOmsOrderItemEntity.setIsDeleted(false);
+            farmlandOmsOrderItemEntity.setRcTime(now);
+            farmlandOmsOrderItemEntity.setRmTime(now);
+            farmlandOmsOrderItemMapper.insert(farmlandOmsOrderItemEntity);
+            orderItemSimplePO.setOrderItemId(farmlandOmsOrderItemEntity.getId());
+        }
     }
 
     @Override
-    public void updateDeclare(Long companyId, OrderSimplePO orderSimplePO) {
+    public boolean updateDeclare(Long companyId, Integer version, OrderSimplePO orderSimplePO) {
         FarmlandOmsOrderEntity entity = new FarmlandOmsOrderEntity();
         entity.setId(orderSimplePO.getOrderId());
         entity.setDeliveryNo(orderSimplePO.getDeliveryNo());
         entity.setWaitDeclare(orderSimplePO.getWaitDeclare());
-        farmlandOmsOrderMapper.update(entity, new UpdateWrapper<FarmlandOmsOrderEntity>().lambda()
-                .eq(FarmlandOmsOrderEntity::getId, orderSimplePO.getOrderId())
-                .eq(FarmlandOmsOrderEntity::getCompanyId, companyId)
-        );
+        if (farmlandOmsOrderMapper.update(entity, this.versioned(companyId, orderSimplePO.getOrderId(), version)) <= 0) {
+            return false;
+        }
+        orderBitmapIndexService.changed(companyId, orderSimplePO.getOrderId());
+        return true;
     }
 
     @Override
-    public void updateOrderStatus(Long companyId, Long orderId, OrderStatusEnum orderStatus) {
+    public boolean updateOrderStatus(Long companyId, Long orderId, Integer version, OrderStatusEnum orderStatus) {
         if (Objects.isNull(orderStatus)) {
-            return;
+            return true;
         }
         FarmlandOmsOrderEntity entity = new FarmlandOmsOrderEntity();
         entity.setOrderStatus(orderStatus.getStatus());
+        if (farmlandOmsOrderMapper.update(entity, this.versioned(companyId, orderId, version)) <= 0) {
+            return false;
+        }
+        orderBitmapIndexService.changed(companyId, orderId);
+        return true;
+    }
+
+    /**
+     * 来源状态匹配的订单加行锁后一次更新; MySQL 的 UPDATE 不返回命中行, 由同一事务内的 SELECT ... FOR UPDATE 确定迁移的订单.
+     * 指定了发件箱目标时, 迁移的订单随状态一起提交到发件箱, 消息键为订单Id; 指定了撤销目标时, 迁移的订单在该目标下待投递的消息一起转入死信
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public OrderStatusTransitResult transitOrderStatus(Long companyId, OrderStatusTransit transit) {
+        OrderStatusTransitResult result = new OrderStatusTransitResult();
+        if (CollectionUtils.isEmpty(transit.getOrderIds()) || CollectionUtils.isEmpty(transit.getFrom()) || Objects.isNull(transit.getTo())) {
+            return result;
+        }
+        List<Integer> from = transit.getFrom().stream().map(OrderStatusEnum::getStatus).distinct().collect(Collectors.toList());
+        List<FarmlandOmsOrderEntity> orders = farmlandOmsOrderMapper.selectList(new QueryWrapper<FarmlandOmsOrderEntity>().lambda()
+                .select(FarmlandOmsOrderEntity::getId, FarmlandOmsOrderEntity::getOrderStatus, FarmlandOmsOrderEntity::getShopId,
+                        FarmlandOmsOrderEntity::getWarehouseId, FarmlandOmsOrderEntity::getIsAbnormal, FarmlandOmsOrderEntity::getIsHangUp)
+                .eq(FarmlandOmsOrderEntity::getCompanyId, companyId)
+                .in(FarmlandOmsOrderEntity::getId, transit.getOrderIds())
+                .in(FarmlandOmsOrderEntity::getOrderStatus, from)
+                .last("FOR UPDATE")
+        );
+        if (orders.isEmpty()) {
+            return result;
+        }
+        List<Long> orderIds = orders.stream().map(FarmlandOmsOrderEntity::getId).collect(Collectors.toList());
+        FarmlandOmsOrderEntity entity = new FarmlandOmsOrderEntity();
+        entity.setOrderStatus(transit.getTo().getStatus());
         farmlandOmsOrderMapper.update(entity, new UpdateWrapper<FarmlandOmsOrderEntity>().lambda()
-                .eq(FarmlandOmsOrderEntity::getId, orderId)
                 .eq(FarmlandOmsOrderEntity::getCompanyId, companyId)
+                .in(FarmlandOmsOrderEntity::getId, orderIds)
+                .in(FarmlandOmsOrderEntity::getOrderStatus, from)
+                .setSql("version = version + 1")
         );
+        if (StringUtils.isNotEmpty(transit.getOutboxDestination())) {
+            omsOutboxStore.save(orderIds.stream()
+                    .map(orderId -> OutboxMessage.of(companyId, transit.getOutboxDestination(), String.valueOf(orderId), null))
+                    .collect(Collectors.toList()));
+        }
+        if (StringUtils.isNotEmpty(transit.getCancelOutboxDestination())) {
+            omsOutboxStore.cancel(companyId, transit.getCancelOutboxDestination(),
+                    orderIds.stream().map(String::valueOf).collect(Collectors.toList()), "订单状态已恢复为" + transit.getTo().getValue());
+        }
+        orderBitmapIndexService.changed(companyId, orderIds);
+        result.setOrderIds(orderIds);
+        result.setSources(this.sources(orders));
+        result.setFrom(this.buckets(orders));
+        return result;
+    }
+
+    /**
+     * 订单Id -> 迁移前状态
+     */
+    private Map<Long, OrderStatusEnum> sources(List<FarmlandOmsOrderEntity> orders) {
+        Map<Long, OrderStatusEnum> sources = new HashMap<>(orders.size() * 2);
+        orders.forEach(order -> sources.put(order.getId(), OrderStatusEnum.getEnumByStatus(order.getOrderStatus())));
+        return sources;
+    }
+
+    /**
+     * 按计数维度分组
+     */
+    private Collection<OrderCountBucket> buckets(List<FarmlandOmsOrderEntity> orders) {
+        Map<List<Object>, OrderCountBucket> buckets = new HashMap<>();
+        for (FarmlandOmsOrderEntity order : orders) {
+            List<Object> key = Arrays.asList(order.getOrderStatus(), order.getShopId(), order.getWarehouseId(), order.getIsAbnormal(), order.getIsHangUp());
+            OrderCountBucket bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new OrderCountBucket();
+                bucket.setOrderStatus(order.getOrderStatus());
+                bucket.setShopId(order.getShopId());
+                bucket.setWarehouseId(order.getWarehouseId());
+                bucket.setAbnormal(order.getIsAbnormal());
+                bucket.setHangUp(order.getIsHangUp());
+                bucket.setCount(0L);
+                buckets.put(key, bucket);
+            }
+            bucket.setCount(bucket.getCount() + 1);
+        }
+        return new ArrayList<>(buckets.values());
     }
 
     @Override
-    public void updateRemark(Long companyId, Long orderId, OrderUpdateRemark remark) {
+    @Transactional(rollbackFor = Exception.class)
+    public boolean updateRemark(Long companyId, Long orderId, Integer version, OrderUpdateRemark remark) {
         FarmlandOmsOrderRemarkEntity entity = new FarmlandOmsOrderRemarkEntity();
 
         OrderRemark.RemarkEnum remarkEnum = remark.getRemarkEnum();
         switch (remarkEnum) {
             case SELLER:
                 if (StringUtils.isEmpty(remark.getSellerRemark())) {
-                    return;
+                    return true;
                 }
                 entity.setSellerRemark(remark.getSellerRemark());
                 break;
             case BUYER:
                 if (StringUtils.isEmpty(remark.getBuyerRemark())) {
-                    return;
+                    return true;
                 }
                 entity.setBuyerRemark(remark.getBuyerRemark());
                 break;
             case SYSTEM:
                 if (StringUtils.isEmpty(remark.getSystemRemark())) {
-                    return;
+                    return true;
                 }
                 entity.setSystemRemark(remark.getSystemRemark());
                 break;
             case PRINT:
                 if (StringUtils.isEmpty(remark.getPrintRemark())) {
-                    return;
+                    return true;
                 }
                 entity.setPrintRemark(remark.getPrintRemark());
                 break;
@@ -158,31 +304,50 @@ public class OrderWriteRepositoryClientImpl implements OrderWriteRepositoryClien
                 break;
         }
 
+        /*备注在子表, 先按版本推进主表, 冲突时不写备注; 两次写入同一事务, 备注写入失败时版本回滚*/
+        if (farmlandOmsOrderMapper.update(null, this.versioned(companyId, orderId, version)) <= 0) {
+            return false;
+        }
         farmlandOmsOrderRemarkMapper.update(entity, new UpdateWrapper<FarmlandOmsOrderRemarkEntity>().lambda()
                 .eq(FarmlandOmsOrderRemarkEntity::getCompanyId, companyId)
                 .eq(FarmlandOmsOrderRemarkEntity::getOrderId, orderId)
         );
+        return true;
     }
 
     @Override
-    public void updateWarehouse(Long companyId, Long orderId, OrderWarehouse orderWarehouse) {
+    public boolean updateWarehouse(Long companyId, Long orderId, Integer version, OrderWarehouse orderWarehouse) {
         FarmlandOmsOrderEntity entity = new FarmlandOmsOrderEntity();
         entity.setWarehouseId(orderWarehouse.getWarehouseId());
         entity.setWarehouseOwner(orderWarehouse.getWarehouseOwner().getType());
-        farmlandOmsOrderMapper.update(entity, new UpdateWrapper<FarmlandOmsOrderEntity>().lambda()
-                .eq(FarmlandOmsOrderEntity::getId, orderId)
-                .eq(FarmlandOmsOrderEntity::getCompanyId, companyId)
-        );
+        if (farmlandOmsOrderMapper.update(entity, this.versioned(companyId, orderId, version)) <= 0) {
+            return false;
+        }
+        orderBitmapIndexService.changed(companyId, orderId);
+        return true;
+    }
+
+    @Override
+    public boolean updateLogistics(Long companyId, Long orderId, Integer version, OrderLogisticsKey logisticsKey) {
+        FarmlandOmsOrderEntity entity = new FarmlandOmsOrderEntity();
+        entity.setLogisticsId(logisticsKey.getLogisticsId());
+        entity.setChannelId(logisticsKey.getChannelId());
+        if (farmlandOmsOrderMapper.update(entity, this.versioned(companyId, orderId, version)) <= 0) {
+            return false;
+        }
+        orderBitmapIndexService.changed(companyId, orderId);
+        return true;
     }
 
     @Override
-    public void abnormal(Long companyId, boolean abnormal, Long orderId) {
+    public boolean abnormal(Long companyId, boolean abnormal, Long orderId, Integer version) {
         FarmlandOmsOrderEntity entity = new FarmlandOmsOrderEntity();
         entity.setIsAbnormal(abnormal);
-        farmlandOmsOrderMapper.update(entity, new UpdateWrapper<FarmlandOmsOrderEntity>().lambda()
-                .eq(FarmlandOmsOrderEntity::getId, orderId)
-                .eq(FarmlandOmsOrderEntity::getCompanyId, companyId)
-        );
+        if (farmlandOmsOrderMapper.update(entity, this.versioned(companyId, orderId, version)) <= 0) {
+            return false;
+        }
+        orderBitmapIndexService.changed(companyId, orderId);
+        return true;
     }
 
     @Override
@@ -192,6 +357,7 @@ public class OrderWriteRepositoryClientImpl implements OrderWriteRepositoryClien
                 .eq(FarmlandOmsOrderTagEntity::getRecordId, orderId)
                 .eq(FarmlandOmsOrderTagEntity::getRecordType, OrderTagTypeEnum.ORDER.getType())
         );
+        orderBitmapIndexService.changed(companyId, orderId);
     }
 
     @Override
@@ -205,5 +371,22 @@ public class OrderWriteRepositoryClientImpl implements OrderWriteRepositoryClien
                 .eq(FarmlandOmsOrderTagEntity::getRecordType, OrderTagTypeEnum.ORDER.getType())
                 .in(FarmlandOmsOrderTagEntity::getTagValue, tagValues)
         );
+        orderBitmapIndexService.changed(companyId, orderId);
+    }
+
+    /**
+     * 订单主表更新条件, 版本加一; 期望版本为空时不校验版本(服务层加订单锁的默认模式), 按订单Id无条件更新
+     *
+     * @param companyId 公司Id
+     * @param orderId   订单Id
+     * @param version   期望版本
+     * @return 更新条件
+     */
+    private LambdaUpdateWrapper<FarmlandOmsOrderEntity> versioned(Long companyId, Long orderId, Integer version) {
+        return new UpdateWrapper<FarmlandOmsOrderEntity>().lambda()
+                .eq(FarmlandOmsOrderEntity::getId, orderId)
+                .eq(FarmlandOmsOrderEntity::getCompanyId, companyId)
+                .eq(Objects.nonNull(version), FarmlandOmsOrderEntity::getVersion, version)
+                .setSql("version = version + 1");
     }
 }
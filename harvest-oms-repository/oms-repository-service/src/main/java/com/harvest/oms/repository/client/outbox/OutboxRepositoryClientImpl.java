@@ -0,0 +1,48 @@
+package com.harvest.oms.repository.client.outbox;
+
+import com.harvest.core.annotation.feign.HarvestService;
+import com.harvest.core.outbox.OutboxMessage;
+import com.harvest.oms.repository.constants.HarvestOmsRepositoryApplications;
+import com.harvest.oms.repository.outbox.OmsOutboxStore;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/26 11:55 AM
+ * @Description: 订单库发件箱
+ **/
+@HarvestService(path = HarvestOmsRepositoryApplications.Path.OUTBOX)
+public class OutboxRepositoryClientImpl implements OutboxRepositoryClient {
+
+    @Autowired
+    private OmsOutboxStore omsOutboxStore;
+
+    @Override
+    public List<OutboxMessage> pending(int limit) {
+        return omsOutboxStore.pending(limit);
+    }
+
+    @Override
+    public void sent(Collection<Long> ids) {
+        omsOutboxStore.sent(ids);
+    }
+
+    @Override
+    public void retry(long nextMillis, String error, Collection<Long> ids) {
+        omsOutboxStore.retry(ids, nextMillis, error);
+    }
+
+    @Override
+    public void dead(String error, Collection<Long> ids) {
+        omsOutboxStore.dead(ids, error);
+    }
+
+    @Override
+    public long size() {
+        return omsOutboxStore.size();
+    }
+
+}
@@ -1,22 +1,24 @@
 package com.harvest.oms.repository.convert;
 
-import com.harvest.core.utils.FieldUtils;
 import com.harvest.oms.repository.query.order.PageOrderConditionQuery;
-import org.apache.commons.collections4.CollectionUtils;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * @Author: Alodi
  * @Date: 2023/1/4 5:59 PM
  * @Description: 拆分优化查询处理器
+ * <p>
+ * 由 {@link OrderOptimizeQueryPlanner} 按预估结果数从小到大依次执行, 前序结果作为候选订单下推给后续预查询并求交集
  **/
 @FunctionalInterface
 public interface OrderOptimizeQueryConvertor {
 
     /**
      * 订单查询参数转换。主要做一些参数预处理，目标是提交订单查询效率
+     * 1、return Collections.singletonList(0L); 作为查询标记位 如果查询为空则返回 0L
+     * 2、如果返回为 Collections.emptyList(); 则代表该 skip convert
+     * 3、如果返回具体 orderIds; 则处理 orderIds 交集处理
      *
      * @param companyId 公司id
      * @param condition 前端传的原始查询条件
@@ -25,49 +27,31 @@ public interface OrderOptimizeQueryConvertor {
     Collection<Long> convert(Long companyId, PageOrderConditionQuery condition, Map<String, Object> params);
 
     /**
-     * 处理查询订单Ids
-     * 1、return Collections.singletonList(0L); 作为查询标记位 如果查询为空则返回 0L
-     * 2、如果返回为 Collections.emptyList(); 则代表该 skip convert
-     * 3、如果返回具体 orderIds; 则处理 orderIds 交集处理
+     * 带候选订单的参数转换, 支持下推的处理器将候选订单加入预查询条件, 返回值同上
      *
-     * @param companyId
-     * @param condition
-     * @param params
-     * @return
+     * @param candidates 前序处理器得出的候选订单, 为空时不限
      */
-    default boolean process(Long companyId, PageOrderConditionQuery condition, Map<String, Object> params) {
-        Collection<Long> orderIds = this.convert(companyId, condition, params);
-        if (CollectionUtils.isNotEmpty(orderIds) && orderIds.contains(0L)) {
-            params.put(FieldUtils.getFieldName(PageOrderConditionQuery::getOrderIds), orderIds);
-            return true;
-        }
-        List<Long> paramOrderIds = (List<Long>) params.get(FieldUtils.getFieldName(PageOrderConditionQuery::getOrderIds));
-        this.handleOrderIds(paramOrderIds, orderIds, params);
-        return false;
+    default Collection<Long> convert(Long companyId, PageOrderConditionQuery condition, Map<String, Object> params, Collection<Long> candidates) {
+        return this.convert(companyId, condition, params);
     }
 
     /**
-     * 处理拆分处理器查询出的Ids
+     * 条件中参与本处理器预查询的键数, 如单号个数; 0 代表条件不涉及, 不执行
      *
-     * @param paramOrderIds 第一次为参数Ids，后续为拆分查询处理器处理过的Ids
-     * @param orderIds
-     * @param params
+     * @param condition 查询条件
+     * @return 键数
      */
-    default void handleOrderIds(List<Long> paramOrderIds, Collection<Long> orderIds, Map<String, Object> params) {
-        if (CollectionUtils.isEmpty(paramOrderIds)) {
-            params.put(FieldUtils.getFieldName(PageOrderConditionQuery::getOrderIds), orderIds);
-            return;
-        }
+    default int keys(PageOrderConditionQuery condition) {
+        return 1;
+    }
 
-        if (CollectionUtils.isEmpty(orderIds)) {
-            orderIds = paramOrderIds;
-        } else {
-            orderIds = orderIds.stream().filter(paramOrderIds::contains).collect(Collectors.toList());
-            if (CollectionUtils.isEmpty(orderIds)) {
-                orderIds = Collections.singletonList(0L);
-            }
-        }
-        params.put(FieldUtils.getFieldName(PageOrderConditionQuery::getOrderIds), orderIds);
+    /**
+     * 每个键预估命中的订单数, 没有统计数据时使用
+     *
+     * @return 订单数
+     */
+    default double rowsPerKey() {
+        return Integer.MAX_VALUE;
     }
 
 }
@@ -0,0 +1,232 @@
+package com.harvest.oms.repository.convert;
+
+import com.harvest.core.utils.FieldUtils;
+import com.harvest.oms.repository.query.order.PageOrderConditionQuery;
+import org.apache.commons.collections4.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/23 10:00 AM
+ * @Description: 拆分优化查询计划
+ * <p>
+ * 预估结果数 = 条件键数 × 每键命中数, 每键命中数按公司记录处理器历史结果的指数移动平均, 没有统计时取处理器先验值.
+ * 按预估从小到大执行, 候选订单不超过下推上限时下推给后续预查询; 各结果以有序 long 数组求交集, 为空立即结束
+ **/
+@Component
+public class OrderOptimizeQueryPlanner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderOptimizeQueryPlanner.class);
+
+    /**
+     * 查询为空标记
+     */
+    public static final long EMPTY_MARKER = 0L;
+
+    /**
+     * 候选订单下推上限, 超过时不下推, 避免预查询 IN 列表过长
+     */
+    private static final int PUSH_DOWN_LIMIT = 1000;
+
+    /**
+     * 统计移动平均权重
+     */
+    private static final double ALPHA = 0.2D;
+
+    /**
+     * 计划耗时告警 毫秒
+     */
+    private static final long SLOW_MILLIS = 200L;
+
+    private static final String ORDER_IDS = FieldUtils.getFieldName(PageOrderConditionQuery::getOrderIds);
+
+    @Autowired
+    private List<OrderOptimizeQueryConvertor> orderOptimizeQueryConvertors;
+
+    /**
+     * 公司:处理器 -> 每键命中订单数
+     */
+    private final Map<String, Double> rowsPerKey = new ConcurrentHashMap<>();
+
+    /**
+     * 执行拆分优化查询, 结果订单Ids 写回 params, 为空时写入查询为空标记
+     *
+     * @param companyId 公司id
+     * @param condition 查询条件
+     * @param params    查询参数
+     * @return 执行计划
+     */
+    public Plan execute(Long companyId, PageOrderConditionQuery condition, Map<String, Object> params) {
+        Plan plan = new Plan();
+        long start = System.nanoTime();
+        long[] candidates = null;
+        Collection<Long> orderIds = (Collection<Long>) params.get(ORDER_IDS);
+        if (CollectionUtils.isNotEmpty(orderIds)) {
+            candidates = sortedDistinct(orderIds);
+        }
+
+        List<Step> steps = new ArrayList<>();
+        for (OrderOptimizeQueryConvertor convertor : orderOptimizeQueryConvertors) {
+            int keys = convertor.keys(condition);
+            if (keys > 0) {
+                String name = ClassUtils.getUserClass(convertor).getSimpleName();
+                steps.add(new Step(convertor, name, keys, keys * rowsPerKey.getOrDefault(companyId + ":" + name, convertor.rowsPerKey())));
+            }
+        }
+        steps.sort(Comparator.comparingDouble(step -> step.estimate));
+
+        for (Step step : steps) {
+            if (Objects.nonNull(candidates) && candidates.length == 0) {
+                break;
+            }
+            boolean pushDown = Objects.nonNull(candidates) && candidates.length <= PUSH_DOWN_LIMIT;
+            long stepStart = System.nanoTime();
+            Collection<Long> result = step.convertor.convert(companyId, condition, params, pushDown ? boxed(candidates) : null);
+            step.elapsedNanos = System.nanoTime() - stepStart;
+            step.pushDown = pushDown;
+            plan.steps.add(step);
+            if (CollectionUtils.isEmpty(result)) {
+                continue;
+            }
+            if (result.contains(EMPTY_MARKER)) {
+                step.rows = 0;
+                candidates = new long[0];
+                continue;
+            }
+            long[] ids = sortedDistinct(result);
+            step.rows = ids.length;
+            /*下推后的结果受候选订单限制, 不计入统计*/
+            if (!pushDown) {
+                rowsPerKey.merge(companyId + ":" + step.name, (double) ids.length / step.keys, (old, now) -> old * (1 - ALPHA) + now * ALPHA);
+            }
+            candidates = Objects.isNull(candidates) ? ids : intersect(candidates, ids);
+        }
+
+        if (Objects.nonNull(candidates)) {
+            params.put(ORDER_IDS, candidates.length == 0 ? Collections.singletonList(EMPTY_MARKER) : boxed(candidates));
+        }
+        plan.empty = Objects.nonNull(candidates) && candidates.length == 0;
+        plan.elapsedNanos = System.nanoTime() - start;
+        if (TimeUnit.NANOSECONDS.toMillis(plan.elapsedNanos) > SLOW_MILLIS) {
+            LOGGER.warn("OrderOptimizeQueryPlanner#execute#拆分查询耗时过长, companyId:{}, plan:{}", companyId, plan);
+        } else if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("OrderOptimizeQueryPlanner#execute#companyId:{}, plan:{}", companyId, plan);
+        }
+        return plan;
+    }
+
+    static long[] sortedDistinct(Collection<Long> values) {
+        long[] array = new long[values.size()];
+        int size = 0;
+        for (Long value : values) {
+            if (Objects.nonNull(value)) {
+                array[size++] = value;
+            }
+        }
+        Arrays.sort(array, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || array[i] != array[distinct - 1]) {
+                array[distinct++] = array[i];
+            }
+        }
+        return distinct == array.length ? array : Arrays.copyOf(array, distinct);
+    }
+
+    /**
+     * 有序去重数组求交集
+     */
+    static long[] intersect(long[] left, long[] right) {
+        long[] result = new long[Math.min(left.length, right.length)];
+        int size = 0;
+        for (int i = 0, j = 0; i < left.length && j < right.length; ) {
+            if (left[i] < right[j]) {
+                i++;
+            } else if (left[i] > right[j]) {
+                j++;
+            } else {
+                result[size++] = left[i];
+                i++;
+                j++;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    private static List<Long> boxed(long[] values) {
+        List<Long> list = new ArrayList<>(values.length);
+        for (long value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    private static final class Step {
+
+        private final OrderOptimizeQueryConvertor convertor;
+
+        private final String name;
+
+        private final int keys;
+
+        private final double estimate;
+
+        private boolean pushDown;
+
+        /**
+         * 结果订单数, -1 为跳过
+         */
+        private int rows = -1;
+
+        private long elapsedNanos;
+
+        private Step(OrderOptimizeQueryConvertor convertor, String name, int keys, double estimate) {
+            this.convertor = convertor;
+            this.name = name;
+            this.keys = keys;
+            this.estimate = estimate;
+        }
+    }
+
+    /**
+     * 执行计划, 记录各处理器的预估、结果及耗时
+     */
+    public static final class Plan {
+
+        private final List<Step> steps = new ArrayList<>();
+
+        private boolean empty;
+
+        private long elapsedNanos;
+
+        /**
+         * 是否确定查询为空
+         */
+        public boolean isEmpty() {
+            return empty;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (Step step : steps) {
+                builder.append(step.name)
+                        .append("[estimate:").append((long) step.estimate)
+                        .append(", rows:").append(step.rows)
+                        .append(", pushDown:").append(step.pushDown)
+                        .append(", ").append(TimeUnit.NANOSECONDS.toMillis(step.elapsedNanos)).append("ms] -> ");
+            }
+            return builder.append(empty ? "EMPTY" : "DONE").append(' ')
+                    .append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)).append("ms").toString();
+        }
+    }
+
+}
@@ -22,19 +22,36 @@ import java.util.stream.Collectors;
 @Component
 public class OrderAddressQueryConvertor implements OrderOptimizeQueryConvertor {
 
+    /**
+     * 单个地址条件的预估订单数, 行政区划命中面较大
+     */
+    private static final double ADDRESS_ORDERS = 5000D;
+
     @Autowired
     private FarmlandOmsOrderAddressMapper farmlandOmsOrderAddressMapper;
 
     @Override
     public Collection<Long> convert(Long companyId, PageOrderConditionQuery condition, Map<String, Object> params) {
-        System.out.println("optimize address.");
-        OrderAddressQuery orderAddress = condition.getOrderAddress();
-        if (Objects.isNull(orderAddress)) {
+        return this.convert(companyId, condition, params, null);
+    }
+
+    @Override
+    public Collection<Long> convert(Long companyId, PageOrderConditionQuery condition, Map<String, Object> params, Collection<Long> candidates) {
+        if (this.keys(condition) == 0) {
             return Collections.emptyList();
         }
+        OrderAddressQuery orderAddress = condition.getOrderAddress();
         List<FarmlandOmsOrderAddressEntity> entities = farmlandOmsOrderAddressMapper.selectList(new QueryWrapper<FarmlandOmsOrderAddressEntity>().lambda()
                 .select(FarmlandOmsOrderAddressEntity::getOrderId)
+                .eq(FarmlandOmsOrderAddressEntity::getCompanyId, companyId)
+                .eq(StringUtils.isNotEmpty(orderAddress.getCountryCode()), FarmlandOmsOrderAddressEntity::getCountryCode, orderAddress.getCountryCode())
                 .eq(StringUtils.isNotEmpty(orderAddress.getPostalCode()), FarmlandOmsOrderAddressEntity::getPostalCode, orderAddress.getPostalCode())
+                .eq(StringUtils.isNotEmpty(orderAddress.getRegion1()), FarmlandOmsOrderAddressEntity::getRegion1, orderAddress.getRegion1())
+                .eq(StringUtils.isNotEmpty(orderAddress.getRegion2()), FarmlandOmsOrderAddressEntity::getRegion2, orderAddress.getRegion2())
+                .eq(StringUtils.isNotEmpty(orderAddress.getRegion3()), FarmlandOmsOrderAddressEntity::getRegion3, orderAddress.getRegion3())
+                .eq(StringUtils.isNotEmpty(orderAddress.getRegion4()), FarmlandOmsOrderAddressEntity::getRegion4, orderAddress.getRegion4())
+                .eq(StringUtils.isNotEmpty(orderAddress.getDetail()), FarmlandOmsOrderAddressEntity::getDetail, orderAddress.getDetail())
+                .in(Objects.nonNull(candidates), FarmlandOmsOrderAddressEntity::getOrderId, candidates)
                 .eq(FarmlandOmsOrderAddressEntity::getIsDeleted, false)
         );
         if (CollectionUtils.isEmpty(entities)) {
@@ -44,4 +61,28 @@ public class OrderAddressQueryConvertor implements OrderOptimizeQueryConvertor {
         return entities.stream().map(FarmlandOmsOrderAddressEntity::getOrderId).distinct().collect(Collectors.toList());
     }
 
+    /**
+     * 没有任何地址字段时不查询, 避免扫描全部地址
+     */
+    @Override
+    public int keys(PageOrderConditionQuery condition) {
+        OrderAddressQuery orderAddress = condition.getOrderAddress();
+        if (Objects.isNull(orderAddress)) {
+            return 0;
+        }
+        boolean present = StringUtils.isNotEmpty(orderAddress.getCountryCode())
+                || StringUtils.isNotEmpty(orderAddress.getPostalCode())
+                || StringUtils.isNotEmpty(orderAddress.getRegion1())
+                || StringUtils.isNotEmpty(orderAddress.getRegion2())
+                || StringUtils.isNotEmpty(orderAddress.getRegion3())
+                || StringUtils.isNotEmpty(orderAddress.getRegion4())
+                || StringUtils.isNotEmpty(orderAddress.getDetail());
+        return present ? 1 : 0;
+    }
+
+    @Override
+    public double rowsPerKey() {
+        return ADDRESS_ORDERS;
+    }
+
 }
@@ -16,7 +16,7 @@ import java.util.stream.Collectors;
 /**
  * @Author: Alodi
  * @Date: 2023/1/4 10:08 PM
- * @Description: TODO
+ * @Description: 物流单号查询条件 精准匹配查询
  **/
 @Component
 public class OrderDeliveryNoQueryConvertor implements OrderOptimizeQueryConvertor {
@@ -26,7 +26,11 @@ public class OrderDeliveryNoQueryConvertor implements OrderOptimizeQueryConverto
 
     @Override
     public Collection<Long> convert(Long companyId, PageOrderConditionQuery condition, Map<String, Object> params) {
-        System.out.println("optimize delivery no.");
+        return this.convert(companyId, condition, params, null);
+    }
+
+    @Override
+    public Collection<Long> convert(Long companyId, PageOrderConditionQuery condition, Map<String, Object> params, Collection<Long> candidates) {
         OrderNoQuery nos = condition.getNos();
         if (Objects.isNull(nos) || CollectionUtils.isEmpty(nos.getDeliveryNos())) {
             return Collections.emptyList();
@@ -34,13 +38,28 @@ public class OrderDeliveryNoQueryConvertor implements OrderOptimizeQueryConverto
         List<FarmlandOmsOrderEntity> entities = farmlandOmsOrderMapper.selectList(new QueryWrapper<FarmlandOmsOrderEntity>().lambda()
                 .select(FarmlandOmsOrderEntity::getId)
                 .eq(FarmlandOmsOrderEntity::getCompanyId, companyId)
-                .in(FarmlandOmsOrderEntity::getWaveNo, nos.getDeliveryNos())
+                .in(FarmlandOmsOrderEntity::getDeliveryNo, nos.getDeliveryNos())
+                .in(Objects.nonNull(candidates), FarmlandOmsOrderEntity::getId, candidates)
         );
         if (CollectionUtils.isEmpty(entities)) {
-            return Collections.emptyList();
+            return Collections.singletonList(0L);
         }
 
         return entities.stream().map(FarmlandOmsOrderEntity::getId).distinct().collect(Collectors.toList());
     }
 
+    @Override
+    public int keys(PageOrderConditionQuery condition) {
+        OrderNoQuery nos = condition.getNos();
+        return Objects.isNull(nos) ? 0 : CollectionUtils.size(nos.getDeliveryNos());
+    }
+
+    /**
+     * 一个物流单号通常对应一个订单
+     */
+    @Override
+    public double rowsPerKey() {
+        return 1D;
+    }
+
 }
@@ -26,6 +26,11 @@ public class OrderNoQueryConvertor implements OrderOptimizeQueryConvertor {
 
     @Override
     public Collection<Long> convert(Long companyId, PageOrderConditionQuery condition, Map<String, Object> params) {
+        return this.convert(companyId, condition, params, null);
+    }
+
+    @Override
+    public Collection<Long> convert(Long companyId, PageOrderConditionQuery condition, Map<String, Object> params, Collection<Long> candidates) {
         OrderNoQuery nos = condition.getNos();
         if (Objects.isNull(nos) || CollectionUtils.isEmpty(nos.getOrderNos())) {
             return Collections.emptyList();
@@ -35,11 +40,26 @@ public class OrderNoQueryConvertor implements OrderOptimizeQueryConvertor {
                 .select(FarmlandOmsOrderEntity::getId)
                 .eq(FarmlandOmsOrderEntity::getCompanyId, companyId)
                 .in(FarmlandOmsOrderEntity::getOrderNo, orderNos)
+                .in(Objects.nonNull(candidates), FarmlandOmsOrderEntity::getId, candidates)
         );
         if (CollectionUtils.isEmpty(entities)) {
-            return Collections.emptyList();
+            return Collections.singletonList(0L);
         }
 
         return entities.stream().map(FarmlandOmsOrderEntity::getId).distinct().collect(Collectors.toList());
     }
+
+    @Override
+    public int keys(PageOrderConditionQuery condition) {
+        OrderNoQuery nos = condition.getNos();
+        return Objects.isNull(nos) ? 0 : CollectionUtils.size(nos.getOrderNos());
+    }
+
+    /**
+     * 订单号唯一
+     */
+    @Override
+    public double rowsPerKey() {
+        return 1D;
+    }
 }
@@ -16,17 +16,26 @@ import java.util.stream.Collectors;
 /**
  * @Author: Alodi
  * @Date: 2023/1/4 10:07 PM
- * @Description: 订单编号查询条件 精准匹配查询
+ * @Description: 波次号查询条件 精准匹配查询
  **/
 @Component
 public class OrderWaveNoQueryConvertor implements OrderOptimizeQueryConvertor {
 
+    /**
+     * 单个波次的预估订单数
+     */
+    private static final double WAVE_ORDERS = 200D;
+
     @Autowired
     private FarmlandOmsOrderMapper farmlandOmsOrderMapper;
 
     @Override
     public Collection<Long> convert(Long companyId, PageOrderConditionQuery condition, Map<String, Object> params) {
-        System.out.println("optimize wave no.");
+        return this.convert(companyId, condition, params, null);
+    }
+
+    @Override
+    public Collection<Long> convert(Long companyId, PageOrderConditionQuery condition, Map<String, Object> params, Collection<Long> candidates) {
         OrderNoQuery nos = condition.getNos();
         if (Objects.isNull(nos) || CollectionUtils.isEmpty(nos.getWaveNos())) {
             return Collections.emptyList();
@@ -35,11 +44,23 @@ public class OrderWaveNoQueryConvertor implements OrderOptimizeQueryConvertor {
                 .select(FarmlandOmsOrderEntity::getId)
                 .eq(FarmlandOmsOrderEntity::getCompanyId, companyId)
                 .in(FarmlandOmsOrderEntity::getWaveNo, nos.getWaveNos())
+                .in(Objects.nonNull(candidates), FarmlandOmsOrderEntity::getId, candidates)
         );
         if (CollectionUtils.isEmpty(entities)) {
-            return Collections.emptyList();
+            return Collections.singletonList(0L);
         }
 
         return entities.stream().map(FarmlandOmsOrderEntity::getId).distinct().collect(Collectors.toList());
     }
+
+    @Override
+    public int keys(PageOrderConditionQuery condition) {
+        OrderNoQuery nos = condition.getNos();
+        return Objects.isNull(nos) ? 0 : CollectionUtils.size(nos.getWaveNos());
+    }
+
+    @Override
+    public double rowsPerKey() {
+        return WAVE_ORDERS;
+    }
 }
@@ -0,0 +1,58 @@
+package com.harvest.oms.repository.convert.optimize.filter;
+
+import com.harvest.oms.repository.convert.OrderOptimizeQueryConvertor;
+import com.harvest.oms.repository.index.OrderBitmapIndex;
+import com.harvest.oms.repository.index.OrderBitmapIndexService;
+import com.harvest.oms.repository.query.order.PageOrderConditionQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/22 2:00 PM
+ * @Description: 状态、标记、店铺、仓库、物流类型、异常、挂起组合筛选 位图索引优化
+ * <p>
+ * 索引已追赶到所有节点的最新写入且候选订单不超过上限时, 以订单Ids 带入查询, 为空直接返回空结果;
+ * 索引未就绪、未追赶到最新或候选过多时跳过, 由数据库筛选
+ **/
+@Component
+public class OrderBitmapFilterQueryConvertor implements OrderOptimizeQueryConvertor {
+
+    @Value("${harvest.oms.repository.order.bitmap-index.max-candidates:2000}")
+    private int maxCandidates;
+
+    @Autowired
+    private OrderBitmapIndexService orderBitmapIndexService;
+
+    @Override
+    public Collection<Long> convert(Long companyId, PageOrderConditionQuery condition, Map<String, Object> params) {
+        if (!OrderBitmapIndex.applicable(condition)) {
+            return Collections.emptyList();
+        }
+        List<Long> orderIds = orderBitmapIndexService.select(companyId, condition, maxCandidates);
+        if (Objects.isNull(orderIds)) {
+            return Collections.emptyList();
+        }
+        return orderIds.isEmpty() ? Collections.singletonList(0L) : orderIds;
+    }
+
+    @Override
+    public int keys(PageOrderConditionQuery condition) {
+        return OrderBitmapIndex.applicable(condition) ? 1 : 0;
+    }
+
+    /**
+     * 超过上限时跳过, 结果不会多于上限
+     */
+    @Override
+    public double rowsPerKey() {
+        return maxCandidates;
+    }
+}
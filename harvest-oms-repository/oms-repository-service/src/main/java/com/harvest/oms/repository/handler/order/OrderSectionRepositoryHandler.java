@@ -1,15 +1,19 @@
 package com.harvest.oms.repository.handler.order;
 
+import com.harvest.core.batch.PipelineStage;
 import com.harvest.oms.repository.domain.order.simple.OrderSimplePO;
+import com.harvest.oms.repository.query.order.OrderSections;
 
 import java.util.Collection;
 
 /**
  * @Author: Alodi
  * @Date: 2022/12/31 1:25 PM
- * @Description: TODO
+ * @Description: 订单部分信息仓储处理器
+ * <p>
+ * 批量补充通过 {@link #requires()} / {@link #provides()} 声明读写的 {@link OrderSections}, 丰富查询据此并发编排
  **/
-public interface OrderSectionRepositoryHandler<T> {
+public interface OrderSectionRepositoryHandler<T> extends PipelineStage {
 
     /**
      * 保存订单
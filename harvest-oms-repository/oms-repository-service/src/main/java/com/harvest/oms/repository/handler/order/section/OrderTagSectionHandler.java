@@ -13,16 +13,20 @@ import com.harvest.oms.repository.domain.tag.SystemOrderTag;
 import com.harvest.oms.repository.entity.FarmlandOmsOrderTagEntity;
 import com.harvest.oms.repository.enums.tag.OrderTagSourceEnum;
 import com.harvest.oms.repository.handler.order.OrderSectionRepositoryHandler;
+import com.harvest.oms.repository.index.OrderBitmapIndexService;
 import com.harvest.oms.repository.mapper.FarmlandOmsOrderTagMapper;
+import com.harvest.oms.repository.query.order.OrderSections;
 import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -38,6 +42,14 @@ public class OrderTagSectionHandler implements OrderSectionRepositoryHandler<Ord
     @Autowired
     private FarmlandOmsOrderTagMapper farmlandOmsOrderTagMapper;
 
+    @Autowired
+    private OrderBitmapIndexService orderBitmapIndexService;
+
+    @Override
+    public Set<String> provides() {
+        return Collections.singleton(OrderSections.TAGS);
+    }
+
     @Override
     public void save(Long companyId, OrderSimplePO order) {
         List<OrderTag> orderTags = order.getOrderTags();
@@ -59,6 +71,7 @@ public class OrderTagSectionHandler implements OrderSectionRepositoryHandler<Ord
             farmlandOmsOrderTagEntity.setRmTime(LocalDateTime.now());
             return farmlandOmsOrderTagEntity;
         }).forEach(farmlandOmsOrderTagMapper::insert);
+        orderBitmapIndexService.changed(companyId, order.getOrderId());
     }
 
     @Override
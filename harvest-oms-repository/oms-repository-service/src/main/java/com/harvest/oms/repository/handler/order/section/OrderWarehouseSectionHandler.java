@@ -2,9 +2,12 @@ package com.harvest.oms.repository.handler.order.section;
 
 import com.harvest.oms.repository.domain.order.simple.OrderSimplePO;
 import com.harvest.oms.repository.handler.order.OrderSectionRepositoryHandler;
+import com.harvest.oms.repository.query.order.OrderSections;
 import org.springframework.stereotype.Component;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 
 /**
  * @Author: Alodi
@@ -14,6 +17,11 @@ import java.util.Collection;
 @Component
 public class OrderWarehouseSectionHandler implements OrderSectionRepositoryHandler<OrderSimplePO> {
 
+    @Override
+    public Set<String> provides() {
+        return Collections.singleton(OrderSections.WAREHOUSE);
+    }
+
     @Override
     public void save(Long companyId, OrderSimplePO order) {
 
@@ -0,0 +1,252 @@
+package com.harvest.oms.repository.index;
+
+import com.harvest.oms.repository.entity.FarmlandOmsOrderEntity;
+import com.harvest.oms.repository.query.order.PageOrderConditionQuery;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/22 10:00 AM
+ * @Description: 单个公司的订单位图索引
+ * <p>
+ * 订单Id 映射为稠密序号, 状态、标记、店铺、仓库、物流类型每个取值一个 Roaring 位图, 异常、挂起各一个位图.
+ * 订单变更后按数据库中的当前值整体覆盖, 重复执行结果不变. 读写锁保护, 查询之间不互斥
+ **/
+public class OrderBitmapIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 订单Id -> 序号
+     */
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+
+    /**
+     * 序号 -> 订单Id
+     */
+    private long[] orderIds = new long[INITIAL_CAPACITY];
+
+    /**
+     * 全部订单
+     */
+    private final RoaringBitmap orders = new RoaringBitmap();
+
+    private final Map<Integer, RoaringBitmap> statuses = new HashMap<>();
+
+    private final Map<Integer, RoaringBitmap> tags = new HashMap<>();
+
+    private final Map<Long, RoaringBitmap> shops = new HashMap<>();
+
+    private final Map<Long, RoaringBitmap> warehouses = new HashMap<>();
+
+    private final Map<Integer, RoaringBitmap> logisticsTypes = new HashMap<>();
+
+    private final RoaringBitmap abnormal = new RoaringBitmap();
+
+    private final RoaringBitmap hangUp = new RoaringBitmap();
+
+    /**
+     * 是否包含可由索引筛选的条件
+     */
+    public static boolean applicable(PageOrderConditionQuery condition) {
+        return CollectionUtils.isNotEmpty(condition.getStatuses())
+                || CollectionUtils.isNotEmpty(condition.getIncludeTags())
+                || CollectionUtils.isNotEmpty(condition.getExcludeTags())
+                || CollectionUtils.isNotEmpty(condition.getShopIds())
+                || CollectionUtils.isNotEmpty(condition.getWarehouseIds())
+                || CollectionUtils.isNotEmpty(condition.getLogisticsTypes())
+                || Objects.nonNull(condition.getAbnormal())
+                || Objects.nonNull(condition.getHangUp());
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 新增或覆盖订单全部主表维度, 不含标记
+     */
+    public void put(FarmlandOmsOrderEntity order) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = this.ordinal(order.getId());
+            this.set(statuses, ordinal, order.getOrderStatus());
+            this.set(shops, ordinal, order.getShopId());
+            this.set(warehouses, ordinal, order.getWarehouseId());
+            this.set(logisticsTypes, ordinal, order.getLogisticType());
+            this.flag(abnormal, ordinal, Boolean.TRUE.equals(order.getIsAbnormal()));
+            this.flag(hangUp, ordinal, Boolean.TRUE.equals(order.getIsHangUp()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按数据库中的当前值覆盖订单全部维度及标记, 不存在的订单新增
+     *
+     * @param order     订单主表维度
+     * @param tagValues 订单当前全部标记
+     */
+    public void refresh(FarmlandOmsOrderEntity order, Collection<Integer> tagValues) {
+        lock.writeLock().lock();
+        try {
+            this.put(order);
+            int ordinal = ordinals.get(order.getId());
+            tags.values().forEach(bitmap -> bitmap.remove(ordinal));
+            tagValues.forEach(tagValue -> tags.computeIfAbsent(tagValue, k -> new RoaringBitmap()).add(ordinal));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 添加或移除订单标记
+     *
+     * @param tagValues 标记值, 移除时为空代表移除全部
+     * @param present   添加或移除
+     */
+    public void tag(Long orderId, Collection<Integer> tagValues, boolean present) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(orderId);
+            if (Objects.isNull(ordinal)) {
+                return;
+            }
+            if (!present && Objects.isNull(tagValues)) {
+                tags.values().forEach(bitmap -> bitmap.remove(ordinal));
+                return;
+            }
+            for (Integer tagValue : tagValues) {
+                if (present) {
+                    tags.computeIfAbsent(tagValue, k -> new RoaringBitmap()).add(ordinal);
+                } else if (tags.containsKey(tagValue)) {
+                    tags.get(tagValue).remove(ordinal);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 重建完成后压缩位图
+     */
+    public void optimize() {
+        lock.writeLock().lock();
+        try {
+            orders.runOptimize();
+            abnormal.runOptimize();
+            hangUp.runOptimize();
+            Arrays.asList(statuses, tags, shops, warehouses, logisticsTypes).forEach(dimension -> dimension.values().forEach(RoaringBitmap::runOptimize));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 同一维度内取并集, 维度之间取交集, 不包含标记取差集
+     *
+     * @param condition     查询条件
+     * @param maxCandidates 候选订单数上限
+     * @return 候选订单Id, 超过上限时返回 null
+     */
+    public List<Long> select(PageOrderConditionQuery condition, int maxCandidates) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap result = orders.clone();
+            if (CollectionUtils.isNotEmpty(condition.getStatuses())) {
+                result.and(this.union(statuses, condition.getStatuses()));
+            }
+            if (CollectionUtils.isNotEmpty(condition.getShopIds())) {
+                result.and(this.union(shops, condition.getShopIds().stream().filter(NumberUtils::isDigits).map(Long::valueOf).collect(Collectors.toList())));
+            }
+            if (CollectionUtils.isNotEmpty(condition.getWarehouseIds())) {
+                result.and(this.union(warehouses, condition.getWarehouseIds()));
+            }
+            if (CollectionUtils.isNotEmpty(condition.getLogisticsTypes())) {
+                result.and(this.union(logisticsTypes, condition.getLogisticsTypes()));
+            }
+            if (CollectionUtils.isNotEmpty(condition.getIncludeTags())) {
+                result.and(this.union(tags, condition.getIncludeTags()));
+            }
+            if (CollectionUtils.isNotEmpty(condition.getExcludeTags())) {
+                result.andNot(this.union(tags, condition.getExcludeTags()));
+            }
+            if (Objects.nonNull(condition.getAbnormal())) {
+                this.filter(result, abnormal, condition.getAbnormal());
+            }
+            if (Objects.nonNull(condition.getHangUp())) {
+                this.filter(result, hangUp, condition.getHangUp());
+            }
+            if (result.getLongCardinality() > maxCandidates) {
+                return null;
+            }
+            List<Long> candidates = new ArrayList<>(result.getCardinality());
+            PeekableIntIterator iterator = result.getIntIterator();
+            while (iterator.hasNext()) {
+                candidates.add(orderIds[iterator.next()]);
+            }
+            return candidates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int ordinal(Long orderId) {
+        Integer ordinal = ordinals.get(orderId);
+        if (Objects.nonNull(ordinal)) {
+            return ordinal;
+        }
+        ordinal = ordinals.size();
+        if (ordinal == orderIds.length) {
+            orderIds = Arrays.copyOf(orderIds, orderIds.length << 1);
+        }
+        orderIds[ordinal] = orderId;
+        ordinals.put(orderId, ordinal);
+        orders.add(ordinal);
+        return ordinal;
+    }
+
+    private <K> void set(Map<K, RoaringBitmap> dimension, int ordinal, K value) {
+        dimension.values().forEach(bitmap -> bitmap.remove(ordinal));
+        if (Objects.nonNull(value)) {
+            dimension.computeIfAbsent(value, k -> new RoaringBitmap()).add(ordinal);
+        }
+    }
+
+    private void flag(RoaringBitmap bitmap, int ordinal, boolean value) {
+        if (value) {
+            bitmap.add(ordinal);
+        } else {
+            bitmap.remove(ordinal);
+        }
+    }
+
+    private void filter(RoaringBitmap result, RoaringBitmap bitmap, boolean value) {
+        if (value) {
+            result.and(bitmap);
+        } else {
+            result.andNot(bitmap);
+        }
+    }
+
+    private <K> RoaringBitmap union(Map<K, RoaringBitmap> dimension, Collection<K> values) {
+        return FastAggregation.or(values.stream().distinct().map(dimension::get).filter(Objects::nonNull).iterator());
+    }
+
+}
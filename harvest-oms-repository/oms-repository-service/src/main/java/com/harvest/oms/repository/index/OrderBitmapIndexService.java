@@ -0,0 +1,435 @@
+package com.harvest.oms.repository.index;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.harvest.core.constants.GlobalMacroDefinition;
+import com.harvest.core.enums.oms.OrderAssistEnums;
+import com.harvest.oms.repository.entity.FarmlandOmsOrderEntity;
+import com.harvest.oms.repository.entity.FarmlandOmsOrderIndexChangeEntity;
+import com.harvest.oms.repository.entity.FarmlandOmsOrderTagEntity;
+import com.harvest.oms.repository.mapper.FarmlandOmsOrderIndexChangeMapper;
+import com.harvest.oms.repository.mapper.FarmlandOmsOrderMapper;
+import com.harvest.oms.repository.mapper.FarmlandOmsOrderTagMapper;
+import com.harvest.oms.repository.query.order.PageOrderConditionQuery;
+import org.apache.commons.collections4.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/22 11:00 AM
+ * @Description: 订单位图索引服务
+ * <p>
+ * 每个公司一份 {@link OrderBitmapIndex}, 首次查询时异步从数据库构建, 之后定时重建, 长时间未查询的公司释放.
+ * 所有节点的订单写入在同一事务内记录变更订单 {@link #changed}, 各节点查询前按变更记录追赶: 重新读取变更订单的当前值覆盖索引.
+ * 变更Id 自增但提交可能乱序, 最近 commit-window-seconds 内的变更每次按区间计数核对, 早于窗口的视为已提交;
+ * 追赶失败或积压超过上限时索引视为过期, 返回 null 由数据库筛选, 不会漏掉订单. 不经本服务写入的维度变更要到下次重建才可见
+ **/
+@Component
+public class OrderBitmapIndexService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderBitmapIndexService.class);
+
+    private static final int LOAD_BATCH_SIZE = 2000;
+
+    private static final int CATCH_UP_BATCH_SIZE = 500;
+
+    private static final int PURGE_BATCH_SIZE = 10000;
+
+    private static final long MAINTAIN_MINUTES = 1L;
+
+    @Value("${harvest.oms.repository.order.bitmap-index.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 单个公司订单数上限, 超过时不建索引
+     */
+    @Value("${harvest.oms.repository.order.bitmap-index.max-orders:2000000}")
+    private int maxOrders;
+
+    @Value("${harvest.oms.repository.order.bitmap-index.rebuild-minutes:10}")
+    private long rebuildMinutes;
+
+    @Value("${harvest.oms.repository.order.bitmap-index.idle-minutes:60}")
+    private long idleMinutes;
+
+    /**
+     * 并发重建的公司数
+     */
+    @Value("${harvest.oms.repository.order.bitmap-index.rebuild-threads:4}")
+    private int rebuildThreads;
+
+    /**
+     * 单次追赶的最大变更数, 超过时本次查询不用索引, 剩余的由下次追赶继续
+     */
+    @Value("${harvest.oms.repository.order.bitmap-index.max-catch-up:5000}")
+    private int maxCatchUp;
+
+    /**
+     * 写入事务从记录变更到提交的最长时间, 更早的变更视为已提交
+     */
+    @Value("${harvest.oms.repository.order.bitmap-index.commit-window-seconds:30}")
+    private long commitWindowSeconds;
+
+    /**
+     * 变更记录保留时间, 超过一半时间未追赶的索引重建
+     */
+    @Value("${harvest.oms.repository.order.bitmap-index.change-retention-minutes:60}")
+    private long changeRetentionMinutes;
+
+    @Autowired
+    private FarmlandOmsOrderMapper farmlandOmsOrderMapper;
+
+    @Autowired
+    private FarmlandOmsOrderTagMapper farmlandOmsOrderTagMapper;
+
+    @Autowired
+    private FarmlandOmsOrderIndexChangeMapper farmlandOmsOrderIndexChangeMapper;
+
+    private final Map<Long, Holder> holders = new ConcurrentHashMap<>();
+
+    /**
+     * 定时维护, 只投递重建及追赶任务
+     */
+    private final ScheduledExecutorService maintainExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("harvest-oms-bitmap-index-maintain-%d").setDaemon(true).build()
+    );
+
+    /**
+     * 重建及追赶线程池, 同一公司同一时间只有一个重建
+     */
+    private ExecutorService rebuildExecutor;
+
+    @PostConstruct
+    public void init() {
+        rebuildExecutor = new ThreadPoolExecutor(rebuildThreads, rebuildThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1024),
+                new ThreadFactoryBuilder().setNameFormat("harvest-oms-bitmap-index-%d").setDaemon(true).build());
+        maintainExecutor.scheduleWithFixedDelay(this::maintain, MAINTAIN_MINUTES, MAINTAIN_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        maintainExecutor.shutdownNow();
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 按条件筛选候选订单
+     *
+     * @param companyId     公司Id
+     * @param condition     查询条件
+     * @param maxCandidates 候选订单数上限
+     * @return 候选订单Id, 索引未就绪、未追赶到最新或超过上限时返回 null
+     */
+    public List<Long> select(Long companyId, PageOrderConditionQuery condition, int maxCandidates) {
+        if (!enabled) {
+            return null;
+        }
+        Holder holder = holders.computeIfAbsent(companyId, Holder::new);
+        holder.lastAccess = System.currentTimeMillis();
+        if (Objects.isNull(holder.index)) {
+            if (holder.builtAt == 0L) {
+                this.submitRebuild(holder);
+            }
+            return null;
+        }
+        OrderBitmapIndex index = this.catchUp(holder);
+        return Objects.isNull(index) ? null : index.select(condition, maxCandidates);
+    }
+
+    /**
+     * 记录变更的订单, 在写入订单的事务内调用; 无事务时在订单写入之后调用
+     *
+     * @param companyId 公司Id
+     * @param orderIds  订单Id
+     */
+    public void changed(Long companyId, Collection<Long> orderIds) {
+        if (CollectionUtils.isEmpty(orderIds)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Lists.partition(new ArrayList<>(new LinkedHashSet<>(orderIds)), LOAD_BATCH_SIZE)
+                .forEach(chunk -> farmlandOmsOrderIndexChangeMapper.insertBatch(companyId, chunk, now));
+    }
+
+    public void changed(Long companyId, Long orderId) {
+        this.changed(companyId, Collections.singletonList(orderId));
+    }
+
+    private void submitRebuild(Holder holder) {
+        if (!holder.begin()) {
+            return;
+        }
+        try {
+            rebuildExecutor.execute(() -> this.rebuild(holder));
+        } catch (RejectedExecutionException e) {
+            holder.abort();
+            LOGGER.warn("OrderBitmapIndexService#submitRebuild#重建任务被拒绝, companyId:{}", holder.companyId);
+        }
+    }
+
+    /**
+     * 释放长时间未查询的公司, 清理过期变更记录, 重建过期的索引, 其余的追赶到最新
+     */
+    private void maintain() {
+        long now = System.currentTimeMillis();
+        holders.values().removeIf(holder -> now - holder.lastAccess > TimeUnit.MINUTES.toMillis(idleMinutes));
+        try {
+            LocalDateTime before = LocalDateTime.now().minusMinutes(changeRetentionMinutes);
+            while (farmlandOmsOrderIndexChangeMapper.deleteBefore(before, PURGE_BATCH_SIZE) >= PURGE_BATCH_SIZE) {
+                LOGGER.info("OrderBitmapIndexService#maintain#清理变更记录, before:{}", before);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("OrderBitmapIndexService#maintain#变更记录清理失败", e);
+        }
+        for (Holder holder : holders.values()) {
+            if (now - holder.builtAt > TimeUnit.MINUTES.toMillis(rebuildMinutes)) {
+                this.submitRebuild(holder);
+            } else if (Objects.nonNull(holder.index)) {
+                try {
+                    rebuildExecutor.execute(() -> this.catchUp(holder));
+                } catch (RejectedExecutionException e) {
+                    LOGGER.warn("OrderBitmapIndexService#maintain#追赶任务被拒绝, companyId:{}", holder.companyId);
+                }
+            }
+        }
+    }
+
+    private void rebuild(Holder holder) {
+        long start = System.currentTimeMillis();
+        try {
+            /*窗口之前的变更已提交, 一定包含在加载结果中, 之后的由追赶覆盖*/
+            long watermark = farmlandOmsOrderIndexChangeMapper.selectMaxIdBefore(holder.companyId,
+                    LocalDateTime.now().minusSeconds(commitWindowSeconds));
+            OrderBitmapIndex index = this.load(holder.companyId);
+            holder.complete(index, watermark);
+            LOGGER.info("OrderBitmapIndexService#rebuild#companyId:{}, orders:{}, cost:{}ms", holder.companyId,
+                    Objects.nonNull(index) ? index.size() : -1, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            holder.abort();
+            LOGGER.error("OrderBitmapIndexService#rebuild#索引重建失败, companyId:{}", holder.companyId, e);
+        }
+    }
+
+    /**
+     * 按变更记录把索引追赶到最新
+     * <p>
+     * (low, high] 为已应用但可能有更早Id 晚提交的窗口, 计数与已应用数不一致时补读窗口; 之后读取 high 之后的新变更.
+     * 应用后窗口内早于 commit-window-seconds 的变更视为确定, low 前移
+     *
+     * @return 已追赶到最新的索引, 过期时返回 null
+     */
+    private OrderBitmapIndex catchUp(Holder holder) {
+        synchronized (holder.catchUpLock) {
+            OrderBitmapIndex index = holder.index;
+            if (Objects.isNull(index)) {
+                return null;
+            }
+            if (System.currentTimeMillis() - holder.caughtUpAt > TimeUnit.MINUTES.toMillis(changeRetentionMinutes) / 2) {
+                LOGGER.warn("OrderBitmapIndexService#catchUp#长时间未追赶, 变更记录可能已清理, 重建, companyId:{}", holder.companyId);
+                this.submitRebuild(holder);
+                return null;
+            }
+            LocalDateTime start = LocalDateTime.now();
+            try {
+                List<FarmlandOmsOrderIndexChangeEntity> changes = new ArrayList<>();
+                if (holder.high > holder.low
+                        && farmlandOmsOrderIndexChangeMapper.countRange(holder.companyId, holder.low, holder.high) != holder.applied.size()) {
+                    farmlandOmsOrderIndexChangeMapper.selectRange(holder.companyId, holder.low, holder.high, maxCatchUp).stream()
+                            .filter(change -> !holder.applied.containsKey(change.getId()))
+                            .forEach(changes::add);
+                }
+                boolean more = true;
+                long from = holder.high;
+                while (more && changes.size() < maxCatchUp) {
+                    List<FarmlandOmsOrderIndexChangeEntity> batch = farmlandOmsOrderIndexChangeMapper.selectRange(holder.companyId, from, null, CATCH_UP_BATCH_SIZE);
+                    changes.addAll(batch);
+                    more = batch.size() >= CATCH_UP_BATCH_SIZE;
+                    if (!batch.isEmpty()) {
+                        from = batch.get(batch.size() - 1).getId();
+                    }
+                }
+                if (!changes.isEmpty()) {
+                    this.refresh(holder.companyId, index, changes.stream().map(FarmlandOmsOrderIndexChangeEntity::getOrderId).distinct().collect(Collectors.toList()));
+                    holder.applied(changes);
+                }
+                holder.settle(start.minusSeconds(commitWindowSeconds));
+                if (more) {
+                    LOGGER.info("OrderBitmapIndexService#catchUp#变更积压, 本次不使用索引, companyId:{}, applied:{}", holder.companyId, changes.size());
+                    return null;
+                }
+                holder.caughtUpAt = System.currentTimeMillis();
+                return index;
+            } catch (RuntimeException e) {
+                LOGGER.error("OrderBitmapIndexService#catchUp#追赶失败, 本次不使用索引, companyId:{}", holder.companyId, e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 重新读取订单主表维度及标记覆盖索引
+     */
+    private void refresh(Long companyId, OrderBitmapIndex index, List<Long> orderIds) {
+        for (List<Long> chunk : Lists.partition(orderIds, LOAD_BATCH_SIZE)) {
+            List<FarmlandOmsOrderEntity> orders = farmlandOmsOrderMapper.selectList(this.dimensions(companyId).in(FarmlandOmsOrderEntity::getId, chunk));
+            Map<Long, List<Integer>> tags = this.tags(companyId, chunk).stream().collect(Collectors.groupingBy(FarmlandOmsOrderTagEntity::getRecordId,
+                    Collectors.mapping(FarmlandOmsOrderTagEntity::getTagValue, Collectors.toList())));
+            orders.forEach(order -> index.refresh(order, tags.getOrDefault(order.getId(), Collections.emptyList())));
+        }
+    }
+
+    /**
+     * 按订单Id 分批加载主表维度及标记
+     *
+     * @return 索引, 订单数超过上限时返回 null
+     */
+    private OrderBitmapIndex load(Long companyId) {
+        OrderBitmapIndex index = new OrderBitmapIndex();
+        long lastId = 0L;
+        while (true) {
+            List<FarmlandOmsOrderEntity> orders = farmlandOmsOrderMapper.selectList(this.dimensions(companyId)
+                    .gt(FarmlandOmsOrderEntity::getId, lastId)
+                    .orderByAsc(FarmlandOmsOrderEntity::getId)
+                    .last("LIMIT " + LOAD_BATCH_SIZE)
+            );
+            if (orders.isEmpty()) {
+                break;
+            }
+            orders.forEach(index::put);
+            List<Long> orderIds = orders.stream().map(FarmlandOmsOrderEntity::getId).collect(Collectors.toList());
+            this.tags(companyId, orderIds).forEach(tag -> index.tag(tag.getRecordId(), Collections.singletonList(tag.getTagValue()), true));
+            if (index.size() > maxOrders) {
+                LOGGER.warn("OrderBitmapIndexService#load#订单数超过上限, 不建索引, companyId:{}, maxOrders:{}", companyId, maxOrders);
+                return null;
+            }
+            if (orders.size() < LOAD_BATCH_SIZE) {
+                break;
+            }
+            lastId = orderIds.get(orderIds.size() - 1);
+        }
+        index.optimize();
+        return index;
+    }
+
+    private LambdaQueryWrapper<FarmlandOmsOrderEntity> dimensions(Long companyId) {
+        return new QueryWrapper<FarmlandOmsOrderEntity>().lambda()
+                .select(FarmlandOmsOrderEntity::getId, FarmlandOmsOrderEntity::getOrderStatus, FarmlandOmsOrderEntity::getShopId,
+                        FarmlandOmsOrderEntity::getWarehouseId, FarmlandOmsOrderEntity::getLogisticType,
+                        FarmlandOmsOrderEntity::getIsAbnormal, FarmlandOmsOrderEntity::getIsHangUp)
+                .eq(FarmlandOmsOrderEntity::getCompanyId, companyId);
+    }
+
+    private List<FarmlandOmsOrderTagEntity> tags(Long companyId, List<Long> orderIds) {
+        return farmlandOmsOrderTagMapper.selectList(new QueryWrapper<FarmlandOmsOrderTagEntity>().lambda()
+                .select(FarmlandOmsOrderTagEntity::getRecordId, FarmlandOmsOrderTagEntity::getTagValue)
+                .eq(FarmlandOmsOrderTagEntity::getCompanyId, companyId)
+                .eq(FarmlandOmsOrderTagEntity::getRecordType, OrderAssistEnums.OrderTagRelationEnum.ORDER.getKey())
+                .in(FarmlandOmsOrderTagEntity::getRecordId, orderIds)
+                .eq(FarmlandOmsOrderTagEntity::getIsDeleted, GlobalMacroDefinition.Switch.OFF)
+        );
+    }
+
+    /**
+     * 公司索引、重建及追赶状态
+     */
+    private static final class Holder {
+
+        private final Long companyId;
+
+        private final Object catchUpLock = new Object();
+
+        private volatile OrderBitmapIndex index;
+
+        /**
+         * 最近一次重建结束时间, 0 为未构建
+         */
+        private volatile long builtAt;
+
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private volatile long caughtUpAt;
+
+        private boolean building;
+
+        /**
+         * 不大于此Id 的变更已确定应用
+         */
+        private long low;
+
+        /**
+         * 已应用的最大变更Id
+         */
+        private long high;
+
+        /**
+         * (low, high] 内已应用的变更Id -> 记录时间
+         */
+        private final TreeMap<Long, LocalDateTime> applied = new TreeMap<>();
+
+        private Holder(Long companyId) {
+            this.companyId = companyId;
+        }
+
+        private synchronized boolean begin() {
+            if (building) {
+                return false;
+            }
+            building = true;
+            return true;
+        }
+
+        private synchronized void abort() {
+            building = false;
+        }
+
+        private void complete(OrderBitmapIndex rebuilt, long watermark) {
+            synchronized (catchUpLock) {
+                index = rebuilt;
+                low = watermark;
+                high = watermark;
+                applied.clear();
+                builtAt = System.currentTimeMillis();
+                caughtUpAt = builtAt;
+            }
+            this.abort();
+        }
+
+        private void applied(List<FarmlandOmsOrderIndexChangeEntity> changes) {
+            changes.forEach(change -> {
+                applied.put(change.getId(), change.getRcTime());
+                high = Math.max(high, change.getId());
+            });
+        }
+
+        /**
+         * 早于截止时间的已应用变更确定, low 前移
+         */
+        private void settle(LocalDateTime before) {
+            Long settled = null;
+            for (Map.Entry<Long, LocalDateTime> entry : applied.entrySet()) {
+                if (!entry.getValue().isBefore(before)) {
+                    break;
+                }
+                settled = entry.getKey();
+            }
+            if (Objects.nonNull(settled)) {
+                low = settled;
+                applied.headMap(settled, true).clear();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.harvest.oms.repository.mapper;
+
+import com.harvest.oms.repository.entity.FarmlandOmsOrderIndexChangeEntity;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <p>
+ * 订单索引变更记录 Mapper 接口
+ * </p>
+ *
+ * @author Alodi
+ * @since 2023-04-22 11:00:00
+ */
+@Mapper
+public interface FarmlandOmsOrderIndexChangeMapper extends BaseMapper<FarmlandOmsOrderIndexChangeEntity> {
+
+    /**
+     * 批量记录变更的订单
+     *
+     * @param companyId 公司Id
+     * @param orderIds  订单Id
+     * @param now       记录时间
+     * @return
+     */
+    int insertBatch(@Param("companyId") Long companyId, @Param("orderIds") Collection<Long> orderIds, @Param("now") LocalDateTime now);
+
+    /**
+     * 按Id 顺序查询区间 (fromId, toId] 内的变更
+     *
+     * @param companyId 公司Id
+     * @param fromId    起始Id, 不含
+     * @param toId      结束Id, 含, 为空不限
+     * @param limit     最大数量
+     * @return
+     */
+    List<FarmlandOmsOrderIndexChangeEntity> selectRange(@Param("companyId") Long companyId, @Param("fromId") long fromId,
+                                                        @Param("toId") Long toId, @Param("limit") int limit);
+
+    /**
+     * 区间 (fromId, toId] 内的变更数
+     *
+     * @param companyId 公司Id
+     * @param fromId    起始Id, 不含
+     * @param toId      结束Id, 含
+     * @return
+     */
+    long countRange(@Param("companyId") Long companyId, @Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * 早于指定时间的最大变更Id
+     *
+     * @param companyId 公司Id
+     * @param before    时间
+     * @return 没有时为 0
+     */
+    long selectMaxIdBefore(@Param("companyId") Long companyId, @Param("before") LocalDateTime before);
+
+    /**
+     * 清理早于指定时间的变更
+     *
+     * @param before 时间
+     * @param limit  单次最大删除数
+     * @return
+     */
+    int deleteBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+
+}
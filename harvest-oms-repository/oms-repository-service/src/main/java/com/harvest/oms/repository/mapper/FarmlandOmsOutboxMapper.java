@@ -0,0 +1,31 @@
+package com.harvest.oms.repository.mapper;
+
+import com.harvest.oms.repository.entity.FarmlandOmsOutboxEntity;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * <p>
+ * 发件箱 Mapper 接口
+ * </p>
+ *
+ * @author Alodi
+ * @since 2023-04-26 11:30:00
+ */
+@Mapper
+public interface FarmlandOmsOutboxMapper extends BaseMapper<FarmlandOmsOutboxEntity> {
+
+    /**
+     * 到期待投递消息, 同一顺序键存在更早的未到期消息时排除
+     *
+     * @param now   当前时间
+     * @param limit 最大数量
+     * @return
+     */
+    List<FarmlandOmsOutboxEntity> selectPending(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+}
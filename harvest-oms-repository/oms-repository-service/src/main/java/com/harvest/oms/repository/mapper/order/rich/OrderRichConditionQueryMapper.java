@@ -1,10 +1,12 @@
 package com.harvest.oms.repository.mapper.order.rich;
 
 import com.harvest.core.constants.GlobalMacroDefinition;
+import com.harvest.oms.repository.domain.order.count.OrderCountBucket;
 import com.harvest.oms.repository.domain.order.simple.OrderSimplePO;
 import org.apache.ibatis.annotations.Mapper;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -31,4 +33,12 @@ public interface OrderRichConditionQueryMapper extends GlobalMacroDefinition {
      */
     Long countQueryOrderWithRichCondition(Map<String, Object> paramsMap);
 
+    /**
+     * 订单计数分桶
+     *
+     * @param paramsMap companyId, 可选 orderIds
+     * @return 按 (状态, 店铺, 仓库, 异常, 挂起) 分组的订单数
+     */
+    List<OrderCountBucket> groupCountOrder(Map<String, Object> paramsMap);
+
 }
@@ -0,0 +1,143 @@
+package com.harvest.oms.repository.outbox;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.harvest.core.generator.IdGenerator;
+import com.harvest.core.outbox.OutboxMessage;
+import com.harvest.core.outbox.OutboxStore;
+import com.harvest.oms.repository.entity.FarmlandOmsOutboxEntity;
+import com.harvest.oms.repository.mapper.FarmlandOmsOutboxMapper;
+import org.apache.commons.collections4.CollectionUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/26 11:40 AM
+ * @Description: 基于订单库的发件箱存储
+ * <p>
+ * 与订单写入同库, {@link #save} 加入调用方事务; 消息Id 由 {@link IdGenerator} 生成, 按时间递增, 同键顺序以 Id 为准
+ **/
+@Component
+public class OmsOutboxStore implements OutboxStore {
+
+    @Autowired
+    private FarmlandOmsOutboxMapper farmlandOmsOutboxMapper;
+
+    @Override
+    public void save(Collection<OutboxMessage> messages) {
+        if (CollectionUtils.isEmpty(messages)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long[] ids = IdGenerator.reserve(messages.size());
+        int index = 0;
+        for (OutboxMessage message : messages) {
+            FarmlandOmsOutboxEntity entity = new FarmlandOmsOutboxEntity();
+            entity.setId(ids[index++]);
+            entity.setCompanyId(message.getCompanyId());
+            entity.setDestination(message.getDestination());
+            entity.setMessageKey(message.getMessageKey());
+            entity.setPayload(message.getPayload());
+            entity.setStatus(OutboxMessage.STATUS_PENDING);
+            entity.setRetries(0);
+            entity.setNextTime(now);
+            farmlandOmsOutboxMapper.insert(entity);
+            message.setId(entity.getId());
+        }
+    }
+
+    @Override
+    public List<OutboxMessage> pending(int limit) {
+        return farmlandOmsOutboxMapper.selectPending(LocalDateTime.now(), limit).stream().map(this::convert).collect(Collectors.toList());
+    }
+
+    @Override
+    public void sent(Collection<Long> ids) {
+        if (CollectionUtils.isEmpty(ids)) {
+            return;
+        }
+        FarmlandOmsOutboxEntity entity = new FarmlandOmsOutboxEntity();
+        entity.setStatus(OutboxMessage.STATUS_SENT);
+        farmlandOmsOutboxMapper.update(entity, new UpdateWrapper<FarmlandOmsOutboxEntity>().lambda()
+                .in(FarmlandOmsOutboxEntity::getId, ids)
+                .eq(FarmlandOmsOutboxEntity::getStatus, OutboxMessage.STATUS_PENDING)
+        );
+    }
+
+    @Override
+    public void retry(Collection<Long> ids, long nextMillis, String error) {
+        if (CollectionUtils.isEmpty(ids)) {
+            return;
+        }
+        FarmlandOmsOutboxEntity entity = new FarmlandOmsOutboxEntity();
+        entity.setNextTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(nextMillis), ZoneId.systemDefault()));
+        entity.setLastError(error);
+        farmlandOmsOutboxMapper.update(entity, new UpdateWrapper<FarmlandOmsOutboxEntity>().lambda()
+                .in(FarmlandOmsOutboxEntity::getId, ids)
+                .eq(FarmlandOmsOutboxEntity::getStatus, OutboxMessage.STATUS_PENDING)
+                .setSql("retries = retries + 1")
+        );
+    }
+
+    @Override
+    public void dead(Collection<Long> ids, String error) {
+        if (CollectionUtils.isEmpty(ids)) {
+            return;
+        }
+        FarmlandOmsOutboxEntity entity = new FarmlandOmsOutboxEntity();
+        entity.setStatus(OutboxMessage.STATUS_DEAD);
+        entity.setLastError(error);
+        farmlandOmsOutboxMapper.update(entity, new UpdateWrapper<FarmlandOmsOutboxEntity>().lambda()
+                .in(FarmlandOmsOutboxEntity::getId, ids)
+                .eq(FarmlandOmsOutboxEntity::getStatus, OutboxMessage.STATUS_PENDING)
+        );
+    }
+
+    /**
+     * 消息键在投递目标下待投递的消息转入死信, 加入调用方事务; 已投递的消息不受影响
+     */
+    public void cancel(Long companyId, String destination, Collection<String> messageKeys, String reason) {
+        if (CollectionUtils.isEmpty(messageKeys)) {
+            return;
+        }
+        FarmlandOmsOutboxEntity entity = new FarmlandOmsOutboxEntity();
+        entity.setStatus(OutboxMessage.STATUS_DEAD);
+        entity.setLastError(reason);
+        farmlandOmsOutboxMapper.update(entity, new UpdateWrapper<FarmlandOmsOutboxEntity>().lambda()
+                .eq(FarmlandOmsOutboxEntity::getCompanyId, companyId)
+                .eq(FarmlandOmsOutboxEntity::getDestination, destination)
+                .in(FarmlandOmsOutboxEntity::getMessageKey, messageKeys)
+                .eq(FarmlandOmsOutboxEntity::getStatus, OutboxMessage.STATUS_PENDING)
+        );
+    }
+
+    @Override
+    public long size() {
+        return farmlandOmsOutboxMapper.selectCount(new QueryWrapper<FarmlandOmsOutboxEntity>().lambda()
+                .eq(FarmlandOmsOutboxEntity::getStatus, OutboxMessage.STATUS_PENDING)
+        );
+    }
+
+    private OutboxMessage convert(FarmlandOmsOutboxEntity entity) {
+        OutboxMessage message = new OutboxMessage();
+        message.setId(entity.getId());
+        message.setCompanyId(entity.getCompanyId());
+        message.setDestination(entity.getDestination());
+        message.setMessageKey(entity.getMessageKey());
+        message.setPayload(entity.getPayload());
+        message.setStatus(entity.getStatus());
+        message.setRetries(entity.getRetries());
+        message.setLastError(entity.getLastError());
+        message.setCreateTime(entity.getRcTime());
+        return message;
+    }
+
+}
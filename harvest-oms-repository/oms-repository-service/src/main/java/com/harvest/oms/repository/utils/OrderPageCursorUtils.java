@@ -0,0 +1,71 @@
+package com.harvest.oms.repository.utils;
+
+import com.harvest.core.exception.ExceptionCodes;
+import com.harvest.core.exception.StandardRuntimeException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/19 2:10 PM
+ * @Description: 订单分页游标
+ * <p>
+ * 游标为上一页最后一条记录的 (记录创建时间, 订单Id), 对调用方不透明
+ **/
+public class OrderPageCursorUtils {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * 没有下一页
+     */
+    public static final String END = "";
+
+    public static String encode(LocalDateTime rcTime, Long orderId) {
+        String cursor = rcTime + SEPARATOR + orderId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标
+     *
+     * @param cursor 游标
+     * @return 记录创建时间及订单Id, 首页返回 null
+     */
+    public static Position decode(String cursor) {
+        if (StringUtils.isEmpty(cursor)) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int index = decoded.lastIndexOf(SEPARATOR);
+            return new Position(LocalDateTime.parse(decoded.substring(0, index)), Long.valueOf(decoded.substring(index + 1)));
+        } catch (RuntimeException e) {
+            throw new StandardRuntimeException(ExceptionCodes.OMS_MODULE_ERROR, "分页游标无效: " + cursor);
+        }
+    }
+
+    public static final class Position {
+
+        private final LocalDateTime rcTime;
+
+        private final Long orderId;
+
+        private Position(LocalDateTime rcTime, Long orderId) {
+            this.rcTime = rcTime;
+            this.orderId = orderId;
+        }
+
+        public LocalDateTime getRcTime() {
+            return rcTime;
+        }
+
+        public Long getOrderId() {
+            return orderId;
+        }
+    }
+
+}
@@ -0,0 +1,3 @@
+-- 订单数据版本: 每次更新加一, 不加锁的批量更新以此为期望版本条件写入
+ALTER TABLE `farmland_oms_order`
+  ADD COLUMN `version` int NOT NULL DEFAULT 0 COMMENT '数据版本, 每次更新加一' AFTER `is_abnormal`;
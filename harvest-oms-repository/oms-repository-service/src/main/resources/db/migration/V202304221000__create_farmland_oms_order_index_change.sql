@@ -0,0 +1,10 @@
+-- 订单索引变更记录: 订单写入后记录变更的订单, 各节点按自增主键追赶位图索引
+CREATE TABLE IF NOT EXISTS `farmland_oms_order_index_change` (
+  `id`          bigint      NOT NULL AUTO_INCREMENT COMMENT '自增主键, 各节点按此顺序追赶',
+  `COMPANY_ID`  bigint      NOT NULL COMMENT '公司ID',
+  `order_id`    bigint      NOT NULL COMMENT '订单ID',
+  `rc_time`     datetime(3) NOT NULL COMMENT '记录创建时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_company_id` (`COMPANY_ID`, `id`),
+  KEY `idx_rc_time` (`rc_time`)
+) COMMENT ='订单索引变更记录';
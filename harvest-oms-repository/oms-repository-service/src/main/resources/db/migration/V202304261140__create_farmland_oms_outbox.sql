@@ -0,0 +1,17 @@
+-- 发件箱: 订单状态迁移时同一事务写入, 由 OutboxRelay 投递
+CREATE TABLE IF NOT EXISTS `farmland_oms_outbox` (
+  `id`          bigint       NOT NULL COMMENT 'primary key',
+  `COMPANY_ID`  bigint       NOT NULL COMMENT '公司ID',
+  `destination` varchar(128) NOT NULL COMMENT '投递目标 topic:tags',
+  `message_key` varchar(64)  NOT NULL COMMENT '顺序键',
+  `payload`     mediumtext            COMMENT 'JSON 消息体, 为空时投递前解析',
+  `status`      tinyint      NOT NULL DEFAULT 0 COMMENT '0:待投递｜1:已投递｜2:死信',
+  `retries`     int          NOT NULL DEFAULT 0 COMMENT '失败次数',
+  `next_time`   datetime(3)  NOT NULL COMMENT '下次投递时间',
+  `last_error`  varchar(512)          COMMENT '最近一次失败原因',
+  `rc_time`     datetime     NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '记录创建时间',
+  `rm_time`     datetime     NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '记录修改时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_status_next_time` (`status`, `next_time`),
+  KEY `idx_destination_key` (`destination`, `message_key`, `status`)
+) COMMENT ='发件箱';
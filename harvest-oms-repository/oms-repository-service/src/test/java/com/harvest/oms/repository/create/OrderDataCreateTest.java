@@ -66,11 +66,12 @@ public class OrderDataCreateTest {
     }
 
     private void create(long companyId, long shopId) {
+        long[] orderIds = IdGenerator.reserve(1000);
         for (int i = 0; i < 1000; i++) {
             Thread currentThread = Thread.currentThread();
             System.out.println(currentThread.getId() + ":" + currentThread.getName() + " | " + i);
 
-            FarmlandOmsOrderEntity farmlandOmsOrderEntity = this.buildOrder(companyId, shopId);
+            FarmlandOmsOrderEntity farmlandOmsOrderEntity = this.buildOrder(orderIds[i], companyId, shopId);
             farmlandOmsOrderMapper.insert(farmlandOmsOrderEntity);
 
             List<FarmlandOmsOrderItemEntity> items = this.buildOrderItem(farmlandOmsOrderEntity);
@@ -89,9 +90,10 @@ public class OrderDataCreateTest {
     private Collection<FarmlandOmsOrderTagEntity> buildOrderTag(FarmlandOmsOrderEntity farmlandOmsOrderEntity) {
         Collection<FarmlandOmsOrderTagEntity> collection = new ArrayList<>();
 
+        long[] ids = IdGenerator.reserve(10);
         for (int i = 0; i < 10; i++) {
             FarmlandOmsOrderTagEntity tagEntity = new FarmlandOmsOrderTagEntity();
-            tagEntity.setId(IdGenerator.generate());
+            tagEntity.setId(ids[i]);
             tagEntity.setCompanyId(farmlandOmsOrderEntity.getCompanyId());
             tagEntity.setRecordId(farmlandOmsOrderEntity.getId());
             tagEntity.setRecordType(1);
@@ -141,10 +143,11 @@ public class OrderDataCreateTest {
 
     private List<FarmlandOmsOrderItemEntity> buildOrderItem(FarmlandOmsOrderEntity farmlandOmsOrderEntity) {
         List<FarmlandOmsOrderItemEntity> itemEntityList = Lists.newArrayList();
+        long[] ids = IdGenerator.reserve(1);
         for (int i = 0; i < 1; i++) {
             FarmlandOmsOrderItemEntity farmlandOmsOrderItemEntity = new FarmlandOmsOrderItemEntity();
             itemEntityList.add(farmlandOmsOrderItemEntity);
-            farmlandOmsOrderItemEntity.setId(IdGenerator.generate());
+            farmlandOmsOrderItemEntity.setId(ids[i]);
             farmlandOmsOrderItemEntity.setCompanyId(farmlandOmsOrderEntity.getCompanyId());
             farmlandOmsOrderItemEntity.setShopId(farmlandOmsOrderEntity.getShopId());
             farmlandOmsOrderItemEntity.setOrderId(farmlandOmsOrderEntity.getId());
@@ -177,9 +180,9 @@ public class OrderDataCreateTest {
         return itemEntityList;
     }
 
-    private FarmlandOmsOrderEntity buildOrder(long companyId, long shopId) {
+    private FarmlandOmsOrderEntity buildOrder(long orderId, long companyId, long shopId) {
         FarmlandOmsOrderEntity farmlandOmsOrderEntity = new FarmlandOmsOrderEntity();
-        farmlandOmsOrderEntity.setId(IdGenerator.generate());
+        farmlandOmsOrderEntity.setId(orderId);
         farmlandOmsOrderEntity.setCompanyId(companyId);
         farmlandOmsOrderEntity.setOrderNo("OD" + Math.abs(new Random().nextLong()));
         farmlandOmsOrderEntity.setSourceType(1);
@@ -0,0 +1,189 @@
+package com.harvest.oms.repository.index;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.harvest.oms.repository.entity.FarmlandOmsOrderEntity;
+import com.harvest.oms.repository.entity.FarmlandOmsOrderIndexChangeEntity;
+import com.harvest.oms.repository.entity.FarmlandOmsOrderTagEntity;
+import com.harvest.oms.repository.mapper.FarmlandOmsOrderIndexChangeMapper;
+import com.harvest.oms.repository.mapper.FarmlandOmsOrderMapper;
+import com.harvest.oms.repository.mapper.FarmlandOmsOrderTagMapper;
+import com.harvest.oms.repository.query.order.PageOrderConditionQuery;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/22 3:00 PM
+ * @Description: 订单位图索引追赶及过期回退
+ **/
+public class OrderBitmapIndexServiceTest {
+
+    private static final Long COMPANY_ID = 1L;
+
+    private final Map<Long, FarmlandOmsOrderEntity> orders = new TreeMap<>();
+
+    private final List<FarmlandOmsOrderIndexChangeEntity> changes = new ArrayList<>();
+
+    private OrderBitmapIndexService service;
+
+    @BeforeAll
+    public static void tableInfo() {
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(new MybatisConfiguration(), "");
+        TableInfoHelper.initTableInfo(assistant, FarmlandOmsOrderEntity.class);
+        TableInfoHelper.initTableInfo(assistant, FarmlandOmsOrderTagEntity.class);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        FarmlandOmsOrderMapper orderMapper = mock(FarmlandOmsOrderMapper.class);
+        when(orderMapper.selectList(any())).thenAnswer(invocation -> new ArrayList<>(orders.values()));
+        FarmlandOmsOrderTagMapper tagMapper = mock(FarmlandOmsOrderTagMapper.class);
+        when(tagMapper.selectList(any())).thenReturn(Collections.emptyList());
+
+        FarmlandOmsOrderIndexChangeMapper changeMapper = mock(FarmlandOmsOrderIndexChangeMapper.class);
+        when(changeMapper.selectMaxIdBefore(anyLong(), any())).thenAnswer(invocation -> {
+            LocalDateTime before = invocation.getArgument(1);
+            return changes.stream().filter(change -> change.getRcTime().isBefore(before))
+                    .mapToLong(FarmlandOmsOrderIndexChangeEntity::getId).max().orElse(0L);
+        });
+        when(changeMapper.selectRange(anyLong(), anyLong(), any(), anyInt())).thenAnswer(invocation -> {
+            long from = invocation.getArgument(1);
+            Long to = invocation.getArgument(2);
+            int limit = invocation.getArgument(3);
+            return changes.stream().filter(change -> change.getId() > from && (to == null || change.getId() <= to))
+                    .sorted(Comparator.comparing(FarmlandOmsOrderIndexChangeEntity::getId)).limit(limit).collect(Collectors.toList());
+        });
+        when(changeMapper.countRange(anyLong(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            long from = invocation.getArgument(1);
+            long to = invocation.getArgument(2);
+            return changes.stream().filter(change -> change.getId() > from && change.getId() <= to).count();
+        });
+
+        service = new OrderBitmapIndexService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "maxOrders", 1000);
+        ReflectionTestUtils.setField(service, "rebuildMinutes", 10L);
+        ReflectionTestUtils.setField(service, "idleMinutes", 60L);
+        ReflectionTestUtils.setField(service, "maxCatchUp", 5000);
+        ReflectionTestUtils.setField(service, "commitWindowSeconds", 30L);
+        ReflectionTestUtils.setField(service, "changeRetentionMinutes", 60L);
+        ReflectionTestUtils.setField(service, "farmlandOmsOrderMapper", orderMapper);
+        ReflectionTestUtils.setField(service, "farmlandOmsOrderTagMapper", tagMapper);
+        ReflectionTestUtils.setField(service, "farmlandOmsOrderIndexChangeMapper", changeMapper);
+        ReflectionTestUtils.setField(service, "rebuildExecutor", MoreExecutors.newDirectExecutorService());
+
+        this.order(1L, 10);
+        this.order(2L, 10);
+    }
+
+    @Test
+    public void fallsBackUntilBuilt() {
+        assertNull(service.select(COMPANY_ID, this.status(10), 100));
+        assertEquals(Arrays.asList(1L, 2L), service.select(COMPANY_ID, this.status(10), 100));
+    }
+
+    @Test
+    public void appliesChangesWrittenByOtherNodes() {
+        this.build();
+        this.order(1L, 20);
+        this.order(3L, 20);
+        this.change(1L, 1L, LocalDateTime.now());
+        this.change(2L, 3L, LocalDateTime.now());
+
+        assertEquals(Arrays.asList(1L, 3L), service.select(COMPANY_ID, this.status(20), 100));
+        assertEquals(Collections.singletonList(2L), service.select(COMPANY_ID, this.status(10), 100));
+    }
+
+    @Test
+    public void appliesLateCommittedChangeWithLowerId() {
+        this.build();
+        this.order(2L, 20);
+        this.change(2L, 2L, LocalDateTime.now());
+        assertEquals(Collections.singletonList(2L), service.select(COMPANY_ID, this.status(20), 100));
+
+        /*Id 更小的变更晚提交*/
+        this.order(1L, 20);
+        this.change(1L, 1L, LocalDateTime.now());
+        assertEquals(Arrays.asList(1L, 2L), service.select(COMPANY_ID, this.status(20), 100));
+    }
+
+    @Test
+    public void emptyResultOnlyWhenCaughtUp() {
+        this.build();
+        assertEquals(Collections.emptyList(), service.select(COMPANY_ID, this.status(20), 100));
+
+        this.order(1L, 20);
+        this.change(1L, 1L, LocalDateTime.now());
+        assertEquals(Collections.singletonList(1L), service.select(COMPANY_ID, this.status(20), 100));
+    }
+
+    @Test
+    public void staleWhenBacklogExceedsLimit() {
+        this.build();
+        ReflectionTestUtils.setField(service, "maxCatchUp", 1);
+        this.order(1L, 20);
+        for (long id = 1; id <= 500; id++) {
+            this.change(id, 1L, LocalDateTime.now());
+        }
+
+        assertNull(service.select(COMPANY_ID, this.status(20), 100));
+        /*积压已在上次追赶中应用, 之后可以使用索引*/
+        assertEquals(Collections.singletonList(1L), service.select(COMPANY_ID, this.status(20), 100));
+    }
+
+    @Test
+    public void settledChangesAreNotReadAgain() {
+        this.build();
+        this.order(1L, 20);
+        this.change(1L, 1L, LocalDateTime.now().minusMinutes(1));
+        assertEquals(Collections.singletonList(1L), service.select(COMPANY_ID, this.status(20), 100));
+
+        /*早于提交窗口的变更已确定, 之后不再核对*/
+        changes.clear();
+        assertEquals(Collections.singletonList(1L), service.select(COMPANY_ID, this.status(20), 100));
+    }
+
+    private void build() {
+        assertNull(service.select(COMPANY_ID, this.status(10), 100));
+    }
+
+    private void order(Long orderId, Integer status) {
+        FarmlandOmsOrderEntity order = new FarmlandOmsOrderEntity();
+        order.setId(orderId);
+        order.setCompanyId(COMPANY_ID);
+        order.setOrderStatus(status);
+        order.setIsAbnormal(false);
+        order.setIsHangUp(false);
+        orders.put(orderId, order);
+    }
+
+    private void change(Long id, Long orderId, LocalDateTime rcTime) {
+        FarmlandOmsOrderIndexChangeEntity change = new FarmlandOmsOrderIndexChangeEntity();
+        change.setId(id);
+        change.setCompanyId(COMPANY_ID);
+        change.setOrderId(orderId);
+        change.setRcTime(rcTime);
+        changes.add(change);
+    }
+
+    private PageOrderConditionQuery status(Integer status) {
+        PageOrderConditionQuery condition = new PageOrderConditionQuery();
+        condition.setStatuses(Collections.singletonList(status));
+        return condition;
+    }
+
+}
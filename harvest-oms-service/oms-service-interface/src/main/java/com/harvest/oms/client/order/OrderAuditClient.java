@@ -2,6 +2,7 @@ package com.harvest.oms.client.order;
 
 import com.harvest.core.annotation.feign.HarvestClient;
 import com.harvest.core.batch.BatchExecuteResult;
+import com.harvest.core.batch.CompactBatchExecuteResult;
 import com.harvest.core.constants.GlobalMacroDefinition;
 import com.harvest.oms.client.constants.HarvestOmsApplications;
 import com.harvest.oms.request.order.audit.SubmitAuditRequest;
@@ -25,6 +26,10 @@ public interface OrderAuditClient extends GlobalMacroDefinition {
     @PostMapping("/batch/audit/check")
     BatchExecuteResult<String> check(@RequestParam(COMPANY_ID) Long companyId, @RequestBody Collection<Long> orderIds);
 
+    @ApiOperation("订单并发审核检查-紧凑结果, 适用于数万条订单")
+    @PostMapping("/batch/audit/check/compact")
+    CompactBatchExecuteResult checkCompact(@RequestParam(COMPANY_ID) Long companyId, @RequestBody Collection<Long> orderIds);
+
     @ApiOperation("并发订单审核")
     @PostMapping("/batch/audit")
     BatchExecuteResult<String> audit(@RequestParam(COMPANY_ID) Long companyId, @RequestBody Collection<Long> orderIds);
@@ -12,6 +12,9 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * @Author: Alodi
  * @Date: 2023/02/21 9:48 PM
@@ -28,4 +31,8 @@ public interface OrderMatchClient extends GlobalMacroDefinition {
     @PostMapping("/matchLogistics")
     LogisticsRuleMatch matchLogistics(@RequestParam(COMPANY_ID) Long companyId, @RequestBody LogisticsRuleCondition condition);
 
+    @ApiOperation(value = "订单批量物流匹配", notes = "结果按入参顺序返回, 无匹配的位置为空")
+    @PostMapping("/matchLogisticsBatch")
+    List<LogisticsRuleMatch> matchLogisticsBatch(@RequestParam(COMPANY_ID) Long companyId, @RequestBody Collection<LogisticsRuleCondition> conditions);
+
 }
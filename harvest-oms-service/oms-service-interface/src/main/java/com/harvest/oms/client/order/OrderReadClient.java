@@ -5,6 +5,7 @@ import com.harvest.core.constants.GlobalMacroDefinition;
 import com.harvest.oms.client.constants.HarvestOmsApplications;
 import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.repository.domain.order.simple.OrderItemSimplePO;
+import com.harvest.oms.repository.query.order.OrderSectionQuery;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -30,6 +31,10 @@ public interface OrderReadClient extends GlobalMacroDefinition {
     @PostMapping(value = "/listOrderRich")
     Collection<OrderInfoDO> listOrderRich(@RequestParam(COMPANY_ID) Long companyId, @RequestBody List<Long> orderIds);
 
+    @ApiOperation("按数据段查询订单信息")
+    @PostMapping(value = "/listOrderSection")
+    Collection<OrderInfoDO> listOrderSection(@RequestParam(COMPANY_ID) Long companyId, @RequestBody OrderSectionQuery query);
+
     @ApiOperation("订单明细信息查询")
     @PostMapping(value = "/listOrderItemByOrderIds")
     Collection<OrderItemSimplePO> listOrderItemByOrderId(@RequestParam(COMPANY_ID) Long companyId, @RequestParam(OMS.ORDER_ID) Long orderId);
@@ -2,9 +2,14 @@ package com.harvest.oms.client.order;
 
 import com.harvest.core.annotation.feign.HarvestService;
 import com.harvest.core.batch.BatchExecuteResult;
+import com.harvest.core.batch.CompactBatchExecuteResult;
 import com.harvest.core.context.SpringHelper;
 import com.harvest.core.enums.oms.OrderStatusEnum;
+import com.harvest.core.enums.oms.OrderStatusTransition;
+import com.harvest.core.service.mq.topic.MessageTopic;
+import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.client.constants.HarvestOmsApplications;
+import com.harvest.oms.repository.query.order.OrderSections;
 import com.harvest.oms.request.order.audit.SubmitAuditRequest;
 import com.harvest.oms.request.order.audit.SubmitAuditReturnRequest;
 import com.harvest.oms.service.order.biz.AbstractBizOrderService;
@@ -12,8 +17,11 @@ import com.harvest.oms.service.order.handler.audit.OrderAuditCheckExecutor;
 import com.harvest.oms.service.order.handler.audit.OrderAuditExecutor;
 import com.harvest.oms.service.order.handler.audit.OrderAuditReturnExecutor;
 import org.apache.commons.collections4.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -26,11 +34,26 @@ import java.util.stream.Stream;
 @HarvestService(path = HarvestOmsApplications.Path.ORDER_AUDIT)
 public class OrderAuditClientImpl extends AbstractBizOrderService implements OrderAuditClient {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderAuditClientImpl.class);
+
+    /**
+     * 批量审核后置处理每批订单数
+     */
+    private static final int COMPLETE_BATCH_SIZE = 200;
+
     /**
      * 待/审核状态
      */
     public static final Set<OrderStatusEnum> AUDIT_STATUS_ENUMS = Stream.of(OrderStatusEnum.APPROVE).collect(Collectors.toSet());
 
+    /**
+     * 审核校验、审核及打回只读写订单状态, 不加载明细及各数据段; 审核事件按订单Id重新加载完整订单
+     */
+    @Override
+    protected Collection<String> sections() {
+        return OrderSections.BASE;
+    }
+
     @Override
     public BatchExecuteResult<String> check(Long companyId, Collection<Long> orderIds) {
         if (CollectionUtils.isEmpty(orderIds)) {
@@ -41,6 +64,16 @@ public class OrderAuditClientImpl extends AbstractBizOrderService implements Ord
         );
     }
 
+    @Override
+    public CompactBatchExecuteResult checkCompact(Long companyId, Collection<Long> orderIds) {
+        if (CollectionUtils.isEmpty(orderIds)) {
+            return CompactBatchExecuteResult.empty();
+        }
+        return super.SyncUniqueOrderParallelCompactBatchExecute(companyId, orderIds, order ->
+                SpringHelper.getBean(OrderAuditCheckExecutor.class).check(order)
+        );
+    }
+
     @Override
     public BatchExecuteResult<String> audit(Long companyId, Collection<Long> orderIds) {
         if (CollectionUtils.isEmpty(orderIds)) {
@@ -59,17 +92,33 @@ public class OrderAuditClientImpl extends AbstractBizOrderService implements Ord
         if (CollectionUtils.isEmpty(requests) || requests.stream().allMatch(request -> Objects.isNull(request.getId()))) {
             return BatchExecuteResult.empty();
         }
-        Map<Long, SubmitAuditRequest> orderAuditSubmitMap = requests.stream().collect(Collectors.toMap(SubmitAuditRequest::getId, Function.identity(), (k1, k2) -> k1));
-        // 记录键值 id-key
-        Map<Long, String> orderMap = new HashMap<>(DEFAULT_2);
-        return super.SyncUniqueOrderParallelFailAllowBatchExecute(companyId, orderAuditSubmitMap.keySet(),
-                order -> {
-                    SubmitAuditRequest submitAuditRequest = orderAuditSubmitMap.get(order.getOrderId());
-                    // 传递订单信息
-                    submitAuditRequest.setOrder(order);
-                    // 执行审核
-                    SpringHelper.getBean(OrderAuditExecutor.class).exec(companyId, submitAuditRequest);
-                });
+        Map<Long, SubmitAuditRequest> orderAuditSubmitMap = requests.stream().filter(request -> Objects.nonNull(request.getId()))
+                .collect(Collectors.toMap(SubmitAuditRequest::getId, Function.identity(), (k1, k2) -> k1));
+        OrderAuditExecutor executor = SpringHelper.getBean(OrderAuditExecutor.class);
+        AuditCompletion completion = new AuditCompletion(companyId, executor);
+        Consumer<OrderInfoDO> consumer = order -> {
+            SubmitAuditRequest submitAuditRequest = orderAuditSubmitMap.get(order.getOrderId());
+            // 传递订单信息
+            submitAuditRequest.setOrder(order);
+            // 逐单校验及处理, 事件及日志按批执行; 推送wms随状态迁移写入发件箱, 处理失败的订单恢复原状态并撤销消息
+            executor.prepare(companyId, submitAuditRequest);
+            completion.add(submitAuditRequest);
+        };
+        // 强制审核放宽为状态机允许的全部来源状态, 普通审核只允许待审核
+        Map<Boolean, List<Long>> forceOrderIds = orderAuditSubmitMap.values().stream()
+                .collect(Collectors.partitioningBy(SubmitAuditRequest::isForce, Collectors.mapping(SubmitAuditRequest::getId, Collectors.toList())));
+        try {
+            BatchExecuteResult<String> result = super.SyncOrderTransitionParallelFailAllowBatchExecute(companyId, forceOrderIds.get(false),
+                    AUDIT_STATUS_ENUMS, OrderAuditExecutor.AUDITED_STATUS, MessageTopic.ORDER_PUSH_WMS, consumer);
+            if (!forceOrderIds.get(true).isEmpty()) {
+                result.merge(super.SyncOrderTransitionParallelFailAllowBatchExecute(companyId, forceOrderIds.get(true),
+                        OrderStatusTransition.sources(OrderAuditExecutor.AUDITED_STATUS), OrderAuditExecutor.AUDITED_STATUS,
+                        MessageTopic.ORDER_PUSH_WMS, consumer));
+            }
+            return result;
+        } finally {
+            completion.flush();
+        }
     }
 
     @Override
@@ -90,10 +139,11 @@ public class OrderAuditClientImpl extends AbstractBizOrderService implements Ord
         if (CollectionUtils.isEmpty(requests) || requests.parallelStream().allMatch(request -> Objects.isNull(request.getId()))) {
             return new BatchExecuteResult<>();
         }
-        Map<Long, SubmitAuditReturnRequest> orderAuditReturnSubmitMap = requests.stream().collect(Collectors.toMap(SubmitAuditReturnRequest::getId, Function.identity(), (k1, k2) -> k1));
-        // 记录键值 id-key
-        Map<Long, String> orderMap = new HashMap<>(DEFAULT_2);
-        return super.SyncUniqueOrderParallelFailAllowBatchExecute(companyId, orderAuditReturnSubmitMap.keySet(),
+        Map<Long, SubmitAuditReturnRequest> orderAuditReturnSubmitMap = requests.stream().filter(request -> Objects.nonNull(request.getId()))
+                .collect(Collectors.toMap(SubmitAuditReturnRequest::getId, Function.identity(), (k1, k2) -> k1));
+        // 只允许从审核后的状态回退
+        return super.SyncOrderTransitionParallelFailAllowBatchExecute(companyId, orderAuditReturnSubmitMap.keySet(),
+                OrderStatusTransition.backSources(OrderAuditReturnExecutor.RETURNED_STATUS), OrderAuditReturnExecutor.RETURNED_STATUS,
                 order -> {
                     SubmitAuditReturnRequest request = orderAuditReturnSubmitMap.get(order.getOrderId());
                     // 传递订单信息
@@ -103,4 +153,58 @@ public class OrderAuditClientImpl extends AbstractBizOrderService implements Ord
                 });
     }
 
+    /**
+     * 批量审核后置处理缓冲
+     * <p>
+     * 处理通过的订单攒满一批由当前线程执行 {@link OrderAuditExecutor#complete}, 剩余的在全部订单处理完后执行.
+     * 订单状态已写入, 后置处理异常不影响审核结果, 只记录日志
+     */
+    private static class AuditCompletion {
+
+        private final Long companyId;
+
+        private final OrderAuditExecutor executor;
+
+        private List<SubmitAuditRequest> buffer = new ArrayList<>(COMPLETE_BATCH_SIZE);
+
+        private AuditCompletion(Long companyId, OrderAuditExecutor executor) {
+            this.companyId = companyId;
+            this.executor = executor;
+        }
+
+        private void add(SubmitAuditRequest request) {
+            List<SubmitAuditRequest> full = null;
+            synchronized (this) {
+                buffer.add(request);
+                if (buffer.size() >= COMPLETE_BATCH_SIZE) {
+                    full = buffer;
+                    buffer = new ArrayList<>(COMPLETE_BATCH_SIZE);
+                }
+            }
+            if (Objects.nonNull(full)) {
+                this.complete(full);
+            }
+        }
+
+        private void flush() {
+            List<SubmitAuditRequest> rest;
+            synchronized (this) {
+                rest = buffer;
+                buffer = new ArrayList<>(COMPLETE_BATCH_SIZE);
+            }
+            if (!rest.isEmpty()) {
+                this.complete(rest);
+            }
+        }
+
+        private void complete(List<SubmitAuditRequest> requests) {
+            try {
+                executor.complete(companyId, requests);
+            } catch (Exception e) {
+                LOGGER.error("OrderAuditClientImpl#批量审核后置处理失败, companyId:{}, orderIds:{}", companyId,
+                        requests.stream().map(SubmitAuditRequest::getId).collect(Collectors.toList()), e);
+            }
+        }
+    }
+
 }
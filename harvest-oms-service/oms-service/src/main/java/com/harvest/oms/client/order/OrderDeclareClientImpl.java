@@ -3,6 +3,7 @@ package com.harvest.oms.client.order;
 import com.harvest.basic.domain.logistics.DeclarationResponse;
 import com.harvest.core.service.annotation.RepeatSubmit;
 import com.harvest.core.annotation.feign.HarvestService;
+import com.harvest.core.batch.BatchExecuteOptions;
 import com.harvest.core.batch.BatchExecuteResult;
 import com.harvest.core.batch.BatchId;
 import com.harvest.core.context.SpringHelper;
@@ -78,7 +79,7 @@ public class OrderDeclareClientImpl extends AbstractBizOrderService implements O
                     orderMap.put(orderId, order.getOrderNo());
                     // 执行申报
                     SpringHelper.getBean(OrderSubmitDeclareExecutor.class).execute(companyId, request);
-                }, request -> orderMap.get(request.getId())
+                }, request -> orderMap.get(request.getId()), BatchExecuteOptions.of(companyId)
         );
     }
 
@@ -87,7 +88,7 @@ public class OrderDeclareClientImpl extends AbstractBizOrderService implements O
     public void refreshDeclaration(Long companyId, List<Long> orderIds) {
         ActuatorUtils.parallelFailAllowBatchExecute(orderIds.stream().map(BatchId::build).collect(Collectors.toList()), batchId -> {
             SpringHelper.getBean(OrderRefreshDeclareExecutor.class).refresh(companyId, batchId.getId());
-        });
+        }, Function.identity(), BatchExecuteOptions.of(companyId));
     }
 
     @RepeatSubmit(seconds = 10, remind = "正在取消申报, 请耐心等待～")
@@ -3,8 +3,10 @@ package com.harvest.oms.client.order;
 import com.harvest.core.annotation.feign.HarvestService;
 import com.harvest.core.batch.BatchExecuteResult;
 import com.harvest.core.context.SpringHelper;
+import com.harvest.core.enums.oms.OrderStatusTransition;
 import com.harvest.core.service.redis.CacheService;
 import com.harvest.oms.client.constants.HarvestOmsApplications;
+import com.harvest.oms.repository.query.order.OrderSections;
 import com.harvest.oms.service.order.biz.AbstractBizOrderService;
 import com.harvest.oms.service.order.handler.delivery.OrderDeliveryExecutor;
 import org.apache.commons.collections4.CollectionUtils;
@@ -27,13 +29,21 @@ public class OrderDeliveryClientImpl extends AbstractBizOrderService implements
     @Autowired
     private CacheService cacheService;
 
+    /**
+     * 发货只写订单状态, 不加载明细及各数据段
+     */
+    @Override
+    protected Collection<String> sections() {
+        return OrderSections.BASE;
+    }
+
     @Override
     public BatchExecuteResult<String> delivery(Long companyId, Collection<Long> orderIds) {
         if (CollectionUtils.isEmpty(orderIds)) {
             return BatchExecuteResult.empty();
         }
-        return super.SyncUniqueOrderParallelFailAllowBatchExecute(companyId, orderIds, order -> {
-            SpringHelper.getBean(OrderDeliveryExecutor.class).exec(companyId, order);
-        });
+        return super.SyncOrderTransitionParallelFailAllowBatchExecute(companyId, orderIds,
+                OrderStatusTransition.nextSources(OrderDeliveryExecutor.DELIVERED_STATUS), OrderDeliveryExecutor.DELIVERED_STATUS,
+                order -> SpringHelper.getBean(OrderDeliveryExecutor.class).exec(companyId, order));
     }
 }
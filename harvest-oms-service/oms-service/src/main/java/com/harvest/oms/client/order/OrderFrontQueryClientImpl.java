@@ -48,7 +48,7 @@ public class OrderFrontQueryClientImpl implements OrderFrontQueryClient {
         Page<OrderInfoDO> page = orderRichQueryClient.pageQueryOrderRich(companyId, condition);
         Collection<OrderInfoVO> data = orderConvertor.convertList(page.getData());
         this.triggerBackStatTask(companyId);
-        return Page.build(page.getPageNo(), page.getPageSize(), data, page.getCount());
+        return Page.build(page, data);
     }
 
     /**
@@ -58,13 +58,11 @@ public class OrderFrontQueryClientImpl implements OrderFrontQueryClient {
      */
     private void triggerBackStatTask(Long companyId) {
 
-        // 异步任务前置校验
-        if (this.checkIntervalLimit(companyId)) {
+        // 异步任务前置校验, 最小间隔内只有一次查询能触发
+        if (!cacheService.setNx(OrderTriggerKey.ORDER_QUERY_TRIGGER_KEY, companyId.toString(), String.valueOf(System.currentTimeMillis()))) {
             return;
         }
 
-        cacheService.set(OrderTriggerKey.ORDER_QUERY_TRIGGER_KEY, companyId.toString(), System.currentTimeMillis());
-
         // 后台异步任务
         taskExecutor.execute(() -> {
 
@@ -87,10 +85,6 @@ public class OrderFrontQueryClientImpl implements OrderFrontQueryClient {
         });
     }
 
-    private boolean checkIntervalLimit(Long companyId) {
-        return cacheService.exists(OrderTriggerKey.ORDER_QUERY_TRIGGER_KEY, companyId.toString());
-    }
-
     @Override
     public Long frontCountQueryOrder(Long companyId, PageOrderConditionQuery condition) {
         return orderRichQueryClient.frontCountQueryOrder(companyId, condition);
@@ -11,6 +11,9 @@ import com.harvest.rule.domain.warehouse.WarehouseRuleMatch;
 import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleCondition;
 import com.harvest.rule.repository.domain.match.warehouse.WarehouseRuleCondition;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * @Author: Alodi
  * @Date: 2023/2/3 3:42 PM
@@ -29,4 +32,9 @@ public class OrderMatchClientImpl extends AbstractBizOrderService implements Ord
         return SpringHelper.getBean(LogisticsRuleClient.class).matchLogistics(companyId, condition);
     }
 
+    @Override
+    public List<LogisticsRuleMatch> matchLogisticsBatch(Long companyId, Collection<LogisticsRuleCondition> conditions) {
+        return SpringHelper.getBean(LogisticsRuleClient.class).matchLogisticsBatch(companyId, conditions);
+    }
+
 }
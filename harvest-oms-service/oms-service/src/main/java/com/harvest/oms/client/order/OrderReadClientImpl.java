@@ -7,6 +7,7 @@ import com.harvest.oms.client.constants.HarvestOmsApplications;
 import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.repository.client.order.OrderReadRepositoryClient;
 import com.harvest.oms.repository.domain.order.simple.OrderItemSimplePO;
+import com.harvest.oms.repository.query.order.OrderSectionQuery;
 import com.harvest.oms.repository.query.order.PageOrderConditionQuery;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
@@ -41,6 +42,17 @@ public class OrderReadClientImpl implements OrderReadClient {
         return SpringHelper.getBean(OrderRichQueryClient.class).listQueryOrderRich(companyId, condition);
     }
 
+    @Override
+    public Collection<OrderInfoDO> listOrderSection(Long companyId, OrderSectionQuery query) {
+        if (CollectionUtils.isEmpty(query.getOrderIds())) {
+            return Collections.emptyList();
+        }
+        PageOrderConditionQuery condition = new PageOrderConditionQuery();
+        condition.setOrderIds(query.getOrderIds());
+        condition.setSections(query.getSections());
+        return SpringHelper.getBean(OrderRichQueryClient.class).listQueryOrderRich(companyId, condition);
+    }
+
     @Override
     public Collection<OrderItemSimplePO> listOrderItemByOrderId(Long companyId, Long orderId) {
         Map<Long, List<OrderItemSimplePO>> map = this.mapOrderItemByOrderIds(companyId, Collections.singletonList(orderId));
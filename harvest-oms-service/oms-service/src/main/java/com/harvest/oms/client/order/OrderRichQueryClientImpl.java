@@ -3,6 +3,9 @@ package com.harvest.oms.client.order;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.harvest.core.annotation.Monitor;
 import com.harvest.core.annotation.feign.HarvestService;
+import com.harvest.core.batch.DependencyPipeline;
+import com.harvest.core.batch.PipelineStage;
+import com.harvest.core.batch.StageCopies;
 import com.harvest.core.domain.Page;
 import com.harvest.core.exception.StandardRuntimeException;
 import com.harvest.core.monitor.enums.MonitorEventEnum;
@@ -16,25 +19,30 @@ import com.harvest.oms.repository.domain.order.simple.OrderItemSimplePO;
 import com.harvest.oms.repository.domain.order.simple.OrderSimplePO;
 import com.harvest.oms.repository.query.order.PageOrderConditionQuery;
 import com.harvest.oms.service.order.convertor.OrderConvertor;
+import com.harvest.oms.service.order.counter.OrderCounterService;
 import com.harvest.oms.service.order.handler.feature.company.OrderCompanyFeatureHandler;
 import com.harvest.oms.service.order.handler.feature.logistics.OrderLogisticsFeatureHandler;
 import com.harvest.oms.service.order.handler.feature.platform.OrderPlatformFeatureHandler;
 import com.harvest.oms.service.order.handler.section.OrderSectionHandler;
 import com.harvest.oms.service.order.verifier.OrderPermissionsVerifier;
+import com.harvest.oms.repository.query.order.OrderSections;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.StopWatch;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.*;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @Author: Alodi
@@ -52,24 +60,56 @@ public class OrderRichQueryClientImpl implements OrderRichQueryClient {
     private static final long TIME_OUT = 1000L * 3;
 
     /**
-     * 如果订单数超过200则采用并发查询，提高查询效率
+     * 订单明细分批查询 每批订单数
      */
     private static final int ORDER_NUMS = 200;
 
     /**
-     * 订单信息查询线程池
+     * 领域信息填充流水线, 各阶段耗时以 "oms.order.section.阶段" 计入监控指标
      */
-    private static final Executor OMS_SECTION_READ_EXECUTOR = new ThreadPoolExecutor(100, 100, 2000, TimeUnit.MILLISECONDS,
-            new SynchronousQueue<>(),
+    private static final String SECTION_PIPELINE = "oms.order.section";
+
+    private static final String ORDER_ITEM_STAGE = "OrderItem";
+
+    private static final String COMPANY_FEATURE_STAGE = "OrderCompanyFeature";
+
+    /**
+     * 各阶段在订单及明细的副本上填充, 未超时才写回, 超时阶段的迟到写入不影响已返回的订单
+     */
+    private static final StageCopies<OrderInfoDO> ORDER_COPIES = StageCopies.of(OrderInfoDO.class)
+            .nested("orderItems", StageCopies.of(OrderItemDO.class));
+
+    private static final int SECTION_READ_THREADS = 32;
+
+    private static final int SECTION_READ_QUEUE = 1024;
+
+    /**
+     * 订单信息查询线程池 有界队列, 队列满时由投递线程执行
+     */
+    private static final ThreadPoolExecutor OMS_SECTION_READ_EXECUTOR = new ThreadPoolExecutor(SECTION_READ_THREADS, SECTION_READ_THREADS, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(SECTION_READ_QUEUE),
             new ThreadFactoryBuilder()
                     .setNameFormat("harvest-oms-section-reading-%d")
                     .setUncaughtExceptionHandler((thread, e) -> LOGGER.error("ThreadPool:{} 发生异常", thread, e))
                     .build(),
             new ThreadPoolExecutor.CallerRunsPolicy());
 
+    static {
+        OMS_SECTION_READ_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 单个填充阶段超时 毫秒, 超时阶段的下游跳过, 其余信息照常返回
+     */
+    @Value("${harvest.oms.order.section-timeout-millis:2000}")
+    private long sectionTimeoutMillis;
+
     @Autowired
     private OrderRichQueryRepositoryClient orderRichQueryRepositoryClient;
 
+    @Autowired
+    private OrderCounterService orderCounterService;
+
     @Autowired
     private OrderReadClient orderReadClient;
 
@@ -93,7 +133,8 @@ public class OrderRichQueryClientImpl implements OrderRichQueryClient {
 
     @Override
     public Long frontCountQueryOrder(Long companyId, PageOrderConditionQuery condition) {
-        return orderRichQueryRepositoryClient.frontCountQueryOrder(companyId, condition);
+        Long count = orderCounterService.count(companyId, condition);
+        return Objects.nonNull(count) ? count : orderRichQueryRepositoryClient.frontCountQueryOrder(companyId, condition);
     }
 
     @Override
@@ -119,6 +160,18 @@ public class OrderRichQueryClientImpl implements OrderRichQueryClient {
 
     @Override
     public Page<OrderInfoDO> pageQueryOrder(Long companyId, PageOrderConditionQuery condition) {
+        return this.pageQueryOrder(companyId, condition, Objects.isNull(condition.getSections()) || condition.getSections().contains(OrderSections.ITEMS));
+    }
+
+    /**
+     * 订单分页查询
+     *
+     * @param companyId
+     * @param condition
+     * @param itemFill  是否同步填充明细, 丰富查询由填充流水线并发填充
+     * @return
+     */
+    private Page<OrderInfoDO> pageQueryOrder(Long companyId, PageOrderConditionQuery condition, boolean itemFill) {
 
         StopWatch stopWatch = new StopWatch("订单分页查询");
 
@@ -126,23 +179,42 @@ public class OrderRichQueryClientImpl implements OrderRichQueryClient {
         this.verification(companyId, condition);
         stopWatch.stop();
 
+        stopWatch.start("订单计数");
+        Long count = Boolean.TRUE.equals(condition.getNoCount()) ? null : orderCounterService.count(companyId, condition);
+        stopWatch.stop();
+        if (Objects.nonNull(count) && count == 0 && Objects.isNull(condition.getCursor())) {
+            return new Page<>(condition.getPageNo(), condition.getPageSize());
+        }
+
         stopWatch.start("订单信息查询");
-        Page<OrderSimplePO> page = orderRichQueryRepositoryClient.pageQueryOrderRich(companyId, condition);
+        PageOrderConditionQuery query = condition;
+        if (Objects.nonNull(count)) {
+            // 总数由计数器提供, 仓储层不再 COUNT
+            query = new PageOrderConditionQuery();
+            BeanUtils.copyProperties(condition, query);
+            query.setNoCount(true);
+        }
+        Page<OrderSimplePO> page = orderRichQueryRepositoryClient.pageQueryOrderRich(companyId, query);
+        if (Objects.nonNull(count)) {
+            page.setCount(count);
+        }
         stopWatch.stop();
 
         stopWatch.start("领域模型转换");
         Collection<OrderInfoDO> data = orderConvertor.OrderInfoDO(page.getData());
         stopWatch.stop();
 
-        stopWatch.start("订单明细信息填充");
-        this.orderItemBatchFill(companyId, data);
-        stopWatch.stop();
+        if (itemFill) {
+            stopWatch.start("订单明细信息填充");
+            this.orderItemBatchFill(companyId, data);
+            stopWatch.stop();
+        }
 
         if (stopWatch.getTotalTimeMillis() > TIME_OUT) {
             LOGGER.warn("OrderRichQueryClientImpl#pageQueryOrder#订单查询超时, companyId:{}, condition:{}\nstopWatch:{}", companyId, JsonUtils.object2Json(condition), stopWatch.prettyPrint());
         }
 
-        return Page.build(condition.getPageNo(), condition.getPageSize(), data, page.getCount());
+        return Page.build(page, data);
     }
 
     @Override
@@ -172,33 +244,30 @@ public class OrderRichQueryClientImpl implements OrderRichQueryClient {
 
         StopWatch stopWatch = new StopWatch("订单丰富查询");
 
+        Set<String> sections = this.requiredSections(condition.getSections());
+        PageOrderConditionQuery query = condition;
+        if (Objects.nonNull(sections)) {
+            // 仓储层按补全依赖后的数据段填充, 不修改调用方条件
+            query = new PageOrderConditionQuery();
+            BeanUtils.copyProperties(condition, query);
+            query.setSections(sections);
+        }
+
         stopWatch.start("订单信息查询");
-        Page<OrderInfoDO> page = this.pageQueryOrder(companyId, condition);
+        Page<OrderInfoDO> page = this.pageQueryOrder(companyId, query, false);
         stopWatch.stop();
 
         Collection<OrderInfoDO> data = page.getData();
 
         stopWatch.start("领域模型信息填充");
-        this.sectionBatchFill(companyId, data);
+        DependencyPipeline.Report report = this.sectionBatchFill(companyId, data, sections);
         stopWatch.stop();
 
-        stopWatch.start("平台订单特性处理");
-        this.platformFeatureBatchHandler(companyId, data);
-        stopWatch.stop();
-
-        stopWatch.start("公司订单特性处理");
-        this.companyFeatureBatchHandler(companyId, data);
-        stopWatch.stop();
-
-        stopWatch.start("物流订单特性处理");
-        this.logisticsFeatureBatchHandler(companyId, data);
-        stopWatch.stop();
-
-        if (stopWatch.getTotalTimeMillis() > TIME_OUT) {
-            LOGGER.warn("OrderRichQueryClientImpl#pageQueryOrderRich#订单丰富查询, companyId:{}, condition:{}\nstopWatch:{}", companyId, JsonUtils.object2Json(condition), stopWatch.prettyPrint());
+        if (stopWatch.getTotalTimeMillis() > TIME_OUT || !report.isSuccess()) {
+            LOGGER.warn("OrderRichQueryClientImpl#pageQueryOrderRich#订单丰富查询, companyId:{}, condition:{}\nstopWatch:{}\nsections:{}", companyId, JsonUtils.object2Json(condition), stopWatch.prettyPrint(), report);
         }
 
-        return Page.build(condition.getPageNo(), condition.getPageSize(), data, page.getCount());
+        return Page.build(page, data);
     }
 
     /**
@@ -212,7 +281,7 @@ public class OrderRichQueryClientImpl implements OrderRichQueryClient {
     }
 
     /**
-     * 订单明细信息填充 ｜ 其他领域模型可能需要明细数据 单独摘出填充（防止多线程查询填充没有对应数据）
+     * 订单明细信息填充 ｜ 其他领域模型可能需要明细数据, 丰富查询中作为产出 {@link OrderSectionHandler.Section#ITEMS} 的阶段, 依赖方在其完成后执行
      *
      * @param companyId
      * @param orders
@@ -229,6 +298,9 @@ public class OrderRichQueryClientImpl implements OrderRichQueryClient {
         orders.forEach(orderInfoDO -> {
             Long orderId = orderInfoDO.getOrderId();
             Collection<OrderItemSimplePO> orderItemSimplePOList = orderIdItemMap.get(orderId);
+            if (Objects.isNull(orderItemSimplePOList)) {
+                return;
+            }
             orderInfoDO.setOrderItems(orderItemSimplePOList.stream()
                     .map(orderItemSimplePO -> {
                         OrderItemDO orderItemDO = new OrderItemDO();
@@ -252,117 +324,121 @@ public class OrderRichQueryClientImpl implements OrderRichQueryClient {
 
     /**
      * 订单领域模型部分信息填充器
+     * <p>
+     * 明细、领域信息及各特性处理按声明的依赖编排为一条流水线, 相互独立的远程查询并发执行, 不再按订单数或平台数决定是否并发;
+     * 单个阶段失败或超时只影响依赖其产出的阶段. 只执行产出所需数据段的阶段, 明细在需要时才查询
      *
      * @param companyId
      * @param orders
+     * @param sections  所需数据段(已补全依赖), 为空时填充全部
+     * @return 各阶段执行结果
      */
-    private void sectionBatchFill(Long companyId, Collection<OrderInfoDO> orders) {
+    private DependencyPipeline.Report sectionBatchFill(Long companyId, Collection<OrderInfoDO> orders, Set<String> sections) {
+        DependencyPipeline pipeline = new DependencyPipeline(SECTION_PIPELINE, OMS_SECTION_READ_EXECUTOR);
         if (CollectionUtils.isEmpty(orders)) {
-            return;
+            return pipeline.execute();
         }
 
-        if (orders.size() >= ORDER_NUMS) {
-            try {
-                // 订单量过多 多线程填充订单其他领域信息
-                CompletableFuture<?>[] futures = new CompletableFuture<?>[orderSectionHandlers.size()];
-                for (int i = 0; i < orderSectionHandlers.size(); i++) {
-                    int finalI = i;
-                    futures[i] = CompletableFuture.runAsync(
-                            () -> orderSectionHandlers.get(finalI).batchFill(companyId, orders),
-                            OMS_SECTION_READ_EXECUTOR
-                    );
-                }
-                CompletableFuture.allOf(futures).get();
-            } catch (Exception e) {
-                LOGGER.error("OrderRichQueryClientImpl#sectionBatchFill#并发补充订单领域信息失败!", e);
+        if (Objects.isNull(sections) || sections.contains(OrderSections.ITEMS)) {
+            this.stage(pipeline, ORDER_ITEM_STAGE, Collections.emptySet(), Collections.singleton(OrderSections.ITEMS), orders,
+                    copies -> this.orderItemBatchFill(companyId, copies));
+        }
+
+        orderSectionHandlers.stream().filter(handler -> this.selected(handler, sections))
+                .forEach(handler -> this.stage(pipeline, handler, orders, copies -> handler.batchFill(companyId, copies)));
+
+        // 各平台、物流特性处理器只处理各自订单, 可并发
+        if (CollectionUtils.isNotEmpty(orderPlatformFeatureHandlers)) {
+            orderPlatformFeatureHandlers.stream().filter(handler -> this.selected(handler, sections))
+                    .forEach(handler -> this.stage(pipeline, handler, orders, copies -> handler.batchFeatureFill(companyId, copies)));
+        }
+        if (CollectionUtils.isNotEmpty(orderLogisticsFeatureHandlers)) {
+            orderLogisticsFeatureHandlers.stream().filter(handler -> this.selected(handler, sections))
+                    .forEach(handler -> this.stage(pipeline, handler, orders, copies -> handler.batchFeatureFill(companyId, copies)));
+        }
+
+        // 公司特性处理器写同一字段, 匹配的处理器合并为一个阶段按顺序执行
+        if (CollectionUtils.isNotEmpty(orderCompanyFeatureHandlers)) {
+            List<OrderCompanyFeatureHandler> matched = orderCompanyFeatureHandlers.stream()
+                    .filter(feature -> feature.match(companyId) && this.selected(feature, sections))
+                    .collect(Collectors.toList());
+            if (CollectionUtils.isNotEmpty(matched)) {
+                Set<String> requires = new LinkedHashSet<>();
+                Set<String> provides = new LinkedHashSet<>();
+                matched.forEach(feature -> {
+                    requires.addAll(feature.requires());
+                    provides.addAll(feature.provides());
+                });
+                this.stage(pipeline, COMPANY_FEATURE_STAGE, requires, provides, orders,
+                        copies -> matched.forEach(feature -> feature.batchFeatureFill(companyId, copies)));
             }
-        } else {
-            orderSectionHandlers.forEach(handler -> handler.batchFill(companyId, orders));
         }
+
+        return pipeline.execute();
     }
 
     /**
-     * 物流订单特性处理
+     * 补全请求数据段的上游依赖, 如商品信息依赖明细、物流特性依赖物流渠道
      *
-     * @param companyId
-     * @param orders
+     * @param sections 请求的数据段, 为空表示全部
+     * @return 所需数据段, 为空表示全部
      */
-    private void logisticsFeatureBatchHandler(Long companyId, Collection<OrderInfoDO> orders) {
-        if (CollectionUtils.isEmpty(orders) || CollectionUtils.isEmpty(orderLogisticsFeatureHandlers)) {
-            return;
+    private Set<String> requiredSections(Collection<String> sections) {
+        if (Objects.isNull(sections)) {
+            return null;
         }
-
-        long count = orders.stream().map(OrderInfoDO::getLogisticsEnum).distinct().count();
-        if (count >= DEFAULT_10) {
-            try {
-                // 本次查询平台数量统计 超过10个平台使用并发处理
-                CompletableFuture<?>[] futures = new CompletableFuture<?>[orderLogisticsFeatureHandlers.size()];
-                for (int i = 0; i < orderLogisticsFeatureHandlers.size(); i++) {
-                    int finalI = i;
-                    futures[i] = CompletableFuture.runAsync(
-                            () -> orderLogisticsFeatureHandlers.get(finalI).batchFeatureFill(companyId, orders),
-                            OMS_SECTION_READ_EXECUTOR
-                    );
+        List<PipelineStage> stages = new ArrayList<>(orderSectionHandlers);
+        Stream.of(orderPlatformFeatureHandlers, orderCompanyFeatureHandlers, orderLogisticsFeatureHandlers)
+                .filter(CollectionUtils::isNotEmpty)
+                .forEach(stages::addAll);
+        Set<String> required = new LinkedHashSet<>(sections);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (PipelineStage stage : stages) {
+                if (CollectionUtils.containsAny(required, stage.provides())) {
+                    changed |= required.addAll(stage.requires());
                 }
-                CompletableFuture.allOf(futures).get();
-            } catch (Exception e) {
-                LOGGER.error("OrderRichQueryClientImpl#LogisticsFeatureHandlers#并发处理物流订单特性处理失败!", e);
             }
-        } else {
-            orderLogisticsFeatureHandlers.forEach(handler -> handler.batchFeatureFill(companyId, orders));
         }
+        return required;
+    }
+
+    private boolean selected(PipelineStage stage, Set<String> sections) {
+        return Objects.isNull(sections) || CollectionUtils.containsAny(sections, stage.provides());
     }
 
     /**
-     * 平台订单特性处理
+     * 以处理器类名为阶段名
      *
-     * @param companyId
+     * @param pipeline
+     * @param handler
      * @param orders
+     * @param fill     在副本上填充
      */
-    private void platformFeatureBatchHandler(Long companyId, Collection<OrderInfoDO> orders) {
-        if (CollectionUtils.isEmpty(orders) || CollectionUtils.isEmpty(orderPlatformFeatureHandlers)) {
-            return;
-        }
-
-        long count = orders.stream().map(OrderInfoDO::getOrderSource).distinct().count();
-        if (count >= DEFAULT_10) {
-            try {
-                // 本次查询平台数量统计 超过10个平台使用并发处理
-                CompletableFuture<?>[] futures = new CompletableFuture<?>[orderPlatformFeatureHandlers.size()];
-                for (int i = 0; i < orderPlatformFeatureHandlers.size(); i++) {
-                    int finalI = i;
-                    futures[i] = CompletableFuture.runAsync(
-                            () -> orderPlatformFeatureHandlers.get(finalI).batchFeatureFill(companyId, orders),
-                            OMS_SECTION_READ_EXECUTOR
-                    );
-                }
-                CompletableFuture.allOf(futures).get();
-            } catch (Exception e) {
-                LOGGER.error("OrderRichQueryClientImpl#platformFeatureBatchHandler#并发处理平台订单特性处理失败!", e);
-            }
-        } else {
-            orderPlatformFeatureHandlers.forEach(handler -> handler.batchFeatureFill(companyId, orders));
-        }
+    private void stage(DependencyPipeline pipeline, PipelineStage handler, Collection<OrderInfoDO> orders, Consumer<Collection<OrderInfoDO>> fill) {
+        this.stage(pipeline, ClassUtils.getUserClass(handler).getSimpleName(), handler.requires(), handler.provides(), orders, fill);
     }
 
     /**
-     * 公司订单特性处理
+     * 阶段在本阶段的订单副本上填充, 超时内完成才写回原订单
      *
-     * @param companyId
+     * @param pipeline
+     * @param stage
+     * @param requires
+     * @param provides
      * @param orders
+     * @param fill     在副本上填充
      */
-    private void companyFeatureBatchHandler(Long companyId, Collection<OrderInfoDO> orders) {
-        if (CollectionUtils.isEmpty(orders) || CollectionUtils.isEmpty(orderCompanyFeatureHandlers)) {
-            return;
-        }
-        orderCompanyFeatureHandlers.forEach(feature -> {
-            if (feature.match(companyId)) {
-                feature.batchFeatureFill(companyId, orders);
-            }
+    private void stage(DependencyPipeline pipeline, String stage, Collection<String> requires, Collection<String> provides,
+                       Collection<OrderInfoDO> orders, Consumer<Collection<OrderInfoDO>> fill) {
+        pipeline.readStage(stage, requires, provides, sectionTimeoutMillis, () -> {
+            StageCopies.Snapshot<OrderInfoDO> snapshot = ORDER_COPIES.snapshot(orders);
+            fill.accept(snapshot.copies());
+            return snapshot::merge;
         });
     }
 
-
     @Override
     public Collection<OrderItemDO> queryOrderItemsRich(Long companyId, Long orderId) {
         Collection<OrderItemSimplePO> orderItemSimplePOList = orderReadClient.listOrderItemByOrderId(companyId, orderId);
@@ -8,15 +8,20 @@ import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.repository.client.order.OrderWriteRepositoryClient;
 import com.harvest.oms.repository.domain.order.update.OrderSubmitUpdateField;
 import com.harvest.oms.service.order.biz.AbstractBizOrderService;
+import com.harvest.oms.service.order.biz.OrderVersionUtils;
+import com.harvest.oms.service.order.counter.OrderCounterService;
 import com.harvest.oms.service.order.handler.save.OrderSaveHandler;
 import com.harvest.oms.service.order.handler.update.OrderUpdateHandler;
 import org.apache.commons.collections4.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * @Author: Alodi
@@ -34,6 +39,15 @@ public class OrderWriteClientImpl extends AbstractBizOrderService implements Ord
     @Autowired(required = false)
     private List<OrderUpdateHandler> orderUpdateHandlers;
 
+    @Autowired
+    private OrderCounterService orderCounterService;
+
+    /**
+     * 批量更新不加订单锁, 以版本条件写入, 冲突时重新加载重试; 关闭时(默认)订单加锁, 写入不校验版本
+     */
+    @Value("${harvest.oms.order.optimistic-update:false}")
+    private boolean optimisticUpdate;
+
     @Override
     public void build(Long companyId) {
         OrderInfoDO order = new OrderInfoDO();
@@ -48,12 +62,15 @@ public class OrderWriteClientImpl extends AbstractBizOrderService implements Ord
 
     @Override
     public void updateDeclare(Long companyId, OrderInfoDO order) {
-        orderWriteRepositoryClient.updateDeclare(companyId, order);
+        OrderVersionUtils.check(orderWriteRepositoryClient.updateDeclare(companyId, OrderVersionUtils.expected(optimisticUpdate, order), order), order);
     }
 
     @Override
     public void updateOrderStatus(Long companyId, OrderInfoDO order) {
-        orderWriteRepositoryClient.updateOrderStatus(companyId, order.getOrderId(), order.getOrderStatus());
+        OrderVersionUtils.check(orderWriteRepositoryClient.updateOrderStatus(companyId, order.getOrderId(),
+                OrderVersionUtils.expected(optimisticUpdate, order), order.getOrderStatus()), order);
+        // 变更前状态未知, 计数器失效后重建
+        orderCounterService.invalidate(companyId);
     }
 
     @Override
@@ -62,11 +79,28 @@ public class OrderWriteClientImpl extends AbstractBizOrderService implements Ord
         if (CollectionUtils.isEmpty(orderIds) || CollectionUtils.isEmpty(orderUpdateHandlers)) {
             return BatchExecuteResult.empty();
         }
-        return super.SyncUniqueOrderParallelFailAllowBatchExecute(companyId, orderIds,
-                order -> orderUpdateHandlers.forEach(handler -> {
-                    if (handler.match(companyId, field.getUpdateEnum())) {
-                        handler.handle(companyId, field, order);
-                    }
-                }));
+        List<OrderUpdateHandler> handlers = orderUpdateHandlers.stream()
+                .filter(handler -> handler.match(companyId, field.getUpdateEnum())).collect(Collectors.toList());
+        handlers.forEach(handler -> handler.prepare(companyId, field, orderIds));
+        Consumer<OrderInfoDO> consumer = order -> handlers.forEach(handler -> handler.handle(companyId, field, order));
+        Collection<String> sections = this.sections(handlers);
+        if (optimisticUpdate) {
+            return super.SyncOptimisticOrderParallelFailAllowBatchExecute(companyId, orderIds, sections, consumer);
+        }
+        return super.SyncUniqueOrderParallelFailAllowBatchExecute(companyId, orderIds, sections, consumer);
+    }
+
+    /**
+     * 匹配的处理器所需数据段的并集, 任一处理器需要全部数据段时返回空
+     */
+    private Collection<String> sections(List<OrderUpdateHandler> handlers) {
+        Set<String> sections = new HashSet<>();
+        for (OrderUpdateHandler handler : handlers) {
+            if (Objects.isNull(handler.sections())) {
+                return null;
+            }
+            sections.addAll(handler.sections());
+        }
+        return sections;
     }
 }
@@ -0,0 +1,29 @@
+package com.harvest.oms.redis.stat;
+
+import com.harvest.core.service.redis.prefix.KeyModePrefix;
+import com.harvest.oms.redis.OmsKeyPrefix;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/20 11:00 AM
+ * @Description: 订单计数器缓存 Key 值
+ * oms:counter:order:companyId -> {状态:店铺:仓库:异常:挂起 -> 订单数}
+ **/
+public class OrderCounterKey extends OmsKeyPrefix {
+
+    public OrderCounterKey(String keyPrefix) {
+        super(keyPrefix);
+    }
+
+    public OrderCounterKey(String keyPrefix, int expireSeconds) {
+        super(keyPrefix, expireSeconds);
+    }
+
+    /**
+     * 公司订单计数, 过期后下次查询按数据库重建, 即每小时校准一次
+     */
+    public static final OrderCounterKey ORDER_COUNTER = new OrderCounterKey(
+            KeyModePrefix.OMS.ORDER_COUNTER + "order:", ONE_HOUR
+    );
+
+}
@@ -1,24 +1,31 @@
 package com.harvest.oms.service.order.biz;
 
+import com.harvest.core.batch.BatchExecuteOptions;
 import com.harvest.core.batch.BatchExecuteResult;
 import com.harvest.core.batch.BatchId;
+import com.harvest.core.batch.CompactBatchExecuteResult;
+import com.harvest.core.enums.oms.OrderStatusEnum;
 import com.harvest.core.exception.ExceptionCodes;
 import com.harvest.core.exception.StandardRuntimeException;
-import com.harvest.core.service.lock.DistributedLockUtils;
+import com.harvest.core.service.lock.BatchLock;
+import com.harvest.core.service.lock.BatchLockUtils;
 import com.harvest.core.utils.ActuatorUtils;
 import com.harvest.oms.client.order.OrderReadClient;
 import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.redis.OmsKeyPrefix;
-import com.harvest.oms.redis.flow.OrderAuditFlowKey;
+import com.harvest.oms.repository.query.order.OrderSectionQuery;
+import com.harvest.oms.service.order.cache.OrderAggregateCache;
+import com.harvest.oms.service.order.state.OrderStateMachine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.util.Collection;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @Author: Alodi
@@ -29,9 +36,30 @@ public abstract class AbstractBizOrderService {
 
     protected static final Logger LOGGER = LoggerFactory.getLogger(AbstractBizOrderService.class);
 
+    /**
+     * 单次批量加锁及加载的订单数
+     */
+    private static final int LOCK_CHUNK_SIZE = 500;
+
+    /**
+     * 订单被占用时的最长等待 毫秒
+     */
+    private static final long LOCK_WAIT_MILLIS = 2000L;
+
+    /**
+     * 无锁处理版本冲突时的最大重试次数
+     */
+    private static final int OPTIMISTIC_MAX_RETRIES = 3;
+
     @Autowired
     protected OrderReadClient orderReadClient;
 
+    @Autowired
+    protected OrderStateMachine orderStateMachine;
+
+    @Autowired
+    protected OrderAggregateCache orderAggregateCache;
+
     /**
      * 订单加锁异步批量处理器
      *
@@ -41,27 +69,360 @@ public abstract class AbstractBizOrderService {
      * @return 处理结果
      */
     protected BatchExecuteResult<String> SyncUniqueOrderParallelFailAllowBatchExecute(Long companyId, Collection<Long> orderIds, Consumer<OrderInfoDO> consumer) {
+        return this.SyncUniqueOrderParallelFailAllowBatchExecute(companyId, orderIds, this.sections(), consumer);
+    }
+
+    /**
+     * 订单加锁异步批量处理器
+     *
+     * @param companyId 公司ID
+     * @param orderIds  订单Id集合
+     * @param sections  加载的订单数据段, 为空加载全部
+     * @param consumer  处理器
+     * @return 处理结果
+     */
+    protected BatchExecuteResult<String> SyncUniqueOrderParallelFailAllowBatchExecute(Long companyId, Collection<Long> orderIds, Collection<String> sections,
+                                                                                     Consumer<OrderInfoDO> consumer) {
+        return this.parallelFailAllowBatchExecute(new OrderBatchSession(companyId, orderIds, sections, true), consumer);
+    }
+
+    /**
+     * 订单无锁异步批量处理器
+     * <p>
+     * 不加分布式锁, 订单写入以加载时的版本为条件; 版本冲突时重新加载订单并重试处理器, 最多 {@link #OPTIMISTIC_MAX_RETRIES} 次.
+     * 处理器在首次写入订单前不能产生外部副作用
+     *
+     * @param companyId 公司ID
+     * @param orderIds  订单Id集合
+     * @param consumer  处理器
+     * @return 处理结果
+     */
+    protected BatchExecuteResult<String> SyncOptimisticOrderParallelFailAllowBatchExecute(Long companyId, Collection<Long> orderIds, Consumer<OrderInfoDO> consumer) {
+        return this.SyncOptimisticOrderParallelFailAllowBatchExecute(companyId, orderIds, this.sections(), consumer);
+    }
+
+    /**
+     * 订单无锁异步批量处理器
+     *
+     * @param companyId 公司ID
+     * @param orderIds  订单Id集合
+     * @param sections  加载的订单数据段, 为空加载全部
+     * @param consumer  处理器
+     * @return 处理结果
+     */
+    protected BatchExecuteResult<String> SyncOptimisticOrderParallelFailAllowBatchExecute(Long companyId, Collection<Long> orderIds, Collection<String> sections,
+                                                                                         Consumer<OrderInfoDO> consumer) {
+        return this.parallelFailAllowBatchExecute(new OrderBatchSession(companyId, orderIds, sections, false), consumer);
+    }
+
+    /**
+     * 订单状态迁移批量处理器
+     * <p>
+     * 状态校验与写入由 {@link OrderStateMachine} 每段一次条件更新完成, 不加订单锁, 条件更新保证同一订单只被一个请求迁移;
+     * 来源状态不符的订单记为失败, 迁移成功的订单分段批量加载后执行处理器.
+     * 处理失败或未执行的订单恢复迁移前的状态并撤销发件箱消息; 超时订单结果未知(处理器可能仍在执行), 不恢复
+     *
+     * @param companyId 公司ID
+     * @param orderIds  订单Id集合
+     * @param from      期望的来源状态
+     * @param to        目标状态
+     * @param consumer  迁移后的处理器
+     * @return 处理结果
+     */
+    protected BatchExecuteResult<String> SyncOrderTransitionParallelFailAllowBatchExecute(Long companyId, Collection<Long> orderIds,
+                                                                                         Collection<OrderStatusEnum> from, OrderStatusEnum to,
+                                                                                         Consumer<OrderInfoDO> consumer) {
+        return this.SyncOrderTransitionParallelFailAllowBatchExecute(companyId, orderIds, from, to, null, consumer);
+    }
+
+    /**
+     * 订单状态迁移批量处理器, 迁移成功的订单随状态一起写入发件箱, 由 {@link com.harvest.core.service.outbox.OutboxRelay} 投递
+     *
+     * @param companyId         公司ID
+     * @param orderIds          订单Id集合
+     * @param from              期望的来源状态
+     * @param to                目标状态
+     * @param outboxDestination 发件箱投递目标, 为空不写入
+     * @param consumer          迁移后的处理器
+     * @return 处理结果
+     */
+    protected BatchExecuteResult<String> SyncOrderTransitionParallelFailAllowBatchExecute(Long companyId, Collection<Long> orderIds,
+                                                                                         Collection<OrderStatusEnum> from, OrderStatusEnum to,
+                                                                                         String outboxDestination, Consumer<OrderInfoDO> consumer) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(orderIds));
+        Map<Long, OrderStatusEnum> moved = orderStateMachine.transit(companyId, distinctIds, from, to, outboxDestination);
+        List<Long> movedIds = distinctIds.stream().filter(moved::containsKey).collect(Collectors.toList());
+        BatchExecuteResult<String> result = new BatchExecuteResult<>(distinctIds.size() - movedIds.size());
+        if (!movedIds.isEmpty()) {
+            BatchExecuteResult<String> executed = this.parallelFailAllowBatchExecute(new OrderBatchSession(companyId, movedIds, this.sections(), false), consumer);
+            this.restoreFailed(companyId, moved, to, outboxDestination, executed);
+            result.merge(executed);
+        }
+        if (movedIds.size() < distinctIds.size()) {
+            String reason = "订单状态不为" + orderStateMachine.sources(from, to).stream().map(OrderStatusEnum::getValue).collect(Collectors.toList()) + "!";
+            distinctIds.stream().filter(orderId -> !moved.containsKey(orderId)).forEach(orderId -> {
+                BatchExecuteResult.ReasonMap<String> rejected = new BatchExecuteResult.ReasonMap<>();
+                rejected.setId(orderId);
+                rejected.setReason(reason);
+                result.getErrorList().add(rejected);
+                result.getFailCount().incrementAndGet();
+            });
+        }
+        return result;
+    }
+
+    /**
+     * 迁移后处理失败或未执行的订单恢复迁移前的状态, 随迁移写入发件箱的待投递消息一并撤销; 恢复异常只记录日志, 不影响处理结果
+     */
+    private void restoreFailed(Long companyId, Map<Long, OrderStatusEnum> moved, OrderStatusEnum to, String outboxDestination,
+                               BatchExecuteResult<String> executed) {
+        Map<Long, OrderStatusEnum> failed = new HashMap<>();
+        Stream.concat(executed.getErrorList().stream().filter(reason -> !BatchExecuteResult.TIMEOUT_REASON.equals(reason.getReason())),
+                executed.getUnexecutedList().stream()).forEach(reason -> failed.put(reason.getId(), moved.get(reason.getId())));
+        failed.values().removeIf(Objects::isNull);
+        if (failed.isEmpty()) {
+            return;
+        }
+        try {
+            Set<Long> restored = orderStateMachine.restore(companyId, failed, to, outboxDestination);
+            if (restored.size() < failed.size()) {
+                LOGGER.warn("AbstractBizOrderService#restoreFailed#部分订单状态已变化未恢复, companyId:{}, orderIds:{}", companyId,
+                        failed.keySet().stream().filter(orderId -> !restored.contains(orderId)).collect(Collectors.toList()));
+            }
+        } catch (Exception e) {
+            LOGGER.error("AbstractBizOrderService#restoreFailed#订单状态恢复异常, companyId:{}, orderIds:{}", companyId, failed.keySet(), e);
+        }
+    }
+
+    private BatchExecuteResult<String> parallelFailAllowBatchExecute(OrderBatchSession session, Consumer<OrderInfoDO> consumer) {
         Map<Long, String> orderMap = new ConcurrentHashMap<>(2);
-        return ActuatorUtils.parallelFailAllowBatchExecute(orderIds.stream().map(BatchId::build).collect(Collectors.toList()),
-                batchId -> {
-                    try {
-                        DistributedLockUtils.lock(OmsKeyPrefix.ORDER_UNIQUE_KEY, batchId.getLockKey(),
-                                () -> {
-                                    OrderInfoDO order = this.getOrderRich(companyId, batchId.getId());
-                                    orderMap.put(batchId.getId(), order.getOrderNo());
-                                    consumer.accept(order);
-                                }
-                                , OrderAuditFlowKey.ORDER_AUDIT_KEY.expireSeconds());
-                    } catch (Exception e) {
-                        LOGGER.error("订单处理失败, 订单Id: {}", batchId.getId(), e);
-                        throw new StandardRuntimeException(ExceptionCodes.OMS_MODULE_ERROR, e.getMessage());
-                    }
-                },
-                batchId -> orderMap.get(batchId.getId()));
+        try {
+            return ActuatorUtils.parallelFailAllowBatchExecute(session.orderIds.stream().map(BatchId::build).collect(Collectors.toList()),
+                    batchId -> session.execute(batchId.getId(), order -> {
+                        orderMap.put(batchId.getId(), order.getOrderNo());
+                        consumer.accept(order);
+                    }),
+                    batchId -> orderMap.get(batchId.getId()));
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * 订单加锁异步批量处理器-紧凑结果
+     * <p>
+     * 结果只记录订单Id及归并后的失败原因, 适用于数万条订单的批量操作
+     *
+     * @param companyId 公司ID
+     * @param orderIds  订单Id集合
+     * @param consumer  处理器
+     * @return 处理结果
+     */
+    protected CompactBatchExecuteResult SyncUniqueOrderParallelCompactBatchExecute(Long companyId, Collection<Long> orderIds, Consumer<OrderInfoDO> consumer) {
+        BatchExecuteOptions options = BatchExecuteOptions.defaults();
+        options.setCompanyId(companyId);
+        OrderBatchSession session = new OrderBatchSession(companyId, orderIds, this.sections(), true);
+        try {
+            return ActuatorUtils.parallelCompactBatchExecute(session.orderIds.stream().map(BatchId::build).collect(Collectors.toList()),
+                    batchId -> session.execute(batchId.getId(), consumer), options);
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * 批量处理器加载的订单数据段, 取值见 {@link com.harvest.oms.repository.query.order.OrderSections}
+     * <p>
+     * 为空加载全部; 处理器只读写订单基础信息时可返回空集合, 省去明细及各数据段的查询
+     *
+     * @return 数据段
+     */
+    protected Collection<String> sections() {
+        return null;
     }
 
     protected OrderInfoDO getOrderRich(Long companyId, Long orderId) {
-        return orderReadClient.getOrderRich(companyId, orderId);
+        return orderAggregateCache.get(companyId, orderId);
+    }
+
+    /**
+     * 批量订单会话
+     * <p>
+     * 订单按输入顺序分段, 某段首个订单被执行时整段一次加锁并批量加载富订单, 段内订单全部执行完后整段释放;
+     * 并发执行按下标顺序推进, 同一时刻通常只有一到两段持有锁. 会话关闭后, 因截止未执行完的分段在其执行中的订单结束后释放.
+     * 无锁会话只分段批量加载, 版本冲突时单个订单重新加载后重试.
+     * 加载全部数据段时经 {@link OrderAggregateCache}: 加锁会话及冲突重试跳过缓存, 处理器执行期间打开请求内备忘, 事件发布等复用同一订单
+     */
+    private class OrderBatchSession {
+
+        private final Long companyId;
+
+        private final List<Long> orderIds;
+
+        private final Map<Long, Chunk> chunks;
+
+        private final Collection<String> sections;
+
+        private final boolean locking;
+
+        private volatile boolean closed;
+
+        private OrderBatchSession(Long companyId, Collection<Long> orderIds, Collection<String> sections, boolean locking) {
+            this.companyId = companyId;
+            this.sections = sections;
+            this.locking = locking;
+            /*去重, 同一订单在批次内重复出现会与自身的锁冲突*/
+            this.orderIds = new ArrayList<>(new LinkedHashSet<>(orderIds));
+            this.chunks = new HashMap<>(this.orderIds.size() * 2);
+            for (int from = 0; from < this.orderIds.size(); from += LOCK_CHUNK_SIZE) {
+                Chunk chunk = new Chunk(this.orderIds.subList(from, Math.min(from + LOCK_CHUNK_SIZE, this.orderIds.size())));
+                chunk.orderIds.forEach(orderId -> chunks.put(orderId, chunk));
+            }
+        }
+
+        private void execute(Long orderId, Consumer<OrderInfoDO> consumer) {
+            Chunk chunk = chunks.get(orderId);
+            chunk.running.incrementAndGet();
+            try {
+                chunk.load();
+                if (chunk.error != null) {
+                    throw chunk.error;
+                }
+                if (chunk.busy.contains(orderId)) {
+                    throw new StandardRuntimeException(ExceptionCodes.OMS_MODULE_ERROR, "订单正在处理中, 请稍后重试");
+                }
+                OrderInfoDO order = chunk.orders.get(orderId);
+                if (order == null) {
+                    throw new StandardRuntimeException(ExceptionCodes.OMS_MODULE_ERROR, "订单不存在");
+                }
+                try (OrderAggregateCache.Scope scope = OrderAggregateCache.scope()) {
+                    if (Objects.isNull(sections)) {
+                        OrderAggregateCache.remember(companyId, order);
+                    }
+                    if (locking) {
+                        consumer.accept(order);
+                    } else {
+                        this.acceptWithRetry(orderId, order, consumer);
+                    }
+                }
+            } catch (StandardRuntimeException e) {
+                LOGGER.error("订单处理失败, 订单Id: {}", orderId, e);
+                throw e;
+            } catch (Exception e) {
+                LOGGER.error("订单处理失败, 订单Id: {}", orderId, e);
+                throw new StandardRuntimeException(ExceptionCodes.OMS_MODULE_ERROR, e.getMessage());
+            } finally {
+                chunk.done();
+            }
+        }
+
+        private void acceptWithRetry(Long orderId, OrderInfoDO order, Consumer<OrderInfoDO> consumer) {
+            for (int retry = 0; ; retry++) {
+                try {
+                    consumer.accept(order);
+                    return;
+                } catch (RuntimeException e) {
+                    if (!OrderVersionUtils.isConflict(e) || retry >= OPTIMISTIC_MAX_RETRIES) {
+                        throw e;
+                    }
+                    LOGGER.warn("订单版本冲突, 重新加载后重试, 订单Id: {}, 次数: {}", orderId, retry + 1);
+                    order = this.load(Collections.singletonList(orderId), true).get(orderId);
+                    if (order == null) {
+                        throw new StandardRuntimeException(ExceptionCodes.OMS_MODULE_ERROR, "订单不存在");
+                    }
+                }
+            }
+        }
+
+        /**
+         * 按会话数据段批量加载订单
+         *
+         * @param loadIds 订单Id集合
+         * @param fresh   是否跳过聚合缓存
+         */
+        private Map<Long, OrderInfoDO> load(List<Long> loadIds, boolean fresh) {
+            if (Objects.isNull(sections)) {
+                return fresh ? orderAggregateCache.refresh(companyId, loadIds) : orderAggregateCache.list(companyId, loadIds);
+            }
+            Collection<OrderInfoDO> orders = orderReadClient.listOrderSection(companyId, OrderSectionQuery.build(loadIds, sections));
+            return orders.stream().collect(Collectors.toMap(OrderInfoDO::getOrderId, order -> order, (a, b) -> a));
+        }
+
+        private void close() {
+            closed = true;
+            new HashSet<>(chunks.values()).forEach(chunk -> {
+                if (chunk.running.get() == 0) {
+                    chunk.release();
+                }
+            });
+        }
+
+        private class Chunk {
+
+            private final List<Long> orderIds;
+
+            private final AtomicInteger remaining;
+
+            private final AtomicInteger running = new AtomicInteger();
+
+            private volatile boolean loaded;
+
+            private BatchLock lock;
+
+            private Set<Long> busy = Collections.emptySet();
+
+            private Map<Long, OrderInfoDO> orders = Collections.emptyMap();
+
+            private RuntimeException error;
+
+            private Chunk(List<Long> orderIds) {
+                this.orderIds = orderIds;
+                this.remaining = new AtomicInteger(orderIds.size());
+            }
+
+            private void load() {
+                if (loaded) {
+                    return;
+                }
+                synchronized (this) {
+                    if (loaded) {
+                        return;
+                    }
+                    try {
+                        List<Long> loadIds = orderIds;
+                        if (locking) {
+                            lock = BatchLockUtils.tryLock(OmsKeyPrefix.ORDER_UNIQUE_KEY,
+                                    orderIds.stream().map(String::valueOf).collect(Collectors.toList()),
+                                    LOCK_WAIT_MILLIS, BatchLockUtils.MAX_HOLD_LOCK_MILLIS);
+                            busy = lock.getBusy().stream().map(Long::valueOf).collect(Collectors.toSet());
+                            loadIds = lock.getLocked().stream().map(Long::valueOf).collect(Collectors.toList());
+                        }
+                        if (!loadIds.isEmpty()) {
+                            /*加锁后须读到最新数据*/
+                            orders = OrderBatchSession.this.load(loadIds, locking);
+                        }
+                    } catch (RuntimeException e) {
+                        error = e;
+                    } finally {
+                        loaded = true;
+                    }
+                }
+            }
+
+            private void done() {
+                boolean finished = remaining.decrementAndGet() == 0;
+                if (running.decrementAndGet() == 0 && (finished || closed)) {
+                    this.release();
+                }
+            }
+
+            /**
+             * 可重复调用, 已释放的 key 不会再次释放
+             */
+            private synchronized void release() {
+                BatchLockUtils.unlock(lock);
+            }
+        }
     }
 
 }
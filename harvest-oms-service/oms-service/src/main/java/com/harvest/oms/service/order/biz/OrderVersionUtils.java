@@ -0,0 +1,52 @@
+package com.harvest.oms.service.order.biz;
+
+import com.harvest.core.exception.ExceptionCodes;
+import com.harvest.core.exception.StandardRuntimeException;
+import com.harvest.oms.repository.domain.order.simple.OrderSimplePO;
+
+import java.util.Objects;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/16 10:30 AM
+ * @Description: 订单版本
+ * <p>
+ * 不加订单锁的批量更新(harvest.oms.order.optimistic-update)以加载时的 version 为期望版本条件更新, 未命中视为版本冲突;
+ * 默认加 Redis 订单锁, 期望版本为空, 仓储按订单Id无条件更新, 只推进版本
+ **/
+public class OrderVersionUtils {
+
+    /**
+     * 写入的期望版本, 加锁模式下为空不校验
+     *
+     * @param optimistic 是否不加锁以版本条件写入
+     * @param order      订单
+     * @return 期望版本
+     */
+    public static Integer expected(boolean optimistic, OrderSimplePO order) {
+        return optimistic ? order.getVersion() : null;
+    }
+
+    /**
+     * 校验条件更新结果, 成功后推进内存中的版本, 同一订单的后续写入以新版本为条件
+     *
+     * @param updated 是否更新成功
+     * @param order   订单
+     */
+    public static void check(boolean updated, OrderSimplePO order) {
+        if (!updated) {
+            throw new StandardRuntimeException(ExceptionCodes.OMS_VERSION_CONFLICT, "订单已被修改, 请刷新后重试");
+        }
+        if (Objects.nonNull(order.getVersion())) {
+            order.setVersion(order.getVersion() + 1);
+        }
+    }
+
+    /**
+     * 是否版本冲突
+     */
+    public static boolean isConflict(Throwable e) {
+        return e instanceof StandardRuntimeException && ((StandardRuntimeException) e).getCode() == ExceptionCodes.OMS_VERSION_CONFLICT;
+    }
+
+}
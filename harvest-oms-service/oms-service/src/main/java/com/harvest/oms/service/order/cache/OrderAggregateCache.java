@@ -0,0 +1,351 @@
+package com.harvest.oms.service.order.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.harvest.core.exception.StandardRuntimeException;
+import com.harvest.core.utils.BeanUtils;
+import com.harvest.oms.client.order.OrderReadClient;
+import com.harvest.oms.domain.order.OrderInfoDO;
+import lombok.Data;
+import org.apache.commons.collections4.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/24 10:00 AM
+ * @Description: 富订单聚合缓存
+ * <p>
+ * 两级: 请求内备忘({@link #scope()} 打开, 线程内共享同一实例) 与跨请求的短时 Caffeine 缓存(存取均为副本, 调用方修改互不影响).
+ * 缓存按订单Id 记录最新加载的版本, 带版本读取时版本不一致视为未命中. 同一订单并发加载合并为一次查询,
+ * 加载期间该订单被失效时不回填, 之后的读取也不再等待失效前发起的加载.
+ * 经 OrderWriteRepositoryClient 的写入由 {@link OrderAggregateInvalidateAspect} 失效本节点缓存, 其他节点的写入最多延迟一个过期周期可见;
+ * 条件写入以版本为准, 读到旧版本时写入冲突, 由调用方 {@link #refresh} 后重试
+ **/
+@Component
+public class OrderAggregateCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderAggregateCache.class);
+
+    private static final ThreadLocal<Map<Key, OrderInfoDO>> MEMO = new ThreadLocal<>();
+
+    private static final Scope NOOP = () -> {
+    };
+
+    @Value("${harvest.oms.order.aggregate-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${harvest.oms.order.aggregate-cache.ttl-millis:2000}")
+    private long ttlMillis;
+
+    @Value("${harvest.oms.order.aggregate-cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Autowired
+    private OrderReadClient orderReadClient;
+
+    private Cache<Key, OrderInfoDO> cache;
+
+    /**
+     * 加载中的订单, 同一订单的并发加载等待同一结果
+     */
+    private final Map<Key, CompletableFuture<OrderInfoDO>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * 加载中订单的失效次数, 与 {@link #loading} 同键, 最后一个加载结束时移除.
+     * 加载前后次数不一致时不回填, 避免失效前发起的加载把旧数据写回; 其他订单的失效不影响
+     */
+    private final Map<Key, Flight> flights = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * 打开请求内备忘, 嵌套打开时沿用外层
+     *
+     * <pre>
+     * try (OrderAggregateCache.Scope scope = OrderAggregateCache.scope()) {
+     *     ...
+     * }
+     * </pre>
+     */
+    public static Scope scope() {
+        if (Objects.nonNull(MEMO.get())) {
+            return NOOP;
+        }
+        MEMO.set(new HashMap<>());
+        return MEMO::remove;
+    }
+
+    /**
+     * 记入请求内备忘, 未打开备忘时忽略
+     */
+    public static void remember(Long companyId, OrderInfoDO order) {
+        Map<Key, OrderInfoDO> memo = MEMO.get();
+        if (Objects.nonNull(memo) && Objects.nonNull(order)) {
+            memo.put(new Key(companyId, order.getOrderId()), order);
+        }
+    }
+
+    /**
+     * 获取富订单
+     *
+     * @param companyId 公司Id
+     * @param orderId   订单Id
+     * @return 订单
+     */
+    public OrderInfoDO get(Long companyId, Long orderId) {
+        return this.get(companyId, orderId, null);
+    }
+
+    /**
+     * 获取指定版本的富订单, 缓存版本不一致时重新加载
+     *
+     * @param companyId 公司Id
+     * @param orderId   订单Id
+     * @param version   期望版本, 为空不校验
+     * @return 订单
+     */
+    public OrderInfoDO get(Long companyId, Long orderId, Integer version) {
+        Key key = new Key(companyId, orderId);
+        OrderInfoDO order = this.cached(key, version);
+        if (Objects.isNull(order)) {
+            Map<Long, OrderInfoDO> loaded = Objects.isNull(version) ? this.load(companyId, Collections.singletonList(orderId))
+                    : this.refresh(companyId, Collections.singletonList(orderId));
+            order = loaded.get(orderId);
+        }
+        if (Objects.isNull(order)) {
+            LOGGER.error("OrderAggregateCache#get#订单不存在, companyId:{}, orderId:{}", companyId, orderId);
+            throw new StandardRuntimeException("订单不存在！");
+        }
+        return order;
+    }
+
+    /**
+     * 批量获取富订单, 不存在的订单不返回
+     *
+     * @param companyId 公司Id
+     * @param orderIds  订单Id集合
+     * @return 订单Id -> 订单
+     */
+    public Map<Long, OrderInfoDO> list(Long companyId, Collection<Long> orderIds) {
+        Map<Long, OrderInfoDO> orders = new LinkedHashMap<>();
+        List<Long> missed = new ArrayList<>();
+        for (Long orderId : new LinkedHashSet<>(orderIds)) {
+            OrderInfoDO order = this.cached(new Key(companyId, orderId), null);
+            if (Objects.nonNull(order)) {
+                orders.put(orderId, order);
+            } else {
+                missed.add(orderId);
+            }
+        }
+        if (!missed.isEmpty()) {
+            orders.putAll(this.load(companyId, missed));
+        }
+        return orders;
+    }
+
+    /**
+     * 跳过缓存从数据库加载并回填, 用于加锁后加载及版本冲突重试
+     *
+     * @param companyId 公司Id
+     * @param orderIds  订单Id集合
+     * @return 订单Id -> 订单
+     */
+    public Map<Long, OrderInfoDO> refresh(Long companyId, Collection<Long> orderIds) {
+        if (CollectionUtils.isEmpty(orderIds)) {
+            return Collections.emptyMap();
+        }
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(orderIds));
+        Map<Key, Long> stamps = this.begin(companyId, ids);
+        Map<Long, OrderInfoDO> orders = Collections.emptyMap();
+        try {
+            orders = this.query(companyId, ids);
+        } finally {
+            Map<Long, OrderInfoDO> loaded = orders;
+            stamps.forEach((key, stamp) -> this.fill(key, stamp, loaded.get(key.getOrderId())));
+        }
+        return orders;
+    }
+
+    /**
+     * 失效订单, 含当前线程的请求内备忘
+     */
+    public void invalidate(Long companyId, Collection<Long> orderIds) {
+        if (CollectionUtils.isEmpty(orderIds)) {
+            return;
+        }
+        Map<Key, OrderInfoDO> memo = MEMO.get();
+        for (Long orderId : orderIds) {
+            Key key = new Key(companyId, orderId);
+            /*先记失效再清缓存, 回填与失效在同一键上互斥, 回填要么被拒绝要么随后被清除*/
+            flights.computeIfPresent(key, (k, flight) -> {
+                flight.invalidations++;
+                return flight;
+            });
+            loading.remove(key);
+            if (Objects.nonNull(cache)) {
+                cache.invalidate(key);
+            }
+            if (Objects.nonNull(memo)) {
+                memo.remove(key);
+            }
+        }
+    }
+
+    private OrderInfoDO cached(Key key, Integer version) {
+        Map<Key, OrderInfoDO> memo = MEMO.get();
+        OrderInfoDO order = Objects.nonNull(memo) ? memo.get(key) : null;
+        if (Objects.isNull(order) && enabled) {
+            OrderInfoDO shared = cache.getIfPresent(key);
+            if (Objects.nonNull(shared) && (Objects.isNull(version) || version.equals(shared.getVersion()))) {
+                order = BeanUtils.clone(shared);
+                remember(key.getCompanyId(), order);
+            }
+        }
+        if (Objects.nonNull(order) && Objects.nonNull(version) && !version.equals(order.getVersion())) {
+            return null;
+        }
+        return order;
+    }
+
+    /**
+     * 加载未命中的订单, 其他线程正在加载的订单等待其结果
+     */
+    private Map<Long, OrderInfoDO> load(Long companyId, List<Long> orderIds) {
+        if (!enabled) {
+            return this.query(companyId, orderIds);
+        }
+        Map<Long, CompletableFuture<OrderInfoDO>> waiting = new LinkedHashMap<>();
+        Map<Long, CompletableFuture<OrderInfoDO>> owned = new LinkedHashMap<>();
+        for (Long orderId : orderIds) {
+            CompletableFuture<OrderInfoDO> future = new CompletableFuture<>();
+            CompletableFuture<OrderInfoDO> existing = loading.putIfAbsent(new Key(companyId, orderId), future);
+            if (Objects.isNull(existing)) {
+                owned.put(orderId, future);
+            } else {
+                waiting.put(orderId, existing);
+            }
+        }
+
+        Map<Long, OrderInfoDO> orders = new LinkedHashMap<>();
+        if (!owned.isEmpty()) {
+            Map<Key, Long> stamps = this.begin(companyId, owned.keySet());
+            Map<Long, OrderInfoDO> loaded = Collections.emptyMap();
+            try {
+                loaded = this.query(companyId, new ArrayList<>(owned.keySet()));
+                orders.putAll(loaded);
+            } catch (RuntimeException e) {
+                owned.values().forEach(future -> future.completeExceptionally(e));
+                throw e;
+            } finally {
+                Map<Long, OrderInfoDO> result = loaded;
+                stamps.forEach((key, stamp) -> this.fill(key, stamp, result.get(key.getOrderId())));
+                owned.forEach((orderId, future) -> {
+                    future.complete(result.get(orderId));
+                    loading.remove(new Key(companyId, orderId), future);
+                });
+            }
+        }
+
+        waiting.forEach((orderId, future) -> {
+            OrderInfoDO order = this.join(future);
+            if (Objects.nonNull(order)) {
+                /*其他线程加载的实例不共享*/
+                OrderInfoDO copy = BeanUtils.clone(order);
+                remember(companyId, copy);
+                orders.put(orderId, copy);
+            }
+        });
+        return orders;
+    }
+
+    private Map<Long, OrderInfoDO> query(Long companyId, List<Long> orderIds) {
+        Collection<OrderInfoDO> orders = orderReadClient.listOrderRich(companyId, orderIds);
+        Map<Long, OrderInfoDO> result = orders.stream().collect(Collectors.toMap(OrderInfoDO::getOrderId, order -> order, (a, b) -> a, LinkedHashMap::new));
+        result.values().forEach(order -> remember(companyId, order));
+        return result;
+    }
+
+    /**
+     * 登记加载, 返回各订单登记时的失效次数
+     */
+    private Map<Key, Long> begin(Long companyId, Collection<Long> orderIds) {
+        Map<Key, Long> stamps = new LinkedHashMap<>();
+        for (Long orderId : orderIds) {
+            Key key = new Key(companyId, orderId);
+            flights.compute(key, (k, flight) -> {
+                Flight current = Objects.isNull(flight) ? new Flight() : flight;
+                current.loaders++;
+                stamps.put(key, current.invalidations);
+                return current;
+            });
+        }
+        return stamps;
+    }
+
+    /**
+     * 结束加载, 登记后未被失效时回填; 回填在同一键的 compute 内, 与 {@link #invalidate} 互斥
+     */
+    private void fill(Key key, long stamp, OrderInfoDO order) {
+        flights.computeIfPresent(key, (k, flight) -> {
+            if (enabled && Objects.nonNull(order) && flight.invalidations == stamp) {
+                cache.put(key, BeanUtils.clone(order));
+            }
+            return --flight.loaders == 0 ? null : flight;
+        });
+    }
+
+    private OrderInfoDO join(CompletableFuture<OrderInfoDO> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 请求内备忘, 关闭时清理
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    private static final class Flight {
+
+        private int loaders;
+
+        private long invalidations;
+    }
+
+    @Data
+    private static final class Key {
+
+        private final Long companyId;
+
+        private final Long orderId;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.harvest.oms.service.order.cache;
+
+import com.harvest.core.constants.GlobalMacroDefinition;
+import com.harvest.oms.repository.domain.order.OrderCore;
+import com.harvest.oms.repository.domain.order.update.OrderStatusTransit;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.After;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/24 11:00 AM
+ * @Description: 订单写入后失效富订单聚合缓存
+ * <p>
+ * 拦截 OrderWriteRepositoryClient 的全部方法, 无论成功与否均失效; 订单Id 取自订单/订单明细参数(含集合)、状态迁移参数或 orderId 请求参数
+ **/
+@Aspect
+@Component
+public class OrderAggregateInvalidateAspect {
+
+    @Autowired
+    private OrderAggregateCache orderAggregateCache;
+
+    @After("execution(* com.harvest.oms.repository.client.order.OrderWriteRepositoryClient.*(..))")
+    public void invalidate(JoinPoint joinPoint) {
+        Object[] args = joinPoint.getArgs();
+        Annotation[][] annotations = ((MethodSignature) joinPoint.getSignature()).getMethod().getParameterAnnotations();
+        Long companyId = null;
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            String param = this.param(annotations[i]);
+            if (GlobalMacroDefinition.COMPANY_ID.equals(param) && arg instanceof Long) {
+                companyId = (Long) arg;
+            } else if (GlobalMacroDefinition.OMS.ORDER_ID.equals(param) && arg instanceof Long) {
+                orderIds.add((Long) arg);
+            } else if (arg instanceof OrderCore) {
+                orderIds.add(((OrderCore) arg).getOrderId());
+            } else if (arg instanceof Collection) {
+                ((Collection<?>) arg).stream().filter(OrderCore.class::isInstance)
+                        .forEach(element -> orderIds.add(((OrderCore) element).getOrderId()));
+            } else if (arg instanceof OrderStatusTransit && Objects.nonNull(((OrderStatusTransit) arg).getOrderIds())) {
+                orderIds.addAll(((OrderStatusTransit) arg).getOrderIds());
+            }
+        }
+        orderIds.removeIf(Objects::isNull);
+        if (Objects.nonNull(companyId)) {
+            orderAggregateCache.invalidate(companyId, orderIds);
+        }
+    }
+
+    private String param(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof RequestParam) {
+                return ((RequestParam) annotation).value();
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.harvest.oms.service.order.convertor;
+
+import com.harvest.oms.domain.order.OrderInfoDO;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleCondition;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/3 2:10 PM
+ * @Description: 订单 -> 规则匹配条件转换器, bizId 为订单ID
+ **/
+@Component
+public class OrderMatchConvertor {
+
+    /**
+     * 物流匹配条件
+     *
+     * @param companyId
+     * @param order
+     * @return
+     */
+    public LogisticsRuleCondition logisticsCondition(Long companyId, OrderInfoDO order) {
+        LogisticsRuleCondition condition = new LogisticsRuleCondition();
+        condition.setCompanyId(companyId);
+        condition.setBizId(order.getOrderId());
+        if (Objects.nonNull(order.getOrderAddress())) {
+            condition.setCountryCode(order.getOrderAddress().getCountryCode());
+        }
+        if (Objects.nonNull(order.getOrderWarehouse())) {
+            condition.setWarehouseId(order.getOrderWarehouse().getWarehouseId());
+        }
+        return condition;
+    }
+
+}
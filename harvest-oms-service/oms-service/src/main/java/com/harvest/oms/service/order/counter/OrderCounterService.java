@@ -0,0 +1,237 @@
+package com.harvest.oms.service.order.counter;
+
+import com.harvest.core.enums.oms.OrderStatusEnum;
+import com.harvest.core.service.redis.CacheService;
+import com.harvest.oms.redis.stat.OrderCounterKey;
+import com.harvest.oms.repository.client.order.OrderRichQueryRepositoryClient;
+import com.harvest.oms.repository.domain.order.count.OrderCountBucket;
+import com.harvest.oms.repository.domain.order.simple.OrderSimplePO;
+import com.harvest.oms.repository.query.order.PageOrderConditionQuery;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/20 11:20 AM
+ * @Description: 订单计数器
+ * <p>
+ * 每个公司一个 Redis 哈希, 字段为 (状态, 店铺, 仓库, 异常, 挂起) 分桶, 值为订单数. 新建、状态迁移及单字段更新时增量维护,
+ * 无法确定变更前分桶的写入直接失效; 哈希过期或失效后, 下次查询按数据库分组计数重建.
+ * 只回答按状态、店铺、仓库、异常、挂起筛选的查询, 其余条件由调用方走数据库
+ **/
+@Component
+public class OrderCounterService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderCounterService.class);
+
+    private static final OrderCounterKey KEY = OrderCounterKey.ORDER_COUNTER;
+
+    /**
+     * 哨兵字段, 区分已重建但没有订单的公司与未初始化的公司
+     */
+    private static final String INITIALIZED = "_";
+
+    private static final String SEPARATOR = ":";
+
+    @Value("${harvest.oms.order.counter.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private OrderRichQueryRepositoryClient orderRichQueryRepositoryClient;
+
+    /**
+     * 订单总数
+     *
+     * @param companyId 公司Id
+     * @param condition 查询条件
+     * @return 订单数, 条件不支持或计数器不可用时返回 null
+     */
+    public Long count(Long companyId, PageOrderConditionQuery condition) {
+        if (!enabled || !this.supports(condition)) {
+            return null;
+        }
+        try {
+            Map<String, String> counters = cacheService.hashGetAll(KEY, String.valueOf(companyId));
+            if (counters.isEmpty()) {
+                counters = this.reconcile(companyId);
+            }
+            long count = 0L;
+            for (Map.Entry<String, String> counter : counters.entrySet()) {
+                if (!INITIALIZED.equals(counter.getKey()) && this.matches(counter.getKey(), condition)) {
+                    count += Long.parseLong(counter.getValue());
+                }
+            }
+            return Math.max(count, 0L);
+        } catch (RuntimeException e) {
+            LOGGER.warn("OrderCounterService#count#计数器读取失败, 使用数据库计数, companyId:{}", companyId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 是否可由计数器回答, 只有状态、店铺、仓库、异常、挂起筛选; 新增筛选条件时需同步此处
+     */
+    public boolean supports(PageOrderConditionQuery condition) {
+        return CollectionUtils.isEmpty(condition.getOrderIds())
+                && StringUtils.isEmpty(condition.getOrderNo())
+                && CollectionUtils.isEmpty(condition.getIncludeTags())
+                && CollectionUtils.isEmpty(condition.getExcludeTags())
+                && CollectionUtils.isEmpty(condition.getLogisticsTypes())
+                && Objects.isNull(condition.getOrderTime())
+                && Objects.isNull(condition.getOrderRemark())
+                && Objects.isNull(condition.getOrderKind())
+                && Objects.isNull(condition.getOrderDelivery())
+                && Objects.isNull(condition.getNos())
+                && Objects.isNull(condition.getOrderAddress());
+    }
+
+    /**
+     * 按数据库分组计数重建
+     *
+     * @param companyId 公司Id
+     * @return 重建后的计数
+     */
+    public Map<String, String> reconcile(Long companyId) {
+        Map<String, Long> counts = new HashMap<>();
+        orderRichQueryRepositoryClient.groupCountOrder(companyId)
+                .forEach(bucket -> counts.merge(this.field(bucket), bucket.getCount(), Long::sum));
+        Map<String, String> counters = new HashMap<>(counts.size() * 2 + 2);
+        counts.forEach((field, count) -> counters.put(field, String.valueOf(count)));
+        counters.put(INITIALIZED, "0");
+        cacheService.hashReplace(KEY, String.valueOf(companyId), counters);
+        return counters;
+    }
+
+    /**
+     * 新建订单
+     */
+    public void created(Long companyId, OrderSimplePO order) {
+        if (Objects.isNull(order.getOrderStatus())) {
+            this.invalidate(companyId);
+            return;
+        }
+        this.apply(companyId, Collections.singletonMap(this.field(this.bucket(order)), 1L));
+    }
+
+    /**
+     * 单个订单的计数维度变更
+     *
+     * @param order  变更前的订单
+     * @param change 在变更前分桶的副本上应用变更
+     */
+    public void changed(Long companyId, OrderSimplePO order, Consumer<OrderCountBucket> change) {
+        if (Objects.isNull(order.getOrderStatus())) {
+            this.invalidate(companyId);
+            return;
+        }
+        OrderCountBucket before = this.bucket(order);
+        OrderCountBucket after = new OrderCountBucket();
+        BeanUtils.copyProperties(before, after);
+        change.accept(after);
+        Map<String, Long> deltas = new HashMap<>(4);
+        deltas.merge(this.field(before), -1L, Long::sum);
+        deltas.merge(this.field(after), 1L, Long::sum);
+        this.apply(companyId, deltas);
+    }
+
+    /**
+     * 批量状态迁移
+     *
+     * @param from 迁移订单的来源分桶
+     * @param to   目标状态
+     */
+    public void transited(Long companyId, Collection<OrderCountBucket> from, OrderStatusEnum to) {
+        if (CollectionUtils.isEmpty(from)) {
+            return;
+        }
+        Map<String, Long> deltas = new HashMap<>();
+        for (OrderCountBucket source : from) {
+            OrderCountBucket target = new OrderCountBucket();
+            BeanUtils.copyProperties(source, target);
+            target.setOrderStatus(to.getStatus());
+            deltas.merge(this.field(source), -source.getCount(), Long::sum);
+            deltas.merge(this.field(target), source.getCount(), Long::sum);
+        }
+        this.apply(companyId, deltas);
+    }
+
+    /**
+     * 无法确定变更前分桶时失效, 下次查询重建
+     */
+    public void invalidate(Long companyId) {
+        try {
+            cacheService.delete(KEY, String.valueOf(companyId));
+        } catch (RuntimeException e) {
+            LOGGER.error("OrderCounterService#invalidate#计数器失效失败, companyId:{}", companyId, e);
+        }
+    }
+
+    private void apply(Long companyId, Map<String, Long> deltas) {
+        Map<String, Long> changes = new HashMap<>(deltas);
+        changes.values().removeIf(delta -> delta == 0L);
+        if (!enabled || changes.isEmpty()) {
+            return;
+        }
+        try {
+            cacheService.hashIncrementIfExists(KEY, String.valueOf(companyId), changes);
+        } catch (RuntimeException e) {
+            LOGGER.warn("OrderCounterService#apply#计数器更新失败, 失效后重建, companyId:{}", companyId, e);
+            this.invalidate(companyId);
+        }
+    }
+
+    private OrderCountBucket bucket(OrderSimplePO order) {
+        OrderCountBucket bucket = new OrderCountBucket();
+        bucket.setOrderStatus(order.getOrderStatus().getStatus());
+        bucket.setShopId(order.getShopId());
+        bucket.setWarehouseId(Objects.nonNull(order.getOrderWarehouse()) ? order.getOrderWarehouse().getWarehouseId() : null);
+        bucket.setAbnormal(order.getAbnormal());
+        bucket.setHangUp(order.getHangUp());
+        return bucket;
+    }
+
+    /**
+     * 分桶字段 状态:店铺:仓库:异常:挂起, 空值记为空串, 布尔空值视为否
+     */
+    private String field(OrderCountBucket bucket) {
+        return StringUtils.join(Arrays.asList(
+                Objects.toString(bucket.getOrderStatus(), ""),
+                Objects.toString(bucket.getShopId(), ""),
+                Objects.toString(bucket.getWarehouseId(), ""),
+                Boolean.TRUE.equals(bucket.getAbnormal()) ? "1" : "0",
+                Boolean.TRUE.equals(bucket.getHangUp()) ? "1" : "0"
+        ), SEPARATOR);
+    }
+
+    private boolean matches(String field, PageOrderConditionQuery condition) {
+        String[] dimensions = field.split(SEPARATOR, -1);
+        if (CollectionUtils.isNotEmpty(condition.getStatuses())
+                && condition.getStatuses().stream().noneMatch(status -> Objects.toString(status).equals(dimensions[0]))) {
+            return false;
+        }
+        if (CollectionUtils.isNotEmpty(condition.getShopIds()) && !condition.getShopIds().contains(dimensions[1])) {
+            return false;
+        }
+        if (CollectionUtils.isNotEmpty(condition.getWarehouseIds())
+                && condition.getWarehouseIds().stream().noneMatch(warehouseId -> Objects.toString(warehouseId).equals(dimensions[2]))) {
+            return false;
+        }
+        if (Objects.nonNull(condition.getAbnormal()) && condition.getAbnormal() != "1".equals(dimensions[3])) {
+            return false;
+        }
+        return Objects.isNull(condition.getHangUp()) || condition.getHangUp() == "1".equals(dimensions[4]);
+    }
+
+}
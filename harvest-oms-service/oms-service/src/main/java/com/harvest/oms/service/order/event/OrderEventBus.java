@@ -0,0 +1,340 @@
+package com.harvest.oms.service.order.event;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.harvest.core.monitor.metrics.MetricsRegistry;
+import com.harvest.oms.domain.order.OrderInfoDO;
+import com.harvest.oms.enums.OrderEventEnum;
+import com.harvest.oms.service.order.listener.OrderEventListener;
+import lombok.Data;
+import org.apache.commons.collections4.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/25 10:00 AM
+ * @Description: 订单事件总线
+ * <p>
+ * 启动时按 {@link OrderEventListener#type()} 建立监听索引, 一次事件携带多个订单.
+ * 异步分发按订单Id 散列到固定的单线程通道, 同一订单的事件按发布顺序处理; 通道队列有界, 满时发布方阻塞等待.
+ * 通道一次取出多条事件, 相邻的同公司同类型事件合并为一批交给监听. 声明了合并窗口的监听, 窗口内同一订单只处理最后一次.
+ * 排队延迟记入 OrderEventBus.lag.{事件类型}, 监听耗时及异常记入 OrderEventBus.{监听}
+ **/
+@Component
+public class OrderEventBus {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderEventBus.class);
+
+    private static final String METRICS_PREFIX = "OrderEventBus.";
+
+    /**
+     * 无待合并事件时的最长等待 毫秒
+     */
+    private static final long IDLE_POLL_MILLIS = 200L;
+
+    @Value("${harvest.oms.order.event-bus.channels:8}")
+    private int channelSize;
+
+    @Value("${harvest.oms.order.event-bus.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${harvest.oms.order.event-bus.max-drain:256}")
+    private int maxDrain;
+
+    @Autowired(required = false)
+    private List<OrderEventListener> orderEventListeners;
+
+    private final Map<OrderEventEnum, List<OrderEventListener>> index = new EnumMap<>(OrderEventEnum.class);
+
+    private Channel[] channels;
+
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void init() {
+        for (OrderEventEnum type : OrderEventEnum.values()) {
+            index.put(type, Collections.emptyList());
+        }
+        if (CollectionUtils.isNotEmpty(orderEventListeners)) {
+            Map<OrderEventEnum, List<OrderEventListener>> grouped = new EnumMap<>(OrderEventEnum.class);
+            orderEventListeners.stream().filter(listener -> Objects.nonNull(listener.type()))
+                    .forEach(listener -> grouped.computeIfAbsent(listener.type(), k -> new ArrayList<>()).add(listener));
+            grouped.forEach((type, listeners) -> index.put(type, Collections.unmodifiableList(listeners)));
+        }
+
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("harvest-order-event-%d").setDaemon(true).build();
+        channels = new Channel[channelSize];
+        for (int i = 0; i < channelSize; i++) {
+            channels[i] = new Channel();
+            channels[i].thread = threadFactory.newThread(channels[i]);
+            channels[i].thread.start();
+        }
+    }
+
+    /**
+     * 停止接收, 已入队及待合并的事件处理完后退出
+     */
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        running = false;
+        for (Channel channel : channels) {
+            channel.thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    /**
+     * 获取事件的监听
+     *
+     * @param type 事件类型
+     * @return 监听
+     */
+    public List<OrderEventListener> listeners(OrderEventEnum type) {
+        return Objects.isNull(type) ? Collections.emptyList() : index.get(type);
+    }
+
+    /**
+     * 同步分发, 监听异常抛给调用方; 不做合并
+     *
+     * @param companyId 公司Id
+     * @param type      事件类型
+     * @param orders    订单
+     */
+    public void dispatch(Long companyId, OrderEventEnum type, List<OrderInfoDO> orders) {
+        for (OrderEventListener listener : this.listeners(type)) {
+            long start = System.nanoTime();
+            Throwable error = null;
+            try {
+                listener.batch(companyId, type, orders);
+            } catch (RuntimeException e) {
+                error = e;
+                throw e;
+            } finally {
+                MetricsRegistry.record(this.metrics(listener), System.nanoTime() - start, error);
+            }
+        }
+    }
+
+    /**
+     * 异步分发, 订单实例交由总线, 发布后调用方不应再修改
+     *
+     * @param companyId 公司Id
+     * @param type      事件类型
+     * @param orders    订单
+     */
+    public void post(Long companyId, OrderEventEnum type, Collection<OrderInfoDO> orders) {
+        if (CollectionUtils.isEmpty(orders) || this.listeners(type).isEmpty()) {
+            return;
+        }
+        if (!running) {
+            LOGGER.warn("OrderEventBus#post#总线已停止, 同步分发, companyId:{}, type:{}", companyId, type);
+            this.dispatch(companyId, type, new ArrayList<>(orders));
+            return;
+        }
+        Map<Integer, List<OrderInfoDO>> routed = new HashMap<>(channels.length * 2);
+        orders.forEach(order -> routed.computeIfAbsent(this.route(order.getOrderId()), k -> new ArrayList<>()).add(order));
+        long now = System.nanoTime();
+        routed.forEach((channel, channelOrders) -> channels[channel].offer(new Event(companyId, type, channelOrders, now)));
+    }
+
+    private int route(Long orderId) {
+        return (Long.hashCode(orderId) & Integer.MAX_VALUE) % channels.length;
+    }
+
+    private String metrics(OrderEventListener listener) {
+        return METRICS_PREFIX + ClassUtils.getUserClass(listener).getSimpleName();
+    }
+
+    /**
+     * 单线程通道, 队列及待合并事件只由通道线程访问
+     */
+    private class Channel implements Runnable {
+
+        private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        /**
+         * 待合并事件, 监听 + 公司 + 订单 -> 最后一次的订单
+         */
+        private final Map<PendingKey, Pending> pending = new LinkedHashMap<>();
+
+        private Thread thread;
+
+        private void offer(Event event) {
+            if (queue.offer(event)) {
+                return;
+            }
+            LOGGER.warn("OrderEventBus#通道队列已满, 等待消费, channel:{}, type:{}", thread.getName(), event.getType());
+            try {
+                queue.put(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("订单事件入队被中断", e);
+            }
+        }
+
+        @Override
+        public void run() {
+            List<Event> events = new ArrayList<>(maxDrain);
+            while (running || !queue.isEmpty() || !pending.isEmpty()) {
+                try {
+                    Event first = queue.poll(this.waitMillis(), TimeUnit.MILLISECONDS);
+                    if (Objects.nonNull(first)) {
+                        events.add(first);
+                        queue.drainTo(events, maxDrain - 1);
+                        this.handle(events);
+                        events.clear();
+                    }
+                    this.flush(!running && queue.isEmpty());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    events.clear();
+                    LOGGER.error("OrderEventBus#通道处理异常, channel:{}", thread.getName(), e);
+                }
+            }
+        }
+
+        private long waitMillis() {
+            if (!running) {
+                return 0L;
+            }
+            if (pending.isEmpty()) {
+                return IDLE_POLL_MILLIS;
+            }
+            long due = pending.values().stream().mapToLong(Pending::getDueMillis).min().orElse(Long.MAX_VALUE);
+            return Math.max(0L, Math.min(IDLE_POLL_MILLIS, due - System.currentTimeMillis()));
+        }
+
+        /**
+         * 相邻的同公司同类型事件合并为一批, 不跨越其他事件, 保证同一订单的处理顺序
+         */
+        private void handle(List<Event> events) {
+            long now = System.nanoTime();
+            int from = 0;
+            for (int i = 0; i < events.size(); i++) {
+                Event event = events.get(i);
+                MetricsRegistry.record(METRICS_PREFIX + "lag." + event.getType().name(), now - event.getPostNanos(), null);
+                boolean last = i == events.size() - 1;
+                if (last || !event.sameBatch(events.get(i + 1))) {
+                    List<OrderInfoDO> orders = new ArrayList<>();
+                    events.subList(from, i + 1).forEach(e -> orders.addAll(e.getOrders()));
+                    this.dispatch(event.getCompanyId(), event.getType(), orders);
+                    from = i + 1;
+                }
+            }
+        }
+
+        private void dispatch(Long companyId, OrderEventEnum type, List<OrderInfoDO> orders) {
+            for (OrderEventListener listener : listeners(type)) {
+                long window = listener.coalesceMillis();
+                if (window <= 0L) {
+                    this.invoke(listener, companyId, type, orders);
+                    continue;
+                }
+                long due = System.currentTimeMillis() + window;
+                orders.forEach(order -> pending.compute(new PendingKey(listener, companyId, order.getOrderId()),
+                        (key, exist) -> Objects.isNull(exist) ? new Pending(type, order, due) : exist.replace(order)));
+            }
+        }
+
+        /**
+         * 处理到期的待合并事件, 同监听同公司一批
+         *
+         * @param all 是否不论到期全部处理
+         */
+        private void flush(boolean all) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            Map<PendingKey, List<OrderInfoDO>> batches = new LinkedHashMap<>();
+            Map<PendingKey, OrderEventEnum> types = new HashMap<>();
+            Iterator<Map.Entry<PendingKey, Pending>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<PendingKey, Pending> entry = iterator.next();
+                if (!all && entry.getValue().getDueMillis() > now) {
+                    continue;
+                }
+                iterator.remove();
+                PendingKey batchKey = new PendingKey(entry.getKey().getListener(), entry.getKey().getCompanyId(), null);
+                batches.computeIfAbsent(batchKey, k -> new ArrayList<>()).add(entry.getValue().getOrder());
+                types.put(batchKey, entry.getValue().getType());
+            }
+            batches.forEach((key, orders) -> this.invoke(key.getListener(), key.getCompanyId(), types.get(key), orders));
+        }
+
+        private void invoke(OrderEventListener listener, Long companyId, OrderEventEnum type, List<OrderInfoDO> orders) {
+            long start = System.nanoTime();
+            Throwable error = null;
+            try {
+                listener.batch(companyId, type, orders);
+            } catch (Exception e) {
+                error = e;
+                LOGGER.error("OrderEventBus#监听处理异常, listener:{}, companyId:{}, type:{}, size:{}",
+                        ClassUtils.getUserClass(listener).getSimpleName(), companyId, type, orders.size(), e);
+            } finally {
+                MetricsRegistry.record(metrics(listener), System.nanoTime() - start, error);
+            }
+        }
+    }
+
+    @Data
+    private static final class Event {
+
+        private final Long companyId;
+
+        private final OrderEventEnum type;
+
+        private final List<OrderInfoDO> orders;
+
+        private final long postNanos;
+
+        private boolean sameBatch(Event next) {
+            return type == next.type && Objects.equals(companyId, next.companyId);
+        }
+    }
+
+    @Data
+    private static final class PendingKey {
+
+        private final OrderEventListener listener;
+
+        private final Long companyId;
+
+        private final Long orderId;
+    }
+
+    @Data
+    private static final class Pending {
+
+        private final OrderEventEnum type;
+
+        private final long dueMillis;
+
+        private OrderInfoDO order;
+
+        private Pending(OrderEventEnum type, OrderInfoDO order, long dueMillis) {
+            this.type = type;
+            this.order = order;
+            this.dueMillis = dueMillis;
+        }
+
+        private Pending replace(OrderInfoDO order) {
+            this.order = order;
+            return this;
+        }
+    }
+
+}
@@ -1,10 +1,10 @@
 package com.harvest.oms.service.order.event;
 
-import com.harvest.core.batch.BatchId;
-import com.harvest.core.utils.ActuatorUtils;
-import com.harvest.oms.client.order.OrderReadClient;
+import com.google.common.collect.Lists;
+import com.harvest.core.utils.BeanUtils;
 import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.enums.OrderEventEnum;
+import com.harvest.oms.service.order.cache.OrderAggregateCache;
 import com.harvest.oms.service.order.listener.OrderEventListener;
 import org.apache.commons.collections4.CollectionUtils;
 import org.slf4j.Logger;
@@ -12,11 +12,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.*;
 
 /**
  * @Author: Alodi
@@ -28,17 +24,19 @@ public class OrderEventPublisher {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(OrderEventPublisher.class);
 
-    @Autowired(required = false)
-    private List<OrderEventListener> orderEventListeners;
+    /**
+     * 异步批量发布时每次加载的订单数
+     */
+    private static final int LOAD_CHUNK_SIZE = 500;
+
+    @Autowired
+    private OrderEventBus orderEventBus;
 
     @Autowired
-    private OrderReadClient orderReadClient;
+    private OrderAggregateCache orderAggregateCache;
 
     public List<OrderEventListener> getListenersByEvent(OrderEventEnum orderEventEnum) {
-        if (CollectionUtils.isEmpty(orderEventListeners) || Objects.isNull(orderEventEnum)) {
-            return Collections.emptyList();
-        }
-        return orderEventListeners.stream().filter(listener -> listener.type().equals(orderEventEnum)).collect(Collectors.toList());
+        return orderEventBus.listeners(orderEventEnum);
     }
 
     /**
@@ -49,69 +47,59 @@ public class OrderEventPublisher {
      * @param event
      */
     public void publishAsync(Long companyId, Long orderId, OrderEventEnum event) {
-        ActuatorUtils.parallelVoidFailAllowBatchExecute(Stream.of(orderId).map(BatchId::build).collect(Collectors.toList()),
-                id -> this.publish(companyId, orderId, event)
-        );
+        this.publishAsync(companyId, Collections.singletonList(orderId), event);
     }
 
     /**
-     * 同步执行监听事件
+     * 异步批量执行监听事件, 订单分段批量加载, 同一订单的事件按发布顺序处理
+     *
+     * @param companyId
+     * @param orderIds
+     * @param event
      */
-    public void publish(Long companyId, Long orderId, OrderEventEnum type) {
-        if (companyId == 0L || orderId == 0L || type == null) {
+    public void publishAsync(Long companyId, Collection<Long> orderIds, OrderEventEnum event) {
+        if (CollectionUtils.isEmpty(orderIds) || orderEventBus.listeners(event).isEmpty()) {
             return;
         }
-        /*内存中的可能有脏数据，统一从数据库捞一遍数据*/
-        OrderInfoDO order = orderReadClient.getOrderRich(companyId, orderId);
-        this.publish(companyId, order, type);
-    }
-
-    private void publish(long companyId, OrderInfoDO order, OrderEventEnum type) {
-        this.doPublish(companyId, order, type);
+        for (List<Long> chunk : Lists.partition(new ArrayList<>(new LinkedHashSet<>(orderIds)), LOAD_CHUNK_SIZE)) {
+            orderEventBus.post(companyId, event, orderAggregateCache.list(companyId, chunk).values());
+        }
     }
 
     /**
-     * 执行发布
+     * 异步执行监听事件, 以调用方持有的订单为准不再加载, 总线持有副本
      *
      * @param companyId
      * @param order
      * @param event
      */
-    private void doPublish(long companyId, OrderInfoDO order, OrderEventEnum event) {
-        orderEventListeners.forEach(listener -> {
-            switch (event) {
-                case CREATED:
-                    listener.created(companyId, order);
-                    break;
-                case PAID:
-                    listener.paid(companyId, order);
-                    break;
-                case AUDIT:
-                    listener.audit(companyId, order);
-                    break;
-                case RETURN_AUDIT:
-                    listener.returnAudit(companyId, order);
-                    break;
-                case DECLARE:
-                    listener.declare(companyId, order);
-                    break;
-                case DELIVERY:
-                    listener.delivery(companyId, order);
-                    break;
-                case FINISH:
-                    listener.finish(companyId, order);
-                    break;
-                case CLOSE:
-                    listener.close(companyId, order);
-                    break;
-                case ABNORMAL:
-                    listener.abnormal(companyId, order);
-                    break;
-                default:
-                    break;
-            }
-        });
+    public void publishAsync(Long companyId, OrderInfoDO order, OrderEventEnum event) {
+        if (Objects.isNull(order) || orderEventBus.listeners(event).isEmpty()) {
+            return;
+        }
+        orderEventBus.post(companyId, event, Collections.singletonList(BeanUtils.clone(order)));
+    }
+
+    /**
+     * 同步执行监听事件
+     */
+    public void publish(Long companyId, Long orderId, OrderEventEnum type) {
+        if (companyId == 0L || orderId == 0L || type == null || orderEventBus.listeners(type).isEmpty()) {
+            return;
+        }
+        /*内存中的可能有脏数据，写入后聚合缓存已失效, 取到的为最新数据*/
+        OrderInfoDO order = orderAggregateCache.get(companyId, orderId);
+        orderEventBus.dispatch(companyId, type, Collections.singletonList(order));
     }
 
+    /**
+     * 同步执行监听事件, 按写入后的版本取聚合, 版本一致时复用本次请求已加载的订单
+     */
+    public void publish(Long companyId, OrderInfoDO order, OrderEventEnum type) {
+        if (companyId == 0L || Objects.isNull(order) || type == null || orderEventBus.listeners(type).isEmpty()) {
+            return;
+        }
+        orderEventBus.dispatch(companyId, type, Collections.singletonList(orderAggregateCache.get(companyId, order.getOrderId(), order.getVersion())));
+    }
 
 }
@@ -1,6 +1,6 @@
 package com.harvest.oms.service.order.event.order;
 
-import com.harvest.oms.client.order.OrderReadClient;
+import com.harvest.oms.service.order.cache.OrderAggregateCache;
 import org.springframework.beans.factory.annotation.Autowired;
 
 /**
@@ -11,6 +11,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 public abstract class AbstractMatchEvent {
 
     @Autowired
-    protected OrderReadClient orderReadClient;
+    protected OrderAggregateCache orderAggregateCache;
 
 }
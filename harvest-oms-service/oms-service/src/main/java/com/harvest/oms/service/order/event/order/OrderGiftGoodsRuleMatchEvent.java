@@ -18,7 +18,7 @@ public class OrderGiftGoodsRuleMatchEvent extends AbstractMatchEvent {
      * @param orderId
      */
     public void match(Long companyId, Long orderId) {
-        OrderInfoDO order = super.orderReadClient.getOrderRich(companyId, orderId);
+        OrderInfoDO order = super.orderAggregateCache.get(companyId, orderId);
         this.match(companyId, order);
     }
 
@@ -3,11 +3,13 @@ package com.harvest.oms.service.order.event.order;
 import com.harvest.core.context.SpringHelper;
 import com.harvest.oms.client.order.OrderMatchClient;
 import com.harvest.oms.domain.order.OrderInfoDO;
+import com.harvest.oms.service.order.convertor.OrderMatchConvertor;
 import com.harvest.oms.service.order.processor.OrderLogisticsMatchProcessor;
 import com.harvest.rule.domain.logistics.LogisticsRuleMatch;
 import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleCondition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.Objects;
@@ -22,6 +24,9 @@ public class OrderLogisticsRuleMatchEvent extends AbstractMatchEvent implements
 
     protected static final Logger LOGGER = LoggerFactory.getLogger(OrderLogisticsRuleMatchEvent.class);
 
+    @Autowired
+    private OrderMatchConvertor orderMatchConvertor;
+
     /**
      * 匹配物流
      *
@@ -29,15 +34,15 @@ public class OrderLogisticsRuleMatchEvent extends AbstractMatchEvent implements
      * @param orderId
      */
     public void match(Long companyId, Long orderId) {
-        OrderInfoDO order = super.orderReadClient.getOrderRich(companyId, orderId);
+        OrderInfoDO order = super.orderAggregateCache.get(companyId, orderId);
         this.match(companyId, order);
     }
 
     public void match(Long companyId, OrderInfoDO order) {
-        LogisticsRuleCondition condition = new LogisticsRuleCondition();
+        LogisticsRuleCondition condition = orderMatchConvertor.logisticsCondition(companyId, order);
         LogisticsRuleMatch match = SpringHelper.getBean(OrderMatchClient.class).matchLogistics(companyId, condition);
         if (Objects.isNull(match)) {
-            LOGGER.error("");
+            LOGGER.error("OrderLogisticsRuleMatchEvent#物流匹配#无匹配结果, companyId:{}, orderId:{}", companyId, order.getOrderId());
         }
     }
 }
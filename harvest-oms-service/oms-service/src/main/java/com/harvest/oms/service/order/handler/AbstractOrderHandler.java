@@ -5,6 +5,10 @@ import com.harvest.core.utils.BeanUtils;
 import com.harvest.oms.client.order.OrderReadClient;
 import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.repository.client.order.OrderWriteRepositoryClient;
+import com.harvest.oms.repository.query.order.OrderSectionQuery;
+import com.harvest.oms.repository.query.order.OrderSections;
+import com.harvest.oms.service.order.cache.OrderAggregateCache;
+import com.harvest.oms.service.order.counter.OrderCounterService;
 import com.harvest.oms.service.order.event.OrderEventPublisher;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -27,6 +31,12 @@ public abstract class AbstractOrderHandler implements GlobalMacroDefinition {
     @Autowired
     protected OrderReadClient orderReadClient;
 
+    @Autowired
+    protected OrderCounterService orderCounterService;
+
+    @Autowired
+    protected OrderAggregateCache orderAggregateCache;
+
     /**
      * 获取订单信息
      *
@@ -35,7 +45,7 @@ public abstract class AbstractOrderHandler implements GlobalMacroDefinition {
      * @return
      */
     protected OrderInfoDO getOrderRich(Long companyId, Long orderId) {
-        return orderReadClient.getOrderRich(companyId, orderId);
+        return orderAggregateCache.get(companyId, orderId);
     }
 
     /**
@@ -46,7 +56,19 @@ public abstract class AbstractOrderHandler implements GlobalMacroDefinition {
      * @return
      */
     protected Collection<OrderInfoDO> listOrderRich(Long companyId, List<Long> orderIds) {
-        return orderReadClient.listOrderRich(companyId, orderIds);
+        return orderAggregateCache.list(companyId, orderIds).values();
+    }
+
+    /**
+     * 按数据段获取订单信息
+     *
+     * @param companyId
+     * @param orderIds
+     * @param sections  {@link OrderSections}, 为空时查询全部
+     * @return
+     */
+    protected Collection<OrderInfoDO> listOrderSection(Long companyId, List<Long> orderIds, Collection<String> sections) {
+        return orderReadClient.listOrderSection(companyId, OrderSectionQuery.build(orderIds, sections));
     }
 
     /**
@@ -1,5 +1,9 @@
 package com.harvest.oms.service.order.handler;
 
+import com.harvest.oms.repository.domain.order.simple.OrderSimplePO;
+import com.harvest.oms.service.order.biz.OrderVersionUtils;
+import org.springframework.beans.factory.annotation.Value;
+
 /**
  * @Author: Alodi
  * @Date: 2023/3/17 11:04 AM
@@ -14,4 +18,17 @@ public abstract class AbstractOrderUpdateHandler extends AbstractOrderHandler {
      */
     protected abstract String update();
 
+    /**
+     * 与 OrderWriteClientImpl 批量更新取同一配置, 不加订单锁时才以版本条件写入
+     */
+    @Value("${harvest.oms.order.optimistic-update:false}")
+    private boolean optimisticUpdate;
+
+    /**
+     * 写入的期望版本
+     */
+    protected Integer expectedVersion(OrderSimplePO order) {
+        return OrderVersionUtils.expected(optimisticUpdate, order);
+    }
+
 }
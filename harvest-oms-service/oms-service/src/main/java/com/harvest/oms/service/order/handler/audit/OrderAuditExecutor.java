@@ -1,28 +1,26 @@
 package com.harvest.oms.service.order.handler.audit;
 
-import com.harvest.core.context.SpringHelper;
 import com.harvest.core.enums.oms.OrderStatusEnum;
 import com.harvest.core.log.RecordLog;
 import com.harvest.core.service.annotation.BizLog;
-import com.harvest.core.service.mq.ProducerMessageService;
-import com.harvest.core.service.mq.topic.MessageTopic;
+import com.harvest.core.service.outbox.OutboxRelay;
 import com.harvest.core.service.utils.BizLogUtils;
-import com.harvest.oms.client.order.OrderWriteClient;
 import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.domain.order.audit.OrderAuditTransferDTO;
 import com.harvest.oms.enums.OrderEventEnum;
 import com.harvest.oms.repository.domain.order.base.OrderOperationLog;
 import com.harvest.oms.repository.enums.OperationPrefixEnum;
 import com.harvest.oms.request.order.audit.SubmitAuditRequest;
-import com.harvest.oms.request.order.warehouse.SubmitWmsOrderMessage;
 import com.harvest.oms.service.order.handler.AbstractOrderHandler;
 import com.harvest.oms.service.order.processor.OrderAuditProcessor;
-import org.apache.rocketmq.client.producer.SendResult;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.harvest.oms.service.order.state.OrderStateMachine;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * @Author: Alodi
  * @Date: 2023/2/16 3:44 PM
@@ -31,13 +29,13 @@ import org.springframework.stereotype.Component;
 @Component
 public class OrderAuditExecutor extends AbstractOrderHandler implements OrderAuditProcessor {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(OrderAuditExecutor.class);
-
-    @Autowired
-    private OrderWriteClient orderWriteClient;
+    /**
+     * 审核后的订单状态
+     */
+    public static final OrderStatusEnum AUDITED_STATUS = OrderStatusEnum.FINANCE_APPROVE;
 
     @Autowired
-    private ProducerMessageService producerMessageService;
+    private OutboxRelay outboxRelay;
 
     /**
      * 执行处理
@@ -50,37 +48,56 @@ public class OrderAuditExecutor extends AbstractOrderHandler implements OrderAud
         this.execute(companyId, request);
     }
 
+    /**
+     * 批量审核的后置处理及日志, 日志随方法结束一次批量写入
+     *
+     * @param companyId
+     * @param requests
+     */
+    @BizLog
+    @Override
+    public void complete(Long companyId, List<SubmitAuditRequest> requests) {
+        OrderAuditProcessor.super.complete(companyId, requests);
+    }
+
+    /**
+     * 状态校验已由 {@link OrderStateMachine} 在批量迁移时完成, 强制审核放宽为状态机允许的全部来源状态
+     */
     @Override
     public void check(Long companyId, SubmitAuditRequest request) {
-        if (request.isForce()) {
-            // 强制审核不检查数据问题
-            return;
-        }
-        SpringHelper.getBean(OrderAuditCheckExecutor.class).check(request.getOrder());
     }
 
     @Override
     public OrderAuditTransferDTO beforeAudit(Long companyId, SubmitAuditRequest request) {
         OrderInfoDO order = request.getOrder();
-        order.setOrderStatus(OrderStatusEnum.FINANCE_APPROVE);
+        order.setOrderStatus(AUDITED_STATUS);
 
         OrderAuditTransferDTO transfer = new OrderAuditTransferDTO();
         transfer.setContinue(true);
         return transfer;
     }
 
+    /**
+     * 订单状态已随批量迁移写入
+     */
     @Override
     public void processAudit(Long companyId, SubmitAuditRequest request, OrderAuditTransferDTO transfer) {
-        OrderInfoDO order = request.getOrder();
-        orderWriteClient.updateOrderStatus(companyId, order);
-
     }
 
     @Override
     public void afterAudit(Long companyId, SubmitAuditRequest request) {
-        SendResult sendResult = this.pushWms(companyId, request.getOrder());
-        // 发布订单审核事件
-        orderEventPublisher.publish(companyId, request.getOrder().getOrderId(), OrderEventEnum.AUDIT);
+        this.afterAudit(companyId, Collections.singletonList(request));
+    }
+
+    /**
+     * 推送wms的消息已随状态迁移写入发件箱, 此处只唤醒中继尽快投递
+     */
+    @Override
+    public void afterAudit(Long companyId, List<SubmitAuditRequest> requests) {
+        outboxRelay.wakeup();
+        List<Long> orderIds = requests.stream().map(SubmitAuditRequest::getId).collect(Collectors.toList());
+        // 发布订单审核事件, 批量审核只加载订单基础信息, 监听方需要的完整订单按Id分段加载
+        orderEventPublisher.publishAsync(companyId, orderIds, OrderEventEnum.AUDIT);
     }
 
     @Override
@@ -94,13 +111,4 @@ public class OrderAuditExecutor extends AbstractOrderHandler implements OrderAud
         BizLogUtils.log(operationLog);
     }
 
-    private SendResult pushWms(Long companyId, OrderInfoDO order) {
-        OrderInfoDO pushOrder = super.filterOrderItems(order);
-        // 推送wms
-        SubmitWmsOrderMessage submitWmsOrderMessage = new SubmitWmsOrderMessage();
-        submitWmsOrderMessage.setCompanyId(companyId);
-        submitWmsOrderMessage.setOrder(pushOrder);
-        return producerMessageService.syncSend(MessageTopic.ORDER_PUSH_WMS, submitWmsOrderMessage);
-    }
-
 }
@@ -5,8 +5,6 @@ import com.harvest.core.enums.oms.OrderStatusEnum;
 import com.harvest.core.log.RecordLog;
 import com.harvest.core.service.mq.ProducerMessageService;
 import com.harvest.core.service.utils.BizLogUtils;
-import com.harvest.oms.client.order.OrderWriteClient;
-import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.repository.domain.order.base.OrderOperationLog;
 import com.harvest.oms.request.order.audit.SubmitAuditReturnRequest;
 import com.harvest.oms.service.order.event.OrderEventPublisher;
@@ -25,8 +23,10 @@ public class OrderAuditReturnExecutor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(OrderAuditReturnExecutor.class);
 
-    @Autowired
-    private OrderWriteClient orderWriteClient;
+    /**
+     * 打回后的订单状态
+     */
+    public static final OrderStatusEnum RETURNED_STATUS = OrderStatusEnum.APPROVE;
 
     @Autowired
     private ProducerMessageService producerMessageService;
@@ -35,16 +35,13 @@ public class OrderAuditReturnExecutor {
     private OrderEventPublisher orderEventPublisher;
 
     /**
-     * 执行处理
+     * 执行处理, 订单状态已随批量迁移写入
      *
      * @param companyId
      * @param request
      */
     @BizLog
     public void exec(Long companyId, SubmitAuditReturnRequest request) {
-        OrderInfoDO order = request.getOrder();
-        order.setOrderStatus(OrderStatusEnum.APPROVE);
-        orderWriteClient.updateOrderStatus(companyId, order);
         this.log(companyId, request);
     }
 
@@ -1,14 +1,12 @@
 package com.harvest.oms.service.order.handler.delivery;
 
 import com.harvest.core.enums.oms.OrderStatusEnum;
-import com.harvest.core.exception.ExceptionCodes;
-import com.harvest.core.exception.StandardRuntimeException;
 import com.harvest.core.service.annotation.RateLimit;
 import com.harvest.core.service.mq.ProducerMessageService;
-import com.harvest.oms.client.order.OrderWriteClient;
 import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.service.order.event.OrderEventPublisher;
 import com.harvest.oms.service.order.processor.OrderDeliveryProcessor;
+import com.harvest.oms.service.order.state.OrderStateMachine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,8 +22,10 @@ public class OrderDeliveryExecutor implements OrderDeliveryProcessor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(OrderDeliveryExecutor.class);
 
-    @Autowired
-    private OrderWriteClient orderWriteClient;
+    /**
+     * 发货后的订单状态
+     */
+    public static final OrderStatusEnum DELIVERED_STATUS = OrderStatusEnum.SHIPPED;
 
     @Autowired
     private ProducerMessageService producerMessageService;
@@ -40,6 +40,7 @@ public class OrderDeliveryExecutor implements OrderDeliveryProcessor {
 
     /**
      * 订单发货前置校验-报错处理
+     * 状态校验已由 {@link OrderStateMachine} 在批量迁移时完成
      *
      * @param companyId
      * @param order
@@ -47,9 +48,6 @@ public class OrderDeliveryExecutor implements OrderDeliveryProcessor {
      */
     @Override
     public void check(Long companyId, OrderInfoDO order) {
-        if (OrderStatusEnum.SHIPPED.equals(order.getOrderStatus())) {
-            throw new StandardRuntimeException(ExceptionCodes.OMS_MODULE_ERROR, "订单已为发货状态！");
-        }
     }
 
     /**
@@ -72,8 +70,7 @@ public class OrderDeliveryExecutor implements OrderDeliveryProcessor {
      */
     @Override
     public void processDelivery(Long companyId, OrderInfoDO order) {
-        order.setOrderStatus(OrderStatusEnum.SHIPPED);
-        orderWriteClient.updateOrderStatus(companyId, order);
+        order.setOrderStatus(DELIVERED_STATUS);
     }
 
     /**
@@ -1,15 +1,19 @@
 package com.harvest.oms.service.order.handler.feature.company;
 
+import com.harvest.core.batch.PipelineStage;
 import com.harvest.oms.domain.order.OrderInfoDO;
+import com.harvest.oms.repository.query.order.OrderSections;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 
 /**
  * @Author: Alodi
  * @Date: 2023/1/28 3:50 PM
  * @Description: 公司订单特性处理
  **/
-public interface OrderCompanyFeatureHandler {
+public interface OrderCompanyFeatureHandler extends PipelineStage {
 
     /**
      * 匹配对应公司处理器
@@ -29,4 +33,9 @@ public interface OrderCompanyFeatureHandler {
      */
     void batchFeatureFill(Long companyId, Collection<OrderInfoDO> orders);
 
+    @Override
+    default Set<String> provides() {
+        return Collections.singleton(OrderSections.COMPANY_FEATURE);
+    }
+
 }
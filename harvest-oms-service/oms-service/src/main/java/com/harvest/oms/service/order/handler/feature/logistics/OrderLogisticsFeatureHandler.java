@@ -1,9 +1,13 @@
 package com.harvest.oms.service.order.handler.feature.logistics;
 
+import com.harvest.core.batch.PipelineStage;
 import com.harvest.core.enums.logistics.LogisticsEnum;
 import com.harvest.oms.domain.order.OrderInfoDO;
+import com.harvest.oms.repository.query.order.OrderSections;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -11,7 +15,7 @@ import java.util.stream.Collectors;
  * @Date: 2023/2/25 3:50 PM
  * @Description: 物流特性处理
  **/
-public interface OrderLogisticsFeatureHandler {
+public interface OrderLogisticsFeatureHandler extends PipelineStage {
 
     /**
      * 匹配对应物流处理器
@@ -29,4 +33,17 @@ public interface OrderLogisticsFeatureHandler {
      */
     void batchFeatureFill(Long companyId, Collection<OrderInfoDO> orders);
 
+    /**
+     * 依赖物流渠道信息
+     */
+    @Override
+    default Set<String> requires() {
+        return Collections.singleton(OrderSections.LOGISTICS_CHANNEL);
+    }
+
+    @Override
+    default Set<String> provides() {
+        return Collections.singleton(OrderSections.LOGISTICS_FEATURE);
+    }
+
 }
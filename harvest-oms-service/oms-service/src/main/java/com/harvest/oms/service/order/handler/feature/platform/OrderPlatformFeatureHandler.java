@@ -1,10 +1,14 @@
 package com.harvest.oms.service.order.handler.feature.platform;
 
+import com.harvest.core.batch.PipelineStage;
 import com.harvest.core.enums.oms.OrderSourceEnum;
 import com.harvest.oms.domain.order.OrderInfoDO;
+import com.harvest.oms.repository.query.order.OrderSections;
 import org.apache.commons.collections4.CollectionUtils;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -12,7 +16,7 @@ import java.util.stream.Collectors;
  * @Date: 2023/1/28 3:50 PM
  * @Description: 平台订单特性处理
  **/
-public interface OrderPlatformFeatureHandler {
+public interface OrderPlatformFeatureHandler extends PipelineStage {
 
     /**
      * 匹配对应平台处理器
@@ -45,4 +49,10 @@ public interface OrderPlatformFeatureHandler {
             this.batchFeatureFill(companyId, filter);
         }
     }
+
+    @Override
+    default Set<String> provides() {
+        return Collections.singleton(OrderSections.PLATFORM_FEATURE);
+    }
+
 }
@@ -5,6 +5,7 @@ import com.harvest.core.exception.StandardRuntimeException;
 import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.enums.OrderEventEnum;
 import com.harvest.oms.repository.client.order.OrderWriteRepositoryClient;
+import com.harvest.oms.service.order.counter.OrderCounterService;
 import com.harvest.oms.service.order.event.OrderEventPublisher;
 import com.harvest.oms.service.order.strategy.OrderRuleStrategy;
 import org.apache.commons.collections.CollectionUtils;
@@ -32,6 +33,8 @@ public class OrderSaveHandler {
     private List<OrderRuleStrategy> orderRuleStrategys;
     @Autowired
     private OrderEventPublisher orderEventPublisher;
+    @Autowired
+    private OrderCounterService orderCounterService;
 
     public void save(Long companyId, OrderInfoDO order) {
 
@@ -39,6 +42,7 @@ public class OrderSaveHandler {
 
         stopWatch.start("保存订单");
         orderWriteRepositoryClient.insert(companyId, order);
+        orderCounterService.created(companyId, order);
         stopWatch.stop();
 
         stopWatch.start("保存订单明细");
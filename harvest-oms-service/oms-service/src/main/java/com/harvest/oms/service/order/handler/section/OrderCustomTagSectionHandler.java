@@ -3,6 +3,7 @@ package com.harvest.oms.service.order.handler.section;
 import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.repository.domain.order.base.OrderTag;
 import com.harvest.oms.repository.enums.tag.OrderTagSourceEnum;
+import com.harvest.oms.repository.query.order.OrderSections;
 import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
@@ -10,6 +11,7 @@ import org.springframework.stereotype.Component;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -21,6 +23,16 @@ import java.util.stream.Collectors;
 @Component
 public class OrderCustomTagSectionHandler implements OrderSectionHandler {
 
+    @Override
+    public Set<String> requires() {
+        return Collections.singleton(OrderSections.TAGS);
+    }
+
+    @Override
+    public Set<String> provides() {
+        return Collections.singleton(OrderSections.CUSTOM_TAG);
+    }
+
     @Override
     public void fill(Long companyId, OrderInfoDO order) {
         this.batchFill(companyId, Collections.singleton(order));
@@ -6,6 +6,7 @@ import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.domain.order.declare.OrderItemDeclarationDO;
 import com.harvest.oms.repository.domain.declare.OrderDeclareSimplePO;
 import com.harvest.oms.repository.domain.declare.OrderItemDeclareSimplePO;
+import com.harvest.oms.repository.query.order.OrderSections;
 import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
@@ -23,6 +24,16 @@ import java.util.stream.Collectors;
 @Component
 public class OrderDeclarationSectionHandler implements OrderSectionHandler {
 
+    @Override
+    public Set<String> requires() {
+        return Collections.singleton(OrderSections.ITEMS);
+    }
+
+    @Override
+    public Set<String> provides() {
+        return Collections.singleton(OrderSections.DECLARATION);
+    }
+
     @Override
     public void fill(Long companyId, OrderInfoDO order) {
         this.batchFill(companyId, Collections.singleton(order));
@@ -47,7 +58,8 @@ public class OrderDeclarationSectionHandler implements OrderSectionHandler {
                 return;
             }
             List<OrderItemDeclareSimplePO> items = orderDeclareSimplePO.getItems();
-            if (CollectionUtils.isEmpty(items)) {
+            // 明细阶段超时或跳过时订单无明细
+            if (CollectionUtils.isEmpty(items) || CollectionUtils.isEmpty(order.getOrderItems())) {
                 return;
             }
             List<OrderItemDeclarationDO> collect = items.stream().map(item -> {
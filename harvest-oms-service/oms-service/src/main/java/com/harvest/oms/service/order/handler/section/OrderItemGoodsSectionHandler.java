@@ -8,6 +8,7 @@ import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.domain.order.OrderItemDO;
 import com.harvest.oms.domain.order.goods.OrderGoodsDO;
 import com.harvest.oms.domain.order.goods.OrderSkuDO;
+import com.harvest.oms.repository.query.order.OrderSections;
 import org.apache.commons.collections4.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +35,16 @@ public class OrderItemGoodsSectionHandler implements OrderSectionHandler {
     @Autowired
     private GoodsCoupletClient goodsCoupletClient;
 
+    @Override
+    public Set<String> requires() {
+        return Collections.singleton(OrderSections.ITEMS);
+    }
+
+    @Override
+    public Set<String> provides() {
+        return Collections.singleton(OrderSections.ITEM_GOODS);
+    }
+
     @Override
     public void fill(Long companyId, OrderInfoDO order) {
         this.batchFill(companyId, Collections.singleton(order));
@@ -5,6 +5,7 @@ import com.harvest.oms.client.logistics.LogisticsReadClient;
 import com.harvest.oms.domain.logistics.LogisticsChannelDO;
 import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.repository.domain.logistics.OrderLogisticsKey;
+import com.harvest.oms.repository.query.order.OrderSections;
 import org.apache.commons.collections4.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +31,11 @@ public class OrderLogisticsSectionHandler implements OrderSectionHandler {
     @Autowired
     private LogisticsReadClient logisticsReadClient;
 
+    @Override
+    public Set<String> provides() {
+        return Collections.singleton(OrderSections.LOGISTICS_CHANNEL);
+    }
+
     /**
      * @param companyId
      * @param order
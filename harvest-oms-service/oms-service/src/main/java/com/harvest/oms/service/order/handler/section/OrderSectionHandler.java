@@ -1,6 +1,8 @@
 package com.harvest.oms.service.order.handler.section;
 
+import com.harvest.core.batch.PipelineStage;
 import com.harvest.oms.domain.order.OrderInfoDO;
+import com.harvest.oms.repository.query.order.OrderSections;
 
 import java.util.Collection;
 
@@ -8,8 +10,10 @@ import java.util.Collection;
  * @Author: Alodi
  * @Date: 2023/1/1 6:19 PM
  * @Description: 订单领域模型部分信息填充处理器
+ * <p>
+ * 通过 {@link #requires()} / {@link #provides()} 声明读写的 {@link OrderSections}, 丰富查询据此并发编排填充
  **/
-public interface OrderSectionHandler {
+public interface OrderSectionHandler extends PipelineStage {
 
     /**
      * @param companyId
@@ -1,6 +1,7 @@
 package com.harvest.oms.service.order.handler.section;
 
 import com.harvest.oms.domain.order.OrderInfoDO;
+import com.harvest.oms.repository.query.order.OrderSections;
 import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
@@ -9,6 +10,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -20,6 +22,11 @@ import java.util.stream.Collectors;
 @Component
 public class OrderShopSectionHandler implements OrderSectionHandler {
 
+    @Override
+    public Set<String> provides() {
+        return Collections.singleton(OrderSections.SHOP);
+    }
+
     @Override
     public void fill(Long companyId, OrderInfoDO order) {
         this.batchFill(companyId, Collections.singleton(order));
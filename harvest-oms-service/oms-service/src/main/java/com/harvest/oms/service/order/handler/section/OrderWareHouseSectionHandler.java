@@ -5,6 +5,7 @@ import com.harvest.oms.repository.domain.order.base.OrderWarehouse;
 import com.harvest.oms.cache.CacheLoader;
 import com.harvest.wms.repository.domain.warehouse.simple.WarehouseSimplePO;
 import com.harvest.wms.domain.WarehouseDO;
+import com.harvest.oms.repository.query.order.OrderSections;
 import org.apache.commons.collections.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +28,11 @@ public class OrderWareHouseSectionHandler implements OrderSectionHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(OrderWareHouseSectionHandler.class);
 
+    @Override
+    public Set<String> provides() {
+        return Collections.singleton(OrderSections.WAREHOUSE);
+    }
+
     /**
      * @param companyId
      * @param order
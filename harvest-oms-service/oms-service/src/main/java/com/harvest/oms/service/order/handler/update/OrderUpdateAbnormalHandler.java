@@ -8,9 +8,13 @@ import com.harvest.oms.enums.OrderEventEnum;
 import com.harvest.oms.repository.domain.order.base.OrderOperationLog;
 import com.harvest.oms.repository.domain.order.update.OrderSubmitUpdateField;
 import com.harvest.oms.repository.enums.OperationPrefixEnum;
+import com.harvest.oms.repository.query.order.OrderSections;
+import com.harvest.oms.service.order.biz.OrderVersionUtils;
 import com.harvest.oms.service.order.handler.AbstractOrderUpdateHandler;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+
 /**
  * @Author: Alodi
  * @Date: 2023/3/19 3:39 PM
@@ -29,6 +33,11 @@ public class OrderUpdateAbnormalHandler extends AbstractOrderUpdateHandler imple
         return OrderSubmitUpdateField.UpdateEnum.ABNORMAL.equals(updateEnum);
     }
 
+    @Override
+    public Collection<String> sections() {
+        return OrderSections.BASE;
+    }
+
     @Override
     public boolean check(Long companyId, OrderSubmitUpdateField field, OrderInfoDO order) {
         return true;
@@ -40,8 +49,9 @@ public class OrderUpdateAbnormalHandler extends AbstractOrderUpdateHandler imple
         if (!this.check(companyId, field, order)) {
             return;
         }
-        orderWriteRepositoryClient.abnormal(companyId, field.getAbnormal(), order.getOrderId());
-        orderEventPublisher.publish(companyId, order.getOrderId(), OrderEventEnum.ABNORMAL);
+        OrderVersionUtils.check(orderWriteRepositoryClient.abnormal(companyId, field.getAbnormal(), order.getOrderId(), this.expectedVersion(order)), order);
+        orderCounterService.changed(companyId, order, bucket -> bucket.setAbnormal(field.getAbnormal()));
+        orderEventPublisher.publish(companyId, order, OrderEventEnum.ABNORMAL);
         this.log(companyId, field, order);
     }
 
@@ -8,9 +8,13 @@ import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.enums.OrderEventEnum;
 import com.harvest.oms.repository.domain.order.base.OrderOperationLog;
 import com.harvest.oms.repository.domain.order.update.OrderSubmitUpdateField;
+import com.harvest.oms.repository.query.order.OrderSections;
+import com.harvest.oms.service.order.biz.OrderVersionUtils;
 import com.harvest.oms.service.order.handler.AbstractOrderUpdateHandler;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+
 /**
  * @Author: Alodi
  * @Date: 2023/3/19 3:39 PM
@@ -29,6 +33,11 @@ public class OrderUpdateCloseHandler extends AbstractOrderUpdateHandler implemen
         return OrderSubmitUpdateField.UpdateEnum.CLOSE.equals(updateEnum);
     }
 
+    @Override
+    public Collection<String> sections() {
+        return OrderSections.BASE;
+    }
+
     @Override
     public boolean check(Long companyId, OrderSubmitUpdateField field, OrderInfoDO order) {
         return true;
@@ -40,8 +49,9 @@ public class OrderUpdateCloseHandler extends AbstractOrderUpdateHandler implemen
         if (!this.check(companyId, field, order)) {
             return;
         }
-        orderWriteRepositoryClient.updateOrderStatus(companyId, order.getOrderId(), OrderStatusEnum.CLOSED);
-        orderEventPublisher.publish(companyId, order.getOrderId(), OrderEventEnum.CLOSE);
+        OrderVersionUtils.check(orderWriteRepositoryClient.updateOrderStatus(companyId, order.getOrderId(), this.expectedVersion(order), OrderStatusEnum.CLOSED), order);
+        orderCounterService.changed(companyId, order, bucket -> bucket.setOrderStatus(OrderStatusEnum.CLOSED.getStatus()));
+        orderEventPublisher.publish(companyId, order, OrderEventEnum.CLOSE);
         this.log(companyId, field, order);
     }
 
@@ -2,6 +2,10 @@ package com.harvest.oms.service.order.handler.update;
 
 import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.repository.domain.order.update.OrderSubmitUpdateField;
+import com.harvest.oms.repository.query.order.OrderSections;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * @Author: Alodi
@@ -19,6 +23,26 @@ public interface OrderUpdateHandler {
      */
     boolean match(Long companyId, OrderSubmitUpdateField.UpdateEnum updateEnum);
 
+    /**
+     * 处理所需的订单数据段 {@link OrderSections}, 为空时加载全部
+     *
+     * @return
+     */
+    default Collection<String> sections() {
+        return null;
+    }
+
+    /**
+     * 批量预处理, 在逐单加锁处理前对整批订单执行一次
+     * 可合并的远程调用(如规则匹配)在此批量完成, 结果通过 {@link OrderSubmitUpdateField#putPrepared} 传递给 handle
+     *
+     * @param companyId
+     * @param field
+     * @param orderIds
+     */
+    default void prepare(Long companyId, OrderSubmitUpdateField field, List<Long> orderIds) {
+    }
+
     /**
      * 检查
      *
@@ -3,9 +3,12 @@ package com.harvest.oms.service.order.handler.update;
 import com.harvest.core.service.annotation.BizLog;
 import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.repository.domain.order.update.OrderSubmitUpdateField;
+import com.harvest.oms.repository.query.order.OrderSections;
 import com.harvest.oms.service.order.handler.AbstractOrderUpdateHandler;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+
 /**
  * @Author: Alodi
  * @Date: 2023/3/17 10:54 AM
@@ -24,6 +27,11 @@ public class OrderUpdateLogisticsHandler extends AbstractOrderUpdateHandler impl
         return OrderSubmitUpdateField.UpdateEnum.LOGISTICS.equals(updateEnum);
     }
 
+    @Override
+    public Collection<String> sections() {
+        return OrderSections.BASE;
+    }
+
     @Override
     public boolean check(Long companyId, OrderSubmitUpdateField field, OrderInfoDO order) {
         return OrderUpdateHandler.super.check(companyId, field, order);
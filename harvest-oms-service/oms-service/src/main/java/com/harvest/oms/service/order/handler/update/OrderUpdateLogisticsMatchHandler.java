@@ -1,19 +1,36 @@
 package com.harvest.oms.service.order.handler.update;
 
+import com.harvest.core.exception.ExceptionCodes;
+import com.harvest.core.exception.StandardRuntimeException;
+import com.harvest.core.log.RecordLog;
 import com.harvest.core.service.annotation.BizLog;
+import com.harvest.core.service.utils.BizLogUtils;
 import com.harvest.oms.client.order.OrderMatchClient;
 import com.harvest.oms.domain.order.OrderInfoDO;
+import com.harvest.oms.repository.domain.logistics.OrderLogisticsKey;
+import com.harvest.oms.repository.domain.order.base.OrderOperationLog;
 import com.harvest.oms.repository.domain.order.update.OrderSubmitUpdateField;
+import com.harvest.oms.repository.query.order.OrderSections;
+import com.harvest.oms.service.order.biz.OrderVersionUtils;
+import com.harvest.oms.service.order.convertor.OrderMatchConvertor;
 import com.harvest.oms.service.order.handler.AbstractOrderUpdateHandler;
 import com.harvest.rule.domain.logistics.LogisticsRuleMatch;
 import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleCondition;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
 /**
  * @Author: Alodi
  * @Date: 2023/3/17 10:54 AM
- * @Description: TODO
+ * @Description: 订单更新匹配物流
+ * <p>
+ * 批量更新时由 {@link #prepare} 整批一次远程匹配, 逐单处理时取预匹配结果写入承运商及渠道, 单个订单在处理时匹配
  **/
 @Component
 public class OrderUpdateLogisticsMatchHandler extends AbstractOrderUpdateHandler implements OrderUpdateHandler {
@@ -21,6 +38,9 @@ public class OrderUpdateLogisticsMatchHandler extends AbstractOrderUpdateHandler
     @Autowired
     private OrderMatchClient orderMatchClient;
 
+    @Autowired
+    private OrderMatchConvertor orderMatchConvertor;
+
     @Override
     protected String update() {
         return "更新订单物流[匹配]";
@@ -31,12 +51,51 @@ public class OrderUpdateLogisticsMatchHandler extends AbstractOrderUpdateHandler
         return OrderSubmitUpdateField.UpdateEnum.MATCH_LOGISTICS.equals(updateEnum);
     }
 
+    @Override
+    public Collection<String> sections() {
+        return OrderSections.BASE;
+    }
+
+
+    /**
+     * 整批订单一次加载、一次远程批量匹配
+     *
+     * @param companyId
+     * @param field
+     * @param orderIds
+     */
+    @Override
+    public void prepare(Long companyId, OrderSubmitUpdateField field, List<Long> orderIds) {
+        if (orderIds.size() <= 1) {
+            return;
+        }
+        List<OrderInfoDO> orders = new ArrayList<>(super.listOrderSection(companyId, orderIds, this.sections()));
+        List<LogisticsRuleCondition> conditions = orders.stream()
+                .map(order -> orderMatchConvertor.logisticsCondition(companyId, order))
+                .collect(Collectors.toList());
+        // 结果与条件按下标对应
+        List<LogisticsRuleMatch> matches = orderMatchClient.matchLogisticsBatch(companyId, conditions);
+        for (int i = 0; i < orders.size() && i < matches.size(); i++) {
+            field.putPrepared(orders.get(i).getOrderId(), matches.get(i));
+        }
+    }
 
     @BizLog
     @Override
     public void handle(Long companyId, OrderSubmitUpdateField field, OrderInfoDO order) {
-        LogisticsRuleCondition condition = new LogisticsRuleCondition();
-        LogisticsRuleMatch logisticsRuleMatch = orderMatchClient.matchLogistics(companyId, condition);
+        LogisticsRuleMatch logisticsRuleMatch = field.getPrepared(order.getOrderId());
+        if (Objects.isNull(logisticsRuleMatch)) {
+            logisticsRuleMatch = orderMatchClient.matchLogistics(companyId, orderMatchConvertor.logisticsCondition(companyId, order));
+            field.putPrepared(order.getOrderId(), logisticsRuleMatch);
+        }
+        if (Objects.isNull(logisticsRuleMatch) || Objects.isNull(logisticsRuleMatch.getLogisticsId())) {
+            throw new StandardRuntimeException(ExceptionCodes.OMS_MODULE_ERROR, "物流匹配异常！");
+        }
+
+        OrderLogisticsKey logisticsKey = new OrderLogisticsKey();
+        logisticsKey.setLogisticsId(logisticsRuleMatch.getLogisticsId());
+        logisticsKey.setChannelId(logisticsRuleMatch.getChannelId());
+        OrderVersionUtils.check(orderWriteRepositoryClient.updateLogistics(companyId, order.getOrderId(), this.expectedVersion(order), logisticsKey), order);
         this.log(companyId, field, order);
     }
 
@@ -49,7 +108,18 @@ public class OrderUpdateLogisticsMatchHandler extends AbstractOrderUpdateHandler
      */
     @Override
     public void log(Long companyId, OrderSubmitUpdateField field, OrderInfoDO order) {
+        LogisticsRuleMatch logisticsRuleMatch = field.getPrepared(order.getOrderId());
 
+        OrderOperationLog operationLog = OrderOperationLog.init();
+        operationLog.setBusinessId(order.getOrderId());
+        operationLog.setOperationType(RecordLog.OperationType.MODIFY);
+        operationLog.setPrefix(this.update());
+        operationLog.setContent(
+                Log.ORIGINAL + (order.getLogisticsChannel() != null ? order.getLogisticsChannel().getChannelId() + ":" + order.getLogisticsChannel().getChannelName() : "") +
+                        LINE_FEED +
+                        Log.CHANGE + logisticsRuleMatch.getLogisticsId() + ":" + logisticsRuleMatch.getChannelId()
+        );
+        BizLogUtils.log(operationLog);
     }
 
 }
@@ -12,10 +12,13 @@ import com.harvest.oms.repository.domain.order.base.OrderRemark;
 import com.harvest.oms.repository.domain.order.update.OrderSubmitUpdateField;
 import com.harvest.oms.repository.domain.order.update.remark.OrderUpdateRemark;
 import com.harvest.oms.repository.enums.OperationPrefixEnum;
+import com.harvest.oms.repository.query.order.OrderSections;
+import com.harvest.oms.service.order.biz.OrderVersionUtils;
 import com.harvest.oms.service.order.handler.AbstractOrderUpdateHandler;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
 import java.util.Objects;
 
 /**
@@ -36,6 +39,11 @@ public class OrderUpdateRemarkHandler extends AbstractOrderUpdateHandler impleme
         return OrderSubmitUpdateField.UpdateEnum.REMARK.equals(updateEnum);
     }
 
+    @Override
+    public Collection<String> sections() {
+        return OrderSections.BASE;
+    }
+
     @BizLog
     @Override
     public void handle(Long companyId, OrderSubmitUpdateField field, OrderInfoDO order) {
@@ -77,8 +85,8 @@ public class OrderUpdateRemarkHandler extends AbstractOrderUpdateHandler impleme
                     throw new StandardRuntimeException(ExceptionCodes.OMS_MODULE_ERROR, "订单备注类型错误！");
             }
         }
-        orderWriteRepositoryClient.updateRemark(companyId, order.getOrderId(), updateRemark);
-        orderEventPublisher.publish(companyId, order.getOrderId(), OrderEventEnum.REMARK_MODIFY);
+        OrderVersionUtils.check(orderWriteRepositoryClient.updateRemark(companyId, order.getOrderId(), this.expectedVersion(order), updateRemark), order);
+        orderEventPublisher.publish(companyId, order, OrderEventEnum.REMARK_MODIFY);
         this.log(companyId, field, order);
     }
 
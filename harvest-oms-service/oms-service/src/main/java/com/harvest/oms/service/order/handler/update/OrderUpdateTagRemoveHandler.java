@@ -9,10 +9,13 @@ import com.harvest.oms.enums.OrderEventEnum;
 import com.harvest.oms.repository.domain.order.base.OrderOperationLog;
 import com.harvest.oms.repository.domain.order.base.OrderTag;
 import com.harvest.oms.repository.domain.order.update.OrderSubmitUpdateField;
+import com.harvest.oms.repository.query.order.OrderSections;
 import com.harvest.oms.service.order.handler.AbstractOrderUpdateHandler;
 import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -34,6 +37,11 @@ public class OrderUpdateTagRemoveHandler extends AbstractOrderUpdateHandler impl
         return OrderSubmitUpdateField.UpdateEnum.TAG_REMOVE.equals(updateEnum);
     }
 
+    @Override
+    public Collection<String> sections() {
+        return Collections.singleton(OrderSections.TAGS);
+    }
+
     @Override
     public boolean check(Long companyId, OrderSubmitUpdateField field, OrderInfoDO order) {
         if (CollectionUtils.isEmpty(field.getTagValues()) || CollectionUtils.isEmpty(order.getOrderTags())) {
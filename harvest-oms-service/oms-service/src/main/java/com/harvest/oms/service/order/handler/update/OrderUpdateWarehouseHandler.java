@@ -12,10 +12,14 @@ import com.harvest.oms.enums.OrderEventEnum;
 import com.harvest.oms.repository.domain.order.base.OrderOperationLog;
 import com.harvest.oms.repository.domain.order.base.OrderWarehouse;
 import com.harvest.oms.repository.domain.order.update.OrderSubmitUpdateField;
+import com.harvest.oms.repository.query.order.OrderSections;
+import com.harvest.oms.service.order.biz.OrderVersionUtils;
 import com.harvest.oms.service.order.handler.AbstractOrderUpdateHandler;
 import com.harvest.wms.domain.WarehouseDO;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Objects;
 
 /**
@@ -36,6 +40,11 @@ public class OrderUpdateWarehouseHandler extends AbstractOrderUpdateHandler impl
         return OrderSubmitUpdateField.UpdateEnum.WAREHOUSE.equals(updateEnum);
     }
 
+    @Override
+    public Collection<String> sections() {
+        return Collections.singleton(OrderSections.WAREHOUSE);
+    }
+
     /**
      * 检查
      *
@@ -70,8 +79,9 @@ public class OrderUpdateWarehouseHandler extends AbstractOrderUpdateHandler impl
         OrderWarehouse orderWarehouse = new OrderWarehouse();
         orderWarehouse.setWarehouseId(warehouseId);
         orderWarehouse.setWarehouseOwner(Objects.requireNonNull(warehouse).getWarehouseOwner());
-        orderWriteRepositoryClient.updateWarehouse(companyId, order.getOrderId(), orderWarehouse);
-        orderEventPublisher.publish(companyId, order.getOrderId(), OrderEventEnum.UPDATE_WAREHOUSE);
+        OrderVersionUtils.check(orderWriteRepositoryClient.updateWarehouse(companyId, order.getOrderId(), this.expectedVersion(order), orderWarehouse), order);
+        orderCounterService.changed(companyId, order, bucket -> bucket.setWarehouseId(warehouseId));
+        orderEventPublisher.publish(companyId, order, OrderEventEnum.UPDATE_WAREHOUSE);
         this.log(companyId, field, order);
     }
 
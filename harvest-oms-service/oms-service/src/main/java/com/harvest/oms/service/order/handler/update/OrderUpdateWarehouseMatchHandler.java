@@ -13,7 +13,9 @@ import com.harvest.oms.enums.OrderEventEnum;
 import com.harvest.oms.repository.domain.order.base.OrderOperationLog;
 import com.harvest.oms.repository.domain.order.base.OrderWarehouse;
 import com.harvest.oms.repository.domain.order.update.OrderSubmitUpdateField;
+import com.harvest.oms.repository.query.order.OrderSections;
 import com.harvest.oms.service.order.event.OrderEventPublisher;
+import com.harvest.oms.service.order.biz.OrderVersionUtils;
 import com.harvest.oms.service.order.handler.AbstractOrderUpdateHandler;
 import com.harvest.rule.domain.warehouse.WarehouseRuleMatch;
 import com.harvest.rule.repository.domain.match.warehouse.WarehouseRuleCondition;
@@ -21,6 +23,8 @@ import com.harvest.wms.domain.WarehouseDO;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Objects;
 
 /**
@@ -47,6 +51,11 @@ public class OrderUpdateWarehouseMatchHandler extends AbstractOrderUpdateHandler
         return OrderSubmitUpdateField.UpdateEnum.MATCH_WAREHOUSE.equals(updateEnum);
     }
 
+    @Override
+    public Collection<String> sections() {
+        return Collections.singleton(OrderSections.WAREHOUSE);
+    }
+
     @BizLog
     @Override
     public void handle(Long companyId, OrderSubmitUpdateField field, OrderInfoDO order) {
@@ -60,8 +69,9 @@ public class OrderUpdateWarehouseMatchHandler extends AbstractOrderUpdateHandler
         OrderWarehouse orderWarehouse = new OrderWarehouse();
         orderWarehouse.setWarehouseId(warehouse.getWarehouseId());
         orderWarehouse.setWarehouseOwner(warehouse.getWarehouseOwner());
-        orderWriteRepositoryClient.updateWarehouse(companyId, order.getOrderId(), orderWarehouse);
-        orderEventPublisher.publish(companyId, order.getOrderId(), OrderEventEnum.UPDATE_WAREHOUSE);
+        OrderVersionUtils.check(orderWriteRepositoryClient.updateWarehouse(companyId, order.getOrderId(), this.expectedVersion(order), orderWarehouse), order);
+        orderCounterService.changed(companyId, order, bucket -> bucket.setWarehouseId(warehouse.getWarehouseId()));
+        orderEventPublisher.publish(companyId, order, OrderEventEnum.UPDATE_WAREHOUSE);
 
         field.setWarehouseId(warehouse.getWarehouseId());
         this.log(companyId, field, order);
@@ -3,10 +3,14 @@ package com.harvest.oms.service.order.listener;
 import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.enums.OrderEventEnum;
 
+import java.util.List;
+
 /**
  * @Author: Alodi
  * @Date: 2022/12/12 9:11 PM
  * @Description: 订单事件监听处理器
+ * <p>
+ * 只接收 {@link #type()} 类型的事件, 由 {@link com.harvest.oms.service.order.event.OrderEventBus} 按类型索引分发
  **/
 public interface OrderEventListener {
 
@@ -17,6 +21,88 @@ public interface OrderEventListener {
      */
     OrderEventEnum type();
 
+    /**
+     * 合并窗口 毫秒, 异步分发时窗口内同一订单的重复事件只处理一次, 取最后一次的订单; 0 不合并
+     *
+     * @return 毫秒
+     */
+    default long coalesceMillis() {
+        return 0L;
+    }
+
+    /**
+     * 批量处理, 一次事件携带多个订单; 默认逐个处理, 需要批量读写的监听可覆盖
+     *
+     * @param companyId 公司id
+     * @param event     事件类型
+     * @param orders    相关订单
+     */
+    default void batch(Long companyId, OrderEventEnum event, List<OrderInfoDO> orders) {
+        orders.forEach(order -> this.on(companyId, event, order));
+    }
+
+    /**
+     * 按事件类型分发到对应的处理方法
+     *
+     * @param companyId 公司id
+     * @param event     事件类型
+     * @param order     相关订单
+     */
+    default void on(Long companyId, OrderEventEnum event, OrderInfoDO order) {
+        switch (event) {
+            case CREATED:
+                this.created(companyId, order);
+                break;
+            case PAID:
+                this.paid(companyId, order);
+                break;
+            case AUDIT:
+                this.audit(companyId, order);
+                break;
+            case RETURN_AUDIT:
+                this.returnAudit(companyId, order);
+                break;
+            case DECLARE:
+                this.declare(companyId, order);
+                break;
+            case DELIVERY:
+                this.delivery(companyId, order);
+                break;
+            case FINISH:
+                this.finish(companyId, order);
+                break;
+            case CLOSE:
+                this.close(companyId, order);
+                break;
+            case DELETE:
+                this.delete(companyId, order);
+                break;
+            case RESTORE:
+                this.restore(companyId, order);
+                break;
+            case UPDATE_WAREHOUSE:
+                this.updateWarehouse(companyId, order);
+                break;
+            case GOODS_CHANGE:
+                this.goodsChange(companyId, order);
+                break;
+            case TAG_MODIFY:
+                this.tagModify(companyId, order);
+                break;
+            case ABNORMAL:
+                this.abnormal(companyId, order);
+                break;
+            case REMARK_MODIFY:
+                this.remarkModify(companyId, order);
+                break;
+            case MERGED:
+                this.merged(companyId, order);
+                break;
+            default:
+                break;
+        }
+    }
+
     /**
      * 订单下单
      *
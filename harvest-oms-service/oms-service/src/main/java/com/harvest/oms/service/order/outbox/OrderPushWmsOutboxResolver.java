@@ -0,0 +1,60 @@
+package com.harvest.oms.service.order.outbox;
+
+import com.harvest.core.enums.oms.OrderStatusEnum;
+import com.harvest.core.service.mq.topic.MessageTopic;
+import com.harvest.core.service.outbox.OutboxPayloadResolver;
+import com.harvest.oms.domain.order.OrderInfoDO;
+import com.harvest.oms.request.order.warehouse.SubmitWmsOrderMessage;
+import com.harvest.oms.service.order.handler.AbstractOrderHandler;
+import com.harvest.oms.service.order.handler.audit.OrderAuditExecutor;
+import com.harvest.oms.service.order.handler.audit.OrderAuditReturnExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/26 2:10 PM
+ * @Description: 审核推送wms的消息体, 投递前按订单当前数据生成
+ * <p>
+ * 消息键为订单Id, 订单不存在或已被打回时不返回, 由中继转入死信, 不再推送; 审核后继续流转(配货、打印等)的订单照常推送.
+ * 审核处理失败恢复原状态的订单, 其消息随恢复在同一事务内撤销, 不经过此处
+ **/
+@Component
+public class OrderPushWmsOutboxResolver extends AbstractOrderHandler implements OutboxPayloadResolver {
+
+    /**
+     * 审核打回后的状态
+     */
+    private static final Set<OrderStatusEnum> RETURNED_STATUS_ENUMS = Stream.concat(OrderAuditExecutor.AUDITED_STATUS.back().stream(),
+            Stream.of(OrderAuditReturnExecutor.RETURNED_STATUS)).collect(Collectors.toSet());
+
+    @Override
+    public String destination() {
+        return MessageTopic.ORDER_PUSH_WMS;
+    }
+
+    @Override
+    public Map<String, Object> resolve(Long companyId, Collection<String> messageKeys) {
+        List<Long> orderIds = messageKeys.stream().map(Long::valueOf).distinct().collect(Collectors.toList());
+        Map<Long, OrderInfoDO> orders = orderAggregateCache.refresh(companyId, orderIds);
+        Map<String, Object> payloads = new HashMap<>(orders.size() * 2);
+        orders.forEach((orderId, order) -> {
+            if (RETURNED_STATUS_ENUMS.contains(order.getOrderStatus())) {
+                return;
+            }
+            SubmitWmsOrderMessage submitWmsOrderMessage = new SubmitWmsOrderMessage();
+            submitWmsOrderMessage.setCompanyId(companyId);
+            submitWmsOrderMessage.setOrder(super.filterOrderItems(order));
+            payloads.put(String.valueOf(orderId), submitWmsOrderMessage);
+        });
+        return payloads;
+    }
+
+}
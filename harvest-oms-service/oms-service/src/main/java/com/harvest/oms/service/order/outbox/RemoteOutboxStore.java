@@ -0,0 +1,65 @@
+package com.harvest.oms.service.order.outbox;
+
+import com.harvest.core.exception.ExceptionCodes;
+import com.harvest.core.exception.StandardRuntimeException;
+import com.harvest.core.outbox.OutboxMessage;
+import com.harvest.core.outbox.OutboxStore;
+import com.harvest.oms.repository.client.outbox.OutboxRepositoryClient;
+import org.apache.commons.collections4.CollectionUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/26 2:00 PM
+ * @Description: 订单库发件箱的远程存储, 供本服务的发件箱中继领取及回写
+ * <p>
+ * 消息只能由仓储在业务事务内写入(如 {@link com.harvest.oms.repository.domain.order.update.OrderStatusTransit#getOutboxDestination()}),
+ * 本服务跨进程写入无法与业务写入同一事务, 不支持 {@link #save}
+ **/
+@Component
+public class RemoteOutboxStore implements OutboxStore {
+
+    @Autowired
+    private OutboxRepositoryClient outboxRepositoryClient;
+
+    @Override
+    public void save(Collection<OutboxMessage> messages) {
+        throw new StandardRuntimeException(ExceptionCodes.OMS_MODULE_ERROR, "发件箱消息需在仓储事务内写入!");
+    }
+
+    @Override
+    public List<OutboxMessage> pending(int limit) {
+        return outboxRepositoryClient.pending(limit);
+    }
+
+    @Override
+    public void sent(Collection<Long> ids) {
+        if (CollectionUtils.isNotEmpty(ids)) {
+            outboxRepositoryClient.sent(ids);
+        }
+    }
+
+    @Override
+    public void retry(Collection<Long> ids, long nextMillis, String error) {
+        if (CollectionUtils.isNotEmpty(ids)) {
+            outboxRepositoryClient.retry(nextMillis, error, ids);
+        }
+    }
+
+    @Override
+    public void dead(Collection<Long> ids, String error) {
+        if (CollectionUtils.isNotEmpty(ids)) {
+            outboxRepositoryClient.dead(error, ids);
+        }
+    }
+
+    @Override
+    public long size() {
+        return outboxRepositoryClient.size();
+    }
+
+}
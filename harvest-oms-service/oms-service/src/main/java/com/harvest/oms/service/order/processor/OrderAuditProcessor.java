@@ -3,10 +3,14 @@ package com.harvest.oms.service.order.processor;
 import com.harvest.oms.domain.order.audit.OrderAuditTransferDTO;
 import com.harvest.oms.request.order.audit.SubmitAuditRequest;
 
+import java.util.List;
+
 /**
  * @Author: Alodi
  * @Date: 2023/2/5 11:21 PM
  * @Description: 订单审核模版处理器, 业务流程具像化
+ * <p>
+ * 批量审核时逐单 {@link #prepare}, 通过的订单按批 {@link #complete}
  **/
 public interface OrderAuditProcessor {
 
@@ -51,15 +55,56 @@ public interface OrderAuditProcessor {
     void log(Long companyId, SubmitAuditRequest request);
 
     /**
-     * 执行业务流程
+     * 批量后置处理, 默认逐单处理
+     *
+     * @param companyId
+     * @param requests
+     */
+    default void afterAudit(Long companyId, List<SubmitAuditRequest> requests) {
+        requests.forEach(request -> this.afterAudit(companyId, request));
+    }
+
+    /**
+     * 批量日志, 默认逐单记录
+     *
+     * @param companyId
+     * @param requests
+     */
+    default void log(Long companyId, List<SubmitAuditRequest> requests) {
+        requests.forEach(request -> this.log(companyId, request));
+    }
+
+    /**
+     * 逐单执行校验、前置处理及业务处理
      *
      * @param companyId
      * @param request
      */
-    default void execute(Long companyId, SubmitAuditRequest request) {
+    default void prepare(Long companyId, SubmitAuditRequest request) {
         this.check(companyId, request);
         OrderAuditTransferDTO transfer = this.beforeAudit(companyId, request);
         this.processAudit(companyId, request, transfer);
+    }
+
+    /**
+     * 按批执行后置处理及日志
+     *
+     * @param companyId
+     * @param requests
+     */
+    default void complete(Long companyId, List<SubmitAuditRequest> requests) {
+        this.afterAudit(companyId, requests);
+        this.log(companyId, requests);
+    }
+
+    /**
+     * 执行业务流程
+     *
+     * @param companyId
+     * @param request
+     */
+    default void execute(Long companyId, SubmitAuditRequest request) {
+        this.prepare(companyId, request);
         this.afterAudit(companyId, request);
         this.log(companyId, request);
     }
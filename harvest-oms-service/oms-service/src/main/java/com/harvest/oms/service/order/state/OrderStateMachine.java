@@ -0,0 +1,155 @@
+package com.harvest.oms.service.order.state;
+
+import com.harvest.core.enums.oms.OrderStatusEnum;
+import com.harvest.core.enums.oms.OrderStatusTransition;
+import com.harvest.core.utils.ActuatorUtils;
+import com.harvest.oms.repository.client.order.OrderWriteRepositoryClient;
+import com.harvest.oms.repository.domain.order.count.OrderCountBucket;
+import com.harvest.oms.repository.domain.order.update.OrderStatusTransit;
+import com.harvest.oms.repository.domain.order.update.OrderStatusTransitResult;
+import com.harvest.oms.service.order.counter.OrderCounterService;
+import org.apache.commons.collections4.CollectionUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/17 11:20 AM
+ * @Description: 订单状态机
+ * <p>
+ * 来源状态由 {@link OrderStatusTransition} 矩阵与调用方期望取交集, 每段订单一次条件更新完成校验与写入, 不逐单读取;
+ * 迁移返回各订单迁移前的状态, 后续处理失败时由 {@link #restore} 按原状态恢复; 迁移订单的来源分桶同步到 {@link OrderCounterService}
+ **/
+@Component
+public class OrderStateMachine {
+
+    /**
+     * 单次条件更新的订单数
+     */
+    private static final int TRANSIT_CHUNK_SIZE = 500;
+
+    @Autowired
+    private OrderWriteRepositoryClient orderWriteRepositoryClient;
+
+    @Autowired
+    private OrderCounterService orderCounterService;
+
+    /**
+     * 是否可迁移
+     */
+    public boolean canTransit(OrderStatusEnum from, OrderStatusEnum to) {
+        return OrderStatusTransition.canTransit(from, to);
+    }
+
+    /**
+     * 期望来源中允许迁移到目标状态的部分
+     */
+    public Set<OrderStatusEnum> sources(Collection<OrderStatusEnum> from, OrderStatusEnum to) {
+        return OrderStatusTransition.sources(from, to);
+    }
+
+    /**
+     * 批量迁移
+     *
+     * @param companyId 公司Id
+     * @param orderIds  订单Id
+     * @param from      期望的来源状态
+     * @param to        目标状态
+     * @return 实际迁移的订单Id
+     */
+    public Set<Long> transition(Long companyId, Collection<Long> orderIds, Collection<OrderStatusEnum> from, OrderStatusEnum to) {
+        return this.transit(companyId, orderIds, from, to, null).keySet();
+    }
+
+    /**
+     * 批量迁移, 迁移成功的订单在同一事务内写入发件箱
+     *
+     * @param companyId         公司Id
+     * @param orderIds          订单Id
+     * @param from              期望的来源状态
+     * @param to                目标状态
+     * @param outboxDestination 发件箱投递目标, 为空不写入
+     * @return 实际迁移的订单Id
+     */
+    public Set<Long> transition(Long companyId, Collection<Long> orderIds, Collection<OrderStatusEnum> from, OrderStatusEnum to,
+                                String outboxDestination) {
+        return this.transit(companyId, orderIds, from, to, outboxDestination).keySet();
+    }
+
+    /**
+     * 批量迁移, 返回迁移前的状态
+     *
+     * @param companyId         公司Id
+     * @param orderIds          订单Id
+     * @param from              期望的来源状态
+     * @param to                目标状态
+     * @param outboxDestination 发件箱投递目标, 为空不写入
+     * @return 实际迁移的订单Id -> 迁移前状态
+     */
+    public Map<Long, OrderStatusEnum> transit(Long companyId, Collection<Long> orderIds, Collection<OrderStatusEnum> from, OrderStatusEnum to,
+                                              String outboxDestination) {
+        Set<OrderStatusEnum> sources = this.sources(from, to);
+        if (CollectionUtils.isEmpty(orderIds) || sources.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return this.execute(companyId, new ArrayList<>(new LinkedHashSet<>(orderIds)), sources, to, outboxDestination, null);
+    }
+
+    /**
+     * 恢复迁移前的状态, 用于迁移后处理失败的补偿
+     * <p>
+     * 只恢复仍处于迁移目标状态的订单, 期间已被其他请求改变状态的订单不覆盖; 恢复是迁移的撤销, 不受迁移矩阵限制
+     *
+     * @param companyId 公司Id
+     * @param sources   订单Id -> 迁移前状态
+     * @param current   迁移的目标状态
+     * @return 实际恢复的订单Id
+     */
+    public Set<Long> restore(Long companyId, Map<Long, OrderStatusEnum> sources, OrderStatusEnum current) {
+        return this.restore(companyId, sources, current, null);
+    }
+
+    /**
+     * 恢复迁移前的状态, 恢复的订单随迁移写入发件箱的待投递消息在同一事务内撤销;
+     * 恢复前中继已投递的消息无法撤回, 由消费方按订单当前状态处理
+     *
+     * @param companyId         公司Id
+     * @param sources           订单Id -> 迁移前状态
+     * @param current           迁移的目标状态
+     * @param outboxDestination 迁移时写入的发件箱投递目标, 为空不撤销
+     * @return 实际恢复的订单Id
+     */
+    public Set<Long> restore(Long companyId, Map<Long, OrderStatusEnum> sources, OrderStatusEnum current, String outboxDestination) {
+        Set<Long> restored = new HashSet<>();
+        sources.entrySet().stream().filter(source -> source.getValue() != current)
+                .collect(Collectors.groupingBy(Map.Entry::getValue, Collectors.mapping(Map.Entry::getKey, Collectors.toList())))
+                .forEach((source, orderIds) -> restored.addAll(
+                        this.execute(companyId, orderIds, Collections.singleton(current), source, null, outboxDestination).keySet()));
+        return restored;
+    }
+
+    private Map<Long, OrderStatusEnum> execute(Long companyId, List<Long> orderIds, Set<OrderStatusEnum> from, OrderStatusEnum to,
+                                            String outboxDestination, String cancelOutboxDestination) {
+        List<OrderStatusTransitResult> results = ActuatorUtils.parallelPartitionExecute(orderIds, TRANSIT_CHUNK_SIZE, chunk -> {
+            OrderStatusTransit transit = new OrderStatusTransit();
+            transit.setOrderIds(chunk);
+            transit.setFrom(from);
+            transit.setTo(to);
+            transit.setOutboxDestination(outboxDestination);
+            transit.setCancelOutboxDestination(cancelOutboxDestination);
+            return Collections.singletonList(orderWriteRepositoryClient.transitOrderStatus(companyId, transit));
+        });
+        Map<Long, OrderStatusEnum> moved = new HashMap<>();
+        List<OrderCountBucket> buckets = new ArrayList<>();
+        results.forEach(result -> {
+            moved.putAll(result.getSources());
+            buckets.addAll(result.getFrom());
+        });
+        orderCounterService.transited(companyId, buckets, to);
+        return moved;
+    }
+
+}
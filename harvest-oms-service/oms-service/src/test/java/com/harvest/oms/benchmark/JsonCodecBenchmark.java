@@ -0,0 +1,147 @@
+package com.harvest.oms.benchmark;
+
+import com.harvest.core.enums.oms.OrderStatusEnum;
+import com.harvest.core.utils.JsonUtils;
+import com.harvest.oms.repository.domain.amount.OrderAmount;
+import com.harvest.oms.repository.domain.order.base.OrderTag;
+import com.harvest.oms.repository.domain.order.base.OrderTime;
+import com.harvest.oms.repository.domain.order.simple.OrderSimplePO;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/12 10:30 AM
+ * @Description: Json 编解码基准
+ * <p>
+ * 对比直接调用 ObjectMapper 与 JsonUtils 缓存 reader/writer、字节接口在热点对象上的吞吐
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+    private OrderSimplePO order;
+
+    private LogisticsRule rule;
+
+    private OrderAmount amount;
+
+    private String orderJson;
+
+    private byte[] orderBytes;
+
+    private String ruleJson;
+
+    private String amountJson;
+
+    @Setup
+    public void setup() {
+        order = new OrderSimplePO();
+        order.setOrderId(1680000000000001L);
+        order.setShopId(1001L);
+        order.setOrderNo("HV202304120001");
+        order.setLogisticsId(2001L);
+        order.setChannelId(3001L);
+        order.setDeliveryNo("YT0000000001");
+        order.setWaitDeclare(Boolean.TRUE);
+        order.setOrderStatus(OrderStatusEnum.values()[0]);
+        OrderTime orderTime = new OrderTime();
+        orderTime.setCreatedTime(LocalDateTime.now());
+        orderTime.setPaidTime(LocalDateTime.now());
+        order.setOrderTime(orderTime);
+        List<OrderTag> tags = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            OrderTag tag = new OrderTag();
+            tag.setTagId((long) i);
+            tag.setOrderId(order.getOrderId());
+            tag.setTagValue(i);
+            tag.setProcessed(Boolean.FALSE);
+            tags.add(tag);
+        }
+        order.setOrderTags(tags);
+        amount = new OrderAmount();
+        order.setOrderAmount(amount);
+
+        rule = new LogisticsRule();
+        rule.setId(4001L);
+        rule.setRuleName("默认物流规则");
+        rule.setPriority(1);
+        rule.setLogisticsId(2001L);
+        rule.setChannelId(3001L);
+        rule.setIsDefault(Boolean.TRUE);
+        rule.setStatus(Boolean.TRUE);
+
+        orderJson = JsonUtils.object2Json(order);
+        orderBytes = orderJson.getBytes(StandardCharsets.UTF_8);
+        ruleJson = JsonUtils.object2Json(rule);
+        amountJson = JsonUtils.object2Json(amount);
+    }
+
+    @Benchmark
+    public Object orderReadMapper() throws Exception {
+        return JsonUtils.OBJECT_MAPPER.readValue(orderJson, OrderSimplePO.class);
+    }
+
+    @Benchmark
+    public Object orderReadCached() {
+        return JsonUtils.json2Object(orderJson, OrderSimplePO.class);
+    }
+
+    @Benchmark
+    public Object orderReadBytes() {
+        return JsonUtils.json2Object(orderBytes, OrderSimplePO.class);
+    }
+
+    @Benchmark
+    public Object orderWriteMapper() throws Exception {
+        return JsonUtils.OBJECT_MAPPER.writeValueAsString(order);
+    }
+
+    @Benchmark
+    public Object orderWriteCached() {
+        return JsonUtils.object2Json(order);
+    }
+
+    @Benchmark
+    public Object orderWriteBytes() {
+        return JsonUtils.object2JsonBytes(order);
+    }
+
+    @Benchmark
+    public Object ruleReadMapper() throws Exception {
+        return JsonUtils.OBJECT_MAPPER.readValue(ruleJson, LogisticsRule.class);
+    }
+
+    @Benchmark
+    public Object ruleReadCached() {
+        return JsonUtils.json2Object(ruleJson, LogisticsRule.class);
+    }
+
+    @Benchmark
+    public Object amountReadMapper() throws Exception {
+        return JsonUtils.OBJECT_MAPPER.readValue(amountJson, OrderAmount.class);
+    }
+
+    @Benchmark
+    public Object amountReadCached() {
+        return JsonUtils.json2Object(amountJson, OrderAmount.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JsonCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
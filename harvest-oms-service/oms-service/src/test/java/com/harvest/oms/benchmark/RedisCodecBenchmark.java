@@ -0,0 +1,193 @@
+package com.harvest.oms.benchmark;
+
+import com.harvest.core.service.redis.codec.CodecRedisSerializer;
+import com.harvest.core.service.redis.codec.RedisValueCodec;
+import com.harvest.core.utils.JsonUtils;
+import com.harvest.oms.repository.domain.order.base.OrderTag;
+import com.harvest.oms.repository.domain.order.simple.OrderSimplePO;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRule;
+import com.harvest.wms.repository.domain.warehouse.simple.WarehouseSimplePO;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/14 3:20 PM
+ * @Description: 缓存值编码基准
+ * <p>
+ * 对比旧版 json / 带类型 json 与 Smile + LZ4 在规则列表、仓库列表、订单及触发器值上的编解码吞吐, 体积在初始化时输出
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisCodecBenchmark {
+
+    private final RedisValueCodec codec = RedisValueCodec.defaults();
+
+    private final CodecRedisSerializer codecSerializer = new CodecRedisSerializer(codec);
+
+    private final GenericJackson2JsonRedisSerializer legacySerializer = new GenericJackson2JsonRedisSerializer();
+
+    private List<LogisticsRule> rules;
+
+    private List<WarehouseSimplePO> warehouses;
+
+    private OrderSimplePO order;
+
+    private Long trigger;
+
+    private byte[] rulesJson;
+
+    private byte[] rulesCodec;
+
+    private byte[] warehousesJson;
+
+    private byte[] warehousesCodec;
+
+    private byte[] orderJson;
+
+    private byte[] orderCodec;
+
+    private byte[] orderTyped;
+
+    private byte[] orderTypedCodec;
+
+    @Setup
+    public void setup() {
+        rules = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            LogisticsRule rule = new LogisticsRule();
+            rule.setId(4000L + i);
+            rule.setRuleName("物流规则-" + i);
+            rule.setPriority(i);
+            rule.setLogisticsId(2000L + i % 5);
+            rule.setChannelId(3000L + i % 10);
+            rule.setIsDefault(i == 0);
+            rule.setStatus(Boolean.TRUE);
+            rules.add(rule);
+        }
+        warehouses = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            WarehouseSimplePO warehouse = new WarehouseSimplePO();
+            warehouse.setWarehouseId(5000L + i);
+            warehouse.setWarehouseCode("WH" + i);
+            warehouse.setWarehouse("仓库-" + i);
+            warehouse.setStatus(1);
+            warehouse.setMainType(0);
+            warehouse.setIsDelivery(Boolean.TRUE);
+            warehouses.add(warehouse);
+        }
+        order = new OrderSimplePO();
+        order.setOrderId(1680000000000001L);
+        order.setShopId(1001L);
+        order.setOrderNo("HV202304120001");
+        order.setLogisticsId(2001L);
+        order.setChannelId(3001L);
+        order.setDeliveryNo("YT0000000001");
+        List<OrderTag> tags = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            OrderTag tag = new OrderTag();
+            tag.setTagId((long) i);
+            tag.setOrderId(order.getOrderId());
+            tag.setTagValue(i);
+            tags.add(tag);
+        }
+        order.setOrderTags(tags);
+        trigger = System.currentTimeMillis();
+
+        rulesJson = JsonUtils.object2JsonBytes(rules);
+        rulesCodec = codec.encode(rules);
+        warehousesJson = JsonUtils.object2JsonBytes(warehouses);
+        warehousesCodec = codec.encode(warehouses);
+        orderJson = JsonUtils.object2JsonBytes(order);
+        orderCodec = codec.encode(order);
+        orderTyped = legacySerializer.serialize(order);
+        orderTypedCodec = codecSerializer.serialize(order);
+
+        System.out.printf("%n体积(字节) json / codec: rules %d / %d, warehouses %d / %d, order %d / %d, trigger %d / %d; " +
+                        "redisTemplate order legacy / codec: %d / %d%n",
+                rulesJson.length, rulesCodec.length, warehousesJson.length, warehousesCodec.length,
+                orderJson.length, orderCodec.length, JsonUtils.object2JsonBytes(trigger).length, codec.encode(trigger).length,
+                orderTyped.length, orderTypedCodec.length);
+    }
+
+    @Benchmark
+    public Object rulesEncodeJson() {
+        return JsonUtils.object2JsonBytes(rules);
+    }
+
+    @Benchmark
+    public Object rulesEncodeCodec() {
+        return codec.encode(rules);
+    }
+
+    @Benchmark
+    public Object rulesDecodeJson() {
+        return JsonUtils.json2ObjectList(rulesJson, LogisticsRule.class);
+    }
+
+    @Benchmark
+    public Object rulesDecodeCodec() {
+        return codec.decodeList(rulesCodec, LogisticsRule.class);
+    }
+
+    @Benchmark
+    public Object warehousesDecodeJson() {
+        return JsonUtils.json2ObjectList(warehousesJson, WarehouseSimplePO.class);
+    }
+
+    @Benchmark
+    public Object warehousesDecodeCodec() {
+        return codec.decodeList(warehousesCodec, WarehouseSimplePO.class);
+    }
+
+    @Benchmark
+    public Object orderEncodeJson() {
+        return JsonUtils.object2JsonBytes(order);
+    }
+
+    @Benchmark
+    public Object orderEncodeCodec() {
+        return codec.encode(order);
+    }
+
+    @Benchmark
+    public Object orderDecodeJson() {
+        return JsonUtils.json2Object(orderJson, OrderSimplePO.class);
+    }
+
+    @Benchmark
+    public Object orderDecodeCodec() {
+        return codec.decode(orderCodec, OrderSimplePO.class);
+    }
+
+    @Benchmark
+    public Object orderTemplateDecodeLegacy() {
+        return legacySerializer.deserialize(orderTyped);
+    }
+
+    @Benchmark
+    public Object orderTemplateDecodeCodec() {
+        return codecSerializer.deserialize(orderTypedCodec);
+    }
+
+    @Benchmark
+    public Object triggerEncodeCodec() {
+        return codec.encode(trigger);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RedisCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
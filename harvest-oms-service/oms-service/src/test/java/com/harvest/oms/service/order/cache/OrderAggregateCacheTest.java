@@ -0,0 +1,148 @@
+package com.harvest.oms.service.order.cache;
+
+import com.harvest.oms.client.order.OrderReadClient;
+import com.harvest.oms.domain.order.OrderInfoDO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/24 3:00 PM
+ * @Description: 富订单聚合缓存的合并加载及失效与回填竞争
+ **/
+public class OrderAggregateCacheTest {
+
+    private static final Long COMPANY_ID = 1L;
+
+    private static final Long ORDER_ID = 10L;
+
+    private final AtomicInteger queries = new AtomicInteger();
+
+    /**
+     * 首次查询进入后放行, 之后的查询不阻塞
+     */
+    private final CountDownLatch entered = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private OrderAggregateCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        OrderReadClient orderReadClient = mock(OrderReadClient.class);
+        when(orderReadClient.listOrderRich(anyLong(), any())).thenAnswer(invocation -> {
+            int version = queries.incrementAndGet();
+            if (version == 1) {
+                entered.countDown();
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            }
+            List<Long> orderIds = invocation.getArgument(1);
+            return Collections.singletonList(this.order(orderIds.get(0), version));
+        });
+
+        cache = new OrderAggregateCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlMillis", 60000L);
+        ReflectionTestUtils.setField(cache, "maximumSize", 100L);
+        ReflectionTestUtils.setField(cache, "orderReadClient", orderReadClient);
+        cache.init();
+    }
+
+    @Test
+    public void concurrentLoadsShareOneQuery() throws Exception {
+        AtomicReference<OrderInfoDO> first = new AtomicReference<>();
+        AtomicReference<OrderInfoDO> second = new AtomicReference<>();
+        Thread owner = this.start(() -> first.set(cache.get(COMPANY_ID, ORDER_ID)));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        Thread waiter = this.start(() -> second.set(cache.get(COMPANY_ID, ORDER_ID)));
+        this.awaitWaiting(waiter);
+
+        release.countDown();
+        owner.join(5000);
+        waiter.join(5000);
+
+        assertEquals(1, queries.get());
+        assertEquals(ORDER_ID, first.get().getOrderId());
+        assertEquals(ORDER_ID, second.get().getOrderId());
+        assertNotSame(first.get(), second.get());
+        assertEquals(1, cache.get(COMPANY_ID, ORDER_ID).getVersion());
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    public void invalidationDuringLoadSkipsFill() throws Exception {
+        Thread owner = this.start(() -> cache.get(COMPANY_ID, ORDER_ID));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        cache.invalidate(COMPANY_ID, Collections.singletonList(ORDER_ID));
+        release.countDown();
+        owner.join(5000);
+
+        assertEquals(2, cache.get(COMPANY_ID, ORDER_ID).getVersion());
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void invalidatingOtherOrderKeepsFill() throws Exception {
+        Thread owner = this.start(() -> cache.get(COMPANY_ID, ORDER_ID));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        cache.invalidate(COMPANY_ID, Collections.singletonList(ORDER_ID + 1));
+        release.countDown();
+        owner.join(5000);
+
+        assertEquals(1, cache.get(COMPANY_ID, ORDER_ID).getVersion());
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    public void loadAfterInvalidationDoesNotJoinStaleLoad() throws Exception {
+        Thread owner = this.start(() -> cache.get(COMPANY_ID, ORDER_ID));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        cache.invalidate(COMPANY_ID, Collections.singletonList(ORDER_ID));
+
+        /*失效后发起的加载自行查询, 不等待失效前的加载*/
+        assertEquals(2, cache.get(COMPANY_ID, ORDER_ID).getVersion());
+        release.countDown();
+        owner.join(5000);
+
+        assertEquals(2, cache.get(COMPANY_ID, ORDER_ID).getVersion());
+        assertEquals(2, queries.get());
+    }
+
+    private Thread start(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != Thread.State.WAITING) {
+            assertTrue(System.currentTimeMillis() < deadline, "线程未进入等待");
+            Thread.sleep(5);
+        }
+    }
+
+    private OrderInfoDO order(Long orderId, int version) {
+        OrderInfoDO order = new OrderInfoDO();
+        order.setOrderId(orderId);
+        order.setVersion(version);
+        return order;
+    }
+
+}
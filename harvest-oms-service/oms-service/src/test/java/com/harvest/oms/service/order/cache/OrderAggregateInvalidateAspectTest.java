@@ -0,0 +1,45 @@
+package com.harvest.oms.service.order.cache;
+
+import com.harvest.oms.repository.client.order.OrderWriteRepositoryClient;
+import com.harvest.oms.repository.domain.order.simple.OrderItemSimplePO;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/24 3:30 PM
+ * @Description: 订单写入失效富订单聚合缓存
+ **/
+public class OrderAggregateInvalidateAspectTest {
+
+    @Test
+    public void invalidatesOrdersOfInsertedItems() throws Exception {
+        OrderAggregateCache cache = mock(OrderAggregateCache.class);
+        OrderAggregateInvalidateAspect aspect = new OrderAggregateInvalidateAspect();
+        ReflectionTestUtils.setField(aspect, "orderAggregateCache", cache);
+
+        MethodSignature signature = mock(MethodSignature.class);
+        when(signature.getMethod()).thenReturn(OrderWriteRepositoryClient.class.getMethod("insertItems", Long.class, Collection.class));
+        JoinPoint joinPoint = mock(JoinPoint.class);
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(joinPoint.getArgs()).thenReturn(new Object[]{1L, Arrays.asList(this.item(10L), this.item(10L), this.item(11L))});
+
+        aspect.invalidate(joinPoint);
+
+        verify(cache).invalidate(1L, Arrays.asList(10L, 10L, 11L));
+    }
+
+    private OrderItemSimplePO item(Long orderId) {
+        OrderItemSimplePO item = new OrderItemSimplePO();
+        item.setOrderId(orderId);
+        return item;
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.harvest.oms.web.controller.order;
 
 import com.harvest.core.batch.BatchExecuteResult;
+import com.harvest.core.batch.CompactBatchExecuteResult;
 import com.harvest.core.constants.GlobalMacroDefinition;
 import com.harvest.core.context.ContextHolder;
 import com.harvest.core.domain.ResponseResult;
@@ -40,6 +41,14 @@ public class OrderAuditController implements GlobalMacroDefinition {
         return ResponseResult.success(result);
     }
 
+    @ApiOperation("订单审核校验-紧凑结果")
+    @PostMapping(value = "/check/compact")
+    public ResponseResult<CompactBatchExecuteResult> checkCompact(@RequestBody List<Long> orderIds) {
+        Long companyId = ContextHolder.getContext().getCompanyId();
+        CompactBatchExecuteResult result = orderAuditClient.checkCompact(companyId, orderIds);
+        return ResponseResult.success(result);
+    }
+
     @ApiOperation("订单审核")
     @PostMapping(value = "/batch/exec")
     public ResponseResult<BatchExecuteResult<String>> audit(@RequestBody List<Long> orderIds) {
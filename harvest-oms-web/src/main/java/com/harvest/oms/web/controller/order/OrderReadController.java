@@ -7,8 +7,10 @@ import com.harvest.core.domain.ResponseResult;
 import com.harvest.core.path.HarvestOmsPath;
 import com.harvest.oms.client.order.OrderReadClient;
 import com.harvest.oms.domain.order.OrderInfoDO;
+import com.harvest.oms.repository.query.order.OrderSectionQuery;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -16,6 +18,9 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.net.ContentHandler;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 
 /**
@@ -33,9 +38,15 @@ public class OrderReadController implements GlobalMacroDefinition {
 
     @ApiOperation("订单查询")
     @PostMapping(value = "/get")
-    public ResponseResult<OrderInfoDO> getOrderInfo(@RequestParam(OMS.ORDER_ID) Long orderId) {
+    public ResponseResult<OrderInfoDO> getOrderInfo(@RequestParam(OMS.ORDER_ID) Long orderId,
+                                                    @RequestParam(value = OMS.SECTIONS, required = false) List<String> sections) {
         Context context = ContextHolder.getContext();
-        return ResponseResult.success(orderReadClient.getOrderRich(context.getCompanyId(), orderId));
+        if (CollectionUtils.isEmpty(sections)) {
+            return ResponseResult.success(orderReadClient.getOrderRich(context.getCompanyId(), orderId));
+        }
+        Collection<OrderInfoDO> orders = orderReadClient.listOrderSection(context.getCompanyId(),
+                OrderSectionQuery.build(Collections.singletonList(orderId), sections));
+        return ResponseResult.success(orders.stream().findFirst().orElse(null));
     }
 
 }
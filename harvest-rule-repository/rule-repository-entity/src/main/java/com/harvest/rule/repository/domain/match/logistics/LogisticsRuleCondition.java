@@ -5,6 +5,8 @@ import io.swagger.annotations.ApiModelProperty;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
+import java.math.BigDecimal;
+
 /**
  * @Author: Alodi
  * @Date: 2023/2/21 7:38 PM
@@ -18,4 +20,28 @@ public class LogisticsRuleCondition extends RuleCondition {
 
     @ApiModelProperty("国家编码")
     private String countryCode;
+
+    @ApiModelProperty("仓库ID")
+    private Long warehouseId;
+
+    @ApiModelProperty("订单金额")
+    private BigDecimal orderAmount;
+
+    @ApiModelProperty("商品长度")
+    private BigDecimal length;
+
+    @ApiModelProperty("商品宽度")
+    private BigDecimal width;
+
+    @ApiModelProperty("商品高度")
+    private BigDecimal height;
+
+    @ApiModelProperty("包裹重量")
+    private BigDecimal weight;
+
+    @ApiModelProperty("包裹体积")
+    private BigDecimal volume;
+
+    @ApiModelProperty("包裹长宽高三边和")
+    private BigDecimal size;
 }
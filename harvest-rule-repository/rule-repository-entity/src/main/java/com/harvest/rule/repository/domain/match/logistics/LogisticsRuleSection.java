@@ -1,16 +1,23 @@
 package com.harvest.rule.repository.domain.match.logistics;
 
+import com.harvest.core.rule.RuleSection;
+import com.harvest.core.rule.RuleSectionHolder;
 import com.harvest.rule.repository.domain.match.logistics.section.*;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.Data;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
 /**
  * @Author: Alodi
  * @Date: 2023/2/22 11:23 AM
  * @Description: TODO
  **/
 @Data
-public class LogisticsRuleSection {
+public class LogisticsRuleSection implements RuleSectionHolder {
 
     @ApiModelProperty("国家规则")
     private LogisticsCountryRuleSection countryRuleSection;
@@ -26,4 +33,21 @@ public class LogisticsRuleSection {
 
     @ApiModelProperty("仓库信息规则")
     private LogisticsWarehouseRuleSection warehouseRuleSection;
+
+    @Override
+    public Collection<RuleSection> sections() {
+        List<RuleSection> sections = new ArrayList<>(5);
+        this.addIfPresent(sections, countryRuleSection);
+        this.addIfPresent(sections, goodsSizeRuleSection);
+        this.addIfPresent(sections, orderAmountRuleSection);
+        this.addIfPresent(sections, packageRuleSection);
+        this.addIfPresent(sections, warehouseRuleSection);
+        return sections;
+    }
+
+    private void addIfPresent(List<RuleSection> sections, RuleSection section) {
+        if (Objects.nonNull(section)) {
+            sections.add(section);
+        }
+    }
 }
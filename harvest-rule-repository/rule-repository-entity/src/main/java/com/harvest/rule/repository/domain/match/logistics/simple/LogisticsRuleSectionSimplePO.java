@@ -0,0 +1,27 @@
+package com.harvest.rule.repository.domain.match.logistics.simple;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/4 10:14 AM
+ * @Description: 物流匹配细分规则简要
+ **/
+@Data
+public class LogisticsRuleSectionSimplePO implements Serializable {
+
+    private static final long serialVersionUID = -2281745319036481297L;
+
+    @ApiModelProperty("细分规则ID")
+    private Long sectionId;
+
+    @ApiModelProperty("细分规则类型")
+    private Integer sectionType;
+
+    @ApiModelProperty("细分规则内容")
+    private String ruleContent;
+
+}
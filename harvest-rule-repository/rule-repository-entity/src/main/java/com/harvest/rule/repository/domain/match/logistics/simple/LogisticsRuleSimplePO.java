@@ -0,0 +1,46 @@
+package com.harvest.rule.repository.domain.match.logistics.simple;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/4 10:12 AM
+ * @Description: 物流匹配规则简要 ｜ 一次查询, 规则与细分规则联表查出（数据库信息）
+ **/
+@Data
+public class LogisticsRuleSimplePO implements Serializable {
+
+    private static final long serialVersionUID = 3517263019564825316L;
+
+    @ApiModelProperty("规则ID")
+    private Long id;
+
+    @ApiModelProperty("公司ID")
+    private Long companyId;
+
+    @ApiModelProperty("规则名称")
+    private String ruleName;
+
+    @ApiModelProperty("优先级")
+    private Integer priority;
+
+    @ApiModelProperty("物流商ID")
+    private Long logisticsId;
+
+    @ApiModelProperty("渠道ID")
+    private Long channelId;
+
+    @ApiModelProperty("是否默认规则")
+    private Boolean isDefault;
+
+    @ApiModelProperty("状态")
+    private Boolean status;
+
+    @ApiModelProperty("细分规则")
+    private List<LogisticsRuleSectionSimplePO> sections;
+
+}
@@ -4,11 +4,13 @@ import com.harvest.core.enums.IEnum;
 import com.harvest.core.exception.ExceptionCodes;
 import com.harvest.core.exception.StandardRuntimeException;
 import com.harvest.core.rule.RuleSection;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleSection;
 import com.harvest.rule.repository.domain.match.logistics.section.LogisticsWarehouseRuleSection;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 import java.util.Arrays;
+import java.util.function.BiConsumer;
 
 /**
  * @Author: Alodi
@@ -22,7 +24,8 @@ public enum LogisticsRuleMatchEnum implements IEnum<Integer> {
     /**
      * 物流匹配细分规则
      */
-    WAREHOUSE_RULE(8, "仓库规则", LogisticsWarehouseRuleSection.class),
+    WAREHOUSE_RULE(8, "仓库规则", LogisticsWarehouseRuleSection.class,
+            (section, content) -> section.setWarehouseRuleSection((LogisticsWarehouseRuleSection) content)),
 
     ;
 
@@ -32,6 +35,11 @@ public enum LogisticsRuleMatchEnum implements IEnum<Integer> {
 
     private final Class<? extends RuleSection> clazz;
 
+    /**
+     * 将细分规则内容设置到物流规则对应属性
+     */
+    private final BiConsumer<LogisticsRuleSection, RuleSection> binder;
+
     /**
      * 获取枚举唯一值
      *
@@ -2,26 +2,23 @@ package com.harvest.rule.repository.client;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.harvest.core.annotation.feign.HarvestService;
-import com.harvest.core.exception.ExceptionCodes;
-import com.harvest.core.exception.StandardRuntimeException;
 import com.harvest.core.rule.RuleSection;
 import com.harvest.core.utils.JsonUtils;
 import com.harvest.rule.repository.constants.HarvestRuleRepositoryApplications;
 import com.harvest.rule.repository.domain.match.logistics.LogisticsRule;
 import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleSection;
+import com.harvest.rule.repository.domain.match.logistics.simple.LogisticsRuleSectionSimplePO;
+import com.harvest.rule.repository.domain.match.logistics.simple.LogisticsRuleSimplePO;
 import com.harvest.rule.repository.entity.FarmlandRuleLogisticsMatchEntity;
-import com.harvest.rule.repository.entity.FarmlandRuleLogisticsMatchSectionEntity;
 import com.harvest.rule.repository.enums.logistics.LogisticsRuleMatchEnum;
 import com.harvest.rule.repository.mapper.FarmlandRuleLogisticsMatchMapper;
-import com.harvest.rule.repository.mapper.FarmlandRuleLogisticsMatchSectionMapper;
+import com.harvest.rule.repository.mapper.logistics.read.LogisticsRuleReadMapper;
 import org.apache.commons.collections4.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.lang.reflect.Field;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * @Author: Alodi
@@ -37,27 +34,16 @@ public class LogisticsRuleRepositoryClientImpl implements LogisticsRuleRepositor
     private FarmlandRuleLogisticsMatchMapper farmlandRuleLogisticsMatchMapper;
 
     @Autowired
-    private FarmlandRuleLogisticsMatchSectionMapper farmlandRuleLogisticsMatchSectionMapper;
+    private LogisticsRuleReadMapper logisticsRuleReadMapper;
 
     @Override
     public Collection<LogisticsRule> listLogisticsRule(Long companyId) {
-        List<FarmlandRuleLogisticsMatchEntity> ruleMatchs = farmlandRuleLogisticsMatchMapper.selectList(
-                new QueryWrapper<FarmlandRuleLogisticsMatchEntity>().lambda()
-                        .eq(FarmlandRuleLogisticsMatchEntity::getCompanyId, companyId)
-                        .eq(FarmlandRuleLogisticsMatchEntity::getIsDefault, false)
-        );
+        List<LogisticsRuleSimplePO> ruleMatchs = logisticsRuleReadMapper.listLogisticsRuleWithSections(companyId);
         if (CollectionUtils.isEmpty(ruleMatchs)) {
             return Collections.emptyList();
         }
-        List<Long> ruleIds = ruleMatchs.stream().map(FarmlandRuleLogisticsMatchEntity::getId).distinct().collect(Collectors.toList());
-        List<FarmlandRuleLogisticsMatchSectionEntity> ruleMatchSections = farmlandRuleLogisticsMatchSectionMapper.selectList(
-                new QueryWrapper<FarmlandRuleLogisticsMatchSectionEntity>().lambda().in(FarmlandRuleLogisticsMatchSectionEntity::getRuleId, ruleIds)
-        );
-
-        Map<Long, List<FarmlandRuleLogisticsMatchSectionEntity>> sectionMap = ruleMatchSections.stream()
-                .collect(Collectors.groupingBy(FarmlandRuleLogisticsMatchSectionEntity::getRuleId));
-
-        return ruleMatchs.stream().map(ruleMatch -> {
+        List<LogisticsRule> logisticsRules = new ArrayList<>(ruleMatchs.size());
+        for (LogisticsRuleSimplePO ruleMatch : ruleMatchs) {
             LogisticsRule logisticsRule = new LogisticsRule();
             logisticsRule.setRuleName(ruleMatch.getRuleName());
             logisticsRule.setPriority(ruleMatch.getPriority());
@@ -67,33 +53,31 @@ public class LogisticsRuleRepositoryClientImpl implements LogisticsRuleRepositor
             logisticsRule.setStatus(ruleMatch.getStatus());
             logisticsRule.setId(ruleMatch.getId());
             logisticsRule.setCompanyId(companyId);
-            List<FarmlandRuleLogisticsMatchSectionEntity> ruleSections = sectionMap.get(ruleMatch.getId());
-            if (CollectionUtils.isEmpty(ruleSections)) {
-                return logisticsRule;
+            logisticsRules.add(logisticsRule);
+            // LEFT JOIN 无细分规则时 collection 中为空对象
+            List<LogisticsRuleSectionSimplePO> ruleSections = ruleMatch.getSections();
+            if (CollectionUtils.isEmpty(ruleSections) || ruleSections.stream().allMatch(section -> Objects.isNull(section.getSectionType()))) {
+                continue;
             }
             LogisticsRuleSection logisticsRuleSection = new LogisticsRuleSection();
             logisticsRule.setRuleSection(logisticsRuleSection);
-
-            ruleSections.forEach(ruleSection -> {
-                Integer sectionType = ruleSection.getSectionType();
-                Class<? extends RuleSection> clazz = LogisticsRuleMatchEnum.getEnumByType(sectionType).getClazz();
-                RuleSection content = JsonUtils.json2Object(ruleSection.getRuleContent(), clazz);
-                assert content != null;
-                // 获取 物流规则详情
-                Field field = Arrays.stream(logisticsRuleSection.getClass().getDeclaredFields())
-                        .filter(section -> RuleSection.class.isAssignableFrom(section.getType()) && clazz.equals(section.getType()))
-                        .findFirst()
-                        .orElseThrow(() -> new StandardRuntimeException(ExceptionCodes.RULE_MODULE_ERROR, "未找到物流规则对应的属性字段!"));
-                field.setAccessible(true);
-                try {
-                    field.set(logisticsRuleSection, content);
-                } catch (IllegalAccessException e) {
-                    LOGGER.error("设置物流规则内容发生异常", e);
+            for (LogisticsRuleSectionSimplePO ruleSection : ruleSections) {
+                LogisticsRuleMatchEnum sectionEnum = LogisticsRuleMatchEnum.getEnumByType(ruleSection.getSectionType());
+                // 未识别的细分规则类型跳过, 不影响同公司其他规则匹配
+                if (Objects.isNull(sectionEnum)) {
+                    LOGGER.warn("未知的物流细分规则类型, 已跳过, ruleId:{}, sectionId:{}, sectionType:{}", ruleMatch.getId(), ruleSection.getSectionId(), ruleSection.getSectionType());
+                    continue;
                 }
-
-            });
-            return logisticsRule;
-        }).collect(Collectors.toList());
+                RuleSection content = JsonUtils.json2Object(ruleSection.getRuleContent(), sectionEnum.getClazz());
+                if (Objects.isNull(content)) {
+                    LOGGER.error("物流规则内容解析失败, ruleId:{}, sectionId:{}", ruleMatch.getId(), ruleSection.getSectionId());
+                    continue;
+                }
+                // 设置 物流规则详情
+                sectionEnum.getBinder().accept(logisticsRuleSection, content);
+            }
+        }
+        return logisticsRules;
     }
 
     @Override
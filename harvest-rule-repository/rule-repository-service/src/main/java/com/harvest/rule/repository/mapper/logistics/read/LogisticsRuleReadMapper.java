@@ -0,0 +1,26 @@
+package com.harvest.rule.repository.mapper.logistics.read;
+
+import com.harvest.core.constants.GlobalMacroDefinition;
+import com.harvest.rule.repository.domain.match.logistics.simple.LogisticsRuleSimplePO;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/4 10:20 AM
+ * @Description: 物流匹配规则读取
+ **/
+@Mapper
+public interface LogisticsRuleReadMapper extends GlobalMacroDefinition {
+
+    /**
+     * 联表查询公司全部非默认物流规则及其细分规则, 按优先级排序
+     *
+     * @param companyId
+     * @return
+     */
+    List<LogisticsRuleSimplePO> listLogisticsRuleWithSections(@Param(COMPANY_ID) Long companyId);
+
+}
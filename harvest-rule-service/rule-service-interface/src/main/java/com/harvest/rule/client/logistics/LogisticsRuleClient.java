@@ -12,6 +12,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @Author: Alodi
@@ -25,6 +27,14 @@ public interface LogisticsRuleClient extends GlobalMacroDefinition {
     @PostMapping("/listLogisticsRule")
     Collection<LogisticsRule> listLogisticsRule(@RequestParam(COMPANY_ID) Long companyId);
 
+    @ApiOperation(value = "刷新物流匹配规则缓存", notes = "规则变更后调用, 返回新版本号并广播各节点失效")
+    @PostMapping("/refreshLogisticsRule")
+    long refreshLogisticsRule(@RequestParam(COMPANY_ID) Long companyId);
+
+    @ApiOperation("物流匹配规则缓存统计")
+    @PostMapping("/logisticsRuleCacheStats")
+    Map<String, Object> logisticsRuleCacheStats();
+
     @ApiOperation("获取默认匹配规则")
     @PostMapping("/getDefaultRule")
     LogisticsRuleMatch getDefaultRule(@RequestParam(COMPANY_ID) Long companyId);
@@ -33,5 +43,8 @@ public interface LogisticsRuleClient extends GlobalMacroDefinition {
     @PostMapping("/matchLogistics")
     LogisticsRuleMatch matchLogistics(@RequestParam(COMPANY_ID) Long companyId, @RequestBody LogisticsRuleCondition condition);
 
+    @ApiOperation(value = "批量匹配物流", notes = "规则只加载一次, 结果按入参顺序返回, 无匹配的位置为空")
+    @PostMapping("/matchLogisticsBatch")
+    List<LogisticsRuleMatch> matchLogisticsBatch(@RequestParam(COMPANY_ID) Long companyId, @RequestBody Collection<LogisticsRuleCondition> conditions);
 
 }
@@ -15,7 +15,7 @@ import org.springframework.web.bind.annotation.RequestParam;
  * @Date: 2023/2/22 9:29 AM
  * @Description: TODO
  **/
-@HarvestClient(name = HarvestRuleApplications.SERVICE_NAME, path = HarvestRuleApplications.LogisticsPath.LOGISTICS_RULE)
+@HarvestClient(name = HarvestRuleApplications.SERVICE_NAME, path = HarvestRuleApplications.WarehousePath.WAREHOUSE_RULE)
 public interface WarehouseRuleClient extends GlobalMacroDefinition {
 
     @ApiOperation("订单匹配仓库")
@@ -0,0 +1,193 @@
+package com.harvest.rule.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.harvest.core.service.redis.CacheService;
+import com.harvest.rule.redis.logistics.LogisticsRuleKey;
+import com.harvest.rule.repository.client.LogisticsRuleRepositoryClient;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRule;
+import com.harvest.rule.service.logistics.LogisticsMatchProcessor;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/4 2:10 PM
+ * @Description: 物流规则两级缓存
+ * <p>
+ * 一级: 进程内 Caffeine, 公司 -> 规则快照, 命中时不访问 Redis 也不反序列化
+ * 二级: Redis 规则快照(带版本号), 一级未命中且版本一致时使用, 否则回源数据库
+ * 规则变更时自增版本号并广播失效消息, 各节点收到后丢弃旧版本快照及执行计划
+ **/
+@Component
+public class LogisticsRuleCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogisticsRuleCache.class);
+
+    private static final String SPLIT = ":";
+
+    private final Cache<Long, LogisticsRuleSnapshot> snapshots = Caffeine.newBuilder()
+            .initialCapacity(64)
+            .maximumSize(10_000)
+            // 与二级缓存一致: 规则表直接变更(未经 refresh)或广播丢失时, 最多 1 分钟后重新加载
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+
+    private final LongAdder redisHit = new LongAdder();
+
+    private final LongAdder redisMiss = new LongAdder();
+
+    private final LongAdder rebuildCount = new LongAdder();
+
+    private final LongAdder rebuildMillis = new LongAdder();
+
+    private final AtomicLong rebuildMaxMillis = new AtomicLong();
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private LogisticsRuleRepositoryClient logisticsRuleRepositoryClient;
+
+    @Lazy
+    @Autowired
+    private LogisticsMatchProcessor logisticsMatchProcessor;
+
+    /**
+     * 获取公司物流规则, 同一版本返回同一集合实例
+     *
+     * @param companyId
+     * @return 按优先级排序的规则, 只读
+     */
+    public Collection<LogisticsRule> get(Long companyId) {
+        return snapshots.get(companyId, this::load).getRules();
+    }
+
+    /**
+     * 规则集指纹, 供执行计划判断是否可复用, 不计入一级缓存命中统计
+     *
+     * @param companyId
+     * @param rules     {@link #get(Long)} 返回的规则集
+     * @return 规则集为当前快照实例时返回快照指纹, 否则返回 null
+     */
+    public Long fingerprint(Long companyId, Collection<LogisticsRule> rules) {
+        LogisticsRuleSnapshot snapshot = snapshots.asMap().get(companyId);
+        if (Objects.isNull(snapshot) || snapshot.getRules() != rules) {
+            return null;
+        }
+        return snapshot.getFingerprint();
+    }
+
+    /**
+     * 规则变更: 自增版本号、清除二级缓存并广播失效
+     *
+     * @param companyId
+     * @return 新版本号
+     */
+    public long refresh(Long companyId) {
+        long version = cacheService.incr(LogisticsRuleKey.LOGISTICS_RULE_VERSION_KEY, companyId.toString());
+        cacheService.delete(LogisticsRuleKey.LOGISTICS_RULE_KEY, companyId.toString());
+        this.invalidate(companyId, version);
+        cacheService.publish(LogisticsRuleKey.LOGISTICS_RULE_INVALIDATE_CHANNEL, companyId + SPLIT + version);
+        return version;
+    }
+
+    /**
+     * 处理失效广播, 消息体: companyId:version
+     *
+     * @param message
+     */
+    public void onInvalidate(String message) {
+        String[] parts = StringUtils.split(message, SPLIT);
+        if (Objects.isNull(parts) || parts.length != 2) {
+            LOGGER.warn("LogisticsRuleCache#失效消息格式错误, message:{}", message);
+            return;
+        }
+        try {
+            this.invalidate(Long.valueOf(parts[0]), Long.parseLong(parts[1]));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("LogisticsRuleCache#失效消息格式错误, message:{}", message);
+        }
+    }
+
+    /**
+     * 丢弃早于该版本的本地快照
+     *
+     * @param companyId
+     * @param version
+     */
+    private void invalidate(Long companyId, long version) {
+        LogisticsRuleSnapshot snapshot = snapshots.getIfPresent(companyId);
+        if (Objects.nonNull(snapshot) && snapshot.getVersion() >= version) {
+            return;
+        }
+        snapshots.invalidate(companyId);
+        logisticsMatchProcessor.evictPlan(companyId);
+    }
+
+    /**
+     * 一级缓存未命中: 版本一致时使用二级缓存, 否则一次查询回源数据库
+     *
+     * @param companyId
+     * @return
+     */
+    private LogisticsRuleSnapshot load(Long companyId) {
+        String key = companyId.toString();
+        String currentVersion = cacheService.get(LogisticsRuleKey.LOGISTICS_RULE_VERSION_KEY, key);
+        long version = StringUtils.isNumeric(currentVersion) ? Long.parseLong(currentVersion) : 0L;
+
+        LogisticsRuleSnapshot cached = cacheService.get(LogisticsRuleKey.LOGISTICS_RULE_KEY, key, LogisticsRuleSnapshot.class);
+        if (Objects.nonNull(cached) && cached.getVersion() == version && Objects.nonNull(cached.getRules())) {
+            redisHit.increment();
+            return LogisticsRuleSnapshot.of(version, Collections.unmodifiableList(new ArrayList<>(cached.getRules())));
+        }
+        redisMiss.increment();
+
+        long start = System.currentTimeMillis();
+        Collection<LogisticsRule> rules = logisticsRuleRepositoryClient.listLogisticsRule(companyId);
+        List<LogisticsRule> ordered = CollectionUtils.isEmpty(rules) ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(rules));
+        LogisticsRuleSnapshot snapshot = LogisticsRuleSnapshot.of(version, ordered);
+        cacheService.set(LogisticsRuleKey.LOGISTICS_RULE_KEY, key, snapshot);
+
+        long cost = System.currentTimeMillis() - start;
+        rebuildCount.increment();
+        rebuildMillis.add(cost);
+        rebuildMaxMillis.accumulateAndGet(cost, Math::max);
+        LOGGER.info("LogisticsRuleCache#回源重建规则快照, companyId:{}, version:{}, 规则数:{}, 耗时:{}ms", companyId, version, ordered.size(), cost);
+        return snapshot;
+    }
+
+    /**
+     * 缓存统计
+     *
+     * @return 指标名 -> 值
+     */
+    public Map<String, Object> stats() {
+        CacheStats local = snapshots.stats();
+        long rebuilds = rebuildCount.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("localSize", snapshots.estimatedSize());
+        stats.put("localHit", local.hitCount());
+        stats.put("localMiss", local.missCount());
+        stats.put("localHitRate", local.hitRate());
+        stats.put("redisHit", redisHit.sum());
+        stats.put("redisMiss", redisMiss.sum());
+        stats.put("rebuildCount", rebuilds);
+        stats.put("rebuildAvgMillis", rebuilds == 0 ? 0 : rebuildMillis.sum() / rebuilds);
+        stats.put("rebuildMaxMillis", rebuildMaxMillis.get());
+        return stats;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.harvest.rule.cache;
+
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRule;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/4 2:05 PM
+ * @Description: 公司物流规则快照, 同一版本内规则集合实例不变, 可直接复用已编译的执行计划
+ **/
+@Data
+public class LogisticsRuleSnapshot implements Serializable {
+
+    private static final long serialVersionUID = -6126512287093405521L;
+
+    /**
+     * 规则版本号
+     */
+    private long version;
+
+    /**
+     * 按优先级排序的规则, 只读
+     */
+    private Collection<LogisticsRule> rules;
+
+    /**
+     * 规则集指纹: 高 32 位版本号, 低 32 位规则内容哈希, 构建快照时计算一次, 不写入二级缓存
+     * 规则表未经 refresh 直接变更时版本号不变, 由内容哈希区分
+     */
+    @JsonIgnore
+    private long fingerprint;
+
+    public static LogisticsRuleSnapshot of(long version, Collection<LogisticsRule> rules) {
+        LogisticsRuleSnapshot snapshot = new LogisticsRuleSnapshot();
+        snapshot.setVersion(version);
+        snapshot.setRules(rules);
+        snapshot.setFingerprint((version << 32) | (Objects.hashCode(rules) & 0xFFFFFFFFL));
+        return snapshot;
+    }
+
+}
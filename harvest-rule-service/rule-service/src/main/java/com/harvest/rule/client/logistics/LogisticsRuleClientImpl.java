@@ -2,11 +2,9 @@ package com.harvest.rule.client.logistics;
 
 import com.harvest.core.annotation.feign.HarvestService;
 import com.harvest.core.context.SpringHelper;
-import com.harvest.core.service.redis.CacheService;
-import com.harvest.core.utils.JsonUtils;
 import com.harvest.rule.client.constants.HarvestRuleApplications;
 import com.harvest.rule.domain.logistics.LogisticsRuleMatch;
-import com.harvest.rule.redis.logistics.LogisticsRuleKey;
+import com.harvest.rule.cache.LogisticsRuleCache;
 import com.harvest.rule.repository.client.LogisticsRuleRepositoryClient;
 import com.harvest.rule.repository.domain.match.logistics.LogisticsRule;
 import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleCondition;
@@ -18,6 +16,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * @Author: Alodi
@@ -32,21 +33,21 @@ public class LogisticsRuleClientImpl implements LogisticsRuleClient {
     @Autowired
     private LogisticsRuleRepositoryClient logisticsRuleRepositoryClient;
     @Autowired
-    private CacheService cacheService;
+    private LogisticsRuleCache logisticsRuleCache;
 
     @Override
     public Collection<LogisticsRule> listLogisticsRule(Long companyId) {
-        Collection<LogisticsRule> cache = cacheService.getList(LogisticsRuleKey.LOGISTICS_RULE_KEY, companyId.toString(), LogisticsRule.class);
-        if (CollectionUtils.isNotEmpty(cache)) {
-            return cache;
-        }
+        return logisticsRuleCache.get(companyId);
+    }
 
-        Collection<LogisticsRule> logisticsRules = logisticsRuleRepositoryClient.listLogisticsRule(companyId);
-        if (CollectionUtils.isEmpty(logisticsRules)) {
-            return Collections.emptyList();
-        }
-        cacheService.set(LogisticsRuleKey.LOGISTICS_RULE_KEY, companyId.toString(), JsonUtils.object2Json(cache));
-        return logisticsRules;
+    @Override
+    public long refreshLogisticsRule(Long companyId) {
+        return logisticsRuleCache.refresh(companyId);
+    }
+
+    @Override
+    public Map<String, Object> logisticsRuleCacheStats() {
+        return logisticsRuleCache.stats();
     }
 
     @Override
@@ -65,4 +66,16 @@ public class LogisticsRuleClientImpl implements LogisticsRuleClient {
         return SpringHelper.getBean(LogisticsMatchProcessor.class).andMatch(companyId, condition);
     }
 
+    /**
+     * 结果与入参按下标对应, 相同的条件共用一次匹配结果
+     */
+    @Override
+    public List<LogisticsRuleMatch> matchLogisticsBatch(Long companyId, Collection<LogisticsRuleCondition> conditions) {
+        if (CollectionUtils.isEmpty(conditions)) {
+            return Collections.emptyList();
+        }
+        Map<LogisticsRuleCondition, LogisticsRuleMatch> matches = SpringHelper.getBean(LogisticsMatchProcessor.class).andMatchBatch(companyId, conditions);
+        return conditions.stream().map(matches::get).collect(Collectors.toList());
+    }
+
 }
@@ -0,0 +1,32 @@
+package com.harvest.rule.config;
+
+import com.harvest.rule.cache.LogisticsRuleCache;
+import com.harvest.rule.redis.logistics.LogisticsRuleKey;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/4 2:40 PM
+ * @Description: 规则缓存失效广播订阅
+ **/
+@Configuration
+public class RuleCacheConfig {
+
+    @Bean
+    public RedisMessageListenerContainer ruleCacheListenerContainer(RedisConnectionFactory redisConnectionFactory, LogisticsRuleCache logisticsRuleCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> logisticsRuleCache.onInvalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(LogisticsRuleKey.LOGISTICS_RULE_INVALIDATE_CHANNEL)
+        );
+        return container;
+    }
+
+}
@@ -18,7 +18,22 @@ public class LogisticsRuleKey extends RuleKeyPrefix {
         super(keyPrefix, expireSeconds);
     }
 
+    /**
+     * 规则快照(二级缓存), 携带版本号, 版本不一致时视为失效
+     */
     public static final LogisticsRuleKey LOGISTICS_RULE_KEY = new LogisticsRuleKey(
             KeyModePrefix.Rule.LOGISTICS_RULE, ONE_MINUTE
     );
+
+    /**
+     * 规则版本号, 规则变更时自增, 不过期
+     */
+    public static final LogisticsRuleKey LOGISTICS_RULE_VERSION_KEY = new LogisticsRuleKey(
+            KeyModePrefix.Rule.LOGISTICS_RULE_VERSION
+    );
+
+    /**
+     * 规则失效广播频道, 消息体: companyId:version
+     */
+    public static final String LOGISTICS_RULE_INVALIDATE_CHANNEL = RULE_PREFIX + KeyModePrefix.Rule.LOGISTICS_RULE_INVALIDATE;
 }
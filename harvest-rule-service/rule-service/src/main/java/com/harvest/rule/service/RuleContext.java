@@ -4,17 +4,21 @@ import com.harvest.core.rule.RuleManager;
 import com.harvest.core.rule.confine.Rule;
 import com.harvest.core.rule.confine.RuleCondition;
 import com.harvest.core.rule.confine.RuleMatch;
+import com.harvest.core.rule.plan.RulePlan;
+import com.harvest.core.utils.ActuatorUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.CollectionUtils;
 
-import java.util.Collection;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @Author: Alodi
  * @Date: 2023/2/20 2:35 PM
- * @Description: TODO
+ * @Description: 规则匹配上下文
+ * 按公司缓存编译后的执行计划, 规则集实例不变或规则集版本一致时复用, 否则重新编译
  **/
 public abstract class RuleContext<RULE extends Rule, C extends RuleCondition, RM extends RuleMatch> {
 
@@ -23,6 +27,16 @@ public abstract class RuleContext<RULE extends Rule, C extends RuleCondition, RM
     @Autowired
     private RuleManager ruleManager;
 
+    /**
+     * 公司 -> 编译后的规则执行计划
+     */
+    private final Map<Long, CompiledPlan<RULE, C>> plans = new ConcurrentHashMap<>();
+
+    /**
+     * 批量匹配时每个并发分区的条件数
+     */
+    private static final int BATCH_PARTITION_SIZE = 500;
+
     /**
      * 根据 C 匹配到符合的 RM
      *
@@ -34,17 +48,7 @@ public abstract class RuleContext<RULE extends Rule, C extends RuleCondition, RM
         if (CollectionUtils.isEmpty(rules)) {
             return null;
         }
-        RM ruleMatch = null;
-        for (RULE rule : rules) {
-            if (ruleManager.andMatch(rule, condition)) {
-                if (this.isIgnore(companyId, rule, condition)) {
-                    continue;
-                }
-                ruleMatch = this.ruleMatch(companyId, rule);
-                break;
-            }
-        }
-        return ruleMatch;
+        return this.match(companyId, rules, this.plan(companyId, rules), condition, true);
     }
 
     /**
@@ -58,17 +62,118 @@ public abstract class RuleContext<RULE extends Rule, C extends RuleCondition, RM
         if (CollectionUtils.isEmpty(rules)) {
             return null;
         }
-        RM result = null;
-        for (RULE rule : rules) {
-            if (ruleManager.orMatch(rule, condition)) {
-                if (this.isIgnore(companyId, rule, condition)) {
-                    continue;
+        return this.match(companyId, rules, this.plan(companyId, rules), condition, false);
+    }
+
+    /**
+     * 批量匹配, 规则只加载/编译一次, 条件分区并发匹配
+     *
+     * @param companyId
+     * @param conditions
+     * @return 条件 -> 匹配结果(无匹配时为 null), 按条件顺序
+     */
+    public Map<C, RM> andMatchBatch(Long companyId, Collection<C> conditions) {
+        return this.matchBatch(companyId, conditions, true);
+    }
+
+    /**
+     * 批量匹配, 规则只加载/编译一次, 条件分区并发匹配
+     *
+     * @param companyId
+     * @param conditions
+     * @return 条件 -> 匹配结果(无匹配时为 null), 按条件顺序
+     */
+    public Map<C, RM> orMatchBatch(Long companyId, Collection<C> conditions) {
+        return this.matchBatch(companyId, conditions, false);
+    }
+
+    private Map<C, RM> matchBatch(Long companyId, Collection<C> conditions, boolean and) {
+        if (CollectionUtils.isEmpty(conditions)) {
+            return Collections.emptyMap();
+        }
+        Map<C, RM> result = new LinkedHashMap<>(conditions.size() * 4 / 3 + 1);
+        Collection<RULE> rules = this.getRules(companyId, conditions.iterator().next());
+        if (CollectionUtils.isEmpty(rules)) {
+            conditions.forEach(condition -> result.put(condition, null));
+            return result;
+        }
+        RulePlan<RULE, C> plan = this.plan(companyId, rules);
+        List<Map.Entry<C, RM>> matches = ActuatorUtils.parallelPartitionExecute(new ArrayList<>(conditions), BATCH_PARTITION_SIZE,
+                partition -> {
+                    List<Map.Entry<C, RM>> entries = new ArrayList<>(partition.size());
+                    for (C condition : partition) {
+                        entries.add(new AbstractMap.SimpleImmutableEntry<>(condition, this.match(companyId, rules, plan, condition, and)));
+                    }
+                    return entries;
+                });
+        matches.forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+        return result;
+    }
+
+    /**
+     * 按优先级返回第一条匹配且未被忽略的规则
+     *
+     * @param companyId
+     * @param rules     按优先级排序的规则
+     * @param plan      执行计划, 为空时逐条匹配
+     * @param condition
+     * @param and       true: 全部细分规则满足; false: 任意细分规则满足
+     * @return
+     */
+    private RM match(Long companyId, Collection<RULE> rules, RulePlan<RULE, C> plan, C condition, boolean and) {
+        if (Objects.nonNull(plan)) {
+            int i = and ? plan.nextAndMatch(condition, 0) : plan.nextOrMatch(condition, 0);
+            while (i >= 0) {
+                RULE rule = plan.rule(i);
+                if (!this.isIgnore(companyId, rule, condition)) {
+                    return this.ruleMatch(companyId, rule);
                 }
-                result = this.ruleMatch(companyId, rule);
-                break;
+                i = and ? plan.nextAndMatch(condition, i + 1) : plan.nextOrMatch(condition, i + 1);
             }
+            return null;
         }
-        return result;
+        for (RULE rule : rules) {
+            boolean matched = and ? ruleManager.andMatch(rule, condition) : ruleManager.orMatch(rule, condition);
+            if (matched && !this.isIgnore(companyId, rule, condition)) {
+                return this.ruleMatch(companyId, rule);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 规则发生变更时丢弃已编译的执行计划, 下次匹配时重新编译
+     *
+     * @param companyId
+     */
+    public void evictPlan(Long companyId) {
+        plans.remove(companyId);
+    }
+
+    /**
+     * 获取执行计划, 规则集发生变化时重新编译
+     *
+     * @param companyId
+     * @param rules
+     * @return 未实现编译时返回 null, 退化为逐条匹配
+     */
+    private RulePlan<RULE, C> plan(Long companyId, Collection<RULE> rules) {
+        CompiledPlan<RULE, C> cached = plans.get(companyId);
+        if (Objects.nonNull(cached) && cached.plan.source() == rules) {
+            return cached.plan;
+        }
+        Long version = this.ruleSetVersion(companyId, rules);
+        if (Objects.nonNull(cached) && Objects.nonNull(version) && version.equals(cached.version)) {
+            return cached.plan;
+        }
+        long start = System.currentTimeMillis();
+        RulePlan<RULE, C> plan = this.compile(companyId, rules);
+        if (Objects.isNull(plan)) {
+            return null;
+        }
+        plans.put(companyId, new CompiledPlan<>(version, plan));
+        LOGGER.info("RuleContext#{}#编译规则执行计划, companyId:{}, 规则数:{}, 版本:{}, 耗时:{}ms", this.type(), companyId, rules.size(), version, System.currentTimeMillis() - start);
+        return plan;
     }
 
     /**
@@ -79,13 +184,36 @@ public abstract class RuleContext<RULE extends Rule, C extends RuleCondition, RM
     protected abstract String type();
 
     /**
-     * 获取该设置全部规则
+     * 获取该设置全部规则, 按优先级排序
      *
      * @param condition
      * @return
      */
     protected abstract Collection<RULE> getRules(Long companyId, C condition);
 
+    /**
+     * 编译规则执行计划, 默认不编译(逐条反射匹配)
+     *
+     * @param companyId
+     * @param rules     按优先级排序的规则
+     * @return
+     */
+    protected RulePlan<RULE, C> compile(Long companyId, Collection<RULE> rules) {
+        return null;
+    }
+
+    /**
+     * 规则集版本, 版本一致时直接复用已编译的执行计划而不比较规则内容
+     * 规则变更时版本必须变化(或调用 {@link #evictPlan(Long)}), 默认无版本, 仅规则集为同一实例时复用
+     *
+     * @param companyId
+     * @param rules     按优先级排序的规则
+     * @return 版本, 未知时返回 null
+     */
+    protected Long ruleSetVersion(Long companyId, Collection<RULE> rules) {
+        return null;
+    }
+
     /**
      * 获取默认规则
      *
@@ -113,4 +241,19 @@ public abstract class RuleContext<RULE extends Rule, C extends RuleCondition, RM
      */
     protected abstract RM ruleMatch(Long companyId, RULE rule);
 
+    /**
+     * 已编译的执行计划及编译时的规则集版本
+     */
+    private static final class CompiledPlan<RULE extends Rule, C extends RuleCondition> {
+
+        private final Long version;
+
+        private final RulePlan<RULE, C> plan;
+
+        private CompiledPlan(Long version, RulePlan<RULE, C> plan) {
+            this.version = version;
+            this.plan = plan;
+        }
+    }
+
 }
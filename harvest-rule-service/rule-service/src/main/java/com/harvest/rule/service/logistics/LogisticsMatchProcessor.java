@@ -1,17 +1,21 @@
 package com.harvest.rule.service.logistics;
 
+import com.harvest.core.rule.plan.RulePlan;
 import com.harvest.core.utils.JsonUtils;
+import com.harvest.rule.cache.LogisticsRuleCache;
 import com.harvest.rule.client.logistics.LogisticsRuleClient;
 import com.harvest.rule.domain.logistics.LogisticsRuleMatch;
 import com.harvest.rule.repository.domain.match.logistics.LogisticsRule;
 import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleCondition;
 import com.harvest.rule.service.RuleContext;
+import com.harvest.rule.service.logistics.plan.LogisticsRulePlan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -27,6 +31,9 @@ public class LogisticsMatchProcessor extends RuleContext<LogisticsRule, Logistic
     @Autowired
     private LogisticsRuleClient logisticsRuleClient;
 
+    @Autowired
+    private LogisticsRuleCache logisticsRuleCache;
+
     @Override
     protected String type() {
         return LogisticsRule.RULE;
@@ -42,11 +49,33 @@ public class LogisticsMatchProcessor extends RuleContext<LogisticsRule, Logistic
         return match;
     }
 
+    @Override
+    public Map<LogisticsRuleCondition, LogisticsRuleMatch> andMatchBatch(Long companyId, Collection<LogisticsRuleCondition> conditions) {
+        Map<LogisticsRuleCondition, LogisticsRuleMatch> matches = super.andMatchBatch(companyId, conditions);
+        if (!matches.containsValue(null)) {
+            return matches;
+        }
+        LogisticsRuleMatch defaultRule = this.getDefaultRule(companyId);
+        matches.replaceAll((condition, match) -> Objects.isNull(match) ? defaultRule : match);
+        LOGGER.error("LogisticsMatchProcessor#批量物流匹配#存在无对应匹配规则的条件#匹配为默认规则, companyId:{}", companyId);
+        return matches;
+    }
+
     @Override
     protected Collection<LogisticsRule> getRules(Long companyId, LogisticsRuleCondition condition) {
         return logisticsRuleClient.listLogisticsRule(companyId);
     }
 
+    @Override
+    protected RulePlan<LogisticsRule, LogisticsRuleCondition> compile(Long companyId, Collection<LogisticsRule> rules) {
+        return LogisticsRulePlan.compile(rules);
+    }
+
+    @Override
+    protected Long ruleSetVersion(Long companyId, Collection<LogisticsRule> rules) {
+        return logisticsRuleCache.fingerprint(companyId, rules);
+    }
+
     @Override
     protected LogisticsRuleMatch getDefaultRule(Long companyId) {
         return logisticsRuleClient.getDefaultRule(companyId);
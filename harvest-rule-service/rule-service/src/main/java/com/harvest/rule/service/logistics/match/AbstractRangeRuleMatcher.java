@@ -0,0 +1,25 @@
+package com.harvest.rule.service.logistics.match;
+
+import com.harvest.core.domain.range.number.BigDecimalRange;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/2 11:08 AM
+ * @Description: 区间类细分规则匹配, 闭区间; 未配置区间视为不限, 配置了区间但条件值为空视为不满足
+ **/
+public abstract class AbstractRangeRuleMatcher {
+
+    protected boolean inScope(BigDecimalRange range, BigDecimal value) {
+        if (Objects.isNull(range) || range.isNull()) {
+            return true;
+        }
+        if (Objects.isNull(value)) {
+            return false;
+        }
+        return range.inScopeEq(value);
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.harvest.rule.service.logistics.match;
+
+import com.harvest.core.rule.RuleMatcher;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleCondition;
+import com.harvest.rule.repository.domain.match.logistics.section.LogisticsGoodsSizeRuleSection;
+import org.springframework.stereotype.Component;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/2 11:14 AM
+ * @Description: 物流匹配-商品尺寸规则
+ **/
+@Component
+public class GoodsSizeRuleMatcher extends AbstractRangeRuleMatcher implements RuleMatcher<LogisticsGoodsSizeRuleSection, LogisticsRuleCondition> {
+
+    @Override
+    public boolean match(LogisticsGoodsSizeRuleSection ruleSection, LogisticsRuleCondition condition) {
+        return this.inScope(ruleSection.getLengthRange(), condition.getLength())
+                && this.inScope(ruleSection.getWidthRange(), condition.getWidth())
+                && this.inScope(ruleSection.getHeightRange(), condition.getHeight());
+    }
+}
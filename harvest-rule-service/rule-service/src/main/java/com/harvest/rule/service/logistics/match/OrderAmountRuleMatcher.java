@@ -0,0 +1,20 @@
+package com.harvest.rule.service.logistics.match;
+
+import com.harvest.core.rule.RuleMatcher;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleCondition;
+import com.harvest.rule.repository.domain.match.logistics.section.LogisticsOrderAmountRuleSection;
+import org.springframework.stereotype.Component;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/2 11:12 AM
+ * @Description: 物流匹配-订单金额规则
+ **/
+@Component
+public class OrderAmountRuleMatcher extends AbstractRangeRuleMatcher implements RuleMatcher<LogisticsOrderAmountRuleSection, LogisticsRuleCondition> {
+
+    @Override
+    public boolean match(LogisticsOrderAmountRuleSection ruleSection, LogisticsRuleCondition condition) {
+        return this.inScope(ruleSection.getAmountRange(), condition.getOrderAmount());
+    }
+}
@@ -0,0 +1,22 @@
+package com.harvest.rule.service.logistics.match;
+
+import com.harvest.core.rule.RuleMatcher;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleCondition;
+import com.harvest.rule.repository.domain.match.logistics.section.LogisticsPackageRuleSection;
+import org.springframework.stereotype.Component;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/2 11:16 AM
+ * @Description: 物流匹配-包裹信息规则
+ **/
+@Component
+public class PackageRuleMatcher extends AbstractRangeRuleMatcher implements RuleMatcher<LogisticsPackageRuleSection, LogisticsRuleCondition> {
+
+    @Override
+    public boolean match(LogisticsPackageRuleSection ruleSection, LogisticsRuleCondition condition) {
+        return this.inScope(ruleSection.getWeightRange(), condition.getWeight())
+                && this.inScope(ruleSection.getVolumeRange(), condition.getVolume())
+                && this.inScope(ruleSection.getSizeRange(), condition.getSize());
+    }
+}
@@ -0,0 +1,26 @@
+package com.harvest.rule.service.logistics.match;
+
+import com.harvest.core.rule.RuleMatcher;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleCondition;
+import com.harvest.rule.repository.domain.match.logistics.section.LogisticsWarehouseRuleSection;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import java.util.Objects;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/2 11:05 AM
+ * @Description: 物流匹配-仓库规则
+ **/
+@Component
+public class WarehouseRuleMatcher implements RuleMatcher<LogisticsWarehouseRuleSection, LogisticsRuleCondition> {
+
+    @Override
+    public boolean match(LogisticsWarehouseRuleSection ruleSection, LogisticsRuleCondition condition) {
+        if (Objects.isNull(condition.getWarehouseId()) || CollectionUtils.isEmpty(ruleSection.getWarehouseIds())) {
+            return Boolean.FALSE;
+        }
+        return ruleSection.getWarehouseIds().contains(condition.getWarehouseId().toString());
+    }
+}
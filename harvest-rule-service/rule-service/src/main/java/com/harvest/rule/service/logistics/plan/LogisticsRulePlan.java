@@ -0,0 +1,255 @@
+package com.harvest.rule.service.logistics.plan;
+
+import com.harvest.core.domain.range.number.BigDecimalRange;
+import com.harvest.core.rule.plan.DiscreteRuleIndex;
+import com.harvest.core.rule.plan.RangeRuleIndex;
+import com.harvest.core.rule.plan.RuleBits;
+import com.harvest.core.rule.plan.RulePlan;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRule;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleCondition;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleSection;
+import com.harvest.rule.repository.domain.match.logistics.section.*;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.util.CollectionUtils;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/2 11:30 AM
+ * @Description: 物流匹配规则执行计划
+ * 每家公司的规则集编译一次: 国家/仓库 使用哈希位图索引, 金额/尺寸/包裹 使用有序区间索引,
+ * 匹配时只做位图按字与运算, 不反射、不分配对象, 结果与 {@link com.harvest.core.rule.RuleManager} 逐条匹配一致
+ **/
+public final class LogisticsRulePlan implements RulePlan<LogisticsRule, LogisticsRuleCondition> {
+
+    private final Collection<LogisticsRule> source;
+
+    private final LogisticsRule[] rules;
+
+    /**
+     * 至少配置了一项细分规则的规则, 无细分规则的规则永不匹配
+     */
+    private final long[] configured;
+
+    private final long[] countryPresent;
+    private final long[] warehousePresent;
+    private final long[] amountPresent;
+    private final long[] goodsSizePresent;
+    private final long[] packagePresent;
+
+    private final DiscreteRuleIndex<String> country;
+    private final DiscreteRuleIndex<Long> warehouse;
+    private final RangeRuleIndex<BigDecimal> amount;
+    private final RangeRuleIndex<BigDecimal> length;
+    private final RangeRuleIndex<BigDecimal> width;
+    private final RangeRuleIndex<BigDecimal> height;
+    private final RangeRuleIndex<BigDecimal> weight;
+    private final RangeRuleIndex<BigDecimal> volume;
+    private final RangeRuleIndex<BigDecimal> size;
+
+    private LogisticsRulePlan(Collection<LogisticsRule> source) {
+        this.source = source;
+        this.rules = source.toArray(new LogisticsRule[0]);
+        int n = rules.length;
+        this.configured = RuleBits.words(n);
+        this.countryPresent = RuleBits.words(n);
+        this.warehousePresent = RuleBits.words(n);
+        this.amountPresent = RuleBits.words(n);
+        this.goodsSizePresent = RuleBits.words(n);
+        this.packagePresent = RuleBits.words(n);
+
+        DiscreteRuleIndex.Builder<String> countryBuilder = DiscreteRuleIndex.builder(n);
+        DiscreteRuleIndex.Builder<Long> warehouseBuilder = DiscreteRuleIndex.builder(n);
+        RangeRuleIndex.Builder<BigDecimal> amountBuilder = RangeRuleIndex.builder(n);
+        RangeRuleIndex.Builder<BigDecimal> lengthBuilder = RangeRuleIndex.builder(n);
+        RangeRuleIndex.Builder<BigDecimal> widthBuilder = RangeRuleIndex.builder(n);
+        RangeRuleIndex.Builder<BigDecimal> heightBuilder = RangeRuleIndex.builder(n);
+        RangeRuleIndex.Builder<BigDecimal> weightBuilder = RangeRuleIndex.builder(n);
+        RangeRuleIndex.Builder<BigDecimal> volumeBuilder = RangeRuleIndex.builder(n);
+        RangeRuleIndex.Builder<BigDecimal> sizeBuilder = RangeRuleIndex.builder(n);
+
+        for (int i = 0; i < n; i++) {
+            LogisticsRuleSection section = rules[i].getRuleSection();
+            if (Objects.isNull(section)) {
+                section = new LogisticsRuleSection();
+            }
+
+            LogisticsCountryRuleSection countrySection = section.getCountryRuleSection();
+            if (Objects.isNull(countrySection)) {
+                countryBuilder.wildcard(i);
+            } else {
+                this.present(countryPresent, i);
+                if (!CollectionUtils.isEmpty(countrySection.getCountryCodes())) {
+                    for (String countryCode : countrySection.getCountryCodes()) {
+                        if (StringUtils.isNotEmpty(countryCode)) {
+                            countryBuilder.accept(i, countryCode);
+                        }
+                    }
+                }
+            }
+
+            LogisticsWarehouseRuleSection warehouseSection = section.getWarehouseRuleSection();
+            if (Objects.isNull(warehouseSection)) {
+                warehouseBuilder.wildcard(i);
+            } else {
+                this.present(warehousePresent, i);
+                if (!CollectionUtils.isEmpty(warehouseSection.getWarehouseIds())) {
+                    for (String warehouseId : warehouseSection.getWarehouseIds()) {
+                        warehouseBuilder.accept(i, this.warehouseKey(warehouseId));
+                    }
+                }
+            }
+
+            LogisticsOrderAmountRuleSection amountSection = section.getOrderAmountRuleSection();
+            if (Objects.isNull(amountSection)) {
+                amountBuilder.unbounded(i);
+            } else {
+                this.present(amountPresent, i);
+                this.range(amountBuilder, i, amountSection.getAmountRange());
+            }
+
+            LogisticsGoodsSizeRuleSection goodsSizeSection = section.getGoodsSizeRuleSection();
+            if (Objects.isNull(goodsSizeSection)) {
+                lengthBuilder.unbounded(i);
+                widthBuilder.unbounded(i);
+                heightBuilder.unbounded(i);
+            } else {
+                this.present(goodsSizePresent, i);
+                this.range(lengthBuilder, i, goodsSizeSection.getLengthRange());
+                this.range(widthBuilder, i, goodsSizeSection.getWidthRange());
+                this.range(heightBuilder, i, goodsSizeSection.getHeightRange());
+            }
+
+            LogisticsPackageRuleSection packageSection = section.getPackageRuleSection();
+            if (Objects.isNull(packageSection)) {
+                weightBuilder.unbounded(i);
+                volumeBuilder.unbounded(i);
+                sizeBuilder.unbounded(i);
+            } else {
+                this.present(packagePresent, i);
+                this.range(weightBuilder, i, packageSection.getWeightRange());
+                this.range(volumeBuilder, i, packageSection.getVolumeRange());
+                this.range(sizeBuilder, i, packageSection.getSizeRange());
+            }
+        }
+
+        this.country = countryBuilder.build();
+        this.warehouse = warehouseBuilder.build();
+        this.amount = amountBuilder.build();
+        this.length = lengthBuilder.build();
+        this.width = widthBuilder.build();
+        this.height = heightBuilder.build();
+        this.weight = weightBuilder.build();
+        this.volume = volumeBuilder.build();
+        this.size = sizeBuilder.build();
+    }
+
+    /**
+     * 编译规则集, 规则顺序即优先级顺序
+     *
+     * @param rules 按优先级排序的规则
+     * @return 执行计划
+     */
+    public static LogisticsRulePlan compile(Collection<LogisticsRule> rules) {
+        return new LogisticsRulePlan(rules);
+    }
+
+    @Override
+    public int nextAndMatch(LogisticsRuleCondition condition, int fromIndex) {
+        if (fromIndex >= rules.length) {
+            return -1;
+        }
+        long[] countryPass = country.pass(condition.getCountryCode());
+        long[] warehousePass = warehouse.pass(condition.getWarehouseId());
+        long[] amountPass = amount.pass(condition.getOrderAmount());
+        long[] lengthPass = length.pass(condition.getLength());
+        long[] widthPass = width.pass(condition.getWidth());
+        long[] heightPass = height.pass(condition.getHeight());
+        long[] weightPass = weight.pass(condition.getWeight());
+        long[] volumePass = volume.pass(condition.getVolume());
+        long[] sizePass = size.pass(condition.getSize());
+        for (int w = fromIndex >>> 6; w < configured.length; w++) {
+            long word = configured[w] & RuleBits.fromMask(w, fromIndex)
+                    & countryPass[w] & warehousePass[w] & amountPass[w]
+                    & lengthPass[w] & widthPass[w] & heightPass[w]
+                    & weightPass[w] & volumePass[w] & sizePass[w];
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int nextOrMatch(LogisticsRuleCondition condition, int fromIndex) {
+        if (fromIndex >= rules.length) {
+            return -1;
+        }
+        long[] countryPass = country.pass(condition.getCountryCode());
+        long[] warehousePass = warehouse.pass(condition.getWarehouseId());
+        long[] amountPass = amount.pass(condition.getOrderAmount());
+        long[] lengthPass = length.pass(condition.getLength());
+        long[] widthPass = width.pass(condition.getWidth());
+        long[] heightPass = height.pass(condition.getHeight());
+        long[] weightPass = weight.pass(condition.getWeight());
+        long[] volumePass = volume.pass(condition.getVolume());
+        long[] sizePass = size.pass(condition.getSize());
+        for (int w = fromIndex >>> 6; w < configured.length; w++) {
+            long word = (countryPresent[w] & countryPass[w])
+                    | (warehousePresent[w] & warehousePass[w])
+                    | (amountPresent[w] & amountPass[w])
+                    | (goodsSizePresent[w] & lengthPass[w] & widthPass[w] & heightPass[w])
+                    | (packagePresent[w] & weightPass[w] & volumePass[w] & sizePass[w]);
+            word &= RuleBits.fromMask(w, fromIndex);
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public LogisticsRule rule(int index) {
+        return rules[index];
+    }
+
+    @Override
+    public Collection<LogisticsRule> source() {
+        return source;
+    }
+
+    private void present(long[] sectionPresent, int ordinal) {
+        RuleBits.set(sectionPresent, ordinal);
+        RuleBits.set(configured, ordinal);
+    }
+
+    private void range(RangeRuleIndex.Builder<BigDecimal> builder, int ordinal, BigDecimalRange range) {
+        if (Objects.isNull(range)) {
+            builder.unbounded(ordinal);
+            return;
+        }
+        builder.range(ordinal, range.getMin(), range.getMax());
+    }
+
+    /**
+     * 仓库规则按字符串比较仓库ID, 只有规范的数字字符串才可能与条件中的仓库ID相等
+     *
+     * @param warehouseId 规则中的仓库ID
+     * @return 索引键
+     */
+    private Long warehouseKey(String warehouseId) {
+        if (StringUtils.isEmpty(warehouseId)) {
+            return null;
+        }
+        try {
+            long key = Long.parseLong(warehouseId);
+            return Long.toString(key).equals(warehouseId) ? key : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+}
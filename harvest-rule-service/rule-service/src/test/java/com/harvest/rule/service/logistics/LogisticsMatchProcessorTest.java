@@ -0,0 +1,294 @@
+package com.harvest.rule.service.logistics;
+
+import com.harvest.core.domain.range.number.BigDecimalRange;
+import com.harvest.core.rule.RuleManager;
+import com.harvest.core.rule.plan.RulePlan;
+import com.harvest.rule.cache.LogisticsRuleCache;
+import com.harvest.rule.client.logistics.LogisticsRuleClient;
+import com.harvest.rule.domain.logistics.LogisticsRuleMatch;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRule;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleCondition;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleSection;
+import com.harvest.rule.repository.domain.match.logistics.section.*;
+import com.harvest.rule.service.logistics.match.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @Author: Alodi
+ * @Date: 2023/4/27 10:20 AM
+ * @Description: 物流规则执行计划与逐条匹配结果一致性, 及执行计划复用
+ **/
+public class LogisticsMatchProcessorTest {
+
+    private static final Long COMPANY_ID = 1L;
+
+    private static final String[] COUNTRIES = {null, "CN", "JP", "FR"};
+
+    private static final Long[] WAREHOUSES = {null, 100L, 200L};
+
+    private static final BigDecimal[] AMOUNTS = {null, BigDecimal.ZERO, BigDecimal.valueOf(50), BigDecimal.valueOf(100), BigDecimal.valueOf(150)};
+
+    private static final BigDecimal[] LENGTHS = {null, BigDecimal.valueOf(5), BigDecimal.valueOf(20)};
+
+    private static final BigDecimal[] WEIGHTS = {null, BigDecimal.ONE, BigDecimal.TEN};
+
+    private final AtomicInteger compiles = new AtomicInteger();
+
+    private Collection<LogisticsRule> rules;
+
+    private LogisticsRuleCache logisticsRuleCache;
+
+    /**
+     * 编译执行计划匹配
+     */
+    private LogisticsMatchProcessor compiled;
+
+    /**
+     * 不编译, 通过 RuleManager 逐条匹配
+     */
+    private LogisticsMatchProcessor sequential;
+
+    @BeforeEach
+    public void setUp() {
+        RuleManager ruleManager = new RuleManager();
+        ReflectionTestUtils.setField(ruleManager, "matchers", new HashSet<>(Arrays.asList(
+                new CountryRuleMatcher(), new WarehouseRuleMatcher(), new OrderAmountRuleMatcher(),
+                new GoodsSizeRuleMatcher(), new PackageRuleMatcher())));
+        ruleManager.init();
+
+        LogisticsRuleClient logisticsRuleClient = mock(LogisticsRuleClient.class);
+        when(logisticsRuleClient.listLogisticsRule(anyLong())).thenAnswer(invocation -> rules);
+        logisticsRuleCache = mock(LogisticsRuleCache.class);
+
+        compiled = new LogisticsMatchProcessor() {
+            @Override
+            protected RulePlan<LogisticsRule, LogisticsRuleCondition> compile(Long companyId, Collection<LogisticsRule> rules) {
+                compiles.incrementAndGet();
+                return super.compile(companyId, rules);
+            }
+        };
+        sequential = new LogisticsMatchProcessor() {
+            @Override
+            protected RulePlan<LogisticsRule, LogisticsRuleCondition> compile(Long companyId, Collection<LogisticsRule> rules) {
+                return null;
+            }
+        };
+        for (LogisticsMatchProcessor processor : Arrays.asList(compiled, sequential)) {
+            ReflectionTestUtils.setField(processor, "ruleManager", ruleManager);
+            ReflectionTestUtils.setField(processor, "logisticsRuleClient", logisticsRuleClient);
+            ReflectionTestUtils.setField(processor, "logisticsRuleCache", logisticsRuleCache);
+        }
+        rules = this.rules();
+    }
+
+    @Test
+    public void andMatchEqualsSequential() {
+        for (LogisticsRuleCondition condition : this.conditions()) {
+            assertEquals(this.ruleId(sequential.andMatch(COMPANY_ID, condition)), this.ruleId(compiled.andMatch(COMPANY_ID, condition)), condition.toString());
+        }
+    }
+
+    @Test
+    public void orMatchEqualsSequential() {
+        for (LogisticsRuleCondition condition : this.conditions()) {
+            assertEquals(this.ruleId(sequential.orMatch(COMPANY_ID, condition)), this.ruleId(compiled.orMatch(COMPANY_ID, condition)), condition.toString());
+        }
+    }
+
+    @Test
+    public void batchMatchEqualsSequential() {
+        List<LogisticsRuleCondition> conditions = this.conditions();
+        Map<LogisticsRuleCondition, LogisticsRuleMatch> and = compiled.andMatchBatch(COMPANY_ID, conditions);
+        Map<LogisticsRuleCondition, LogisticsRuleMatch> or = compiled.orMatchBatch(COMPANY_ID, conditions);
+        for (LogisticsRuleCondition condition : conditions) {
+            assertEquals(this.ruleId(sequential.andMatch(COMPANY_ID, condition)), this.ruleId(and.get(condition)), condition.toString());
+            assertEquals(this.ruleId(sequential.orMatch(COMPANY_ID, condition)), this.ruleId(or.get(condition)), condition.toString());
+        }
+    }
+
+    @Test
+    public void emptyRulesMatchNothing() {
+        rules = Collections.emptyList();
+        LogisticsRuleCondition condition = this.condition("CN", 100L, BigDecimal.TEN, null, null);
+
+        assertNull(compiled.andMatch(COMPANY_ID, condition));
+        assertNull(compiled.orMatch(COMPANY_ID, condition));
+        assertNull(sequential.andMatch(COMPANY_ID, condition));
+        assertNull(sequential.orMatch(COMPANY_ID, condition));
+        assertEquals(0, compiles.get());
+    }
+
+    @Test
+    public void noMatch() {
+        rules = Arrays.asList(
+                this.rule(1L, this.country("CN")),
+                this.rule(2L, this.warehouse("100")));
+        LogisticsRuleCondition condition = this.condition("FR", 200L, null, null, null);
+
+        assertNull(compiled.andMatch(COMPANY_ID, condition));
+        assertNull(compiled.orMatch(COMPANY_ID, condition));
+        assertNull(sequential.andMatch(COMPANY_ID, condition));
+        assertNull(sequential.orMatch(COMPANY_ID, condition));
+    }
+
+    @Test
+    public void firstMatchByPriority() {
+        LogisticsRuleCondition condition = this.condition("CN", 100L, BigDecimal.valueOf(50), null, null);
+
+        assertEquals(Long.valueOf(1L), this.ruleId(compiled.andMatch(COMPANY_ID, condition)));
+        assertEquals(Long.valueOf(1L), this.ruleId(compiled.orMatch(COMPANY_ID, condition)));
+    }
+
+    @Test
+    public void planReusedForSameRuleSetVersion() {
+        LogisticsRuleCondition condition = this.condition("CN", null, null, null, null);
+        when(logisticsRuleCache.fingerprint(anyLong(), any())).thenReturn(7L);
+
+        compiled.andMatch(COMPANY_ID, condition);
+        // 快照重新加载: 规则内容相同、实例不同、版本一致
+        rules = this.rules();
+        compiled.andMatch(COMPANY_ID, condition);
+        assertEquals(1, compiles.get());
+
+        // 规则变更后版本变化
+        when(logisticsRuleCache.fingerprint(anyLong(), any())).thenReturn(8L);
+        compiled.andMatch(COMPANY_ID, condition);
+        assertEquals(2, compiles.get());
+    }
+
+    @Test
+    public void planRecompiledWithoutRuleSetVersion() {
+        LogisticsRuleCondition condition = this.condition("CN", null, null, null, null);
+        when(logisticsRuleCache.fingerprint(anyLong(), any())).thenReturn(null);
+
+        compiled.andMatch(COMPANY_ID, condition);
+        compiled.andMatch(COMPANY_ID, condition);
+        assertEquals(1, compiles.get());
+
+        rules = this.rules();
+        compiled.andMatch(COMPANY_ID, condition);
+        assertEquals(2, compiles.get());
+
+        compiled.evictPlan(COMPANY_ID);
+        compiled.andMatch(COMPANY_ID, condition);
+        assertEquals(3, compiles.get());
+    }
+
+    private Long ruleId(LogisticsRuleMatch match) {
+        return Objects.isNull(match) ? null : match.getRuleId();
+    }
+
+    private List<LogisticsRuleCondition> conditions() {
+        List<LogisticsRuleCondition> conditions = new ArrayList<>();
+        for (String country : COUNTRIES) {
+            for (Long warehouseId : WAREHOUSES) {
+                for (BigDecimal amount : AMOUNTS) {
+                    for (BigDecimal length : LENGTHS) {
+                        for (BigDecimal weight : WEIGHTS) {
+                            conditions.add(this.condition(country, warehouseId, amount, length, weight));
+                        }
+                    }
+                }
+            }
+        }
+        return conditions;
+    }
+
+    /**
+     * 覆盖单项/多项细分规则、开闭区间、空配置及不规范仓库ID, 按优先级排序
+     */
+    private List<LogisticsRule> rules() {
+        LogisticsRuleSection countryAndAmount = this.country("JP");
+        countryAndAmount.setOrderAmountRuleSection(this.amount(BigDecimal.valueOf(50), null));
+
+        LogisticsRuleSection goodsSize = new LogisticsRuleSection();
+        LogisticsGoodsSizeRuleSection goodsSizeSection = new LogisticsGoodsSizeRuleSection();
+        goodsSizeSection.setLengthRange(this.range(null, BigDecimal.TEN));
+        goodsSize.setGoodsSizeRuleSection(goodsSizeSection);
+
+        LogisticsRuleSection packages = new LogisticsRuleSection();
+        LogisticsPackageRuleSection packageSection = new LogisticsPackageRuleSection();
+        packageSection.setWeightRange(this.range(BigDecimal.valueOf(5), null));
+        packages.setPackageRuleSection(packageSection);
+
+        LogisticsRuleSection emptyCountry = new LogisticsRuleSection();
+        emptyCountry.setCountryRuleSection(new LogisticsCountryRuleSection());
+
+        return Collections.unmodifiableList(Arrays.asList(
+                this.rule(1L, this.country("CN", "US")),
+                this.rule(2L, this.warehouse("100")),
+                this.rule(3L, this.amount(BigDecimal.ZERO, BigDecimal.valueOf(100))),
+                this.rule(4L, countryAndAmount),
+                this.rule(5L, goodsSize),
+                this.rule(6L, packages),
+                this.rule(7L, new LogisticsRuleSection()),
+                this.rule(8L, null),
+                this.rule(9L, emptyCountry),
+                this.rule(10L, this.warehouse("0200")),
+                this.rule(11L, this.warehouse("200"))));
+    }
+
+    private LogisticsRule rule(Long id, LogisticsRuleSection section) {
+        LogisticsRule rule = new LogisticsRule();
+        rule.setId(id);
+        rule.setPriority(id.intValue());
+        rule.setLogisticsId(id * 10);
+        rule.setChannelId(id * 100);
+        rule.setRuleSection(section);
+        return rule;
+    }
+
+    private LogisticsRuleSection country(String... countryCodes) {
+        LogisticsCountryRuleSection countrySection = new LogisticsCountryRuleSection();
+        countrySection.setCountryCodes(Arrays.asList(countryCodes));
+        LogisticsRuleSection section = new LogisticsRuleSection();
+        section.setCountryRuleSection(countrySection);
+        return section;
+    }
+
+    private LogisticsRuleSection warehouse(String... warehouseIds) {
+        LogisticsWarehouseRuleSection warehouseSection = new LogisticsWarehouseRuleSection();
+        warehouseSection.setWarehouseIds(Arrays.asList(warehouseIds));
+        LogisticsRuleSection section = new LogisticsRuleSection();
+        section.setWarehouseRuleSection(warehouseSection);
+        return section;
+    }
+
+    private LogisticsRuleSection amount(BigDecimal min, BigDecimal max) {
+        LogisticsOrderAmountRuleSection amountSection = new LogisticsOrderAmountRuleSection();
+        amountSection.setAmountRange(this.range(min, max));
+        LogisticsRuleSection section = new LogisticsRuleSection();
+        section.setOrderAmountRuleSection(amountSection);
+        return section;
+    }
+
+    private BigDecimalRange range(BigDecimal min, BigDecimal max) {
+        BigDecimalRange range = new BigDecimalRange();
+        range.setMin(min);
+        range.setMax(max);
+        return range;
+    }
+
+    private LogisticsRuleCondition condition(String countryCode, Long warehouseId, BigDecimal amount, BigDecimal length, BigDecimal weight) {
+        LogisticsRuleCondition condition = new LogisticsRuleCondition();
+        condition.setCountryCode(countryCode);
+        condition.setWarehouseId(warehouseId);
+        condition.setOrderAmount(amount);
+        condition.setLength(length);
+        condition.setWeight(weight);
+        return condition;
+    }
+
+}
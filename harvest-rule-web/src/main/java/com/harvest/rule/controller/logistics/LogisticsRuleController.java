@@ -4,15 +4,20 @@ import com.harvest.core.context.ContextHolder;
 import com.harvest.core.domain.ResponseResult;
 import com.harvest.core.path.HarvestRulePath;
 import com.harvest.rule.client.logistics.LogisticsRuleClient;
+import com.harvest.rule.domain.logistics.LogisticsRuleMatch;
 import com.harvest.rule.repository.domain.match.logistics.LogisticsRule;
+import com.harvest.rule.repository.domain.match.logistics.LogisticsRuleCondition;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @Author: Alodi
@@ -35,4 +40,24 @@ public class LogisticsRuleController {
         return ResponseResult.success(logisticsRules);
     }
 
+    @ApiOperation(value = "刷新物流匹配规则", notes = "规则变更后调用, 各节点本地缓存及执行计划随之失效")
+    @PostMapping("/refresh")
+    public ResponseResult<Long> refreshLogisticsRule() {
+        Long companyId = ContextHolder.getContext().getCompanyId();
+        return ResponseResult.success(logisticsRuleClient.refreshLogisticsRule(companyId));
+    }
+
+    @ApiOperation("物流匹配规则缓存统计")
+    @PostMapping("/cache/stats")
+    public ResponseResult<Map<String, Object>> logisticsRuleCacheStats() {
+        return ResponseResult.success(logisticsRuleClient.logisticsRuleCacheStats());
+    }
+
+    @ApiOperation(value = "批量匹配物流", notes = "结果按入参顺序返回, 无匹配的位置为空")
+    @PostMapping("/matchBatch")
+    public ResponseResult<List<LogisticsRuleMatch>> matchLogisticsBatch(@RequestBody Collection<LogisticsRuleCondition> conditions) {
+        Long companyId = ContextHolder.getContext().getCompanyId();
+        return ResponseResult.success(logisticsRuleClient.matchLogisticsBatch(companyId, conditions));
+    }
+
 }
@@ -1,33 +1,91 @@
 package com.harvest.wms.service.mq;
 
+import com.harvest.core.batch.BatchExecuteResult;
+import com.harvest.core.service.mq.consume.AbstractBatchMessageListener;
+import com.harvest.core.service.mq.consume.ConsumeRecord;
 import com.harvest.core.service.mq.topic.MessageTopic;
-import com.harvest.core.utils.JsonUtils;
 import com.harvest.oms.client.wms.CallBackOrderClient;
 import com.harvest.oms.domain.order.OrderInfoDO;
 import com.harvest.oms.request.order.warehouse.SubmitWmsOrderMessage;
 import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
-import org.apache.rocketmq.spring.core.RocketMQListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.Collections;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @Author: Alodi
  * @Date: 2023/2/8 10:37 PM
- * @Description: TODO
+ * @Description: 订单推送wms消费
+ * <p>
+ * 幂等键为 订单Id + 订单版本, 重复推送同一版本只处理一次, 订单再次审核后版本变化可重新推送;
+ * 一批消息按公司、仓库分组, 每组一次回调. 未执行或超时的订单重试, 业务校验不通过的订单记录日志后确认
  **/
 @RocketMQMessageListener(topic = MessageTopic.ORDER_PUSH_WMS, consumerGroup = "ORDER-PRODUCER-GROUP")
 @Component
-public class ConsumerMessageListener implements RocketMQListener<SubmitWmsOrderMessage> {
+public class ConsumerMessageListener extends AbstractBatchMessageListener<SubmitWmsOrderMessage> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsumerMessageListener.class);
 
     @Autowired
     private CallBackOrderClient callBackOrderClient;
 
     @Override
-    public void onMessage(SubmitWmsOrderMessage message) {
-        System.out.println(JsonUtils.object2Json(message));
-        OrderInfoDO order = message.getOrder();
-        callBackOrderClient.returnAudit(order.companyId, Collections.singleton(order.getOrderId()));
+    protected Class<SubmitWmsOrderMessage> payloadType() {
+        return SubmitWmsOrderMessage.class;
+    }
+
+    @Override
+    protected String bizId(SubmitWmsOrderMessage payload) {
+        OrderInfoDO order = payload.getOrder();
+        return order.getOrderId() + ":" + order.getVersion();
+    }
+
+    @Override
+    protected void consume(List<ConsumeRecord<SubmitWmsOrderMessage>> records) {
+        Map<Long, Map<Long, List<ConsumeRecord<SubmitWmsOrderMessage>>>> groups = new LinkedHashMap<>();
+        records.forEach(record -> groups.computeIfAbsent(record.getPayload().getCompanyId(), k -> new LinkedHashMap<>())
+                .computeIfAbsent(this.warehouseId(record.getPayload().getOrder()), k -> new ArrayList<>()).add(record));
+        groups.forEach((companyId, warehouses) -> warehouses.forEach((warehouseId, group) -> this.callback(companyId, warehouseId, group)));
     }
+
+    private void callback(Long companyId, Long warehouseId, List<ConsumeRecord<SubmitWmsOrderMessage>> group) {
+        List<Long> orderIds = group.stream().map(record -> record.getPayload().getOrder().getOrderId()).distinct().collect(Collectors.toList());
+        BatchExecuteResult<String> result;
+        try {
+            result = callBackOrderClient.returnAudit(companyId, orderIds);
+        } catch (Exception e) {
+            LOGGER.error("ConsumerMessageListener#callback#回调失败, companyId:{}, warehouseId:{}, size:{}", companyId, warehouseId, orderIds.size(), e);
+            group.forEach(record -> record.fail(e));
+            return;
+        }
+        if (Objects.isNull(result)) {
+            return;
+        }
+        Set<Long> retryIds = new HashSet<>();
+        Stream.concat(this.stream(result.getErrorList()), this.stream(result.getUnexecutedList())).forEach(reason -> {
+            if (Objects.equals(BatchExecuteResult.TIMEOUT_REASON, reason.getReason()) || Objects.equals(BatchExecuteResult.UNEXECUTED_REASON, reason.getReason())) {
+                retryIds.add(reason.getId());
+            } else {
+                LOGGER.warn("ConsumerMessageListener#callback#订单处理失败, companyId:{}, orderId:{}, reason:{}", companyId, reason.getId(), reason.getReason());
+            }
+        });
+        if (!retryIds.isEmpty()) {
+            IllegalStateException error = new IllegalStateException("订单回调未完成");
+            group.stream().filter(record -> retryIds.contains(record.getPayload().getOrder().getOrderId())).forEach(record -> record.fail(error));
+        }
+    }
+
+    private Long warehouseId(OrderInfoDO order) {
+        return Objects.isNull(order.getOrderWarehouse()) ? null : order.getOrderWarehouse().getWarehouseId();
+    }
+
+    private Stream<BatchExecuteResult.ReasonMap<String>> stream(List<BatchExecuteResult.ReasonMap<String>> reasons) {
+        return Objects.isNull(reasons) ? Stream.empty() : reasons.stream();
+    }
+
 }